@@ -209,4 +209,18 @@ public interface IndexStatsMBean {
      */
     String getLatestErrorTime();
 
+    /**
+     * @return the number of diff events produced by the current pipelined
+     *         indexing run, which are not yet handed to the index editor
+     *         threads, or {@code 0} if the indexing is not pipelined
+     */
+    int getProducerQueueDepth();
+
+    /**
+     * @return the number of batches of diff events queued for each of the
+     *         index editor threads of the current pipelined indexing run, or
+     *         an empty array if the indexing is not pipelined
+     */
+    int[] getConsumerQueueDepths();
+
 }
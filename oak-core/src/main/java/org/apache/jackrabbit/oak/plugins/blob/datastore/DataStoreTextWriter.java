@@ -19,11 +19,11 @@
 
 package org.apache.jackrabbit.oak.plugins.blob.datastore;
 
-import java.io.BufferedWriter;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.lang.ref.SoftReference;
+import java.nio.file.StandardCopyOption;
 import java.util.Set;
 import java.util.concurrent.Callable;
 
@@ -51,13 +51,13 @@ import static com.google.common.base.Preconditions.checkState;
 public class DataStoreTextWriter implements TextWriter, Closeable, PreExtractedTextProvider {
     private static final String ERROR_BLOB_FILE = "blobs_error.txt";
     private static final String EMPTY_BLOB_FILE = "blobs_empty.txt";
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
 
     private static final Logger log = LoggerFactory.getLogger(DataStoreTextWriter.class);
     private File directory;
 
     private final SetHolder emptyBlobsHolder;
     private final SetHolder errorBlobsHolder;
-    private boolean closed;
     /**
      * Flag indicating that blobId passed is one from DataStoreBlobStore
      * As those blobId's have the length encoded which would need to be
@@ -93,12 +93,8 @@ public class DataStoreTextWriter implements TextWriter, Closeable, PreExtractedT
         }
 
         blobId = stripLength(blobId);
-        ExtractedText result = null;
-        if (getEmptyBlobs().contains(blobId)) {
-            result = ExtractedText.EMPTY;
-        } else if (getErrorBlobs().contains(blobId)) {
-            result = ExtractedText.ERROR;
-        } else {
+        ExtractedText result = getMarkedText(blobId);
+        if (result == null) {
             File textFile = getFile(blobId);
             if (textFile.exists()) {
                 String text = Files.toString(textFile, Charsets.UTF_8);
@@ -121,20 +117,35 @@ public class DataStoreTextWriter implements TextWriter, Closeable, PreExtractedT
 
         File textFile = getFile(stripLength(blobId));
         ensureParentExists(textFile);
-        //TODO should we compress
-        Files.write(text, textFile, Charsets.UTF_8);
+        //Write to a temporary file first and move it in place, such that
+        //a crash never leaves a partially written text behind
+        File tmpFile = File.createTempFile(textFile.getName(), ".tmp", textFile.getParentFile());
+        try {
+            //TODO should we compress
+            Files.write(text, tmpFile, Charsets.UTF_8);
+            java.nio.file.Files.move(tmpFile.toPath(), textFile.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            FileUtils.deleteQuietly(tmpFile);
+        }
     }
 
     @Override
     public synchronized void markEmpty(String blobId) {
         checkIfReadOnlyModeEnabled();
-        getEmptyBlobs().add(stripLength(blobId));
+        blobId = stripLength(blobId);
+        if (getEmptyBlobs().add(blobId)) {
+            appendToFile(EMPTY_BLOB_FILE, blobId);
+        }
     }
 
     @Override
     public synchronized void markError(String blobId) {
         checkIfReadOnlyModeEnabled();
-        getErrorBlobs().add(stripLength(blobId));
+        blobId = stripLength(blobId);
+        if (getErrorBlobs().add(blobId)) {
+            appendToFile(ERROR_BLOB_FILE, blobId);
+        }
     }
 
     @Override
@@ -148,13 +159,8 @@ public class DataStoreTextWriter implements TextWriter, Closeable, PreExtractedT
     }
 
     @Override
-    public synchronized void close() throws IOException {
-        if (closed || readOnlyMode) {
-            return;
-        }
-        writeToFile(EMPTY_BLOB_FILE, getEmptyBlobs());
-        writeToFile(ERROR_BLOB_FILE, getErrorBlobs());
-        closed = true;
+    public void close() throws IOException {
+        //Nothing to do, the empty and error blobs are persisted when marked
     }
 
     @Override
@@ -194,6 +200,15 @@ public class DataStoreTextWriter implements TextWriter, Closeable, PreExtractedT
         return blobId;
     }
 
+    private synchronized ExtractedText getMarkedText(String blobId) {
+        if (getEmptyBlobs().contains(blobId)) {
+            return ExtractedText.EMPTY;
+        } else if (getErrorBlobs().contains(blobId)) {
+            return ExtractedText.ERROR;
+        }
+        return null;
+    }
+
     private Set<String> getEmptyBlobs() {
         return emptyBlobsHolder.get();
     }
@@ -229,17 +244,13 @@ public class DataStoreTextWriter implements TextWriter, Closeable, PreExtractedT
         return result;
     }
 
-    private void writeToFile(String fileName, Set<String> blobIds) throws IOException {
-        if (blobIds.isEmpty()){
-            return;
-        }
+    private void appendToFile(String fileName, String blobId) {
         File file = new File(directory, fileName);
-        BufferedWriter bw = Files.newWriter(file, Charsets.UTF_8);
-        for (String id : blobIds) {
-            bw.write(id);
-            bw.newLine();
+        try {
+            Files.append(blobId + LINE_SEPARATOR, file, Charsets.UTF_8);
+        } catch (IOException e) {
+            log.warn("Error occurred while adding [{}] to {}", blobId, file.getAbsolutePath(), e);
         }
-        bw.close();
     }
 
     private static void ensureParentExists(File file) throws IOException {
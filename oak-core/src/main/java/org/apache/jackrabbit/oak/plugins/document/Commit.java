@@ -403,12 +403,25 @@ public class Commit {
     private void rollback(List<UpdateOp> changed,
                           UpdateOp commitRoot) {
         DocumentStore store = nodeStore.getDocumentStore();
+        List<UpdateOp> reverseOps = new ArrayList<UpdateOp>(changed.size());
         for (UpdateOp op : changed) {
             UpdateOp reverse = op.getReverseOperation();
             if (op.isNew()) {
                 NodeDocument.setDeletedOnce(reverse);
             }
-            store.findAndUpdate(NODES, reverse);
+            reverseOps.add(reverse);
+        }
+        try {
+            store.findAndUpdate(NODES, reverseOps);
+        } catch (DocumentStoreException e) {
+            // the store may not be able to tell which of the reverse
+            // operations were applied. they only remove changes made
+            // by this commit and can be applied again one by one
+            LOG.debug("Bulk rollback of {} failed, applying reverse operations " +
+                    "one by one: {}", revision, e.getMessage());
+            for (UpdateOp reverse : reverseOps) {
+                store.findAndUpdate(NODES, reverse);
+            }
         }
         UpdateOp removeCollision = new UpdateOp(commitRoot.getId(), false);
         NodeDocument.removeCollision(removeCollision, revision);
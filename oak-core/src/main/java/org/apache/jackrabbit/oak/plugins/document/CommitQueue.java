@@ -30,9 +30,12 @@ import java.util.TreeSet;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.annotation.Nonnull;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.Maps;
 
 import org.slf4j.Logger;
@@ -41,6 +44,14 @@ import org.slf4j.LoggerFactory;
 /**
  * <code>CommitQueue</code> ensures a sequence of commits consistent with the
  * commit revision even if commits did not complete in this sequence.
+ * <p>
+ * Commits apply their changes to the DocumentStore concurrently and are only
+ * ordered when they become visible. By default each commit waits until it is
+ * the head of the queue and then runs its {@link Callback} in its own thread.
+ * With batching enabled (see {@link #setBatchCommits(boolean)}), the thread
+ * that finds the head of the queue done also runs the callbacks of all
+ * subsequent commits that are already done. This avoids a thread hand-off
+ * per commit when many commits complete at about the same time.
  */
 final class CommitQueue {
 
@@ -62,6 +73,14 @@ final class CommitQueue {
 
     private long suspendTimeout = Long.getLong("oak.documentMK.suspendTimeoutMillis", DEFAULT_SUSPEND_TIMEOUT);
 
+    private boolean batchCommits = Boolean.getBoolean("oak.documentMK.batchCommits");
+
+    /**
+     * Held by the thread currently running callbacks of done commits when
+     * batching is enabled.
+     */
+    private final Lock processLock = new ReentrantLock();
+
     CommitQueue(@Nonnull RevisionContext context) {
         this.context = checkNotNull(context);
     }
@@ -89,11 +108,19 @@ final class CommitQueue {
 
     void done(@Nonnull Revision revision, @Nonnull Callback c) {
         checkNotNull(revision);
-        waitUntilHeadOfQueue(revision, c);
+        if (batchCommits) {
+            waitUntilProcessed(revision, c);
+        } else {
+            waitUntilHeadOfQueue(revision, c);
+        }
     }
 
     void canceled(@Nonnull Revision rev) {
         removeCommit(rev);
+        if (batchCommits) {
+            // the next commit may already be done and waiting
+            processDoneCommits();
+        }
         notifySuspendedCommits(rev);
     }
 
@@ -168,6 +195,19 @@ final class CommitQueue {
         this.suspendTimeout = timeout;
     }
 
+    /**
+     * Enables or disables batching of done commits. See class documentation.
+     *
+     * @param batchCommits whether to batch done commits.
+     */
+    void setBatchCommits(boolean batchCommits) {
+        this.batchCommits = batchCommits;
+    }
+
+    boolean isBatchCommits() {
+        return batchCommits;
+    }
+
     interface Callback {
 
         void headOfQueue(@Nonnull Revision revision);
@@ -213,7 +253,7 @@ final class CommitQueue {
             boolean wasHead = commits.firstKey().equals(rev);
             commits.remove(rev);
             LOG.debug("removed commit {}, wasHead={}", rev, wasHead);
-            if (wasHead) {
+            if (wasHead && !batchCommits) {
                 notifyHead();
             }
         }
@@ -245,6 +285,53 @@ final class CommitQueue {
         }
     }
 
+    private void waitUntilProcessed(@Nonnull Revision rev,
+                                    @Nonnull Callback c) {
+        Entry commitEntry;
+        synchronized (this) {
+            commitEntry = commits.get(rev);
+            commitEntry.done(c);
+        }
+        processDoneCommits();
+        LOG.debug("waiting until {} is processed", rev);
+        commitEntry.await();
+        commitEntry.checkFailure();
+    }
+
+    /**
+     * Runs the callbacks of done commits at the head of the queue, unless
+     * another thread is already doing so.
+     */
+    private void processDoneCommits() {
+        while (processLock.tryLock()) {
+            try {
+                Entry head;
+                while ((head = doneHead()) != null) {
+                    head.process();
+                    synchronized (this) {
+                        commits.remove(head.revision);
+                    }
+                    head.release();
+                }
+            } finally {
+                processLock.unlock();
+            }
+            // a commit may have become done after the last check
+            // but before the lock was released
+            if (doneHead() == null) {
+                break;
+            }
+        }
+    }
+
+    private synchronized Entry doneHead() {
+        if (commits.isEmpty()) {
+            return null;
+        }
+        Entry head = commits.get(commits.firstKey());
+        return head.isDone() ? head : null;
+    }
+
     private void notifyHead() {
         if (!commits.isEmpty()) {
             LOG.debug("release {}", commits.firstKey());
@@ -268,10 +355,51 @@ final class CommitQueue {
          */
         private final CountDownLatch latch = new CountDownLatch(1);
 
+        /**
+         * The callback of a done commit when batching is enabled. Guarded
+         * by the monitor of the enclosing CommitQueue.
+         */
+        private Callback callback;
+
+        /**
+         * A failure thrown by the callback when run by the processing thread.
+         */
+        private volatile Throwable failure;
+
         Entry(Revision revision) {
             this.revision = revision;
         }
 
+        void done(Callback c) {
+            this.callback = c;
+        }
+
+        boolean isDone() {
+            return callback != null;
+        }
+
+        /**
+         * Runs the callback and remembers a failure for the thread that
+         * owns this commit.
+         */
+        void process() {
+            try {
+                callback.headOfQueue(revision);
+            } catch (Throwable t) {
+                failure = t;
+            }
+        }
+
+        /**
+         * Re-throws a failure of the callback, if there was one.
+         */
+        void checkFailure() {
+            Throwable t = failure;
+            if (t != null) {
+                throw Throwables.propagate(t);
+            }
+        }
+
         /**
          * Release all threads that are waiting.
          */
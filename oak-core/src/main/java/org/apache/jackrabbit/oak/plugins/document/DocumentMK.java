@@ -62,6 +62,7 @@ import org.apache.jackrabbit.oak.plugins.blob.BlobStoreStats;
 import org.apache.jackrabbit.oak.plugins.blob.CachingBlobStore;
 import org.apache.jackrabbit.oak.plugins.blob.ReferencedBlob;
 import org.apache.jackrabbit.oak.plugins.document.DocumentNodeState.Children;
+import org.apache.jackrabbit.oak.plugins.document.cache.CompressedDocumentCache;
 import org.apache.jackrabbit.oak.plugins.document.cache.NodeDocumentCache;
 import org.apache.jackrabbit.oak.plugins.document.locks.NodeDocumentLocks;
 import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
@@ -563,6 +564,7 @@ public class DocumentMK {
         private int prevDocCachePercentage = DEFAULT_PREV_DOC_CACHE_PERCENTAGE;
         private int childrenCachePercentage = DEFAULT_CHILDREN_CACHE_PERCENTAGE;
         private int diffCachePercentage = DEFAULT_DIFF_CACHE_PERCENTAGE;
+        private long compressedDocumentCacheSize;
         private int cacheSegmentCount = DEFAULT_CACHE_SEGMENT_COUNT;
         private int cacheStackMoveDistance = DEFAULT_CACHE_STACK_MOVE_DISTANCE;
         private boolean useSimpleRevision;
@@ -926,6 +928,27 @@ public class DocumentMK {
             return memoryCacheSize * diffCachePercentage / 100;
         }
 
+        /**
+         * Sets the size of the compressed, off-heap document cache. It keeps
+         * a compact copy of the cached node documents, and still serves them
+         * once they are evicted from the on-heap document cache.
+         * The compressed cache is disabled by default. The size is in bytes
+         * and in addition to the {@link #memoryCacheSize(long)}.
+         *
+         * @param compressedDocumentCacheSize the size in bytes, or 0 to
+         *                                    disable the compressed cache.
+         * @return this
+         */
+        public Builder setCompressedDocumentCacheSize(long compressedDocumentCacheSize) {
+            checkArgument(compressedDocumentCacheSize >= 0);
+            this.compressedDocumentCacheSize = compressedDocumentCacheSize;
+            return this;
+        }
+
+        public long getCompressedDocumentCacheSize() {
+            return compressedDocumentCacheSize;
+        }
+
         public long getMemoryDiffCacheSize() {
             return getDiffCacheSize() / 2;
         }
@@ -1120,7 +1143,12 @@ public class DocumentMK {
             Cache<StringValue, NodeDocument> prevDocumentsCache = buildPrevDocumentsCache(docStore);
             CacheStats prevDocumentsCacheStats = new CacheStats(prevDocumentsCache, "Document-PrevDocuments", getWeigher(), getPrevDocumentCacheSize());
 
-            return new NodeDocumentCache(nodeDocumentsCache, nodeDocumentsCacheStats, prevDocumentsCache, prevDocumentsCacheStats, locks);
+            CompressedDocumentCache compressedCache = null;
+            if (compressedDocumentCacheSize > 0) {
+                compressedCache = new CompressedDocumentCache(docStore, compressedDocumentCacheSize);
+            }
+
+            return new NodeDocumentCache(nodeDocumentsCache, nodeDocumentsCacheStats, prevDocumentsCache, prevDocumentsCacheStats, compressedCache, locks);
         }
 
         @SuppressWarnings("unchecked")
@@ -117,6 +117,7 @@ import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.oak.spi.state.NodeStateDiff;
 import org.apache.jackrabbit.oak.spi.state.NodeStore;
+import org.apache.jackrabbit.oak.spi.state.Prefetchable;
 import org.apache.jackrabbit.oak.stats.Clock;
 import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.apache.jackrabbit.oak.util.PerfLogger;
@@ -128,7 +129,8 @@ import org.slf4j.LoggerFactory;
  * Implementation of a NodeStore on {@link DocumentStore}.
  */
 public final class DocumentNodeStore
-        implements NodeStore, RevisionContext, Observable, Clusterable, NodeStateDiffer {
+        implements NodeStore, RevisionContext, Observable, Clusterable, NodeStateDiffer,
+        Prefetchable {
 
     private static final Logger LOG = LoggerFactory.getLogger(DocumentNodeStore.class);
 
@@ -140,6 +142,18 @@ public final class DocumentNodeStore
      */
     static final int NUM_CHILDREN_CACHE_LIMIT = Integer.getInteger("oak.documentMK.childrenCacheLimit", 16 * 1024);
 
+    /**
+     * The maximum number of documents read by a single call to
+     * {@link #prefetch(Iterable, int)}.
+     */
+    static final int PREFETCH_LIMIT = Integer.getInteger("oak.documentMK.prefetchLimit", 1000);
+
+    /**
+     * The number of split candidates for which the split operations are
+     * written together to the document store.
+     */
+    static final int SPLIT_BATCH_SIZE = Integer.getInteger("oak.documentMK.splitBatchSize", 100);
+
     /**
      * List of meta properties which are created by DocumentNodeStore and which needs to be
      * retained in any cloned copy of DocumentNodeState.
@@ -1148,6 +1162,136 @@ public final class DocumentNodeStore
         return result;
     }
 
+    /**
+     * Prefetches the nodes at the given paths and their descendants up to
+     * the given depth at the current head revision. The descendants are read
+     * level by level with one range query per subtree and level. The
+     * documents are put into the document cache, and the node states and
+     * the child node lists into the node and children caches, with the same
+     * keys as {@link #getNode(String, RevisionVector)} and
+     * {@link #getChildren(AbstractDocumentNodeState, String, int)} use.
+     * At most {@link #PREFETCH_LIMIT} documents are read per call.
+     *
+     * @param paths the paths of the subtree roots.
+     * @param depth the depth of the subtrees relative to the given paths.
+     */
+    @Override
+    public void prefetch(@Nonnull Iterable<String> paths, int depth) {
+        final long start = PERFLOG.start();
+        DocumentNodeState root = getRoot();
+        int remaining = PREFETCH_LIMIT;
+        for (String path : checkNotNull(paths)) {
+            NodeState state = root;
+            for (String name : PathUtils.elements(path)) {
+                state = state.getChildNode(name);
+            }
+            if (remaining <= 0 || !(state instanceof DocumentNodeState)) {
+                continue;
+            }
+            remaining -= prefetch((DocumentNodeState) state, depth, remaining);
+        }
+        PERFLOG.end(start, 1, "prefetch: paths={}, depth={}, documents={}",
+                paths, depth, PREFETCH_LIMIT - remaining);
+    }
+
+    /**
+     * Prefetches the descendants of the given node state up to the given
+     * depth.
+     *
+     * @param state the root of the subtree.
+     * @param depth the depth of the subtree.
+     * @param limit the maximum number of documents to read.
+     * @return the number of documents read.
+     */
+    private int prefetch(DocumentNodeState state, int depth, int limit) {
+        String path = state.getPath();
+        int pathDepth = Utils.pathDepth(path);
+        String prefix = PathUtils.denotesRoot(path) ? path : path + "/";
+        Map<String, DocumentNodeState> parents = Maps.newHashMap();
+        parents.put(path, state);
+        int count = 0;
+        for (int level = 1; level <= depth; level++) {
+            // only descend into nodes with children, whose
+            // children are in the range of the query
+            for (Iterator<DocumentNodeState> it = parents.values().iterator(); it.hasNext(); ) {
+                DocumentNodeState parent = it.next();
+                if (parent.hasNoChildren() || Utils.isLongPath(concat(parent.getPath(), "n"))) {
+                    it.remove();
+                }
+            }
+            if (parents.isEmpty() || count >= limit) {
+                break;
+            }
+            String from = (pathDepth + level) + ":" + prefix;
+            String to = from.substring(0, from.length() - 1) + "0";
+            List<NodeDocument> docs = store.query(NODES, from, to, limit - count);
+            count += docs.size();
+            Map<String, DocumentNodeState> children = Maps.newHashMap();
+            Map<String, DocumentNodeState.Children> childLists = Maps.newHashMap();
+            for (NodeDocument doc : docs) {
+                String p = doc.getPath();
+                DocumentNodeState parent = parents.get(PathUtils.getParentPath(p));
+                if (parent == null) {
+                    // parent does not exist at the head revision
+                    continue;
+                }
+                DocumentNodeState child = prefetchNode(doc, p, parent.getLastRevision());
+                if (child == null) {
+                    continue;
+                }
+                children.put(p, child);
+                DocumentNodeState.Children c = childLists.get(parent.getPath());
+                if (c == null) {
+                    c = new DocumentNodeState.Children();
+                    childLists.put(parent.getPath(), c);
+                }
+                c.children.add(Utils.unshareString(PathUtils.getName(p)));
+            }
+            if (count >= limit) {
+                // the last query may have been cut off, the
+                // child node lists of this level are incomplete
+                break;
+            }
+            for (DocumentNodeState parent : parents.values()) {
+                DocumentNodeState.Children c = childLists.get(parent.getPath());
+                if (c == null) {
+                    c = DocumentNodeState.NO_CHILDREN;
+                } else {
+                    Collections.sort(c.children);
+                }
+                PathRev key = childNodeCacheKey(parent.getPath(), parent.getLastRevision(), null);
+                if (nodeChildrenCache.getIfPresent(key) == null) {
+                    nodeChildrenCache.put(key, c);
+                }
+            }
+            parents = children;
+        }
+        return count;
+    }
+
+    /**
+     * Puts the node state of the given document into the node cache, unless
+     * it is already cached.
+     *
+     * @return the node state or {@code null} if the node does not exist at
+     *          the given revision.
+     */
+    @CheckForNull
+    private DocumentNodeState prefetchNode(NodeDocument doc, String path,
+                                           RevisionVector readRevision) {
+        PathRev key = new PathRev(path, readRevision);
+        DocumentNodeState node = nodeCache.getIfPresent(key);
+        if (node == null) {
+            node = doc.getNodeAtRevision(this, readRevision,
+                    getPendingModifications().get(path));
+            if (node == null) {
+                node = missing;
+            }
+            nodeCache.put(key, node);
+        }
+        return node == missing || node.equals(missing) ? null : node;
+    }
+
     public BundlingConfigHandler getBundlingConfigHandler() {
         return bundlingConfigHandler;
     }
@@ -2057,32 +2201,63 @@ public final class DocumentNodeStore
 
     private void backgroundSplit() {
         RevisionVector head = getHeadRevision();
-        for (Iterator<String> it = splitCandidates.keySet().iterator(); it.hasNext();) {
-            String id = it.next();
+        List<String> ids = newArrayList();
+        List<UpdateOp> splitOps = newArrayList();
+        for (String id : splitCandidates.keySet()) {
             NodeDocument doc = store.find(Collection.NODES, id);
-            if (doc == null) {
-                continue;
+            if (doc != null) {
+                Iterables.addAll(splitOps, doc.split(this, head, isBinary));
             }
-            for (UpdateOp op : doc.split(this, head, isBinary)) {
-                NodeDocument before = null;
-                if (!op.isNew() ||
-                        !store.create(Collection.NODES, Collections.singletonList(op))) {
-                    before = store.createOrUpdate(Collection.NODES, op);
-                }
-                if (before != null) {
-                    if (LOG.isDebugEnabled()) {
-                        NodeDocument after = store.find(Collection.NODES, op.getId());
-                        if (after != null) {
-                            LOG.debug("Split operation on {}. Size before: {}, after: {}",
-                                    id, before.getMemory(), after.getMemory());
-                        }
+            ids.add(id);
+            if (ids.size() >= SPLIT_BATCH_SIZE) {
+                applySplitOperations(ids, splitOps);
+            }
+        }
+        applySplitOperations(ids, splitOps);
+    }
+
+    /**
+     * Writes the split operations with as few calls to the document store as
+     * possible. All new (previous) documents are created before the split
+     * documents are updated.
+     *
+     * @param ids the ids of the split candidates. The ids are removed from
+     *            the split candidates once the operations are written.
+     * @param splitOps the split operations.
+     */
+    private void applySplitOperations(List<String> ids, List<UpdateOp> splitOps) {
+        List<UpdateOp> created = newArrayList();
+        List<UpdateOp> updated = newArrayList();
+        for (UpdateOp op : splitOps) {
+            if (op.isNew()) {
+                created.add(op);
+            } else {
+                updated.add(op);
+            }
+        }
+        if (!created.isEmpty() && !store.create(Collection.NODES, created)) {
+            // some of the documents already exist
+            store.createOrUpdate(Collection.NODES, created);
+        }
+        for (UpdateOp op : created) {
+            LOG.debug("Split operation created {}", op.getId());
+        }
+        if (!updated.isEmpty()) {
+            List<NodeDocument> before = store.createOrUpdate(Collection.NODES, updated);
+            if (LOG.isDebugEnabled()) {
+                for (int i = 0; i < updated.size(); i++) {
+                    String id = updated.get(i).getId();
+                    NodeDocument after = store.find(Collection.NODES, id);
+                    if (before.get(i) != null && after != null) {
+                        LOG.debug("Split operation on {}. Size before: {}, after: {}",
+                                id, before.get(i).getMemory(), after.getMemory());
                     }
-                } else {
-                    LOG.debug("Split operation created {}", op.getId());
                 }
             }
-            it.remove();
         }
+        splitCandidates.keySet().removeAll(ids);
+        ids.clear();
+        splitOps.clear();
     }
 
     @Nonnull
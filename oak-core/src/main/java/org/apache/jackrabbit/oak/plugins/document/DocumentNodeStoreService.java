@@ -181,6 +181,14 @@ public class DocumentNodeStoreService {
     )
     private static final String PROP_DIFF_CACHE_PERCENTAGE = "diffCachePercentage";
     
+    @Property(intValue = 0,
+            label = "Compressed Document Cache Size (in MB)",
+            description = "Size in MB of the compressed document cache in off-heap memory, " +
+                    "in addition to the cache size. Requires a large enough " +
+                    "-XX:MaxDirectMemorySize. Default 0 (disabled)"
+    )
+    private static final String PROP_COMPRESSED_DOCUMENT_CACHE = "compressedDocumentCache";
+
     @Property(intValue = DocumentMK.Builder.DEFAULT_CACHE_SEGMENT_COUNT,
             label = "LIRS Cache Segment Count",
             description = "The number of segments in the LIRS cache " + 
@@ -424,6 +432,7 @@ public class DocumentNodeStoreService {
         int prevDocCachePercentage = toInteger(prop(PROP_PREV_DOC_CACHE_PERCENTAGE), DEFAULT_NODE_CACHE_PERCENTAGE);
         int childrenCachePercentage = toInteger(prop(PROP_CHILDREN_CACHE_PERCENTAGE), DEFAULT_CHILDREN_CACHE_PERCENTAGE);
         int diffCachePercentage = toInteger(prop(PROP_DIFF_CACHE_PERCENTAGE), DEFAULT_DIFF_CACHE_PERCENTAGE);
+        int compressedDocumentCacheSize = toInteger(prop(PROP_COMPRESSED_DOCUMENT_CACHE), 0);
         int blobCacheSize = toInteger(prop(PROP_BLOB_CACHE_SIZE), DEFAULT_BLOB_CACHE_SIZE);
         String persistentCache = getPath(PROP_PERSISTENT_CACHE, DEFAULT_PERSISTENT_CACHE);
         String journalCache = getPath(PROP_JOURNAL_CACHE, DEFAULT_JOURNAL_CACHE);
@@ -440,6 +449,7 @@ public class DocumentNodeStoreService {
                         prevDocCachePercentage,
                         childrenCachePercentage, 
                         diffCachePercentage).
+                setCompressedDocumentCacheSize(compressedDocumentCacheSize * MB).
                 setCacheSegmentCount(cacheSegmentCount).
                 setCacheStackMoveDistance(cacheStackMoveDistance).
                 setBundlingDisabled(bundlingDisabled).
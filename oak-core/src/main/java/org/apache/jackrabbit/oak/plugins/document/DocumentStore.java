@@ -357,6 +357,36 @@ public interface DocumentStore {
                                          UpdateOp update)
             throws DocumentStoreException;
 
+    /**
+     * Performs a number of conditional updates (see
+     * {@link #findAndUpdate(Collection, UpdateOp)}). An implementation does
+     * not have to guarantee that all changes are applied atomically, together,
+     * but it should send the updates with as few requests to the underlying
+     * storage as possible.
+     * <p>
+     * In case of a {@code DocumentStoreException} (e.g. when a communication
+     * error occurs) only some changes may have been applied. In this case it is
+     * the responsibility of the caller to check which {@linkplain UpdateOp}s
+     * were applied and take appropriate action. The implementation however
+     * ensures that the result of the operations are properly reflected in the
+     * document cache. That is, an implementation could simply evict documents
+     * related to the given update operations from the cache.
+     *
+     * @param <T> the document type
+     * @param collection the collection
+     * @param updateOps the update operations with the conditions
+     * @return the list containing the old documents or <code>null</code>
+     *         values if the condition of the update operation is not met or
+     *         if the document wasn't found, where the order reflects the
+     *         order in the "updateOps" parameter
+     * @throws DocumentStoreException if the operation failed. E.g. because of
+     *          an I/O error.
+     */
+    @Nonnull
+    <T extends Document> List<T> findAndUpdate(Collection<T> collection,
+                                               List<UpdateOp> updateOps)
+            throws DocumentStoreException;
+
     /**
      * Invalidate the document cache. Calling this method instructs the
      * implementation to invalidate each document from the cache, which is not
@@ -32,6 +32,21 @@ public final class Revision implements CacheValue {
 
     static final int SHALLOW_MEMORY_USAGE = 32;
 
+    /**
+     * The number of entries in the cache of recently parsed revisions. The
+     * value is rounded down to a power of two. Zero disables interning.
+     */
+    static final int INTERN_CACHE_SIZE = Integer.getInteger(
+            "oak.documentMK.revisionInternCacheSize", 16 * 1024);
+
+    /**
+     * Cache of recently parsed revisions. Documents read from the store
+     * mostly contain the same small set of revisions, which are otherwise
+     * kept as many equal instances in the document cache.
+     */
+    private static final Revision[] INTERN_CACHE = new Revision[
+            INTERN_CACHE_SIZE <= 0 ? 0 : Integer.highestOneBit(INTERN_CACHE_SIZE)];
+
     private static volatile long lastTimestamp;
 
     private static volatile long lastRevisionTimestamp;
@@ -223,16 +238,34 @@ public final class Revision implements CacheValue {
     }
 
     public static Revision fromString(String rev) {
-        boolean isBranch = rev.charAt(0) == 'b';
-        int idx = isBranch ? 2 : 1;
-        if (rev.charAt(idx - 1) != 'r') {
-            throw new IllegalArgumentException(rev);
+        return fromString(rev, 0, rev.length());
+    }
+
+    /**
+     * Parses the revision in the given range of a string, without creating
+     * a substring first. Recently parsed revisions are interned, that is,
+     * an equal revision instance is returned if one is present in the
+     * {@link #INTERN_CACHE}.
+     *
+     * @param s the string containing the revision.
+     * @param start the index of the first character of the revision.
+     * @param end the index after the last character of the revision.
+     * @return the revision.
+     * @throws IllegalArgumentException if the revision is malformed.
+     */
+    static Revision fromString(String s, int start, int end) {
+        if (start >= end) {
+            throw new IllegalArgumentException(s);
+        }
+        boolean isBranch = s.charAt(start) == 'b';
+        int idx = isBranch ? start + 2 : start + 1;
+        if (idx > end || s.charAt(idx - 1) != 'r') {
+            throw new IllegalArgumentException(s.substring(start, end));
         }
-        int len = rev.length();
         // Parse timestamp
         long timestamp = 0;
-        for (; idx < len; idx++) {
-            char c = rev.charAt(idx);
+        for (; idx < end; idx++) {
+            char c = s.charAt(idx);
             if (c == '-') {
                 break;
             }
@@ -241,8 +274,8 @@ public final class Revision implements CacheValue {
         }
         // Parse counter
         int counter = 0;
-        for (idx++; idx < len; idx++) {
-            char c = rev.charAt(idx);
+        for (idx++; idx < end; idx++) {
+            char c = s.charAt(idx);
             if (c == '-') {
                 break;
             }
@@ -251,12 +284,49 @@ public final class Revision implements CacheValue {
         }
         // Parse clusterId
         int clusterId = 0;
-        for (idx++; idx < len; idx++) {
-            char c = rev.charAt(idx);
+        for (idx++; idx < end; idx++) {
+            char c = s.charAt(idx);
             int digit = c >= 'a' ? c - 'a' + 10 : c - '0';
             clusterId = (clusterId << 4) + digit;
         }
-        return new Revision(timestamp, counter, clusterId, isBranch);
+        return intern(timestamp, counter, clusterId, isBranch);
+    }
+
+    /**
+     * Returns a revision with the given values, either from the
+     * {@link #INTERN_CACHE} or a newly created one, which then replaces the
+     * entry in the cache. The cache is not synchronized: a race only means
+     * an entry is replaced or a revision is created that would not have
+     * been necessary. Revisions are immutable and safely published through
+     * their final fields.
+     */
+    private static Revision intern(long timestamp, int counter,
+                                   int clusterId, boolean branch) {
+        Revision[] cache = INTERN_CACHE;
+        if (cache.length == 0) {
+            return new Revision(timestamp, counter, clusterId, branch);
+        }
+        int index = hash(timestamp, counter, clusterId, branch) & (cache.length - 1);
+        Revision r = cache[index];
+        if (r != null && r.timestamp == timestamp && r.counter == counter
+                && r.clusterId == clusterId && r.branch == branch) {
+            return r;
+        }
+        r = new Revision(timestamp, counter, clusterId, branch);
+        cache[index] = r;
+        return r;
+    }
+
+    private static int hash(long timestamp, int counter,
+                            int clusterId, boolean branch) {
+        int h = (int) (timestamp >>> 32) ^ (int) timestamp ^ counter ^ clusterId;
+        if (branch) {
+            h = ~h;
+        }
+        // spread the bits, the lower bits of a timestamp are not well
+        // distributed for revisions created in the same millisecond
+        h ^= (h >>> 20) ^ (h >>> 12);
+        return h ^ (h >>> 7) ^ (h >>> 4);
     }
 
     @Override
@@ -356,10 +356,21 @@ public final class RevisionVector implements Iterable<Revision>, Comparable<Revi
      * @throws IllegalArgumentException if the string is malformed
      */
     public static RevisionVector fromString(String s) {
-        String[] list = s.split(",");
-        Revision[] revisions = new Revision[list.length];
-        for (int i = 0; i < list.length; i++) {
-            revisions[i] = Revision.fromString(list[i]);
+        int count = 1;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == ',') {
+                count++;
+            }
+        }
+        Revision[] revisions = new Revision[count];
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            int end = s.indexOf(',', start);
+            if (end == -1) {
+                end = s.length();
+            }
+            revisions[i] = Revision.fromString(s, start, end);
+            start = end + 1;
         }
         return new RevisionVector(revisions);
     }
@@ -0,0 +1,373 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.cache;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import org.apache.jackrabbit.oak.cache.CacheStats;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
+import org.apache.jackrabbit.oak.plugins.document.Revision;
+import org.apache.jackrabbit.oak.plugins.document.StableRevisionComparator;
+import org.apache.jackrabbit.oak.plugins.document.util.StringValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A second cache tier for {@link NodeDocument}s, which keeps the documents in
+ * a compact binary form in direct (off-heap) memory. This allows to cache
+ * many more documents than on the heap, without the garbage collection cost
+ * of the revision maps of a {@code NodeDocument}. Documents are decoded
+ * only when they are read from this cache.
+ * <p>
+ * The binary form stores revisions with their timestamp delta encoded as a
+ * variable length long, and is compressed if larger than
+ * {@link #COMPRESSION_THRESHOLD} bytes. Documents with values of a type not
+ * known to this class are not cached.
+ * <p>
+ * This class does not do any locking. Consistency with the on-heap cache and
+ * the {@link CacheChangesTracker}s is up to the {@link NodeDocumentCache}.
+ * The maximum direct memory of the JVM must be large enough for the
+ * configured size of this cache (-XX:MaxDirectMemorySize).
+ */
+public class CompressedDocumentCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CompressedDocumentCache.class);
+
+    /**
+     * Encoded documents larger than this number of bytes are compressed.
+     */
+    static final int COMPRESSION_THRESHOLD = 256;
+
+    private static final int FORMAT_PLAIN = 0;
+    private static final int FORMAT_DEFLATE = 1;
+
+    private static final int TYPE_NULL = 0;
+    private static final int TYPE_TRUE = 1;
+    private static final int TYPE_FALSE = 2;
+    private static final int TYPE_LONG = 3;
+    private static final int TYPE_INTEGER = 4;
+    private static final int TYPE_STRING = 5;
+    private static final int TYPE_MAP = 6;
+
+    private static final Weigher<StringValue, ByteBuffer> WEIGHER =
+            new Weigher<StringValue, ByteBuffer>() {
+        @Override
+        public int weigh(StringValue key, ByteBuffer value) {
+            return key.getMemory() + value.capacity();
+        }
+    };
+
+    private final DocumentStore store;
+
+    private final Cache<StringValue, ByteBuffer> cache;
+
+    private final CacheStats stats;
+
+    public CompressedDocumentCache(@Nonnull DocumentStore store, long maxSize) {
+        this.store = checkNotNull(store);
+        this.cache = CacheBuilder.newBuilder()
+                .weigher(WEIGHER)
+                .maximumWeight(maxSize)
+                .recordStats()
+                .build();
+        this.stats = new CacheStats(cache, "Document-Documents-Compressed", WEIGHER, maxSize);
+    }
+
+    /**
+     * Returns a copy of the cached document with the given key.
+     *
+     * @param key the document key
+     * @return the document or {@code null} if not cached
+     */
+    @CheckForNull
+    public NodeDocument getIfPresent(@Nonnull String key) {
+        ByteBuffer buffer = cache.getIfPresent(new StringValue(key));
+        if (buffer == null) {
+            return null;
+        }
+        try {
+            return decode(store, buffer);
+        } catch (IOException e) {
+            LOG.warn("Unable to decode cached document {}", key, e);
+            cache.invalidate(new StringValue(key));
+            return null;
+        }
+    }
+
+    /**
+     * Puts the document into the cache, replacing a previously cached
+     * document with the same key. If the document cannot be encoded, a
+     * previously cached document is removed.
+     *
+     * @param doc the document
+     */
+    public void put(@Nonnull NodeDocument doc) {
+        StringValue key = new StringValue(doc.getId());
+        ByteBuffer buffer = encode(doc);
+        if (buffer == null) {
+            cache.invalidate(key);
+        } else {
+            cache.put(key, buffer);
+        }
+    }
+
+    public void invalidate(@Nonnull String key) {
+        cache.invalidate(new StringValue(key));
+    }
+
+    public Iterable<StringValue> keys() {
+        return cache.asMap().keySet();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public CacheStats getCacheStats() {
+        return stats;
+    }
+
+    //----------------------------< serialization >-----------------------------
+
+    /**
+     * Encodes the given document.
+     *
+     * @param doc the document
+     * @return a direct buffer with the encoded document, or {@code null} if
+     *         the document contains values of an unsupported type.
+     */
+    @CheckForNull
+    static ByteBuffer encode(@Nonnull NodeDocument doc) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeLong(doc.getCreated());
+            out.writeLong(doc.getLastCheckTime());
+            writeVarInt(out, doc.keySet().size());
+            for (String k : doc.keySet()) {
+                writeString(out, k);
+                writeValue(out, doc.get(k), true);
+            }
+            out.close();
+            byte[] data = bytes.toByteArray();
+            int format = FORMAT_PLAIN;
+            if (data.length > COMPRESSION_THRESHOLD) {
+                data = deflate(data);
+                format = FORMAT_DEFLATE;
+            }
+            ByteBuffer buffer = ByteBuffer.allocateDirect(data.length + 1);
+            buffer.put((byte) format).put(data).flip();
+            return buffer;
+        } catch (IllegalArgumentException e) {
+            LOG.debug("Unable to encode document {}: {}", doc.getId(), e.getMessage());
+            return null;
+        } catch (IOException e) {
+            // cannot happen with a ByteArrayOutputStream
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Decodes a document encoded with {@link #encode(NodeDocument)}.
+     *
+     * @param store the document store of the document
+     * @param buffer the encoded document
+     * @return the sealed document
+     */
+    @Nonnull
+    static NodeDocument decode(@Nonnull DocumentStore store,
+                               @Nonnull ByteBuffer buffer) throws IOException {
+        ByteBuffer b = buffer.duplicate();
+        int format = b.get();
+        byte[] data = new byte[b.remaining()];
+        b.get(data);
+        InputStream in = new ByteArrayInputStream(data);
+        if (format == FORMAT_DEFLATE) {
+            in = new InflaterInputStream(in);
+        }
+        DataInputStream din = new DataInputStream(in);
+        NodeDocument doc = new NodeDocument(store, din.readLong());
+        doc.markUpToDate(din.readLong());
+        int size = readVarInt(din);
+        for (int i = 0; i < size; i++) {
+            String k = readString(din);
+            doc.put(k, readValue(din));
+        }
+        doc.seal();
+        return doc;
+    }
+
+    private static void writeValue(DataOutputStream out, Object value, boolean mapAllowed)
+            throws IOException {
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TYPE_TRUE : TYPE_FALSE);
+        } else if (value instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            writeVarLong(out, (Long) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(TYPE_INTEGER);
+            writeVarLong(out, (Integer) value);
+        } else if (value instanceof String) {
+            out.writeByte(TYPE_STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Map && mapAllowed) {
+            out.writeByte(TYPE_MAP);
+            Map<?, ?> map = (Map<?, ?>) value;
+            writeVarInt(out, map.size());
+            long lastTimestamp = 0;
+            for (Entry<?, ?> e : map.entrySet()) {
+                if (!(e.getKey() instanceof Revision)) {
+                    throw new IllegalArgumentException("Unsupported key: " + e.getKey());
+                }
+                Revision r = (Revision) e.getKey();
+                writeVarLong(out, r.getTimestamp() - lastTimestamp);
+                lastTimestamp = r.getTimestamp();
+                writeVarInt(out, r.getCounter());
+                writeVarInt(out, r.getClusterId() << 1 | (r.isBranch() ? 1 : 0));
+                writeValue(out, e.getValue(), false);
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported value: " + value.getClass());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        int type = in.readByte();
+        switch (type) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_TRUE:
+                return Boolean.TRUE;
+            case TYPE_FALSE:
+                return Boolean.FALSE;
+            case TYPE_LONG:
+                return readVarLong(in);
+            case TYPE_INTEGER:
+                return (int) readVarLong(in);
+            case TYPE_STRING:
+                return readString(in);
+            case TYPE_MAP:
+                int size = readVarInt(in);
+                Map<Revision, Object> map = new TreeMap<Revision, Object>(
+                        StableRevisionComparator.REVERSE);
+                long timestamp = 0;
+                for (int i = 0; i < size; i++) {
+                    timestamp += readVarLong(in);
+                    int counter = readVarInt(in);
+                    int clusterId = readVarInt(in);
+                    Revision r = new Revision(timestamp, counter,
+                            clusterId >>> 1, (clusterId & 1) != 0);
+                    map.put(r, readValue(in));
+                }
+                return map;
+            default:
+                throw new IOException("Unknown type: " + type);
+        }
+    }
+
+    private static byte[] deflate(byte[] data) throws IOException {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 2);
+            DeflaterOutputStream out = new DeflaterOutputStream(bytes, deflater);
+            out.write(data);
+            out.close();
+            return bytes.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(UTF_8);
+        writeVarInt(out, b.length);
+        out.write(b);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] b = new byte[readVarInt(in)];
+        in.readFully(b);
+        return new String(b, UTF_8);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int x) throws IOException {
+        while ((x & ~0x7f) != 0) {
+            out.writeByte((x & 0x7f) | 0x80);
+            x >>>= 7;
+        }
+        out.writeByte(x);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int x = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readByte();
+            x |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return x;
+            }
+        }
+    }
+
+    /**
+     * Writes a zig-zag encoded variable length long, so that small negative
+     * values (e.g. the timestamp deltas of a reverse sorted map) are short.
+     */
+    private static void writeVarLong(DataOutputStream out, long x) throws IOException {
+        x = (x << 1) ^ (x >> 63);
+        while ((x & ~0x7fL) != 0) {
+            out.writeByte((int) ((x & 0x7f) | 0x80));
+            x >>>= 7;
+        }
+        out.writeByte((int) x);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long x = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readByte();
+            x |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return (x >>> 1) ^ -(x & 1);
+            }
+        }
+    }
+}
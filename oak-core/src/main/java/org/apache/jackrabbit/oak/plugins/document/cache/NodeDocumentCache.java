@@ -65,6 +65,15 @@ public class NodeDocumentCache implements Closeable {
     private final Cache<StringValue, NodeDocument> prevDocumentsCache;
     private final CacheStats prevDocumentsCacheStats;
 
+    /**
+     * Optional second tier for the node documents, which keeps them in
+     * compact binary form off-heap. The tier is written through on every
+     * put, so it always contains the documents of the on-heap cache, plus the
+     * ones evicted from it.
+     */
+    @CheckForNull
+    private final CompressedDocumentCache compressedCache;
+
     private final NodeDocumentLocks locks;
 
     private final List<CacheChangesTracker> changeTrackers;
@@ -74,10 +83,21 @@ public class NodeDocumentCache implements Closeable {
                              @Nonnull Cache<StringValue, NodeDocument> prevDocumentsCache,
                              @Nonnull CacheStats prevDocumentsCacheStats,
                              @Nonnull NodeDocumentLocks locks) {
+        this(nodeDocumentsCache, nodeDocumentsCacheStats, prevDocumentsCache,
+                prevDocumentsCacheStats, null, locks);
+    }
+
+    public NodeDocumentCache(@Nonnull Cache<CacheValue, NodeDocument> nodeDocumentsCache,
+                             @Nonnull CacheStats nodeDocumentsCacheStats,
+                             @Nonnull Cache<StringValue, NodeDocument> prevDocumentsCache,
+                             @Nonnull CacheStats prevDocumentsCacheStats,
+                             @Nullable CompressedDocumentCache compressedCache,
+                             @Nonnull NodeDocumentLocks locks) {
         this.nodeDocumentsCache = nodeDocumentsCache;
         this.nodeDocumentsCacheStats = nodeDocumentsCacheStats;
         this.prevDocumentsCache = prevDocumentsCache;
         this.prevDocumentsCacheStats = prevDocumentsCacheStats;
+        this.compressedCache = compressedCache;
         this.locks = locks;
         this.changeTrackers = new CopyOnWriteArrayList<CacheChangesTracker>();
     }
@@ -94,6 +114,9 @@ public class NodeDocumentCache implements Closeable {
                 prevDocumentsCache.invalidate(new StringValue(key));
             } else {
                 nodeDocumentsCache.invalidate(new StringValue(key));
+                if (compressedCache != null) {
+                    compressedCache.invalidate(key);
+                }
             }
 
             internalMarkChanged(key);
@@ -154,7 +177,11 @@ public class NodeDocumentCache implements Closeable {
         if (isLeafPreviousDocId(key)) {
             return prevDocumentsCache.getIfPresent(new StringValue(key));
         } else {
-            return nodeDocumentsCache.getIfPresent(new StringValue(key));
+            NodeDocument doc = nodeDocumentsCache.getIfPresent(new StringValue(key));
+            if (doc == null && compressedCache != null) {
+                doc = compressedCache.getIfPresent(key);
+            }
+            return doc;
         }
     }
 
@@ -180,7 +207,19 @@ public class NodeDocumentCache implements Closeable {
                 for (CacheChangesTracker tracker : changeTrackers) {
                     tracker.putDocument(key);
                 }
-                return valueLoader.call();
+                if (compressedCache == null || isLeafPreviousDocId(key)) {
+                    return valueLoader.call();
+                }
+                // move the document back from the compressed cache, or
+                // add the loaded document to it
+                NodeDocument doc = compressedCache.getIfPresent(key);
+                if (doc == null) {
+                    doc = valueLoader.call();
+                    if (doc != NodeDocument.NULL) {
+                        compressedCache.put(doc);
+                    }
+                }
+                return doc;
             }
         };
         Lock lock = locks.acquire(key);
@@ -328,18 +367,35 @@ public class NodeDocumentCache implements Closeable {
      * @return keys stored in cache
      */
     public Iterable<CacheValue> keys() {
-        return Iterables.concat(nodeDocumentsCache.asMap().keySet(), prevDocumentsCache.asMap().keySet());
+        Iterable<CacheValue> keys = Iterables.concat(
+                nodeDocumentsCache.asMap().keySet(), prevDocumentsCache.asMap().keySet());
+        if (compressedCache != null) {
+            // the compressed cache contains the keys of the on-heap
+            // cache as well. remove the duplicates
+            keys = Iterables.concat(keys, Iterables.filter(compressedCache.keys(),
+                    new Predicate<StringValue>() {
+                @Override
+                public boolean apply(StringValue input) {
+                    return !nodeDocumentsCache.asMap().containsKey(input);
+                }
+            }));
+        }
+        return keys;
     }
 
     /**
-     * @return values stored in cache
+     * @return values stored in the on-heap caches
      */
     public Iterable<NodeDocument> values() {
         return Iterables.concat(nodeDocumentsCache.asMap().values(), prevDocumentsCache.asMap().values());
     }
 
     public Iterable<CacheStats> getCacheStats() {
-        return Lists.newArrayList(nodeDocumentsCacheStats, prevDocumentsCacheStats);
+        List<CacheStats> stats = Lists.newArrayList(nodeDocumentsCacheStats, prevDocumentsCacheStats);
+        if (compressedCache != null) {
+            stats.add(compressedCache.getCacheStats());
+        }
+        return stats;
     }
 
     @Override
@@ -479,6 +535,9 @@ public class NodeDocumentCache implements Closeable {
             prevDocumentsCache.put(new StringValue(doc.getId()), doc);
         } else {
             nodeDocumentsCache.put(new StringValue(doc.getId()), doc);
+            if (compressedCache != null) {
+                compressedCache.put(doc);
+            }
         }
         for (CacheChangesTracker tracker : changeTrackers) {
             tracker.putDocument(doc.getId());
@@ -252,6 +252,16 @@ public class MemoryDocumentStore implements DocumentStore {
         return internalCreateOrUpdate(collection, update, true);
     }
 
+    @Nonnull
+    @Override
+    public <T extends Document> List<T> findAndUpdate(Collection<T> collection, List<UpdateOp> updateOps) {
+        List<T> result = new ArrayList<T>(updateOps.size());
+        for (UpdateOp update : updateOps) {
+            result.add(findAndUpdate(collection, update));
+        }
+        return result;
+    }
+
     /**
      * @return a copy of this document store.
      */
@@ -86,6 +86,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Function;
+import com.google.common.base.Objects;
 import com.google.common.collect.Maps;
 import com.mongodb.BasicDBObject;
 import com.mongodb.BulkWriteError;
@@ -1145,6 +1146,175 @@ public class MongoDocumentStore implements DocumentStore, RevisionListener {
         return doc;
     }
 
+    /**
+     * Applies the conditional {@link UpdateOp}s with as few MongoDB requests
+     * as possible. Operations are sent in bulk, without upsert, see
+     * {@link #bulkFindAndUpdate(Collection, List)}. Operations not applied
+     * in bulk because the document was modified concurrently and duplicate
+     * operations on the same document are applied one after another.
+     */
+    @Nonnull
+    @Override
+    public <T extends Document> List<T> findAndUpdate(Collection<T> collection,
+                                                      List<UpdateOp> updateOps)
+            throws DocumentStoreException {
+        log("findAndUpdate", updateOps);
+
+        Map<String, UpdateOp> operationsToCover = new LinkedHashMap<String, UpdateOp>();
+        List<UpdateOp> duplicates = new ArrayList<UpdateOp>();
+        Map<UpdateOp, T> results = new LinkedHashMap<UpdateOp, T>();
+
+        final Stopwatch watch = startWatch();
+        try {
+            for (UpdateOp updateOp : updateOps) {
+                UpdateOp clone = updateOp.copy();
+                if (operationsToCover.containsKey(updateOp.getId())) {
+                    duplicates.add(clone);
+                } else {
+                    operationsToCover.put(updateOp.getId(), clone);
+                }
+                results.put(clone, null);
+            }
+
+            // as for createOrUpdate(), sending two or less updates
+            // in bulk wouldn't result in any performance gain
+            if (operationsToCover.size() > 2) {
+                for (List<UpdateOp> partition : Lists.partition(Lists.newArrayList(operationsToCover.values()), bulkSize)) {
+                    Map<UpdateOp, T> completedUpdates = bulkFindAndUpdate(collection, partition);
+                    results.putAll(completedUpdates);
+                    operationsToCover.values().removeAll(completedUpdates.keySet());
+                }
+            }
+
+            // apply remaining changes one after another
+            Iterator<UpdateOp> it = Iterators.concat(operationsToCover.values().iterator(), duplicates.iterator());
+            while (it.hasNext()) {
+                UpdateOp op = it.next();
+                it.remove();
+                results.put(op, findAndModify(collection, op, false, true));
+            }
+        } catch (MongoException e) {
+            throw handleException(e, collection, Iterables.transform(updateOps,
+                    new Function<UpdateOp, String>() {
+                @Override
+                public String apply(UpdateOp input) {
+                    return input.getId();
+                }
+            }));
+        } finally {
+            stats.doneUpdate(watch.elapsed(TimeUnit.NANOSECONDS), collection, updateOps.size());
+        }
+        List<T> resultList = new ArrayList<T>(results.values());
+        log("findAndUpdate returns", resultList);
+        return resultList;
+    }
+
+    /**
+     * Applies the conditional update operations with a single unordered bulk
+     * write. The current documents are read with a single find() call first.
+     * Operations on documents that do not exist or with conditions that do
+     * not match are not sent to MongoDB. The remaining operations are sent
+     * without upsert and only match the document with the
+     * {@link Document#MOD_COUNT} read before, hence a document removed or
+     * modified concurrently is never created or overwritten.
+     * <p>
+     * The bulk write only reports the total number of matched documents. If
+     * some of the updates did not match, the documents are read again: an
+     * update on a document with an unchanged modCount was not applied. The
+     * outcome of the other updates is known if either all or none of them
+     * were applied. Otherwise the cache entries of the documents are
+     * invalidated and a {@link DocumentStoreException} is thrown.
+     *
+     * @param collection the collection.
+     * @param updateOps the update operations, with unique ids.
+     * @return the operations with a known outcome, mapped to the old document
+     *          or {@code null} if the operation was not applied. Operations
+     *          not in the returned map were not applied and must be retried.
+     */
+    private <T extends Document> Map<UpdateOp, T> bulkFindAndUpdate(Collection<T> collection,
+                                                                    List<UpdateOp> updateOps) {
+        Map<String, UpdateOp> bulkOperations = createMap(updateOps);
+        Map<String, T> oldDocs = findDocuments(collection, bulkOperations.keySet());
+
+        Map<UpdateOp, T> result = new HashMap<UpdateOp, T>();
+        Map<String, UpdateOp> applicable = new LinkedHashMap<String, UpdateOp>();
+        for (UpdateOp op : updateOps) {
+            T oldDoc = oldDocs.get(op.getId());
+            if (oldDoc == null || !UpdateUtils.checkConditions(oldDoc, op.getConditions())) {
+                // the document does not exist or the conditions do not match
+                result.put(op, null);
+            } else {
+                applicable.put(op.getId(), op);
+            }
+        }
+        if (applicable.isEmpty()) {
+            return result;
+        }
+
+        CacheChangesTracker tracker = null;
+        if (collection == Collection.NODES) {
+            tracker = nodesCache.registerTracker(applicable.keySet());
+        }
+        try {
+            BulkWriteOperation bulk = getDBCollection(collection).initializeUnorderedBulkOperation();
+            for (UpdateOp op : applicable.values()) {
+                QueryBuilder query = createQueryForUpdate(op.getId(), op.getConditions());
+                query.and(Document.MOD_COUNT).is(oldDocs.get(op.getId()).getModCount());
+                bulk.find(query.get()).updateOne(createUpdate(op, false));
+            }
+            int notApplied = applicable.size() - bulk.execute().getMatchedCount();
+
+            if (notApplied > 0) {
+                Map<String, T> currentDocs = findDocuments(collection, applicable.keySet());
+                for (Iterator<UpdateOp> it = applicable.values().iterator(); it.hasNext(); ) {
+                    String id = it.next().getId();
+                    T currentDoc = currentDocs.get(id);
+                    if (currentDoc != null
+                            && Objects.equal(currentDoc.getModCount(), oldDocs.get(id).getModCount())) {
+                        // neither this update nor any other
+                        // modified the document
+                        it.remove();
+                        notApplied--;
+                    }
+                }
+                if (notApplied == applicable.size()) {
+                    // none of the concurrently modified
+                    // documents got updated
+                    applicable.clear();
+                } else if (notApplied > 0) {
+                    if (collection == Collection.NODES) {
+                        for (String id : applicable.keySet()) {
+                            nodesCache.invalidate(id);
+                        }
+                    }
+                    throw new DocumentStoreException("Unable to determine which of the "
+                            + "bulk updates on concurrently modified documents were "
+                            + "applied: " + applicable.keySet());
+                }
+            }
+
+            List<NodeDocument> docsToCache = new ArrayList<NodeDocument>();
+            for (UpdateOp op : applicable.values()) {
+                T oldDoc = oldDocs.get(op.getId());
+                if (collection == Collection.NODES) {
+                    NodeDocument newDoc = (NodeDocument) applyChanges(collection, oldDoc, op);
+                    updateLocalChanges(newDoc);
+                    docsToCache.add(newDoc);
+                }
+                oldDoc.seal();
+                result.put(op, oldDoc);
+            }
+            if (collection == Collection.NODES) {
+                nodesCache.putNonConflictingDocs(tracker, docsToCache);
+            }
+            return result;
+        } finally {
+            if (tracker != null) {
+                tracker.close();
+            }
+        }
+    }
+
     @Override
     public <T extends Document> boolean create(Collection<T> collection, List<UpdateOp> updateOps) {
         log("create", updateOps);
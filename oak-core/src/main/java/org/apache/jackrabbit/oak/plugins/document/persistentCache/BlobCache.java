@@ -28,7 +28,6 @@ import javax.annotation.Nonnull;
 import org.apache.jackrabbit.oak.plugins.document.persistentCache.PersistentCache.GenerationCache;
 import org.apache.jackrabbit.oak.spi.blob.BlobStore;
 import org.apache.jackrabbit.oak.spi.blob.GarbageCollectableBlobStore;
-import org.h2.mvstore.MVMap;
 import org.h2.mvstore.StreamStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,11 +64,9 @@ public class BlobCache implements BlobStore, GarbageCollectableBlobStore, Genera
     
     @Override
     public void addGeneration(int generation, boolean readOnly) {
-        CacheMap<Long, byte[]> d = cache.openMap(generation, "data", 
-                new MVMap.Builder<Long, byte[]>());
+        CacheMap<Long, byte[]> d = cache.<Long, byte[]>openMap(generation, "data", null, null);
         data.addReadMap(generation, d);
-        CacheMap<String, byte[]> m = cache.openMap(generation, "meta", 
-                new MVMap.Builder<String, byte[]>());
+        CacheMap<String, byte[]> m = cache.<String, byte[]>openMap(generation, "meta", null, null);
         meta.addReadMap(generation, m);
         if (!readOnly) {
             // the order is important:
@@ -18,7 +18,7 @@ package org.apache.jackrabbit.oak.plugins.document.persistentCache;
 
 import java.util.Map;
 
-import org.h2.mvstore.MVMap;
+import org.h2.mvstore.type.DataType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -65,10 +65,11 @@ public abstract class MapFactory {
      * @param <K> the key type
      * @param <V> the value type
      * @param name the map name
-     * @param builder the map builder
+     * @param keyType the key type, or null for the default
+     * @param valueType the value type, or null for the default
      * @return
      */
-    abstract <K, V> Map<K, V> openMap(String name, MVMap.Builder<K, V> builder);
+    abstract <K, V> Map<K, V> openMap(String name, DataType keyType, DataType valueType);
     
     /**
      * Get the file size in bytes.
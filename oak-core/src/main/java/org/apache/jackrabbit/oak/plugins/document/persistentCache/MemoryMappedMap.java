@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.persistentCache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import org.h2.mvstore.WriteBuffer;
+import org.h2.mvstore.type.DataType;
+
+/**
+ * A map stored in a {@link MemoryMappedStore}. Keys and values are serialized
+ * with the same data types as used for the MVStore backend. The methods
+ * {@link #put(Object, Object)} and {@link #remove(Object)} always return
+ * {@code null}, as the persistent cache does not need the old value.
+ */
+class MemoryMappedMap<K, V> implements Map<K, V> {
+
+    private static final ThreadLocal<WriteBuffer> BUFFER = new ThreadLocal<WriteBuffer>();
+
+    private final MemoryMappedStore store;
+    private final String name;
+    private final DataType keyType;
+    private final DataType valueType;
+    private volatile int mapId;
+
+    MemoryMappedMap(MemoryMappedStore store, String name,
+                    DataType keyType, DataType valueType) throws IOException {
+        this.store = store;
+        this.name = name;
+        this.keyType = keyType;
+        this.valueType = valueType;
+        this.mapId = store.openMap(name);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V get(Object key) {
+        ByteBuffer value = store.get(mapId, writeKey(key));
+        if (value == null) {
+            return null;
+        }
+        return (V) valueType.read(value);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return store.get(mapId, writeKey(key)) != null;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        WriteBuffer buff = getBuffer();
+        keyType.write(buff, key);
+        int keyLength = buff.position();
+        valueType.write(buff, value);
+        try {
+            store.put(mapId, toByteBuffer(buff), keyLength);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write to " + store, e);
+        }
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        try {
+            store.remove(mapId, writeKey(key));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write to " + store, e);
+        }
+        return null;
+    }
+
+    @Override
+    public void clear() {
+        try {
+            mapId = store.clearMap(name);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write to " + store, e);
+        }
+    }
+
+    @Override
+    public int size() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Set<K> keySet() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Collection<V> values() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Set<java.util.Map.Entry<K, V>> entrySet() {
+        throw new UnsupportedOperationException();
+    }
+
+    private ByteBuffer writeKey(Object key) {
+        WriteBuffer buff = getBuffer();
+        keyType.write(buff, key);
+        return toByteBuffer(buff);
+    }
+
+    private static WriteBuffer getBuffer() {
+        WriteBuffer buff = BUFFER.get();
+        if (buff == null) {
+            buff = new WriteBuffer();
+            BUFFER.set(buff);
+        }
+        buff.clear();
+        return buff;
+    }
+
+    private static ByteBuffer toByteBuffer(WriteBuffer buff) {
+        ByteBuffer b = buff.getBuffer().duplicate();
+        b.flip();
+        return b;
+    }
+}
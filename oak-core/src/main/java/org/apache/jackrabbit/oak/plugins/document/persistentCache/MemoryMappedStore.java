@@ -0,0 +1,682 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.persistentCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only key-value store backed by a memory mapped file, used as an
+ * alternative to the H2 MVStore for the persistent cache.
+ * <p>
+ * Entries are appended as records to the file, which is mapped in chunks of
+ * a fixed size. A record never spans two chunks. The location of the latest
+ * record for a key is kept in an open-addressing hash index in off-heap
+ * memory, which is rebuilt by scanning the file when the store is opened.
+ * The file is never compacted; instead, the persistent cache switches to a
+ * new file (generation) once the file gets too large.
+ * <p>
+ * Writes are serialized, while reads do not acquire any lock. A read only
+ * considers records below the last published write position, which is
+ * a volatile field updated after a record and the index were written.
+ * <p>
+ * Record layout:
+ * <pre>
+ * int length (including this header)
+ * byte type
+ * int map id
+ * int key length
+ * int checksum (of key and value)
+ * byte[] key
+ * byte[] value
+ * </pre>
+ */
+class MemoryMappedStore {
+
+    static final Logger LOG = LoggerFactory.getLogger(MemoryMappedStore.class);
+
+    /**
+     * The default size of a memory mapped chunk of the file.
+     */
+    static final int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    private static final int MAGIC = 0x4f616b43;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 17;
+
+    private static final byte TYPE_MAP = 1;
+    private static final byte TYPE_PUT = 2;
+    private static final byte TYPE_REMOVE = 3;
+    private static final byte TYPE_SKIP = 4;
+
+    private static final int MIN_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = 1 << 27;
+
+    private static final long POSITION_MASK = (1L << 40) - 1;
+    private static final long DELETED = 1L << 40;
+    private static final long FRAGMENT_MASK = ~((1L << 41) - 1);
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Nullable
+    private final File file;
+    private final boolean readOnly;
+    private int chunkSize;
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+
+    /**
+     * The mapped chunks, replaced (copy-on-write) when a chunk is added.
+     */
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+
+    /**
+     * The off-heap hash index, replaced when it is resized.
+     */
+    private volatile Index index = new Index(MIN_CAPACITY);
+
+    /**
+     * The end of the last published record.
+     */
+    private volatile long writePosition;
+
+    /**
+     * The end of the last appended, but not yet published record.
+     */
+    private long appendPosition;
+
+    /**
+     * Number of used index slots, including deleted entries.
+     */
+    private int usedSlots;
+
+    /**
+     * Whether the index can not grow any further. No resize is attempted
+     * until a map is cleared.
+     */
+    private boolean indexFull;
+
+    private final Map<String, Integer> mapIds = new HashMap<String, Integer>();
+    private int nextMapId = 1;
+
+    private volatile boolean closed;
+
+    /**
+     * Open a store.
+     *
+     * @param file the file, or {@code null} to keep the data in (off-heap)
+     *             memory only
+     * @param readOnly whether the store is opened read-only
+     * @param chunkSize the size of a memory mapped chunk, if a new file is
+     *                  created
+     */
+    MemoryMappedStore(@Nullable File file, boolean readOnly, int chunkSize)
+            throws IOException {
+        this.file = file;
+        this.readOnly = readOnly;
+        this.chunkSize = chunkSize;
+        long size = 0;
+        if (file != null && (!readOnly || file.exists())) {
+            randomAccessFile = new RandomAccessFile(file, readOnly ? "r" : "rw");
+            channel = randomAccessFile.getChannel();
+            size = channel.size();
+        }
+        if (size >= HEADER_SIZE && readHeader()) {
+            mapChunks(size);
+            scan();
+        } else if (!readOnly) {
+            if (size > 0) {
+                LOG.info("Discarding unknown or corrupt cache file {}", file);
+                channel.truncate(0);
+            }
+            ByteBuffer c = getOrAddChunk(0);
+            c.putInt(0, MAGIC);
+            c.putInt(4, VERSION);
+            c.putInt(8, chunkSize);
+            appendPosition = HEADER_SIZE;
+            writePosition = HEADER_SIZE;
+        }
+    }
+
+    /**
+     * Get the id of the map with the given name, creating the map if needed.
+     *
+     * @param name the map name
+     * @return the map id
+     */
+    synchronized int openMap(String name) throws IOException {
+        Integer id = mapIds.get(name);
+        if (id != null) {
+            return id;
+        }
+        return newMapId(name);
+    }
+
+    /**
+     * Remove all entries of the given map. This assigns a new id to the map,
+     * so that the existing entries are no longer reachable.
+     *
+     * @param name the map name
+     * @return the new map id
+     */
+    synchronized int clearMap(String name) throws IOException {
+        // the next resize can drop the entries of the cleared map
+        indexFull = false;
+        return newMapId(name);
+    }
+
+    /**
+     * Store an entry.
+     *
+     * @param mapId the map id
+     * @param data the key, followed by the value
+     * @param keyLength the length of the key
+     * @return whether the entry was stored (it is not if the store is
+     *          closed or read-only, or the entry is too large)
+     */
+    synchronized boolean put(int mapId, ByteBuffer data, int keyLength)
+            throws IOException {
+        if (closed || readOnly) {
+            return false;
+        }
+        int hash = hash(mapId, data, keyLength);
+        long pos = append(TYPE_PUT, mapId, data, keyLength);
+        if (pos < 0) {
+            return false;
+        }
+        putIndex(hash, mapId, data, keyLength, pos, false);
+        writePosition = appendPosition;
+        return true;
+    }
+
+    /**
+     * Remove an entry.
+     *
+     * @param mapId the map id
+     * @param key the key
+     * @return whether an entry was removed
+     */
+    synchronized boolean remove(int mapId, ByteBuffer key) throws IOException {
+        if (closed || readOnly) {
+            return false;
+        }
+        int keyLength = key.remaining();
+        int hash = hash(mapId, key, keyLength);
+        int slot = findSlot(index, hash, mapId, key, keyLength, appendPosition);
+        if (slot < 0 || (index.get(slot) & DELETED) != 0) {
+            return false;
+        }
+        long pos = append(TYPE_REMOVE, mapId, key, keyLength);
+        if (pos < 0) {
+            return false;
+        }
+        // the removal record contains the key as well, so the
+        // (deleted) slot can point to it
+        putIndex(hash, mapId, key, keyLength, pos, true);
+        writePosition = appendPosition;
+        return true;
+    }
+
+    /**
+     * Read an entry. This method does not acquire a lock.
+     *
+     * @param mapId the map id
+     * @param key the key
+     * @return a read-only buffer positioned at the value, or {@code null} if
+     *          not found
+     */
+    @CheckForNull
+    ByteBuffer get(int mapId, ByteBuffer key) {
+        if (closed) {
+            return null;
+        }
+        // read the write position first, to ensure all records
+        // below are visible
+        long bound = writePosition;
+        Index idx = index;
+        int keyLength = key.remaining();
+        int hash = hash(mapId, key, keyLength);
+        int slot = findSlot(idx, hash, mapId, key, keyLength, bound);
+        if (slot < 0) {
+            return null;
+        }
+        long entry = idx.get(slot);
+        if ((entry & DELETED) != 0) {
+            return null;
+        }
+        long pos = entry & POSITION_MASK;
+        ByteBuffer c = chunks[chunkIndex(pos)];
+        int offset = chunkOffset(pos);
+        ByteBuffer value = c.asReadOnlyBuffer();
+        value.limit(offset + c.getInt(offset));
+        value.position(offset + RECORD_HEADER_SIZE + keyLength);
+        return value;
+    }
+
+    /**
+     * Get the number of bytes used.
+     *
+     * @return the size
+     */
+    long getSize() {
+        return writePosition;
+    }
+
+    boolean isReadOnly() {
+        return readOnly;
+    }
+
+    synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (channel == null) {
+            return;
+        }
+        try {
+            if (!readOnly) {
+                for (ByteBuffer c : chunks) {
+                    ((MappedByteBuffer) c).force();
+                }
+            }
+        } finally {
+            // the mapped buffers stay valid until they are garbage
+            // collected, so concurrent readers are not affected
+            channel.close();
+            randomAccessFile.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryMappedStore[" + (file == null ? "memory" : file) + "]";
+    }
+
+    //-------------------------------------------------------------< internal >
+
+    private int newMapId(String name) throws IOException {
+        int id = nextMapId++;
+        mapIds.put(name, id);
+        if (!readOnly && !closed) {
+            ByteBuffer data = ByteBuffer.wrap(name.getBytes(UTF8));
+            append(TYPE_MAP, id, data, data.remaining());
+            writePosition = appendPosition;
+        }
+        return id;
+    }
+
+    private boolean readHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            return false;
+        }
+        int size = header.getInt(8);
+        if (size <= HEADER_SIZE + RECORD_HEADER_SIZE) {
+            return false;
+        }
+        chunkSize = size;
+        return true;
+    }
+
+    private void mapChunks(long size) throws IOException {
+        int count = (int) ((size + chunkSize - 1) / chunkSize);
+        ByteBuffer[] list = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long start = (long) i * chunkSize;
+            if (readOnly) {
+                list[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        start, Math.min(chunkSize, size - start));
+            } else {
+                list[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+                        start, chunkSize);
+            }
+        }
+        chunks = list;
+    }
+
+    /**
+     * Rebuild the index and the map names from the records in the file.
+     * Reading stops at the first invalid record.
+     */
+    private void scan() {
+        long pos = HEADER_SIZE;
+        ByteBuffer[] list = chunks;
+        while (chunkIndex(pos) < list.length) {
+            ByteBuffer c = list[chunkIndex(pos)];
+            int offset = chunkOffset(pos);
+            if (c.limit() - offset < RECORD_HEADER_SIZE) {
+                pos += chunkSize - offset;
+                continue;
+            }
+            int length = c.getInt(offset);
+            if (length < RECORD_HEADER_SIZE || length > c.limit() - offset) {
+                break;
+            }
+            byte type = c.get(offset + 4);
+            if (type == TYPE_SKIP) {
+                pos += length;
+                continue;
+            }
+            int mapId = c.getInt(offset + 5);
+            int keyLength = c.getInt(offset + 9);
+            if (keyLength < 0 || keyLength > length - RECORD_HEADER_SIZE
+                    || c.getInt(offset + 13) != checksum(c,
+                            offset + RECORD_HEADER_SIZE, length - RECORD_HEADER_SIZE)) {
+                LOG.info("Stopped reading the cache file {} at invalid record at {}", file, pos);
+                break;
+            }
+            ByteBuffer key = c.duplicate();
+            key.limit(offset + RECORD_HEADER_SIZE + keyLength);
+            key.position(offset + RECORD_HEADER_SIZE);
+            if (type == TYPE_MAP) {
+                byte[] name = new byte[keyLength];
+                key.get(name);
+                mapIds.put(new String(name, UTF8), mapId);
+                nextMapId = Math.max(nextMapId, mapId + 1);
+            } else if (type == TYPE_PUT || type == TYPE_REMOVE) {
+                appendPosition = pos + length;
+                putIndex(hash(mapId, key, keyLength), mapId, key,
+                        keyLength, pos, type == TYPE_REMOVE);
+            } else {
+                break;
+            }
+            pos += length;
+        }
+        appendPosition = pos;
+        writePosition = pos;
+    }
+
+    /**
+     * Append a record, without publishing it.
+     *
+     * @return the position of the record, or -1 if it is too large
+     */
+    private long append(byte type, int mapId, ByteBuffer data, int keyLength)
+            throws IOException {
+        int length = RECORD_HEADER_SIZE + data.remaining();
+        if (length > chunkSize - HEADER_SIZE) {
+            return -1;
+        }
+        long pos = appendPosition;
+        int offset = chunkOffset(pos);
+        if (chunkSize - offset < length) {
+            if (chunkSize - offset >= RECORD_HEADER_SIZE) {
+                ByteBuffer c = getOrAddChunk(chunkIndex(pos));
+                c.putInt(offset, chunkSize - offset);
+                c.put(offset + 4, TYPE_SKIP);
+            }
+            pos += chunkSize - offset;
+            offset = 0;
+        }
+        ByteBuffer c = getOrAddChunk(chunkIndex(pos));
+        ByteBuffer target = c.duplicate();
+        target.position(offset + RECORD_HEADER_SIZE);
+        target.put(data.duplicate());
+        c.put(offset + 4, type);
+        c.putInt(offset + 5, mapId);
+        c.putInt(offset + 9, keyLength);
+        c.putInt(offset + 13, checksum(c, offset + RECORD_HEADER_SIZE, data.remaining()));
+        c.putInt(offset, length);
+        int end = offset + length;
+        if (chunkSize - end >= 4) {
+            // mark the end, in case the file contains garbage after it
+            c.putInt(end, 0);
+        }
+        appendPosition = pos + length;
+        return pos;
+    }
+
+    private ByteBuffer getOrAddChunk(int i) throws IOException {
+        ByteBuffer[] list = chunks;
+        if (i < list.length) {
+            return list[i];
+        }
+        ByteBuffer c;
+        if (channel == null) {
+            c = ByteBuffer.allocateDirect(chunkSize);
+        } else {
+            c = channel.map(FileChannel.MapMode.READ_WRITE, (long) i * chunkSize, chunkSize);
+        }
+        list = Arrays.copyOf(list, i + 1);
+        list[i] = c;
+        chunks = list;
+        return c;
+    }
+
+    private void putIndex(int hash, int mapId, ByteBuffer key, int keyLength,
+                          long pos, boolean deleted) {
+        long entry = fragment(hash) | pos | (deleted ? DELETED : 0);
+        Index idx = index;
+        int slot = findSlot(idx, hash, mapId, key, keyLength, appendPosition);
+        if (slot >= 0) {
+            // always replace an existing entry, even if the index is full,
+            // so that it never points to an outdated record
+            idx.set(slot, entry);
+            return;
+        }
+        if (deleted) {
+            return;
+        }
+        if (usedSlots >= idx.capacity / 4 * 3 && !indexFull) {
+            resize();
+            idx = index;
+        }
+        if (usedSlots >= idx.capacity - 1) {
+            // the entry is not indexed, which for a cache is
+            // the same as if it was evicted
+            return;
+        }
+        int mask = idx.capacity - 1;
+        for (int i = hash & mask;; i = (i + 1) & mask) {
+            if (idx.get(i) == 0) {
+                idx.set(i, entry);
+                usedSlots++;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Find the slot of the given key.
+     *
+     * @return the slot, or -1 if not found
+     */
+    private int findSlot(Index idx, int hash, int mapId, ByteBuffer key,
+                         int keyLength, long bound) {
+        long fragment = fragment(hash);
+        int mask = idx.capacity - 1;
+        for (int i = hash & mask, n = 0; n < idx.capacity; i = (i + 1) & mask, n++) {
+            long entry = idx.get(i);
+            if (entry == 0) {
+                return -1;
+            }
+            if ((entry & FRAGMENT_MASK) != fragment) {
+                continue;
+            }
+            long pos = entry & POSITION_MASK;
+            if (pos + RECORD_HEADER_SIZE > bound) {
+                // not yet published
+                continue;
+            }
+            if (keyEquals(pos, mapId, key, keyLength, bound)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean keyEquals(long pos, int mapId, ByteBuffer key,
+                              int keyLength, long bound) {
+        ByteBuffer c = chunks[chunkIndex(pos)];
+        int offset = chunkOffset(pos);
+        if (pos + c.getInt(offset) > bound
+                || c.getInt(offset + 5) != mapId
+                || c.getInt(offset + 9) != keyLength) {
+            return false;
+        }
+        int start = offset + RECORD_HEADER_SIZE;
+        int keyStart = key.position();
+        for (int i = 0; i < keyLength; i++) {
+            if (c.get(start + i) != key.get(keyStart + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Replace the index with a new one, dropping deleted entries and entries
+     * of cleared maps. Readers may still use the old index in the meantime.
+     * If the live entries do not fit into an index of the maximum capacity,
+     * the index is kept and marked as full.
+     */
+    private void resize() {
+        Index old = index;
+        Set<Integer> live = new HashSet<Integer>(mapIds.values());
+        int count = 0;
+        for (int i = 0; i < old.capacity; i++) {
+            if (isLive(old.get(i), live)) {
+                count++;
+            }
+        }
+        int capacity = MIN_CAPACITY;
+        while (capacity < count * 4 && capacity < MAX_CAPACITY) {
+            capacity *= 2;
+        }
+        if (count >= capacity / 4 * 3) {
+            LOG.warn("Persistent cache index of {} is full", this);
+            indexFull = true;
+            return;
+        }
+        Index idx = new Index(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < old.capacity; i++) {
+            long entry = old.get(i);
+            if (!isLive(entry, live)) {
+                continue;
+            }
+            long pos = entry & POSITION_MASK;
+            ByteBuffer c = chunks[chunkIndex(pos)];
+            int offset = chunkOffset(pos);
+            ByteBuffer key = c.duplicate();
+            int keyLength = c.getInt(offset + 9);
+            key.position(offset + RECORD_HEADER_SIZE);
+            int hash = hash(c.getInt(offset + 5), key, keyLength);
+            for (int j = hash & mask;; j = (j + 1) & mask) {
+                if (idx.get(j) == 0) {
+                    idx.set(j, entry);
+                    break;
+                }
+            }
+        }
+        usedSlots = count;
+        index = idx;
+    }
+
+    private boolean isLive(long entry, Set<Integer> live) {
+        if (entry == 0 || (entry & DELETED) != 0) {
+            return false;
+        }
+        long pos = entry & POSITION_MASK;
+        return live.contains(chunks[chunkIndex(pos)].getInt(chunkOffset(pos) + 5));
+    }
+
+    private int chunkIndex(long pos) {
+        return (int) (pos / chunkSize);
+    }
+
+    private int chunkOffset(long pos) {
+        return (int) (pos % chunkSize);
+    }
+
+    private static long fragment(int hash) {
+        return ((long) (hash >>> 9)) << 41;
+    }
+
+    private static int hash(int mapId, ByteBuffer key, int keyLength) {
+        int h = mapId * 0x9e3779b9;
+        int start = key.position();
+        for (int i = 0; i < keyLength; i++) {
+            h = 31 * h + key.get(start + i);
+        }
+        // spread the bits, as the low bits are used for the slot
+        // and the high bits for the fragment
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static int checksum(ByteBuffer buff, int start, int length) {
+        // FNV-1a
+        int h = 0x811c9dc5;
+        for (int i = 0; i < length; i++) {
+            h ^= buff.get(start + i) & 0xff;
+            h *= 0x01000193;
+        }
+        return h;
+    }
+
+    /**
+     * The off-heap hash index. Each slot is a long, containing the position of
+     * the record (40 bits), a deleted flag (1 bit) and a fragment of the hash
+     * code of the key (23 bits). An empty slot is zero.
+     */
+    private static final class Index {
+
+        final int capacity;
+
+        private final ByteBuffer slots;
+
+        Index(int capacity) {
+            this.capacity = capacity;
+            this.slots = ByteBuffer.allocateDirect(capacity * 8).order(ByteOrder.nativeOrder());
+        }
+
+        long get(int slot) {
+            return slots.getLong(slot << 3);
+        }
+
+        void set(int slot, long entry) {
+            // aligned 8 byte writes are atomic, so concurrent readers
+            // either see the old or the new entry
+            slots.putLong(slot << 3, entry);
+        }
+    }
+}
@@ -38,7 +38,6 @@ import org.apache.jackrabbit.oak.plugins.document.persistentCache.async.CacheAct
 import org.apache.jackrabbit.oak.plugins.document.persistentCache.async.CacheWriteQueue;
 import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.apache.jackrabbit.oak.stats.TimerStats;
-import org.h2.mvstore.MVMap;
 import org.h2.mvstore.WriteBuffer;
 import org.h2.mvstore.type.DataType;
 
@@ -106,10 +105,8 @@ class NodeCache<K, V> implements Cache<K, V>, GenerationCache, EvictionListener<
     
     @Override
     public void addGeneration(int generation, boolean readOnly) {
-        MVMap.Builder<K, V> b = new MVMap.Builder<K, V>().
-                keyType(keyType).valueType(valueType);
         String mapName = type.name();
-        CacheMap<K, V> m = cache.openMap(generation, mapName, b);
+        CacheMap<K, V> m = cache.openMap(generation, mapName, keyType, valueType);
         map.addReadMap(generation, m);
         if (!readOnly) {
             map.setWriteMap(m);
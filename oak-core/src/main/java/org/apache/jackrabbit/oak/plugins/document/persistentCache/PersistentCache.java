@@ -37,10 +37,11 @@ import org.apache.jackrabbit.oak.spi.blob.GarbageCollectableBlobStore;
 import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.h2.mvstore.FileStore;
 import org.h2.mvstore.MVMap;
-import org.h2.mvstore.MVMap.Builder;
 import org.h2.mvstore.MVStore;
 import org.h2.mvstore.MVStoreTool;
 import org.h2.mvstore.WriteBuffer;
+import org.h2.mvstore.type.DataType;
+import org.h2.mvstore.type.ObjectDataType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,6 +57,7 @@ public class PersistentCache implements Broadcaster.Listener {
 
     private static final String FILE_PREFIX = "cache-";
     private static final String FILE_SUFFIX = ".data";
+    private static final String MEMORY_MAPPED_FILE_SUFFIX = ".mmap";
     private static final AtomicInteger COUNTER = new AtomicInteger();
     
     private boolean cacheNodes = true;
@@ -83,6 +85,8 @@ public class PersistentCache implements Broadcaster.Listener {
     private int autoCompact = 50;
     private boolean appendOnly;
     private boolean manualCommit;
+    private boolean memoryMapped;
+    private String fileSuffix = FILE_SUFFIX;
     private Broadcaster broadcaster;
     private ThreadLocal<WriteBuffer> writeBuffer = new ThreadLocal<WriteBuffer>();
     private final byte[] broadcastId;
@@ -143,6 +147,9 @@ public class PersistentCache implements Broadcaster.Listener {
                 appendOnly = true;
             } else if (p.equals("manualCommit")) {
                 manualCommit = true;
+            } else if (p.equals("mmap")) {
+                memoryMapped = true;
+                fileSuffix = MEMORY_MAPPED_FILE_SUFFIX;
             } else if (p.startsWith("broadcast=")) {
                 broadcast = p.split("=")[1];               
             } else if (p.equals("-async")) {
@@ -170,8 +177,8 @@ public class PersistentCache implements Broadcaster.Listener {
         if (list != null) {
             for (File f : list) {
                 String fn = f.getName();
-                if (fn.startsWith(FILE_PREFIX) && fn.endsWith(FILE_SUFFIX)) {
-                    String g = fn.substring(FILE_PREFIX.length(), fn.indexOf(FILE_SUFFIX));
+                if (fn.startsWith(FILE_PREFIX) && fn.endsWith(fileSuffix)) {
+                    String g = fn.substring(FILE_PREFIX.length(), fn.indexOf(fileSuffix));
                     try {
                         int gen = Integer.parseInt(g);
                         if (gen >= 0) {
@@ -236,10 +243,13 @@ public class PersistentCache implements Broadcaster.Listener {
         if (directory.length() == 0) {
             return null;
         }
-        return directory + "/" + FILE_PREFIX + generation + FILE_SUFFIX;
+        return directory + "/" + FILE_PREFIX + generation + fileSuffix;
     }
     
     private MapFactory createMapFactory(final int generation, final boolean readOnly) {
+        if (memoryMapped) {
+            return createMemoryMappedMapFactory(generation, readOnly);
+        }
         MapFactory f = new MapFactory() {
             
             final String fileName = getFileName(generation);
@@ -323,11 +333,18 @@ public class PersistentCache implements Broadcaster.Listener {
             }
 
             @Override
-            <K, V> Map<K, V> openMap(String name, Builder<K, V> builder) {
+            <K, V> Map<K, V> openMap(String name, DataType keyType, DataType valueType) {
                 try {
-                    if (builder == null) {
+                    if (keyType == null && valueType == null) {
                         return store.openMap(name);
                     }
+                    MVMap.Builder<K, V> builder = new MVMap.Builder<K, V>();
+                    if (keyType != null) {
+                        builder.keyType(keyType);
+                    }
+                    if (valueType != null) {
+                        builder.valueType(valueType);
+                    }
                     return store.openMap(name, builder);
                 } catch (Exception e) {
                     exceptionCount++;
@@ -357,6 +374,64 @@ public class PersistentCache implements Broadcaster.Listener {
         f.openStore();
         return f;
     }
+
+    private MapFactory createMemoryMappedMapFactory(final int generation, final boolean readOnly) {
+        MapFactory f = new MapFactory() {
+
+            final String fileName = getFileName(generation);
+            MemoryMappedStore store;
+
+            @Override
+            void openStore() {
+                if (store != null) {
+                    return;
+                }
+                try {
+                    store = new MemoryMappedStore(fileName == null ? null : new File(fileName),
+                            readOnly, MemoryMappedStore.DEFAULT_CHUNK_SIZE);
+                } catch (Exception e) {
+                    exceptionCount++;
+                    LOG.warn("Could not open the store " + fileName, e);
+                }
+            }
+
+            @Override
+            synchronized void closeStore() {
+                if (store == null) {
+                    return;
+                }
+                try {
+                    store.close();
+                } catch (Exception e) {
+                    exceptionCount++;
+                    LOG.debug("Could not close the store", e);
+                    LOG.warn("Could not close the store: " + e);
+                }
+                store = null;
+            }
+
+            @Override
+            <K, V> Map<K, V> openMap(String name, DataType keyType, DataType valueType) {
+                try {
+                    return new MemoryMappedMap<K, V>(store, name,
+                            keyType == null ? new ObjectDataType() : keyType,
+                            valueType == null ? new ObjectDataType() : valueType);
+                } catch (Exception e) {
+                    exceptionCount++;
+                    LOG.warn("Could not open the map", e);
+                    return null;
+                }
+            }
+
+            @Override
+            long getFileSize() {
+                MemoryMappedStore s = store;
+                return s == null ? 0 : s.getSize();
+            }
+        };
+        f.openStore();
+        return f;
+    }
     
     public void close() {
         writeDispatcher.stop();
@@ -450,7 +525,7 @@ public class PersistentCache implements Broadcaster.Listener {
     }
     
     public synchronized <K, V> CacheMap<K, V> openMap(int generation, String name, 
-            MVMap.Builder<K, V> builder) {
+            DataType keyType, DataType valueType) {
         MapFactory s;
         if (generation == readGeneration) {
             s = readStore;
@@ -460,7 +535,7 @@ public class PersistentCache implements Broadcaster.Listener {
             exceptionCount++;
             throw new IllegalArgumentException("Unknown generation: " + generation);
         }
-        return new CacheMap<K, V>(s, name, builder);
+        return new CacheMap<K, V>(s, name, keyType, valueType);
     }
     
     public void switchGenerationIfNeeded() {
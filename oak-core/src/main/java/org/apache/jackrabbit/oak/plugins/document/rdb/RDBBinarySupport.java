@@ -0,0 +1,343 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.rdb;
+
+import static com.google.common.base.Charsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.jackrabbit.oak.plugins.document.Document;
+import org.apache.jackrabbit.oak.plugins.document.Revision;
+import org.apache.jackrabbit.oak.plugins.document.StableRevisionComparator;
+
+/**
+ * Binary serialization of documents for the BDATA column, as an alternative
+ * to the (usually GZIPped) JSON serialization. It is considerably cheaper to
+ * parse.
+ * <p>
+ * The serialization starts with the {@link #MAGIC} bytes, which can neither
+ * start a GZIP stream nor a JSON text, followed by the format version and a
+ * flag indicating whether the remainder is deflated. The remainder holds the
+ * number of properties, followed by the name and value of each property.
+ * Well-known property names are written as an index into a fixed dictionary,
+ * all numbers are written as variable length integers, and the timestamps of
+ * the revisions in a map are written as the difference to the previous
+ * revision.
+ * <p>
+ * Readers need to support all versions ever written, the dictionary of a
+ * version must therefore never change.
+ */
+public class RDBBinarySupport {
+
+    static final byte[] MAGIC = { 0, 'O', 'B' };
+
+    static final int VERSION = 1;
+
+    private static final int FLAG_DEFLATED = 1;
+
+    /**
+     * Serializations larger than this number of bytes are deflated.
+     */
+    private static final int DEFLATE_THRESHOLD = 256;
+
+    private static final String[] DICTIONARY = {
+            "_deleted", "_revisions", "_commitRoot", "_lastRev", "_prev",
+            "_stalePrev", "_collisions", "_children", "_path", "_sdType",
+            "_sdMaxRevTime", "_id", "_modified", "_modCount",
+            "_collisionsModCount", "_bin", "_deletedOnce" };
+
+    private static final int TYPE_NULL = 0;
+    private static final int TYPE_TRUE = 1;
+    private static final int TYPE_FALSE = 2;
+    private static final int TYPE_LONG = 3;
+    private static final int TYPE_DOUBLE = 4;
+    private static final int TYPE_STRING = 5;
+    private static final int TYPE_MAP = 6;
+
+    private RDBBinarySupport() {
+    }
+
+    /**
+     * @return whether the supplied BDATA is a binary serialization written by
+     *         {@link #asBytes(Document, Set, boolean)}.
+     */
+    public static boolean isBinary(@Nonnull byte[] bdata) {
+        return bdata.length > MAGIC.length && bdata[0] == MAGIC[0]
+                && bdata[1] == MAGIC[1] && bdata[2] == MAGIC[2];
+    }
+
+    /**
+     * Serializes all properties of the {@link Document} except the excluded
+     * ones.
+     *
+     * @param doc the document.
+     * @param exclude names of properties to exclude.
+     * @param compress whether larger serializations should be deflated.
+     * @return the serialization, or {@code null} if the document contains a
+     *         value that cannot be serialized in this format.
+     */
+    @CheckForNull
+    public static byte[] asBytes(@Nonnull Document doc, @Nonnull Set<String> exclude, boolean compress) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            int count = 0;
+            for (String key : doc.keySet()) {
+                if (!exclude.contains(key)) {
+                    count++;
+                }
+            }
+            writeVarInt(out, count);
+            for (String key : doc.keySet()) {
+                if (!exclude.contains(key)) {
+                    writeName(out, key);
+                    if (!writeValue(out, doc.get(key))) {
+                        return null;
+                    }
+                }
+            }
+            out.close();
+            byte[] data = bytes.toByteArray();
+            int flags = 0;
+            if (compress && data.length > DEFLATE_THRESHOLD) {
+                data = deflate(data);
+                flags |= FLAG_DEFLATED;
+            }
+            byte[] result = new byte[MAGIC.length + 2 + data.length];
+            System.arraycopy(MAGIC, 0, result, 0, MAGIC.length);
+            result[MAGIC.length] = VERSION;
+            result[MAGIC.length + 1] = (byte) flags;
+            System.arraycopy(data, 0, result, MAGIC.length + 2, data.length);
+            return result;
+        } catch (IOException ex) {
+            // cannot happen with a ByteArrayOutputStream
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Reads the properties of a binary serialization into a document.
+     *
+     * @param bdata the serialization.
+     * @param doc the document to populate.
+     * @throws IOException if the serialization is malformed or of an unknown
+     *         version.
+     */
+    public static void readDocument(@Nonnull byte[] bdata, @Nonnull Document doc) throws IOException {
+        if (!isBinary(bdata) || bdata.length < MAGIC.length + 2) {
+            throw new IOException("not a binary document serialization");
+        }
+        int version = bdata[MAGIC.length];
+        if (version != VERSION) {
+            throw new IOException("unsupported binary document serialization version: " + version);
+        }
+        int flags = bdata[MAGIC.length + 1];
+        int offset = MAGIC.length + 2;
+        InputStream in = new ByteArrayInputStream(bdata, offset, bdata.length - offset);
+        if ((flags & FLAG_DEFLATED) != 0) {
+            in = new InflaterInputStream(in);
+        }
+        DataInputStream din = new DataInputStream(in);
+        int count = readVarInt(din);
+        for (int i = 0; i < count; i++) {
+            String key = readName(din);
+            doc.put(key, readValue(din));
+        }
+    }
+
+    private static void writeName(DataOutputStream out, String name) throws IOException {
+        for (int i = 0; i < DICTIONARY.length; i++) {
+            if (DICTIONARY[i].equals(name)) {
+                writeVarInt(out, i + 1);
+                return;
+            }
+        }
+        writeVarInt(out, 0);
+        writeString(out, name);
+    }
+
+    private static String readName(DataInputStream in) throws IOException {
+        int index = readVarInt(in);
+        if (index == 0) {
+            return readString(in);
+        } else if (index <= DICTIONARY.length) {
+            return DICTIONARY[index - 1];
+        } else {
+            throw new IOException("invalid property name index: " + index);
+        }
+    }
+
+    /**
+     * Writes a value using the representation of {@link RDBJSONSupport} with
+     * revision maps, i.e. integral numbers are read back as {@link Long}.
+     *
+     * @return {@code false} if the value cannot be serialized.
+     */
+    private static boolean writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TYPE_TRUE : TYPE_FALSE);
+        } else if (value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte) {
+            out.writeByte(TYPE_LONG);
+            writeVarLong(out, ((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof String) {
+            out.writeByte(TYPE_STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Map) {
+            out.writeByte(TYPE_MAP);
+            Map<?, ?> map = (Map<?, ?>) value;
+            writeVarInt(out, map.size());
+            long lastTimestamp = 0;
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                if (!(e.getKey() instanceof Revision)) {
+                    return false;
+                }
+                Revision r = (Revision) e.getKey();
+                writeVarLong(out, r.getTimestamp() - lastTimestamp);
+                lastTimestamp = r.getTimestamp();
+                writeVarInt(out, r.getCounter());
+                writeVarInt(out, r.getClusterId() << 1 | (r.isBranch() ? 1 : 0));
+                if (!writeValue(out, e.getValue())) {
+                    return false;
+                }
+            }
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        int type = in.readByte();
+        switch (type) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_TRUE:
+                return Boolean.TRUE;
+            case TYPE_FALSE:
+                return Boolean.FALSE;
+            case TYPE_LONG:
+                return readVarLong(in);
+            case TYPE_DOUBLE:
+                return in.readDouble();
+            case TYPE_STRING:
+                return readString(in);
+            case TYPE_MAP:
+                int size = readVarInt(in);
+                Map<Revision, Object> map = new TreeMap<Revision, Object>(StableRevisionComparator.REVERSE);
+                long timestamp = 0;
+                for (int i = 0; i < size; i++) {
+                    timestamp += readVarLong(in);
+                    int counter = readVarInt(in);
+                    int clusterId = readVarInt(in);
+                    Revision r = new Revision(timestamp, counter, clusterId >>> 1, (clusterId & 1) != 0);
+                    map.put(r, readValue(in));
+                }
+                return map;
+            default:
+                throw new IOException("unknown value type: " + type);
+        }
+    }
+
+    private static byte[] deflate(byte[] data) throws IOException {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 2);
+            DeflaterOutputStream out = new DeflaterOutputStream(bytes, deflater);
+            out.write(data);
+            out.close();
+            return bytes.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(UTF_8);
+        writeVarInt(out, b.length);
+        out.write(b);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] b = new byte[readVarInt(in)];
+        in.readFully(b);
+        return new String(b, UTF_8);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int x) throws IOException {
+        while ((x & ~0x7f) != 0) {
+            out.writeByte((x & 0x7f) | 0x80);
+            x >>>= 7;
+        }
+        out.writeByte(x);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int x = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readByte();
+            x |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return x;
+            }
+        }
+        throw new IOException("malformed variable length int");
+    }
+
+    /**
+     * Writes a zig-zag encoded variable length long.
+     */
+    private static void writeVarLong(DataOutputStream out, long x) throws IOException {
+        x = (x << 1) ^ (x >> 63);
+        while ((x & ~0x7fL) != 0) {
+            out.writeByte((int) ((x & 0x7f) | 0x80));
+            x >>>= 7;
+        }
+        out.writeByte((int) x);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long x = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readByte();
+            x |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return (x >>> 1) ^ -(x & 1);
+            }
+        }
+        throw new IOException("malformed variable length long");
+    }
+}
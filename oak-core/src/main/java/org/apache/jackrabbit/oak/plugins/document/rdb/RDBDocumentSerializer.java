@@ -96,6 +96,26 @@ public class RDBDocumentSerializer {
         return sb.toString();
     }
 
+    /**
+     * Serializes all non-column properties of the {@link Document} for the
+     * BDATA column. Uses the binary format of {@link RDBBinarySupport} when
+     * enabled and the document can be represented in it, otherwise the
+     * (usually GZIPped) supplied JSON serialization.
+     *
+     * @param doc the document.
+     * @param data the JSON serialization of the document as returned by
+     *            {@link #asString(Document)}.
+     */
+    public byte[] asBytes(@Nonnull Document doc, @Nonnull String data) {
+        if (RDBDocumentStore.BINARYBDATA) {
+            byte[] bytes = RDBBinarySupport.asBytes(doc, columnProperties, !RDBDocumentStore.NOGZIP);
+            if (bytes != null) {
+                return bytes;
+            }
+        }
+        return RDBDocumentStore.asBytes(data);
+    }
+
     /**
      * Serializes the changes in the {@link UpdateOp} into a JSON array; each
      * entry is another JSON array holding operation, key, revision, and value.
@@ -174,7 +194,10 @@ public class RDBDocumentSerializer {
         // case #1: BDATA (blob) contains base data, DATA (string) contains
         // update operations
         try {
-            if (bdata != null && bdata.length != 0) {
+            if (bdata != null && RDBBinarySupport.isBinary(bdata)) {
+                RDBBinarySupport.readDocument(bdata, doc);
+                blobInUse = true;
+            } else if (bdata != null && bdata.length != 0) {
                 String s = fromBlobData(bdata);
                 json = new JsopTokenizer(s);
                 json.read('{');
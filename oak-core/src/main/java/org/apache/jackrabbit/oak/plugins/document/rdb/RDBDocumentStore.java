@@ -171,7 +171,10 @@ import com.google.common.collect.Sets;
  * <th>BDATA</th>
  * <td>blob</td>
  * <td>the document's JSON serialization (usually GZIPped, only used for "large"
- * documents)</td>
+ * documents), or alternatively its binary serialization (see
+ * {@link RDBBinarySupport}, only written when the system property
+ * "org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.BINARYBDATA"
+ * is set; readers always accept all formats)</td>
  * </tr>
  * </tbody>
  * </table>
@@ -512,6 +515,63 @@ public class RDBDocumentStore implements DocumentStore {
         return internalCreateOrUpdate(collection, update, false, true);
     }
 
+    @Override
+    public <T extends Document> List<T> findAndUpdate(Collection<T> collection, List<UpdateOp> updateOps) {
+        if (!BATCHUPDATES) {
+            List<T> results = new ArrayList<T>(updateOps.size());
+            for (UpdateOp update : updateOps) {
+                results.add(findAndUpdate(collection, update));
+            }
+            return results;
+        }
+
+        Map<UpdateOp, T> results = new LinkedHashMap<UpdateOp, T>();
+        Map<String, UpdateOp> operationsToCover = new LinkedHashMap<String, UpdateOp>();
+        Set<UpdateOp> duplicates = new HashSet<UpdateOp>();
+
+        for (UpdateOp updateOp : updateOps) {
+            if (operationsToCover.containsKey(updateOp.getId())) {
+                duplicates.add(updateOp);
+                results.put(updateOp, null);
+            } else {
+                UpdateOp clone = updateOp.copy();
+                addUpdateCounters(clone);
+                operationsToCover.put(clone.getId(), clone);
+                results.put(clone, null);
+            }
+        }
+
+        // as for a single update, the conditions are checked
+        // against the current (cached) documents
+        Map<String, T> oldDocs = readDocumentCached(collection, operationsToCover.keySet());
+        for (Iterator<UpdateOp> it = operationsToCover.values().iterator(); it.hasNext(); ) {
+            UpdateOp op = it.next();
+            T oldDoc = oldDocs.get(op.getId());
+            if (oldDoc == null || !checkConditions(oldDoc, op.getConditions())) {
+                it.remove();
+            }
+        }
+
+        // the old documents were already read, hence a bulk
+        // update only needs a single batch statement
+        for (List<UpdateOp> partition : partition(newArrayList(operationsToCover.values()), CHUNKSIZE)) {
+            Map<UpdateOp, T> successfulUpdates = bulkUpdate(collection, partition, oldDocs, false);
+            results.putAll(successfulUpdates);
+            operationsToCover.values().removeAll(successfulUpdates.keySet());
+        }
+
+        // apply conflicting changes one after another
+        for (UpdateOp updateOp : updateOps) {
+            UpdateOp conflictedOp = operationsToCover.remove(updateOp.getId());
+            if (conflictedOp != null) {
+                results.put(conflictedOp, findAndUpdate(collection, updateOp));
+            } else if (duplicates.contains(updateOp)) {
+                results.put(updateOp, findAndUpdate(collection, updateOp));
+            }
+        }
+        return new ArrayList<T>(results.values());
+    }
+
     @Override
     public CacheInvalidationStats invalidateCache() {
         for (CacheValue key : nodesCache.keys()) {
@@ -1649,7 +1709,7 @@ public class RDBDocumentStore implements DocumentStore {
                 Object m = document.get(MODIFIED);
                 long modified = (m instanceof Long) ? ((Long)m).longValue() : 0;
                 success = db.update(connection, tmd, document.getId(), modified, hasBinary, deletedOnce, modcount, cmodcount,
-                        oldmodcount, data);
+                        oldmodcount, document, data);
                 connection.commit();
             }
             return success;
@@ -1770,8 +1830,12 @@ public class RDBDocumentStore implements DocumentStore {
     // configuration
 
     // Whether to use GZIP compression
-    private static final boolean NOGZIP = Boolean
+    static final boolean NOGZIP = Boolean
             .getBoolean("org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.NOGZIP");
+    // Whether to write the BDATA column in the binary format (default: false;
+    // only enable once all cluster nodes are able to read it)
+    static final boolean BINARYBDATA = Boolean
+            .getBoolean("org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.BINARYBDATA");
     // Whether to use append operations (string concatenation) in the DATA column
     private static final boolean NOAPPEND = Boolean
             .getBoolean("org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.NOAPPEND");
@@ -19,7 +19,6 @@ package org.apache.jackrabbit.oak.plugins.document.rdb;
 import static com.google.common.collect.Iterables.transform;
 import static com.google.common.collect.Sets.newHashSet;
 import static org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.CHAR2OCTETRATIO;
-import static org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.asBytes;
 import static org.apache.jackrabbit.oak.plugins.document.rdb.RDBJDBCTools.closeResultSet;
 import static org.apache.jackrabbit.oak.plugins.document.rdb.RDBJDBCTools.closeStatement;
 
@@ -311,7 +310,7 @@ public class RDBDocumentStoreJDBC {
                     stmt.setBinaryStream(si++, null, 0);
                 } else {
                     stmt.setString(si++, "\"blob\"");
-                    byte[] bytes = asBytes(data);
+                    byte[] bytes = this.ser.asBytes(document, data);
                     stmt.setBytes(si++, bytes);
                 }
                 stmt.addBatch();
@@ -391,7 +390,7 @@ public class RDBDocumentStoreJDBC {
                     stmt.setBinaryStream(si++, null, 0);
                 } else {
                     stmt.setString(si++, "\"blob\"");
-                    byte[] bytes = asBytes(data);
+                    byte[] bytes = this.ser.asBytes(document, data);
                     stmt.setBytes(si++, bytes);
                 }
 
@@ -710,7 +709,8 @@ public class RDBDocumentStoreJDBC {
     }
 
     public boolean update(Connection connection, RDBTableMetaData tmd, String id, Long modified, Boolean hasBinary,
-            Boolean deletedOnce, Long modcount, Long cmodcount, Long oldmodcount, String data) throws SQLException {
+            Boolean deletedOnce, Long modcount, Long cmodcount, Long oldmodcount, Document document, String data)
+            throws SQLException {
 
         StringBuilder t = new StringBuilder();
         t.append("update " + tmd.getName() + " set ");
@@ -734,7 +734,7 @@ public class RDBDocumentStoreJDBC {
                 stmt.setBinaryStream(si++, null, 0);
             } else {
                 stmt.setString(si++, "\"blob\"");
-                byte[] bytes = asBytes(data);
+                byte[] bytes = this.ser.asBytes(document, data);
                 stmt.setBytes(si++, bytes);
             }
 
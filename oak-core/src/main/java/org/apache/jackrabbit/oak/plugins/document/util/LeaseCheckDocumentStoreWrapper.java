@@ -151,6 +151,13 @@ public final class LeaseCheckDocumentStoreWrapper implements DocumentStore, Revi
         return delegate.findAndUpdate(collection, update);
     }
 
+    @Override
+    public final <T extends Document> List<T> findAndUpdate(Collection<T> collection,
+            List<UpdateOp> updateOps) {
+        performLeaseCheck();
+        return delegate.findAndUpdate(collection, updateOps);
+    }
+
     @Override
     public final CacheInvalidationStats invalidateCache() {
         performLeaseCheck();
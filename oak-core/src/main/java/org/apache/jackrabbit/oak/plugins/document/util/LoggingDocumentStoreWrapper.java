@@ -278,6 +278,23 @@ public class LoggingDocumentStoreWrapper implements DocumentStore, RevisionListe
         }
     }
 
+    @Override
+    public <T extends Document> List<T> findAndUpdate(final Collection<T> collection,
+                                                      final List<UpdateOp> updateOps) {
+        try {
+            logMethod("findAndUpdate", collection, updateOps);
+            return logResult(new Callable<List<T>>() {
+                @Override
+                public List<T> call() throws Exception {
+                    return store.findAndUpdate(collection, updateOps);
+                }
+            });
+        } catch (Exception e) {
+            logException(e);
+            throw convert(e);
+        }
+    }
+
     @Override
     public CacheInvalidationStats invalidateCache() {
         try {
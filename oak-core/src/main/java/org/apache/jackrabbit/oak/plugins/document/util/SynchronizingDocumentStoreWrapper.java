@@ -116,6 +116,11 @@ public class SynchronizingDocumentStoreWrapper implements DocumentStore, Revisio
         return store.findAndUpdate(collection, update);
     }
 
+    @Override
+    public synchronized <T extends Document> List<T> findAndUpdate(Collection<T> collection, List<UpdateOp> updateOps) {
+        return store.findAndUpdate(collection, updateOps);
+    }
+
     @Override
     public synchronized CacheInvalidationStats invalidateCache() {
         return store.invalidateCache();
@@ -312,6 +312,25 @@ public class TimingDocumentStoreWrapper implements DocumentStore, RevisionListen
         }
     }
 
+    @Override
+    public <T extends Document> List<T> findAndUpdate(Collection<T> collection, List<UpdateOp> updateOps) {
+        try {
+            long start = now();
+            List<T> result = base.findAndUpdate(collection, updateOps);
+            updateAndLogTimes("findAndUpdate", start, 0, size(result));
+            if (logCommonCall()) {
+                List<String> ids = new ArrayList<String>();
+                for (UpdateOp op : updateOps) {
+                    ids.add(op.getId());
+                }
+                logCommonCall(start, "findAndUpdate " + collection + " " + ids);
+            }
+            return result;
+        } catch (Exception e) {
+            throw convert(e);
+        }
+    }
+
     @Override
     public CacheInvalidationStats invalidateCache() {
         try {
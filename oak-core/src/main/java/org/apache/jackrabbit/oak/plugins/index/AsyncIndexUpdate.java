@@ -18,6 +18,7 @@
  */
 package org.apache.jackrabbit.oak.plugins.index;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Throwables.getStackTraceAsString;
 import static com.google.common.collect.Sets.newHashSet;
@@ -196,6 +197,25 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
 
     private List<ValidatorProvider> validatorProviders = Collections.emptyList();
 
+    /**
+     * The number of threads applying the diff to the index editors. With more
+     * than one thread, the index definitions are split across the threads
+     * and the diff is handed to them over bounded queues. Defaults to 1,
+     * which applies the diff to all index editors in the indexing thread.
+     */
+    private int pipelineThreads = Integer.getInteger("oak.async.pipelineThreads", 1);
+
+    /**
+     * The capacity in batches of diff events of the queue for each of the
+     * pipeline threads.
+     */
+    private int pipelineQueueSize = Integer.getInteger("oak.async.pipelineQueueSize", 16);
+
+    /**
+     * The pipelined index update of the current run, if any.
+     */
+    private volatile PipelinedIndexUpdate pipeline;
+
     public AsyncIndexUpdate(@Nonnull String name, @Nonnull NodeStore store,
                             @Nonnull IndexEditorProvider provider, boolean switchOnSync) {
         this(name, store, provider, StatisticsProvider.NOOP, switchOnSync);
@@ -631,9 +651,16 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
         try {
             NodeBuilder builder = store.getRoot().builder();
 
-            IndexUpdate indexUpdate =
-                    new IndexUpdate(provider, name, after, builder, callback)
-                    .withMissingProviderStrategy(missingStrategy);
+            IndexUpdate indexUpdate;
+            if (pipelineThreads > 1) {
+                pipeline = new PipelinedIndexUpdate(provider, name, after,
+                        builder, callback, missingStrategy,
+                        pipelineThreads, pipelineQueueSize);
+                indexUpdate = pipeline;
+            } else {
+                indexUpdate = new IndexUpdate(provider, name, after, builder, callback)
+                        .withMissingProviderStrategy(missingStrategy);
+            }
             CommitFailedException exception =
                     EditorDiff.process(VisibleEditor.wrap(indexUpdate), before, after);
             if (exception != null) {
@@ -678,6 +705,11 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
                 progressLogged = true;
             }
         } finally {
+            PipelinedIndexUpdate p = pipeline;
+            if (p != null) {
+                pipeline = null;
+                p.close();
+            }
             callback.close();
         }
 
@@ -763,6 +795,19 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
         return this;
     }
 
+    /**
+     * Sets the number of threads applying the diff to the index editors and
+     * the capacity of their queues in batches of diff events. A single
+     * thread disables the pipeline.
+     */
+    public AsyncIndexUpdate setPipeline(int threads, int queueSize) {
+        checkArgument(threads > 0, "threads must be greater than zero");
+        checkArgument(queueSize > 0, "queueSize must be greater than zero");
+        this.pipelineThreads = threads;
+        this.pipelineQueueSize = queueSize;
+        return this;
+    }
+
     public void setValidatorProviders(List<ValidatorProvider> validatorProviders) {
         this.validatorProviders = validatorProviders;
     }
@@ -1141,6 +1186,18 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
         public String getLatestErrorTime() {
             return latestErrorTime;
         }
+
+        @Override
+        public int getProducerQueueDepth() {
+            PipelinedIndexUpdate p = pipeline;
+            return p != null ? p.getProducerQueueDepth() : 0;
+        }
+
+        @Override
+        public int[] getConsumerQueueDepths() {
+            PipelinedIndexUpdate p = pipeline;
+            return p != null ? p.getConsumerQueueDepths() : new int[0];
+        }
     }
 
     /**
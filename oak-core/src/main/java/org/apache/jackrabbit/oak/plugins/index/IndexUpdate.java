@@ -47,6 +47,8 @@ import java.util.Set;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
@@ -205,10 +207,14 @@ public class IndexUpdate implements Editor {
                     // probably not an index def
                     continue;
                 }
+                String indexPath = getIndexPath(getPath(), name);
+                if (!rootState.indexFilter.apply(indexPath)) {
+                    // handled by another update
+                    continue;
+                }
                 manageIndexPath(definition, name);
                 boolean shouldReindex = shouldReindex(definition,
                         before, name);
-                String indexPath = getIndexPath(getPath(), name);
                 Editor editor = rootState.provider.getIndexEditor(type, definition, rootState.root,
                         rootState.newCallback(indexPath, shouldReindex));
                 if (editor == null) {
@@ -428,6 +434,15 @@ public class IndexUpdate implements Editor {
         return this;
     }
 
+    /**
+     * Restricts this update to the index definitions with a path accepted by
+     * the given filter. Other definitions are left untouched.
+     */
+    IndexUpdate withIndexFilter(Predicate<String> indexFilter) {
+        rootState.indexFilter = checkNotNull(indexFilter);
+        return this;
+    }
+
     private static final class IndexUpdateRootState {
         final IndexEditorProvider provider;
         final String async;
@@ -439,6 +454,7 @@ public class IndexUpdate implements Editor {
         final IndexUpdateCallback updateCallback;
         final Set<String> reindexedIndexes = Sets.newHashSet();
         final Map<String, CountingCallback> callbacks = Maps.newHashMap();
+        Predicate<String> indexFilter = Predicates.alwaysTrue();
 
         private IndexUpdateRootState(IndexEditorProvider provider, String async, NodeState root,
                                      IndexUpdateCallback updateCallback, CommitInfo commitInfo) {
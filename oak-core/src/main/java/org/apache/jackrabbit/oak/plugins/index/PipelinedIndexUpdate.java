@@ -0,0 +1,508 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Lists.newArrayListWithCapacity;
+import static com.google.common.collect.Sets.newHashSet;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.TYPE_PROPERTY_NAME;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Predicate;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.spi.commit.Editor;
+import org.apache.jackrabbit.oak.spi.state.ApplyDiff;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+
+/**
+ * An {@link IndexUpdate} that applies the diff to the index editors in
+ * parallel. The thread calling this editor produces the diff events and
+ * hands them in batches to a number of consumers over bounded queues. Each
+ * consumer runs its own {@link IndexUpdate} restricted to a partition of the
+ * index definitions and records its changes in a private builder. Once the
+ * diff is complete, the changes of all consumers are applied to the builder
+ * passed to the constructor.
+ * <p>
+ * The index editors of different partitions must not modify the same nodes.
+ * This is the case for the editors in Oak, which write to their index
+ * definition, and for the node counter, which is a single index.
+ * <p>
+ * The {@link IndexUpdateCallback} is called with the lock of the callback
+ * held, as it may be called concurrently by the consumers.
+ */
+class PipelinedIndexUpdate extends IndexUpdate implements Closeable {
+
+    /**
+     * The number of diff events handed to the consumers at once.
+     */
+    static final int DEFAULT_BATCH_SIZE = 1024;
+
+    private static final int ENTER = 0;
+    private static final int LEAVE = 1;
+    private static final int PROPERTY_ADDED = 2;
+    private static final int PROPERTY_CHANGED = 3;
+    private static final int PROPERTY_DELETED = 4;
+    private static final int CHILD_ADDED = 5;
+    private static final int CHILD_CHANGED = 6;
+    private static final int CHILD_DELETED = 7;
+
+    /**
+     * Marks the end of the diff events for a consumer.
+     */
+    private static final List<Event> END = Collections.emptyList();
+
+    private final NodeBuilder builder;
+
+    private final List<Consumer> consumers;
+
+    private final ExecutorService executor;
+
+    private final int batchSize;
+
+    /**
+     * The first failure of a consumer.
+     */
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+    private List<Event> batch;
+
+    /**
+     * The number of events in the current batch. Only used for statistics.
+     */
+    private volatile int pending;
+
+    private int depth;
+
+    PipelinedIndexUpdate(IndexEditorProvider provider, String async,
+                         NodeState root, NodeBuilder builder,
+                         IndexUpdateCallback updateCallback,
+                         MissingIndexProviderStrategy missingStrategy,
+                         int threads, int queueSize) {
+        super(provider, async, root, builder, updateCallback);
+        checkArgument(threads > 0, "threads must be greater than zero");
+        checkArgument(queueSize > 0, "queueSize must be greater than zero");
+        this.builder = builder;
+        this.batchSize = DEFAULT_BATCH_SIZE;
+        this.batch = newArrayListWithCapacity(batchSize);
+
+        List<String> paths = getDefinitionPaths(async,
+                builder.getChildNode(INDEX_DEFINITIONS_NAME));
+        int numConsumers = Math.max(1, Math.min(threads, paths.size()));
+        IndexUpdateCallback callback = synchronizedCallback(updateCallback);
+        this.consumers = newArrayListWithCapacity(numConsumers);
+        for (int i = 0; i < numConsumers; i++) {
+            NodeBuilder privateRoot = newPrivateBuilder(builder);
+            IndexUpdate update = new IndexUpdate(provider, async, root, privateRoot, callback)
+                    .withMissingProviderStrategy(missingStrategy)
+                    .withIndexFilter(new PartitionFilter(paths, i, numConsumers));
+            consumers.add(new Consumer(privateRoot, update, queueSize));
+        }
+        this.executor = Executors.newFixedThreadPool(numConsumers,
+                new ThreadFactoryBuilder().setDaemon(true)
+                        .setNameFormat("async-index-update-" + async + "-%d").build());
+    }
+
+    /**
+     * @return the number of diff events not yet handed to the consumers.
+     */
+    int getProducerQueueDepth() {
+        return pending;
+    }
+
+    /**
+     * @return the number of batches queued for each of the consumers.
+     */
+    int[] getConsumerQueueDepths() {
+        int[] depths = new int[consumers.size()];
+        for (int i = 0; i < depths.length; i++) {
+            depths[i] = consumers.get(i).queue.size();
+        }
+        return depths;
+    }
+
+    /**
+     * Stops the consumers. Must be called when the diff is aborted.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    //-----------------------------------------------------< IndexUpdate >--
+
+    @Override
+    public List<String> getReindexStats() {
+        List<String> stats = newArrayList();
+        for (Consumer c : consumers) {
+            stats.addAll(c.update.getReindexStats());
+        }
+        return stats;
+    }
+
+    @Override
+    protected Set<String> getReindexedDefinitions() {
+        Set<String> definitions = newHashSet();
+        for (Consumer c : consumers) {
+            definitions.addAll(c.update.getReindexedDefinitions());
+        }
+        return definitions;
+    }
+
+    //----------------------------------------------------------< Editor >--
+
+    @Override
+    public void enter(NodeState before, NodeState after)
+            throws CommitFailedException {
+        if (depth++ == 0) {
+            for (Consumer c : consumers) {
+                executor.execute(c);
+            }
+        }
+        add(new Event(ENTER, null, before, after));
+    }
+
+    @Override
+    public void leave(NodeState before, NodeState after)
+            throws CommitFailedException {
+        add(new Event(LEAVE, null, before, after));
+        if (--depth == 0) {
+            finish();
+        }
+    }
+
+    @Override
+    public void propertyAdded(PropertyState after)
+            throws CommitFailedException {
+        add(new Event(PROPERTY_ADDED, null, null, after));
+    }
+
+    @Override
+    public void propertyChanged(PropertyState before, PropertyState after)
+            throws CommitFailedException {
+        add(new Event(PROPERTY_CHANGED, null, before, after));
+    }
+
+    @Override
+    public void propertyDeleted(PropertyState before)
+            throws CommitFailedException {
+        add(new Event(PROPERTY_DELETED, null, before, null));
+    }
+
+    @Override @Nonnull
+    public Editor childNodeAdded(String name, NodeState after)
+            throws CommitFailedException {
+        add(new Event(CHILD_ADDED, name, null, after));
+        return this;
+    }
+
+    @Override @Nonnull
+    public Editor childNodeChanged(String name, NodeState before,
+                                   NodeState after)
+            throws CommitFailedException {
+        add(new Event(CHILD_CHANGED, name, before, after));
+        return this;
+    }
+
+    @Override @CheckForNull
+    public Editor childNodeDeleted(String name, NodeState before)
+            throws CommitFailedException {
+        add(new Event(CHILD_DELETED, name, before, null));
+        return this;
+    }
+
+    //--------------------------------------------------------< internal >--
+
+    private void add(Event event) throws CommitFailedException {
+        batch.add(event);
+        pending = batch.size();
+        if (batch.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    private void flush() throws CommitFailedException {
+        checkFailure();
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Event> events = batch;
+        batch = newArrayListWithCapacity(batchSize);
+        pending = 0;
+        for (Consumer c : consumers) {
+            c.put(events);
+        }
+    }
+
+    private void finish() throws CommitFailedException {
+        flush();
+        for (Consumer c : consumers) {
+            c.put(END);
+        }
+        for (Consumer c : consumers) {
+            c.await();
+        }
+        checkFailure();
+        for (Consumer c : consumers) {
+            c.merge(builder);
+        }
+    }
+
+    private void checkFailure() throws CommitFailedException {
+        Throwable t = failure.get();
+        if (t instanceof CommitFailedException) {
+            throw (CommitFailedException) t;
+        } else if (t != null) {
+            throw Throwables.propagate(t);
+        }
+    }
+
+    /**
+     * Creates a new builder on the base state of the given root builder with
+     * the changes of the given builder applied.
+     */
+    private static NodeBuilder newPrivateBuilder(NodeBuilder builder) {
+        NodeState base = builder.getBaseState();
+        NodeBuilder privateBuilder = base.builder();
+        builder.getNodeState().compareAgainstBaseState(base, new ApplyDiff(privateBuilder));
+        return privateBuilder;
+    }
+
+    /**
+     * Returns the sorted paths of the top level index definitions included
+     * in the given async lane.
+     */
+    private static List<String> getDefinitionPaths(String async,
+                                                   NodeBuilder definitions) {
+        List<String> paths = newArrayList();
+        for (String name : definitions.getChildNodeNames()) {
+            NodeBuilder definition = definitions.getChildNode(name);
+            if (isIncluded(async, definition)
+                    && definition.getString(TYPE_PROPERTY_NAME) != null) {
+                paths.add("/" + INDEX_DEFINITIONS_NAME + "/" + name);
+            }
+        }
+        Collections.sort(paths);
+        return paths;
+    }
+
+    private static IndexUpdateCallback synchronizedCallback(
+            final IndexUpdateCallback callback) {
+        return new IndexUpdateCallback() {
+            @Override
+            public void indexUpdate() throws CommitFailedException {
+                synchronized (callback) {
+                    callback.indexUpdate();
+                }
+            }
+        };
+    }
+
+    private static CommitFailedException interrupted(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return new CommitFailedException("IndexUpdate", 2,
+                "Interrupted while waiting for index update", e);
+    }
+
+    /**
+     * Assigns the top level index definitions round robin to the partitions
+     * and nested definitions by the hash code of their path.
+     */
+    private static final class PartitionFilter implements Predicate<String> {
+
+        private final List<String> paths;
+
+        private final int partition;
+
+        private final int numPartitions;
+
+        PartitionFilter(List<String> paths, int partition, int numPartitions) {
+            this.paths = paths;
+            this.partition = partition;
+            this.numPartitions = numPartitions;
+        }
+
+        @Override
+        public boolean apply(String indexPath) {
+            int idx = paths.indexOf(indexPath);
+            if (idx < 0) {
+                idx = indexPath.hashCode() & Integer.MAX_VALUE;
+            }
+            return idx % numPartitions == partition;
+        }
+    }
+
+    private static final class Event {
+
+        final int type;
+
+        final String name;
+
+        final Object before;
+
+        final Object after;
+
+        Event(int type, String name, Object before, Object after) {
+            this.type = type;
+            this.name = name;
+            this.before = before;
+            this.after = after;
+        }
+    }
+
+    private final class Consumer implements Runnable {
+
+        private final BlockingQueue<List<Event>> queue;
+
+        private final NodeBuilder root;
+
+        private final NodeState base;
+
+        private final IndexUpdate update;
+
+        /**
+         * The stack of editors, with the editor for the current node on top.
+         * A {@code null} entry means the subtree is not of interest.
+         */
+        private final List<Editor> editors = newArrayList();
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        Consumer(NodeBuilder root, IndexUpdate update, int queueSize) {
+            this.queue = new ArrayBlockingQueue<List<Event>>(queueSize);
+            this.root = root;
+            this.base = root.getNodeState();
+            this.update = update;
+            this.editors.add(update);
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (;;) {
+                    List<Event> events = queue.take();
+                    if (events == END) {
+                        break;
+                    }
+                    // keep draining the queue after a failure, the
+                    // producer will notice it with the next batch
+                    if (failure.get() == null) {
+                        try {
+                            for (Event e : events) {
+                                apply(e);
+                            }
+                        } catch (Throwable t) {
+                            failure.compareAndSet(null, t);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                done.countDown();
+            }
+        }
+
+        void put(List<Event> events) throws CommitFailedException {
+            try {
+                queue.put(events);
+            } catch (InterruptedException e) {
+                throw interrupted(e);
+            }
+        }
+
+        void await() throws CommitFailedException {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                throw interrupted(e);
+            }
+        }
+
+        void merge(NodeBuilder target) {
+            root.getNodeState().compareAgainstBaseState(base, new ApplyDiff(target));
+        }
+
+        private void apply(Event e) throws CommitFailedException {
+            Editor editor = editors.get(editors.size() - 1);
+            switch (e.type) {
+                case ENTER:
+                    if (editor != null) {
+                        editor.enter((NodeState) e.before, (NodeState) e.after);
+                    }
+                    break;
+                case LEAVE:
+                    if (editor != null) {
+                        editor.leave((NodeState) e.before, (NodeState) e.after);
+                    }
+                    editors.remove(editors.size() - 1);
+                    break;
+                case PROPERTY_ADDED:
+                    if (editor != null) {
+                        editor.propertyAdded((PropertyState) e.after);
+                    }
+                    break;
+                case PROPERTY_CHANGED:
+                    if (editor != null) {
+                        editor.propertyChanged((PropertyState) e.before, (PropertyState) e.after);
+                    }
+                    break;
+                case PROPERTY_DELETED:
+                    if (editor != null) {
+                        editor.propertyDeleted((PropertyState) e.before);
+                    }
+                    break;
+                case CHILD_ADDED:
+                    editors.add(editor == null ? null
+                            : editor.childNodeAdded(e.name, (NodeState) e.after));
+                    break;
+                case CHILD_CHANGED:
+                    editors.add(editor == null ? null
+                            : editor.childNodeChanged(e.name, (NodeState) e.before, (NodeState) e.after));
+                    break;
+                case CHILD_DELETED:
+                    editors.add(editor == null ? null
+                            : editor.childNodeDeleted(e.name, (NodeState) e.before));
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown event type: " + e.type);
+            }
+        }
+    }
+}
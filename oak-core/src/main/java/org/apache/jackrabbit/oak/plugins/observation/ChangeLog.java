@@ -0,0 +1,305 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.observation;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newHashMap;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.MISSING_NODE;
+import static org.apache.jackrabbit.oak.spi.state.NodeStateUtils.isHidden;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateDiff;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
+
+/**
+ * An immutable record of the content diff between two node states. The diff
+ * is computed once by {@link #record(NodeState, NodeState, int)} and can then
+ * be replayed any number of times, concurrently, through
+ * {@link #compare(NodeStateDiff)}. This allows many observers to share a
+ * single content diff of a commit, each applying its own filters while
+ * replaying it (see {@link EventGenerator#addHandler(ChangeLog, EventHandler)}).
+ * <p>
+ * A change log contains the changes of a single node in the order reported
+ * by {@link NodeState#compareAgainstBaseState(NodeState, NodeStateDiff)}, and
+ * a change log for each added, changed or deleted child node. To limit memory
+ * usage, recording stops once a given number of changes is reached. Such a
+ * change log is {@link #isComplete() incomplete} and must not be replayed.
+ * <p>
+ * Changes of hidden properties and child nodes (see
+ * {@link NodeStateUtils#isHidden(String)}) are not recorded, as observers
+ * filter them out anyway. A replay hence only reports visible changes.
+ */
+public final class ChangeLog {
+
+    private static final Change[] NO_CHANGES = new Change[0];
+
+    private final NodeState before;
+
+    private final NodeState after;
+
+    private Change[] changes = NO_CHANGES;
+
+    private Map<String, ChangeLog> children = Collections.emptyMap();
+
+    private boolean complete = true;
+
+    private int changeCount;
+
+    private ChangeLog(NodeState before, NodeState after) {
+        this.before = before;
+        this.after = after;
+    }
+
+    /**
+     * Record the content diff between {@code before} and {@code after}.
+     *
+     * @param before      the before state
+     * @param after       the after state
+     * @param maxChanges  the maximum number of changes to record
+     * @return the change log, which is incomplete if there are more than
+     *         {@code maxChanges} changes.
+     */
+    @Nonnull
+    public static ChangeLog record(@Nonnull NodeState before, @Nonnull NodeState after,
+                                   int maxChanges) {
+        ChangeLog root = new ChangeLog(checkNotNull(before), checkNotNull(after));
+        // breadth first, to avoid a deep recursion
+        Deque<ChangeLog> pending = new ArrayDeque<ChangeLog>();
+        pending.add(root);
+        int count = 0;
+        while (!pending.isEmpty()) {
+            ChangeLog log = pending.removeFirst();
+            Recorder recorder = new Recorder(pending, maxChanges - count);
+            if (!log.after.compareAgainstBaseState(log.before, recorder)) {
+                // drop everything recorded so far, to release the memory
+                root.changes = NO_CHANGES;
+                root.children = Collections.emptyMap();
+                root.complete = false;
+                root.changeCount = count + recorder.changes.size();
+                return root;
+            }
+            log.changes = recorder.changes.toArray(NO_CHANGES);
+            if (!recorder.children.isEmpty()) {
+                log.children = recorder.children;
+            }
+            count += log.changes.length;
+        }
+        root.changeCount = count;
+        return root;
+    }
+
+    @Nonnull
+    public NodeState getBefore() {
+        return before;
+    }
+
+    @Nonnull
+    public NodeState getAfter() {
+        return after;
+    }
+
+    /**
+     * @return {@code false} if recording was stopped because the maximum
+     *         number of changes was reached.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return the number of recorded changes, including the ones of all
+     *         child nodes. For an incomplete change log the number of changes
+     *         seen before recording was stopped.
+     */
+    public int getChangeCount() {
+        return changeCount;
+    }
+
+    /**
+     * Replay the recorded changes of this node against the given diff, in
+     * the same way as {@link NodeState#compareAgainstBaseState(NodeState, NodeStateDiff)}
+     * would report them.
+     *
+     * @param diff the diff handler
+     * @return {@code true} if all changes were reported, {@code false} if
+     *         the diff handler aborted the comparison.
+     */
+    public boolean compare(@Nonnull NodeStateDiff diff) {
+        for (Change c : changes) {
+            if (!c.report(diff)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param name the name of a child node
+     * @return the change log of the given child node, or {@code null} if that
+     *         child node was not changed.
+     */
+    @CheckForNull
+    public ChangeLog getChild(@Nonnull String name) {
+        return children.get(name);
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeLog{changes=" + changeCount + ", complete=" + complete + "}";
+    }
+
+    //------------------------------------------------------------< private >---
+
+    private static final class Recorder implements NodeStateDiff {
+
+        private final Deque<ChangeLog> pending;
+
+        private final int maxChanges;
+
+        private final List<Change> changes = newArrayList();
+
+        private final Map<String, ChangeLog> children = newHashMap();
+
+        Recorder(Deque<ChangeLog> pending, int maxChanges) {
+            this.pending = pending;
+            this.maxChanges = maxChanges;
+        }
+
+        @Override
+        public boolean propertyAdded(PropertyState after) {
+            if (isHidden(after.getName())) {
+                return true;
+            }
+            return add(new Change(Change.PROPERTY_ADDED, null, null, after));
+        }
+
+        @Override
+        public boolean propertyChanged(PropertyState before, PropertyState after) {
+            if (isHidden(after.getName())) {
+                return true;
+            }
+            return add(new Change(Change.PROPERTY_CHANGED, null, before, after));
+        }
+
+        @Override
+        public boolean propertyDeleted(PropertyState before) {
+            if (isHidden(before.getName())) {
+                return true;
+            }
+            return add(new Change(Change.PROPERTY_DELETED, null, before, null));
+        }
+
+        @Override
+        public boolean childNodeAdded(String name, NodeState after) {
+            if (isHidden(name)) {
+                return true;
+            }
+            addChild(name, MISSING_NODE, after);
+            return add(new Change(Change.NODE_ADDED, name, null, after));
+        }
+
+        @Override
+        public boolean childNodeChanged(String name, NodeState before, NodeState after) {
+            if (isHidden(name)) {
+                return true;
+            }
+            addChild(name, before, after);
+            return add(new Change(Change.NODE_CHANGED, name, before, after));
+        }
+
+        @Override
+        public boolean childNodeDeleted(String name, NodeState before) {
+            if (isHidden(name)) {
+                return true;
+            }
+            addChild(name, before, MISSING_NODE);
+            return add(new Change(Change.NODE_DELETED, name, before, null));
+        }
+
+        private void addChild(String name, NodeState before, NodeState after) {
+            ChangeLog child = new ChangeLog(before, after);
+            children.put(name, child);
+            pending.add(child);
+        }
+
+        private boolean add(Change change) {
+            changes.add(change);
+            return changes.size() <= maxChanges;
+        }
+    }
+
+    /**
+     * A single change of a node: a property or child node that was added,
+     * changed or deleted.
+     */
+    private static final class Change {
+
+        static final byte PROPERTY_ADDED = 0;
+        static final byte PROPERTY_CHANGED = 1;
+        static final byte PROPERTY_DELETED = 2;
+        static final byte NODE_ADDED = 3;
+        static final byte NODE_CHANGED = 4;
+        static final byte NODE_DELETED = 5;
+
+        private final byte type;
+
+        private final String name;
+
+        private final Object before;
+
+        private final Object after;
+
+        Change(byte type, String name, Object before, Object after) {
+            this.type = type;
+            this.name = name;
+            this.before = before;
+            this.after = after;
+        }
+
+        boolean report(NodeStateDiff diff) {
+            switch (type) {
+                case PROPERTY_ADDED:
+                    return diff.propertyAdded((PropertyState) after);
+                case PROPERTY_CHANGED:
+                    return diff.propertyChanged((PropertyState) before, (PropertyState) after);
+                case PROPERTY_DELETED:
+                    return diff.propertyDeleted((PropertyState) before);
+                case NODE_ADDED:
+                    return diff.childNodeAdded(name, (NodeState) after);
+                case NODE_CHANGED:
+                    return diff.childNodeChanged(name, (NodeState) before, (NodeState) after);
+                case NODE_DELETED:
+                    return diff.childNodeDeleted(name, (NodeState) before);
+                default:
+                    throw new IllegalStateException("Unknown change type " + type);
+            }
+        }
+    }
+}
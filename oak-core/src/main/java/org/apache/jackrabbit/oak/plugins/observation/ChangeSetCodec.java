@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.observation;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.apache.jackrabbit.oak.plugins.observation.ChangeCollectorProvider.COMMIT_CONTEXT_OBSERVATION_CHANGESET;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Set;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.jackrabbit.oak.core.SimpleCommitContext;
+import org.apache.jackrabbit.oak.spi.commit.CommitContext;
+import org.apache.jackrabbit.oak.spi.commit.CommitContextCodec;
+
+/**
+ * A {@link CommitContextCodec} which writes the {@link ChangeSet} of a commit
+ * context, such that prefiltering keeps working for changes spilled to disk.
+ * Other entries of the commit context, and change sets of which a set
+ * overflowed, are dropped.
+ */
+public final class ChangeSetCodec implements CommitContextCodec {
+
+    public static final ChangeSetCodec INSTANCE = new ChangeSetCodec();
+
+    private ChangeSetCodec() {
+    }
+
+    @Override
+    public void write(@Nonnull DataOutput out, @Nonnull CommitContext context)
+            throws IOException {
+        Object changeSet = context.get(COMMIT_CONTEXT_OBSERVATION_CHANGESET);
+        if (changeSet instanceof ChangeSet && isComplete((ChangeSet) changeSet)) {
+            out.writeBoolean(true);
+            write(out, (ChangeSet) changeSet);
+        } else {
+            out.writeBoolean(false);
+        }
+    }
+
+    @CheckForNull
+    @Override
+    public CommitContext read(@Nonnull DataInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        CommitContext context = new SimpleCommitContext();
+        context.set(COMMIT_CONTEXT_OBSERVATION_CHANGESET, readChangeSet(in));
+        return context;
+    }
+
+    //------------------------------------------------------------< internal >---
+
+    private static boolean isComplete(ChangeSet changeSet) {
+        return changeSet.getParentPaths() != null && changeSet.getParentNodeNames() != null
+                && changeSet.getParentNodeTypes() != null && changeSet.getPropertyNames() != null;
+    }
+
+    private static void write(DataOutput out, ChangeSet changeSet) throws IOException {
+        out.writeInt(changeSet.getMaxPrefilterPathDepth());
+        writeStrings(out, changeSet.getParentPaths());
+        writeStrings(out, changeSet.getParentNodeNames());
+        writeStrings(out, changeSet.getParentNodeTypes());
+        writeStrings(out, changeSet.getPropertyNames());
+    }
+
+    private static ChangeSet readChangeSet(DataInput in) throws IOException {
+        ChangeSetBuilder builder = new ChangeSetBuilder(Integer.MAX_VALUE, in.readInt());
+        readStrings(in, builder.getParentPaths());
+        readStrings(in, builder.getParentNodeNames());
+        readStrings(in, builder.getParentNodeTypes());
+        readStrings(in, builder.getPropertyNames());
+        return builder.build();
+    }
+
+    private static void writeStrings(DataOutput out, Set<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String s : strings) {
+            byte[] bytes = s.getBytes(UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static void readStrings(DataInput in, Set<String> strings) throws IOException {
+        for (int n = in.readInt(); n > 0; n--) {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            strings.add(new String(bytes, UTF_8));
+        }
+    }
+}
@@ -18,6 +18,7 @@
  */
 package org.apache.jackrabbit.oak.plugins.observation;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Lists.newLinkedList;
 import static com.google.common.collect.Sets.newHashSet;
@@ -88,11 +89,25 @@ public class EventGenerator {
     public EventGenerator(
             @Nonnull NodeState before, @Nonnull NodeState after,
             @Nonnull EventHandler handler) {
-        continuations.addFirst(new Continuation(handler, before, after, 0));
+        continuations.addFirst(new Continuation(handler, before, after, null, 0));
     }
 
     public void addHandler(NodeState before, NodeState after, EventHandler handler) {
-        continuations.addFirst(new Continuation(handler, before, after, 0));
+        continuations.addFirst(new Continuation(handler, before, after, null, 0));
+    }
+
+    /**
+     * Add the changes of a previously recorded content diff. Instead of
+     * comparing the node states again, the changes are replayed from the
+     * change log.
+     *
+     * @param log      the complete change log
+     * @param handler  the handler for the changes
+     */
+    public void addHandler(@Nonnull ChangeLog log, EventHandler handler) {
+        checkArgument(log.isComplete(), "Incomplete change log");
+        continuations.addFirst(new Continuation(
+                handler, log.getBefore(), log.getAfter(), log, 0));
     }
 
     /**
@@ -137,6 +152,12 @@ public class EventGenerator {
          */
         private final NodeState after;
 
+        /**
+         * Recorded changes between the before and after states, or
+         * {@code null} if the states need to be compared.
+         */
+        private final ChangeLog log;
+
         /**
          * Number of initial changes to skip.
          */
@@ -149,10 +170,11 @@ public class EventGenerator {
 
         private Continuation(
                 EventHandler handler, NodeState before, NodeState after,
-                int skip) {
+                ChangeLog log, int skip) {
             this.handler = handler;
             this.before = before;
             this.after = after;
+            this.log = log;
             this.skip = skip;
         }
 
@@ -169,7 +191,10 @@ public class EventGenerator {
                 // the MAX_CHANGES_PER_CONTINUATION limit before
                 handler.enter(before, after);
             }
-            if (after.compareAgainstBaseState(before, this)) {
+            boolean done = log != null
+                    ? log.compare(this)
+                    : after.compareAgainstBaseState(before, this);
+            if (done) {
                 // Only call leave if this continuation exists normally and not
                 // as a result of hitting the MAX_CHANGES_PER_CONTINUATION limit
                 handler.leave(before, after);
@@ -316,7 +341,8 @@ public class EventGenerator {
                 String name, NodeState before, NodeState after) {
             EventHandler h = handler.getChildHandler(name, before, after);
             if (h != null) {
-                continuations.addFirst(new Continuation(h, before, after, 0));
+                ChangeLog childLog = log != null ? log.getChild(name) : null;
+                continuations.addFirst(new Continuation(h, before, after, childLog, 0));
             }
         }
 
@@ -340,7 +366,7 @@ public class EventGenerator {
             if (counter > skip // must have processed at least one event
                     && continuations.size() >= MAX_QUEUED_CONTINUATIONS) {
                 continuations.add(new Continuation(
-                        handler, this.before, this.after, counter));
+                        handler, this.before, this.after, log, counter));
                 return true;
             } else {
                 return false;
@@ -356,7 +382,7 @@ public class EventGenerator {
         private boolean afterEvent() {
             if (counter >= skip + MAX_CHANGES_PER_CONTINUATION) {
                 continuations.addFirst(
-                        new Continuation(handler, before, after, counter));
+                        new Continuation(handler, before, after, log, counter));
                 return false;
             } else {
                 return true;
@@ -34,6 +34,7 @@ import org.apache.jackrabbit.oak.plugins.observation.ChangeSet;
 public class ChangeSetFilterImpl implements ChangeSetFilter {
 
     private final Set<String> rootIncludePaths;
+    private final Set<String> includeGlobPaths;
     private final Set<Pattern> includePathPatterns;
     private final Set<Pattern> excludePathPatterns;
     private final Set<String> parentNodeNames;
@@ -49,6 +50,7 @@ public class ChangeSetFilterImpl implements ChangeSetFilter {
             @Nullable Set<String> additionalIncludedParentPaths, Set<String> excludedParentPaths,
             Set<String> parentNodeNames, Set<String> parentNodeTypes, Set<String> propertyNames) {
         this.rootIncludePaths = new HashSet<String>();
+        this.includeGlobPaths = new HashSet<String>();
         this.includePathPatterns = new HashSet<Pattern>();
         for (String aRawIncludePath : includedParentPaths) {
             final String aGlobbingIncludePath;
@@ -59,11 +61,13 @@ public class ChangeSetFilterImpl implements ChangeSetFilter {
                 aGlobbingIncludePath = !isDeep ? aRawIncludePath : concat(aRawIncludePath, "**");
             }
             this.rootIncludePaths.add(aRawIncludePath);
+            this.includeGlobPaths.add(aGlobbingIncludePath);
             this.includePathPatterns.add(asPattern(aGlobbingIncludePath));
         }
         if (additionalIncludedParentPaths != null) {
             for (String path : additionalIncludedParentPaths) {
                 this.rootIncludePaths.add(path);
+                this.includeGlobPaths.add(path);
                 this.includePathPatterns.add(asPattern(path));
             }
         }
@@ -81,6 +85,34 @@ public class ChangeSetFilterImpl implements ChangeSetFilter {
         return rootIncludePaths;
     }
 
+    /**
+     * @return the include paths as passed to
+     *         {@link GlobbingPathHelper#globPathAsRegex(String)}, that is with
+     *         {@code **} appended to non glob paths if deep.
+     */
+    Set<String> getIncludeGlobPaths() {
+        return includeGlobPaths;
+    }
+
+    boolean hasExcludePaths() {
+        return !excludePathPatterns.isEmpty();
+    }
+
+    @Nullable
+    Set<String> getParentNodeNames() {
+        return parentNodeNames;
+    }
+
+    @Nullable
+    Set<String> getParentNodeTypes() {
+        return parentNodeTypes;
+    }
+
+    @Nullable
+    Set<String> getPropertyNames() {
+        return propertyNames;
+    }
+
     private Pattern asPattern(String patternWithGlobs) {
         return Pattern.compile(GlobbingPathHelper.globPathAsRegex(patternWithGlobs));
     }
@@ -0,0 +1,461 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.observation.filter;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newHashMap;
+import static com.google.common.collect.Sets.newIdentityHashSet;
+import static org.apache.jackrabbit.oak.commons.PathUtils.elements;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.jackrabbit.oak.plugins.observation.ChangeSet;
+
+/**
+ * A routing index over the {@link ChangeSetFilterImpl prefilters} of many
+ * listeners. Instead of evaluating the prefilters one after each other against
+ * a {@link ChangeSet}, the index determines the prefilters not excluding a
+ * change set (the candidates) in a single pass over its parent paths, node
+ * types, property names and node names:
+ * <ul>
+ * <li>Include paths are kept in a map of exact paths and in a trie of path
+ * elements. Deep include paths are attached to the trie node of their path,
+ * other glob paths to the trie node of their literal prefix. For a parent
+ * path only the trie nodes along that path are visited and only the glob
+ * paths attached to those nodes are matched.</li>
+ * <li>Node types, property names and node names are kept in inverted indexes
+ * from each name to the prefilters constrained by it.</li>
+ * </ul>
+ * The candidates of the most recent change sets are cached, such that the
+ * prefilters of all listeners share a single evaluation per change set.
+ * Prefilters with exclude paths are evaluated on their own once they are a
+ * candidate. Change sets with an overflown set of paths or names are not
+ * routed through the index either.
+ */
+public class ChangeSetFilterIndex {
+
+    /**
+     * Maximum number of change sets for which the candidates are cached.
+     */
+    private static final int CACHE_SIZE =
+            Integer.getInteger("oak.observation.prefilterIndexCacheSize", 16);
+
+    /**
+     * Characters with a special meaning in a regular expression. Non glob
+     * paths are used as a regular expression as is (see
+     * {@link GlobbingPathHelper#globPathAsRegex(String)}), so they can only be
+     * looked up as exact path if they don't contain any of these.
+     */
+    private static final String REGEX_CHARS = "\\.[]{}()<>*+-=!?^$|";
+
+    private final Set<IndexedFilter> filters = newIdentityHashSet();
+
+    private final Cache<ChangeSet, Routing> routings = CacheBuilder.newBuilder()
+            .weakKeys()
+            .maximumSize(CACHE_SIZE)
+            .build();
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * The index of all current {@link #filters}, or {@code null} if it
+     * needs to be rebuilt.
+     */
+    private volatile Index index;
+
+    /**
+     * Add a prefilter to this index.
+     *
+     * @param filter  the prefilter
+     * @return  a prefilter equivalent to {@code filter}, which is evaluated
+     *          through this index. It must be passed to {@link #remove(ChangeSetFilter)}
+     *          once no longer used.
+     */
+    @Nonnull
+    public ChangeSetFilter add(@Nonnull ChangeSetFilterImpl filter) {
+        IndexedFilter indexed = new IndexedFilter(checkNotNull(filter));
+        synchronized (this) {
+            filters.add(indexed);
+            index = null;
+        }
+        return indexed;
+    }
+
+    /**
+     * Remove a prefilter previously returned by {@link #add(ChangeSetFilterImpl)}.
+     * Does nothing if not contained in this index.
+     *
+     * @param filter  the prefilter
+     */
+    public synchronized void remove(@Nonnull ChangeSetFilter filter) {
+        if (filters.remove(filter)) {
+            index = null;
+        }
+    }
+
+    /**
+     * @return the number of prefilters in this index
+     */
+    public synchronized int size() {
+        return filters.size();
+    }
+
+    /**
+     * @return the number of evaluations for which the candidates of the
+     *         change set were already cached.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return the number of evaluations for which the candidates had to be
+     *         determined, or for which the prefilter was evaluated on its own.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeSetFilterIndex{filters=" + size() + ", hits=" + hitCount
+                + ", misses=" + missCount + "}";
+    }
+
+    private boolean excludes(IndexedFilter filter, ChangeSet changeSet) {
+        if (changeSet.getParentPaths() == null || changeSet.getParentNodeNames() == null
+                || changeSet.getParentNodeTypes() == null || changeSet.getPropertyNames() == null) {
+            filter.missCount.incrementAndGet();
+            missCount.incrementAndGet();
+            return filter.filter.excludes(changeSet);
+        }
+
+        Index index = getIndex();
+        if (!index.filters.contains(filter)) {
+            // concurrently removed
+            filter.missCount.incrementAndGet();
+            missCount.incrementAndGet();
+            return filter.filter.excludes(changeSet);
+        }
+
+        Routing routing = routings.getIfPresent(changeSet);
+        if (routing == null || routing.index != index) {
+            // determining the candidates concurrently on multiple threads is
+            // not a problem, the last one simply wins
+            routing = new Routing(index, index.route(changeSet));
+            routings.put(changeSet, routing);
+            filter.missCount.incrementAndGet();
+            missCount.incrementAndGet();
+        } else {
+            filter.hitCount.incrementAndGet();
+            hitCount.incrementAndGet();
+        }
+
+        if (!routing.candidates.contains(filter)) {
+            return true;
+        }
+        // the index doesn't consider exclude paths
+        return filter.filter.hasExcludePaths() && filter.filter.excludes(changeSet);
+    }
+
+    @Nonnull
+    private Index getIndex() {
+        Index i = index;
+        if (i == null) {
+            synchronized (this) {
+                i = index;
+                if (i == null) {
+                    i = new Index(filters);
+                    index = i;
+                }
+            }
+        }
+        return i;
+    }
+
+    private static boolean isLiteral(String path) {
+        for (int i = 0; i < path.length(); i++) {
+            if (REGEX_CHARS.indexOf(path.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static <K> void put(Map<K, List<IndexedFilter>> map, K key, IndexedFilter filter) {
+        List<IndexedFilter> list = map.get(key);
+        if (list == null) {
+            list = newArrayList();
+            map.put(key, list);
+        }
+        list.add(filter);
+    }
+
+    private static void addAll(Set<IndexedFilter> target, Collection<IndexedFilter> filters) {
+        if (filters != null) {
+            target.addAll(filters);
+        }
+    }
+
+    /**
+     * A prefilter evaluated through this index.
+     */
+    public final class IndexedFilter implements ChangeSetFilter {
+
+        private final ChangeSetFilterImpl filter;
+
+        private final AtomicLong hitCount = new AtomicLong();
+
+        private final AtomicLong missCount = new AtomicLong();
+
+        IndexedFilter(ChangeSetFilterImpl filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        public boolean excludes(ChangeSet changeSet) {
+            return ChangeSetFilterIndex.this.excludes(this, changeSet);
+        }
+
+        /**
+         * @return the prefilter evaluated through the index
+         */
+        @Nonnull
+        public ChangeSetFilterImpl getFilter() {
+            return filter;
+        }
+
+        /**
+         * @see FilterConfigMBean#getPrefilterIndexHitCount()
+         */
+        long getHitCount() {
+            return hitCount.get();
+        }
+
+        /**
+         * @see FilterConfigMBean#getPrefilterIndexMissCount()
+         */
+        long getMissCount() {
+            return missCount.get();
+        }
+
+        @Override
+        public String toString() {
+            return "IndexedFilter{" + filter + "}";
+        }
+    }
+
+    /**
+     * The candidates of a change set.
+     */
+    private static final class Routing {
+
+        final Index index;
+
+        final Set<IndexedFilter> candidates;
+
+        Routing(Index index, Set<IndexedFilter> candidates) {
+            this.index = index;
+            this.candidates = candidates;
+        }
+    }
+
+    /**
+     * Immutable index of a set of prefilters.
+     */
+    private static final class Index {
+
+        final Set<IndexedFilter> filters = newIdentityHashSet();
+
+        final Map<String, List<IndexedFilter>> exactPaths = newHashMap();
+
+        final PathNode root = new PathNode();
+
+        final NameIndex propertyNames = new NameIndex();
+
+        final NameIndex nodeTypes = new NameIndex();
+
+        final NameIndex nodeNames = new NameIndex();
+
+        Index(Set<IndexedFilter> filters) {
+            this.filters.addAll(filters);
+            for (IndexedFilter filter : filters) {
+                ChangeSetFilterImpl f = filter.filter;
+                for (String path : f.getRootIncludePaths()) {
+                    put(exactPaths, path, filter);
+                }
+                for (String path : f.getIncludeGlobPaths()) {
+                    addIncludePath(filter, path);
+                }
+                propertyNames.add(filter, f.getPropertyNames());
+                nodeTypes.add(filter, f.getParentNodeTypes());
+                nodeNames.add(filter, f.getParentNodeNames());
+            }
+        }
+
+        private void addIncludePath(IndexedFilter filter, String path) {
+            if (!path.contains("*")) {
+                if (isLiteral(path)) {
+                    put(exactPaths, path, filter);
+                } else {
+                    root.addPattern(filter, path);
+                }
+                return;
+            }
+
+            PathNode node = root;
+            if (path.startsWith("/")) {
+                List<String> names = newArrayList(elements(path));
+                int k = 0;
+                while (k < names.size() && !names.get(k).contains("*")) {
+                    node = node.getOrAddChild(names.get(k++));
+                }
+                if (k == names.size() - 1 && "**".equals(names.get(k)) && !path.endsWith("/")) {
+                    // matches the path of the node and all its descendants
+                    node.deep.add(filter);
+                    return;
+                }
+            }
+            node.addPattern(filter, path);
+        }
+
+        /**
+         * Determine the candidates for a change set without overflown sets.
+         */
+        @Nonnull
+        Set<IndexedFilter> route(ChangeSet changeSet) {
+            Set<IndexedFilter> candidates = newIdentityHashSet();
+            for (String path : changeSet.getParentPaths()) {
+                addAll(candidates, exactPaths.get(path));
+                PathNode node = root;
+                node.collect(path, candidates);
+                for (String name : elements(path)) {
+                    node = node.children.get(name);
+                    if (node == null) {
+                        break;
+                    }
+                    node.collect(path, candidates);
+                }
+            }
+
+            if (!candidates.isEmpty()) {
+                propertyNames.retain(candidates, changeSet.getPropertyNames());
+                nodeTypes.retain(candidates, changeSet.getParentNodeTypes());
+                nodeNames.retain(candidates, changeSet.getParentNodeNames());
+            }
+            return candidates;
+        }
+    }
+
+    /**
+     * A node of the include path trie.
+     */
+    private static final class PathNode {
+
+        final Map<String, PathNode> children = newHashMap();
+
+        /**
+         * Filters including this path and all paths below.
+         */
+        final List<IndexedFilter> deep = newArrayList();
+
+        /**
+         * Filters with a glob path starting with this path.
+         */
+        final Map<Pattern, List<IndexedFilter>> patterns = newHashMap();
+
+        PathNode getOrAddChild(String name) {
+            PathNode child = children.get(name);
+            if (child == null) {
+                child = new PathNode();
+                children.put(name, child);
+            }
+            return child;
+        }
+
+        void addPattern(IndexedFilter filter, String path) {
+            // Pattern doesn't implement equals, hence the same pattern
+            // is only shared by identical paths of a single filter
+            put(patterns, Pattern.compile(GlobbingPathHelper.globPathAsRegex(path)), filter);
+        }
+
+        void collect(String path, Set<IndexedFilter> candidates) {
+            candidates.addAll(deep);
+            for (Map.Entry<Pattern, List<IndexedFilter>> e : patterns.entrySet()) {
+                if (!candidates.containsAll(e.getValue())
+                        && e.getKey().matcher(path).matches()) {
+                    candidates.addAll(e.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Inverted index from names to the filters constrained by them.
+     */
+    private static final class NameIndex {
+
+        final Map<String, List<IndexedFilter>> filters = newHashMap();
+
+        final Set<IndexedFilter> constrained = newIdentityHashSet();
+
+        void add(IndexedFilter filter, Set<String> names) {
+            if (names == null || names.isEmpty()) {
+                return;
+            }
+            constrained.add(filter);
+            for (String name : names) {
+                put(filters, name, filter);
+            }
+        }
+
+        /**
+         * Remove the candidates constrained by names of which none is
+         * contained in {@code names}.
+         */
+        void retain(Set<IndexedFilter> candidates, Set<String> names) {
+            if (constrained.isEmpty()) {
+                return;
+            }
+            Set<IndexedFilter> matching = newIdentityHashSet();
+            for (String name : names) {
+                addAll(matching, filters.get(name));
+            }
+            for (Iterator<IndexedFilter> it = candidates.iterator(); it.hasNext(); ) {
+                IndexedFilter filter = it.next();
+                if (constrained.contains(filter) && !matching.contains(filter)) {
+                    it.remove();
+                }
+            }
+        }
+    }
+}
@@ -457,6 +457,22 @@ public final class FilterBuilder {
             public boolean isIncludeClusterExternal() {
                 return FilterBuilder.this.includeClusterExternal;
             }
+
+            @Override
+            public long getPrefilterIndexHitCount() {
+                ChangeSetFilter filter = FilterBuilder.this.changeSetFilter;
+                return filter instanceof ChangeSetFilterIndex.IndexedFilter
+                        ? ((ChangeSetFilterIndex.IndexedFilter) filter).getHitCount()
+                        : 0;
+            }
+
+            @Override
+            public long getPrefilterIndexMissCount() {
+                ChangeSetFilter filter = FilterBuilder.this.changeSetFilter;
+                return filter instanceof ChangeSetFilterIndex.IndexedFilter
+                        ? ((ChangeSetFilterIndex.IndexedFilter) filter).getMissCount()
+                        : 0;
+            }
         };
     }
 
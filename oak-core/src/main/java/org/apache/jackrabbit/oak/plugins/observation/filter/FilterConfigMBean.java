@@ -42,4 +42,24 @@ public interface FilterConfigMBean {
      * @return true if cluster external changes need to be included
      */
     boolean isIncludeClusterExternal();
+
+    /**
+     * Number of change sets for which the prefilter of this filter could use
+     * the candidate listeners already determined by the shared prefilter
+     * index.
+     *
+     * @return the number of hits, or 0 if the prefilter is not indexed
+     * @see ChangeSetFilterIndex
+     */
+    long getPrefilterIndexHitCount();
+
+    /**
+     * Number of change sets for which the prefilter of this filter had to
+     * determine the candidate listeners through the shared prefilter index,
+     * or had to evaluate on its own.
+     *
+     * @return the number of misses, or 0 if the prefilter is not indexed
+     * @see ChangeSetFilterIndex
+     */
+    long getPrefilterIndexMissCount();
 }
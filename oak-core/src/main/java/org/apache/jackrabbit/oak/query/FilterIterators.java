@@ -13,13 +13,29 @@
  */
 package org.apache.jackrabbit.oak.query;
 
+import static org.apache.jackrabbit.oak.commons.sort.EscapeUtils.escapeLineBreak;
+import static org.apache.jackrabbit.oak.commons.sort.EscapeUtils.unescapeLineBreaks;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.Iterators;
+import com.google.common.io.Files;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -74,6 +90,13 @@ public class FilterIterators {
     public static <K> Iterator<K> newCombinedFilter(
             Iterator<K> it, boolean distinct, long limit, long offset, 
             Comparator<K> orderBy, QueryEngineSettings settings) {
+        return newCombinedFilter(it, distinct, limit, offset, orderBy, null, settings);
+    }
+
+    public static <K> Iterator<K> newCombinedFilter(
+            Iterator<K> it, boolean distinct, long limit, long offset, 
+            Comparator<K> orderBy, EntrySerializer<K> serializer, 
+            QueryEngineSettings settings) {
         if (distinct) {
             it = FilterIterators.newDistinct(it, settings);
         }
@@ -82,7 +105,7 @@ public class FilterIterators {
             int max = (int) Math.min(Integer.MAX_VALUE, 
                     Math.min(Integer.MAX_VALUE, offset) + 
                     Math.min(Integer.MAX_VALUE, limit));
-            it = FilterIterators.newSort(it, orderBy, max, settings);
+            it = FilterIterators.newSort(it, orderBy, serializer, max, settings);
         }
         if (offset != 0) {
             it = FilterIterators.newOffset(it, offset);
@@ -93,6 +116,24 @@ public class FilterIterators {
         return it;
     }
     
+    /**
+     * Close the iterator if it holds resources, for example the temporary
+     * files of a sort that spilled to disk. Iterators returned by
+     * {@link #newCombinedFilter} should be closed if they are not read until
+     * the end.
+     * 
+     * @param it the iterator
+     */
+    public static void close(Iterator<?> it) {
+        if (it instanceof Closeable) {
+            try {
+                ((Closeable) it).close();
+            } catch (IOException e) {
+                LOG.warn("Could not close iterator", e);
+            }
+        }
+    }
+
     public static <K> DistinctIterator<K> newDistinct(Iterator<K> it, QueryEngineSettings settings) {
         return new DistinctIterator<K>(it, settings);
     }
@@ -106,7 +147,39 @@ public class FilterIterators {
     }
     
     public static <K> Iterator<K> newSort(Iterator<K> it, Comparator<K> orderBy, int max, QueryEngineSettings settings) {
-        return new SortIterator<K>(it, orderBy, max, settings);
+        return newSort(it, orderBy, null, max, settings);
+    }
+
+    public static <K> Iterator<K> newSort(Iterator<K> it, Comparator<K> orderBy, 
+            EntrySerializer<K> serializer, int max, QueryEngineSettings settings) {
+        return new SortIterator<K>(it, orderBy, serializer, max, settings);
+    }
+
+    /**
+     * Converts entries to a single line of text and back, so that they can be
+     * written to temporary files while sorting.
+     * 
+     * @param <K> the entry type
+     */
+    public interface EntrySerializer<K> {
+
+        /**
+         * Serialize an entry.
+         * 
+         * @param entry the entry
+         * @return the serialized entry, or null if the entry can not be
+         *         serialized
+         */
+        String serialize(K entry);
+
+        /**
+         * Deserialize an entry.
+         * 
+         * @param line the serialized entry
+         * @return the entry
+         */
+        K deserialize(String line);
+
     }
 
     /**
@@ -177,20 +250,59 @@ public class FilterIterators {
      * An iterator that returns entries in sorted order. The internal list of
      * sorted entries can be limited to a given number of entries, and the
      * entries are only read when needed (on demand).
+     * <p>
+     * If an {@link EntrySerializer} is available and
+     * {@link QueryEngineSettings#isSortSpillToDisk()} is enabled, entries
+     * exceeding the in-memory limit are not rejected. Instead, the sorted
+     * entries are written to a temporary file (a run) and the runs are merged
+     * when reading the result.
+     * <p>
+     * The runs are deleted once the result was read, when the iterator is
+     * closed, or (if neither happened) after the iterator is no longer
+     * reachable. The last case is detected when the next run is written.
      * 
      * @param <K> the entry type
      */
-    static class SortIterator<K> implements Iterator<K> {
+    static class SortIterator<K> implements Iterator<K>, Closeable {
+
+        /**
+         * The maximum number of runs that are merged at once.
+         */
+        static final int MAX_RUNS = 1024;
+
+        /**
+         * The run files of sort iterators that became unreachable without
+         * being read until the end or closed.
+         */
+        private static final ReferenceQueue<Object> ABANDONED = 
+                new ReferenceQueue<Object>();
+
+        /**
+         * The run files of all sort iterators that still have runs on disk.
+         * This keeps the references reachable until they are enqueued.
+         */
+        private static final Set<RunFiles> PENDING = 
+                Collections.newSetFromMap(new ConcurrentHashMap<RunFiles, Boolean>());
 
         private final Iterator<K> source;
         private final QueryEngineSettings settings;
         private final Comparator<K> orderBy;
+        private final EntrySerializer<K> serializer;
+        private final List<File> runs = new ArrayList<File>();
+        private final List<RunIterator> openRuns = new ArrayList<RunIterator>();
+        private RunFiles runFiles;
         private Iterator<K> result;
         private final int max;
 
         SortIterator(Iterator<K> source, Comparator<K> orderBy, int max, QueryEngineSettings settings) {
+            this(source, orderBy, null, max, settings);
+        }
+
+        SortIterator(Iterator<K> source, Comparator<K> orderBy, EntrySerializer<K> serializer, 
+                int max, QueryEngineSettings settings) {
             this.source = source;
             this.orderBy = orderBy;
+            this.serializer = serializer;
             this.max = max;
             this.settings = settings;
         }
@@ -203,7 +315,11 @@ public class FilterIterators {
             while (source.hasNext()) {
                 K x = source.next();
                 list.add(x);
-                checkMemoryLimit(list.size(), settings);
+                if (list.size() > settings.getLimitInMemory() && canSpill()) {
+                    spill(list);
+                } else {
+                    checkMemoryLimit(list.size(), settings);
+                }
                 // from time to time, sort and truncate
                 // this should need less than O(n*log(3*keep)) operations,
                 // which is close to the optimum O(n*log(keep))
@@ -215,9 +331,135 @@ public class FilterIterators {
             }
             Collections.sort(list, orderBy);
             keepFirst(list, max);
-            result = list.iterator();
+            if (runs.isEmpty()) {
+                result = list.iterator();
+            } else {
+                LOG.debug("Merging {} sorted runs", runs.size());
+                List<Iterator<K>> iterators = openRuns();
+                iterators.add(list.iterator());
+                result = newLimit(Iterators.mergeSorted(iterators, orderBy), max);
+            }
         }
-        
+
+        private boolean canSpill() {
+            return serializer != null && settings.isSortSpillToDisk();
+        }
+
+        /**
+         * Sort the list, write the first entries to a new run, and clear the
+         * list.
+         * 
+         * @param list the list
+         * @throws UnsupportedOperationException if an entry can not be
+         *             serialized
+         */
+        private void spill(ArrayList<K> list) {
+            int size = list.size();
+            Collections.sort(list, orderBy);
+            keepFirst(list, max);
+            File run = writeRun(list.iterator());
+            if (run == null) {
+                // the entries have to be kept in memory, and
+                // there are more than the limit (before truncating)
+                checkMemoryLimit(size, settings);
+                return;
+            }
+            runs.add(run);
+            list.clear();
+            if (runs.size() >= MAX_RUNS) {
+                // merge the runs, to limit the number of open files
+                File merged = writeRun(newLimit(
+                        Iterators.mergeSorted(openRuns(), orderBy), max));
+                closeRuns();
+                runs.add(merged);
+            }
+        }
+
+        /**
+         * Write the entries to a new temporary file.
+         * 
+         * @param it the entries, in sorted order
+         * @return the file, or null if an entry can not be serialized
+         */
+        private File writeRun(Iterator<K> it) {
+            deleteAbandonedRuns();
+            if (runFiles == null) {
+                runFiles = new RunFiles(this);
+                PENDING.add(runFiles);
+            }
+            File file = null;
+            boolean success = false;
+            try {
+                file = File.createTempFile("oak-query-sort-", ".txt");
+                runFiles.add(file);
+                BufferedWriter w = Files.newWriter(file, Charsets.UTF_8);
+                try {
+                    while (it.hasNext()) {
+                        String line = serializer.serialize(it.next());
+                        if (line == null) {
+                            return null;
+                        }
+                        w.write(escapeLineBreak(line));
+                        w.newLine();
+                    }
+                } finally {
+                    w.close();
+                }
+                LOG.debug("Sorted run written to {}", file);
+                success = true;
+                return file;
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not write sorted run", e);
+            } finally {
+                if (file != null && !success) {
+                    runFiles.delete(file);
+                }
+            }
+        }
+
+        /**
+         * Delete the runs of sort iterators that are no longer reachable.
+         */
+        private static void deleteAbandonedRuns() {
+            while (true) {
+                RunFiles files = (RunFiles) ABANDONED.poll();
+                if (files == null) {
+                    break;
+                }
+                LOG.debug("Deleting sorted runs of an abandoned query result");
+                files.deleteAll();
+                PENDING.remove(files);
+            }
+        }
+
+        /**
+         * Open all runs for reading. The runs are removed from the list of
+         * runs, and the files are deleted once read or closed.
+         * 
+         * @return the iterators over the runs
+         */
+        private List<Iterator<K>> openRuns() {
+            List<Iterator<K>> iterators = new ArrayList<Iterator<K>>();
+            for (File f : runs) {
+                RunIterator it = new RunIterator(f);
+                openRuns.add(it);
+                iterators.add(it);
+            }
+            runs.clear();
+            return iterators;
+        }
+
+        /**
+         * Close all open runs and delete the files, also if not all entries
+         * were read (because of the limit).
+         */
+        private void closeRuns() {
+            for (RunIterator it : openRuns) {
+                it.close();
+            }
+            openRuns.clear();
+        }
+
         /**
          * Truncate a list.
          * 
@@ -235,7 +477,11 @@ public class FilterIterators {
         @Override
         public boolean hasNext() {
             init();
-            return result.hasNext();
+            boolean hasNext = result.hasNext();
+            if (!hasNext) {
+                close();
+            }
+            return hasNext;
         }
 
         @Override
@@ -248,6 +494,123 @@ public class FilterIterators {
         public void remove() {
             throw new UnsupportedOperationException();
         }
+
+        /**
+         * Delete all runs. Afterwards, the iterator is empty.
+         */
+        @Override
+        public void close() {
+            closeRuns();
+            runs.clear();
+            if (runFiles != null) {
+                runFiles.deleteAll();
+                runFiles.clear();
+                PENDING.remove(runFiles);
+                runFiles = null;
+            }
+            result = Collections.<K>emptyList().iterator();
+        }
+
+        /**
+         * The run files of a sort iterator. This does not reference the
+         * iterator itself, so that the files can be deleted after the iterator
+         * is no longer reachable.
+         */
+        private static class RunFiles extends WeakReference<Object> {
+
+            private final Set<File> files = new HashSet<File>();
+
+            RunFiles(Object sortIterator) {
+                super(sortIterator, ABANDONED);
+            }
+
+            synchronized void add(File file) {
+                files.add(file);
+            }
+
+            synchronized void delete(File file) {
+                files.remove(file);
+                file.delete();
+            }
+
+            synchronized void deleteAll() {
+                for (File f : files) {
+                    f.delete();
+                }
+                files.clear();
+            }
+
+        }
+
+        /**
+         * An iterator over the entries of a run. The file is opened on demand,
+         * and deleted after the last entry was read.
+         */
+        private class RunIterator implements Iterator<K> {
+
+            private final RunFiles files = runFiles;
+            private final File file;
+            private BufferedReader reader;
+            private String line;
+            private boolean end;
+
+            RunIterator(File file) {
+                this.file = file;
+            }
+
+            private void fetchNext() {
+                if (end || line != null) {
+                    return;
+                }
+                try {
+                    if (reader == null) {
+                        reader = Files.newReader(file, Charsets.UTF_8);
+                    }
+                    line = reader.readLine();
+                    if (line == null) {
+                        close();
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException("Could not read sorted run " + file, e);
+                }
+            }
+
+            void close() {
+                end = true;
+                line = null;
+                if (reader != null) {
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        LOG.warn("Could not close sorted run " + file, e);
+                    }
+                    reader = null;
+                }
+                files.delete(file);
+            }
+
+            @Override
+            public boolean hasNext() {
+                fetchNext();
+                return !end;
+            }
+
+            @Override
+            public K next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String l = line;
+                line = null;
+                return serializer.deserialize(unescapeLineBreaks(l));
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+        }
         
     }
     
@@ -257,7 +620,7 @@ public class FilterIterators {
      * 
      * @param <K> the entry type
      */
-    static class OffsetIterator<K> implements Iterator<K> {
+    static class OffsetIterator<K> implements Iterator<K>, Closeable {
 
         private final Iterator<K> source;
         private final long offset;
@@ -294,6 +657,11 @@ public class FilterIterators {
         public void remove() {
             throw new UnsupportedOperationException();
         }
+
+        @Override
+        public void close() {
+            FilterIterators.close(source);
+        }
         
     }
     
@@ -303,7 +671,7 @@ public class FilterIterators {
      * 
      * @param <K> the entry type
      */
-    static class LimitIterator<K> implements Iterator<K> {
+    static class LimitIterator<K> implements Iterator<K>, Closeable {
 
         private final Iterator<K> source;
         private final long limit;
@@ -316,7 +684,12 @@ public class FilterIterators {
         
         @Override
         public boolean hasNext() {
-            return count < limit && source.hasNext();
+            if (count >= limit) {
+                // the remaining entries are not needed
+                close();
+                return false;
+            }
+            return source.hasNext();
         }
 
         @Override
@@ -332,6 +705,11 @@ public class FilterIterators {
         public void remove() {
             throw new UnsupportedOperationException();
         }
+
+        @Override
+        public void close() {
+            FilterIterators.close(source);
+        }
         
     }
 
@@ -49,6 +49,10 @@ public class QueryEngineSettings implements QueryEngineSettingsMBean {
     private static final boolean DEFAULT_FAIL_TRAVERSAL =
             Boolean.getBoolean(OAK_QUERY_FAIL_TRAVERSAL);
 
+    static final String OAK_QUERY_SORT_SPILL_TO_DISK = "oak.querySortSpillToDisk";
+    private static final boolean DEFAULT_SORT_SPILL_TO_DISK =
+            Boolean.getBoolean(OAK_QUERY_SORT_SPILL_TO_DISK);
+
     private static final boolean DEFAULT_FULL_TEXT_COMPARISON_WITHOUT_INDEX =
             Boolean.getBoolean("oak.queryFullTextComparisonWithoutIndex");
     
@@ -57,6 +61,8 @@ public class QueryEngineSettings implements QueryEngineSettingsMBean {
     private long limitReads = DEFAULT_QUERY_LIMIT_READS;
     
     private boolean failTraversal = DEFAULT_FAIL_TRAVERSAL;
+
+    private boolean sortSpillToDisk = DEFAULT_SORT_SPILL_TO_DISK;
     
     private boolean fullTextComparisonWithoutIndex = 
             DEFAULT_FULL_TEXT_COMPARISON_WITHOUT_INDEX;
@@ -101,6 +107,20 @@ public class QueryEngineSettings implements QueryEngineSettingsMBean {
         this.failTraversal = failTraversal;
     }
 
+    /**
+     * Whether sorting spills to temporary files instead of failing once
+     * the {@link #getLimitInMemory() in memory limit} is reached.
+     *
+     * @return true if sorting spills to disk
+     */
+    public boolean isSortSpillToDisk() {
+        return sortSpillToDisk;
+    }
+
+    public void setSortSpillToDisk(boolean sortSpillToDisk) {
+        this.sortSpillToDisk = sortSpillToDisk;
+    }
+
     @Override
     public boolean isFastQuerySize() {
         return fastQuerySize;
@@ -130,6 +150,7 @@ public class QueryEngineSettings implements QueryEngineSettingsMBean {
                 "limitInMemory=" + limitInMemory +
                 ", limitReads=" + limitReads +
                 ", failTraversal=" + failTraversal +
+                ", sortSpillToDisk=" + sortSpillToDisk +
                 ", fullTextComparisonWithoutIndex=" + fullTextComparisonWithoutIndex +
                 ", sql2Optimisation=" + sql2Optimisation +
                 ", fastQuerySize=" + fastQuerySize +
@@ -526,7 +526,8 @@ public class QueryImpl implements Query {
             orderBy = ResultRowImpl.getComparator(orderings);
         }
         Iterator<ResultRowImpl> it =
-                FilterIterators.newCombinedFilter(rowIt, distinct, limit, offset, orderBy, settings);
+                FilterIterators.newCombinedFilter(rowIt, distinct, limit, offset, orderBy, 
+                        ResultRowImpl.getSerializer(), settings);
         if (orderBy != null) {
             // this will force the rows to be read, so that the size is known
             it.hasNext();
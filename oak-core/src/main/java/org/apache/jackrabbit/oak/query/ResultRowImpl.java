@@ -16,13 +16,20 @@
  */
 package org.apache.jackrabbit.oak.query;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
+
+import javax.jcr.PropertyType;
 
 import org.apache.jackrabbit.JcrConstants;
 import org.apache.jackrabbit.oak.api.PropertyValue;
 import org.apache.jackrabbit.oak.api.ResultRow;
 import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.plugins.memory.PropertyStates;
+import org.apache.jackrabbit.oak.plugins.value.Conversions;
 import org.apache.jackrabbit.oak.query.ast.ColumnImpl;
 import org.apache.jackrabbit.oak.query.ast.OrderingImpl;
 import org.apache.jackrabbit.oak.query.fulltext.SimpleExcerptProvider;
@@ -264,4 +271,190 @@ public class ResultRowImpl implements ResultRow {
 
     }
 
-}
\ No newline at end of file
+    /**
+     * Get a serializer that converts rows to text, so that they can be written
+     * to disk while sorting. Rows that contain binary values can not be
+     * serialized. The trees of the rows are not serialized, but read again
+     * (by path) when deserializing. The serializer keeps track of the queries
+     * of the rows, so rows have to be deserialized using the same instance.
+     * 
+     * @return a new serializer
+     */
+    static FilterIterators.EntrySerializer<ResultRowImpl> getSerializer() {
+        return new RowSerializer();
+    }
+
+    /**
+     * Serializes rows as a sequence of tokens. Each token is a number followed
+     * by ':'. For strings, the number is the length of the string, and the
+     * string follows the ':'. A negative length means null.
+     */
+    private static class RowSerializer implements FilterIterators.EntrySerializer<ResultRowImpl> {
+
+        private final List<Query> queries = new ArrayList<Query>();
+
+        @Override
+        public String serialize(ResultRowImpl row) {
+            StringBuilder buff = new StringBuilder();
+            writeInt(buff, getQueryIndex(row.query));
+            writeInt(buff, row.trees.length);
+            for (Tree t : row.trees) {
+                writeString(buff, t == null ? null : t.getPath());
+            }
+            if (!writeValues(buff, row.values)) {
+                return null;
+            }
+            if (row.distinctValues == null) {
+                writeInt(buff, -1);
+            } else {
+                writeInt(buff, row.distinctValues.length);
+                for (boolean b : row.distinctValues) {
+                    writeInt(buff, b ? 1 : 0);
+                }
+            }
+            if (!writeValues(buff, row.orderValues)) {
+                return null;
+            }
+            return buff.toString();
+        }
+
+        @Override
+        public ResultRowImpl deserialize(String line) {
+            int[] pos = new int[1];
+            Query query = queries.get(readInt(line, pos));
+            Tree[] trees = new Tree[readInt(line, pos)];
+            for (int i = 0; i < trees.length; i++) {
+                String path = readString(line, pos);
+                trees[i] = path == null ? null : query.getTree(path);
+            }
+            PropertyValue[] values = readValues(line, pos);
+            boolean[] distinctValues = null;
+            int distinctCount = readInt(line, pos);
+            if (distinctCount >= 0) {
+                distinctValues = new boolean[distinctCount];
+                for (int i = 0; i < distinctCount; i++) {
+                    distinctValues[i] = readInt(line, pos) != 0;
+                }
+            }
+            PropertyValue[] orderValues = readValues(line, pos);
+            return new ResultRowImpl(query, trees, values, distinctValues, orderValues);
+        }
+
+        private int getQueryIndex(Query query) {
+            for (int i = 0; i < queries.size(); i++) {
+                if (queries.get(i) == query) {
+                    return i;
+                }
+            }
+            queries.add(query);
+            return queries.size() - 1;
+        }
+
+        private static boolean writeValues(StringBuilder buff, PropertyValue[] values) {
+            if (values == null) {
+                writeInt(buff, -1);
+                return true;
+            }
+            writeInt(buff, values.length);
+            for (PropertyValue v : values) {
+                if (v == null) {
+                    writeInt(buff, -1);
+                    continue;
+                }
+                Type<?> type = v.getType();
+                if (type.tag() == PropertyType.BINARY) {
+                    return false;
+                }
+                writeInt(buff, type.tag());
+                writeInt(buff, type.isArray() ? 1 : 0);
+                writeInt(buff, v.count());
+                for (String s : v.getValue(Type.STRINGS)) {
+                    writeString(buff, s);
+                }
+            }
+            return true;
+        }
+
+        private static PropertyValue[] readValues(String line, int[] pos) {
+            int count = readInt(line, pos);
+            if (count < 0) {
+                return null;
+            }
+            PropertyValue[] values = new PropertyValue[count];
+            for (int i = 0; i < count; i++) {
+                int tag = readInt(line, pos);
+                if (tag < 0) {
+                    continue;
+                }
+                boolean array = readInt(line, pos) != 0;
+                List<String> strings = new ArrayList<String>();
+                for (int j = readInt(line, pos); j > 0; j--) {
+                    strings.add(readString(line, pos));
+                }
+                if (array) {
+                    values[i] = PropertyValues.create(PropertyStates.createProperty(
+                            "", convert(strings, tag), Type.fromTag(tag, true)));
+                } else {
+                    values[i] = PropertyValues.create(PropertyStates.createProperty(
+                            "", strings.get(0), tag));
+                }
+            }
+            return values;
+        }
+
+        private static List<?> convert(List<String> strings, int tag) {
+            List<Object> list = new ArrayList<Object>(strings.size());
+            for (String s : strings) {
+                switch (tag) {
+                case PropertyType.LONG:
+                    list.add(Conversions.convert(s).toLong());
+                    break;
+                case PropertyType.DOUBLE:
+                    list.add(Conversions.convert(s).toDouble());
+                    break;
+                case PropertyType.BOOLEAN:
+                    list.add(Conversions.convert(s).toBoolean());
+                    break;
+                case PropertyType.DECIMAL:
+                    list.add(Conversions.convert(s).toDecimal());
+                    break;
+                default:
+                    list.add(s);
+                }
+            }
+            return list;
+        }
+
+        private static void writeInt(StringBuilder buff, int x) {
+            buff.append(x).append(':');
+        }
+
+        private static void writeString(StringBuilder buff, String s) {
+            if (s == null) {
+                writeInt(buff, -1);
+            } else {
+                writeInt(buff, s.length());
+                buff.append(s);
+            }
+        }
+
+        private static int readInt(String line, int[] pos) {
+            int end = line.indexOf(':', pos[0]);
+            int x = Integer.parseInt(line.substring(pos[0], end));
+            pos[0] = end + 1;
+            return x;
+        }
+
+        private static String readString(String line, int[] pos) {
+            int len = readInt(line, pos);
+            if (len < 0) {
+                return null;
+            }
+            String s = line.substring(pos[0], pos[0] + len);
+            pos[0] += len;
+            return s;
+        }
+
+    }
+
+}
@@ -313,7 +313,8 @@ public class UnionQueryImpl implements Query {
                     limit, offset, null, settings);
         } else {
             it = FilterIterators
-            .newCombinedFilter(Iterators.concat(leftIter, rightIter), distinct, limit, offset, orderBy, settings);
+            .newCombinedFilter(Iterators.concat(leftIter, rightIter), distinct, limit, offset, orderBy,
+                    ResultRowImpl.getSerializer(), settings);
         }
 
         if (measure) {
@@ -26,11 +26,13 @@ import static com.google.common.collect.Iterables.size;
 import static com.google.common.collect.Queues.newArrayBlockingQueue;
 
 import java.io.Closeable;
+import java.io.File;
 import java.lang.Thread.UncaughtExceptionHandler;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -53,6 +55,14 @@ import org.slf4j.LoggerFactory;
  * the background observer thread has yet to process are optionally
  * (see {@code alwaysCollapseExternalEvents} and {@code oak.observation.alwaysCollapseExternal})
  * automatically merged to just one change.
+ * <p>
+ * Optionally, content changes not fitting into the change queue any more are
+ * spilled to a file in a given directory instead (see {@link ChangeQueueSpill}).
+ * The commit context of spilled changes is written with a given
+ * {@link CommitContextCodec}.
+ * The observer then catches up with these changes one after each other and
+ * changes are only merged once {@link #MAX_SPILL_QUEUE_LENGTH} changes
+ * have been spilled.
  */
 public class BackgroundObserver implements Observer, Closeable {
 
@@ -61,6 +71,12 @@ public class BackgroundObserver implements Observer, Closeable {
      */
     private static final ContentChange STOP = new ContentChange(null, null);
 
+    /**
+     * Maximum number of content changes spilled to disk.
+     */
+    static final int MAX_SPILL_QUEUE_LENGTH =
+            Integer.getInteger("oak.observation.maxSpillQueueLength", 100000);
+
     /**
      * The receiving observer being notified off the background thread.
      */
@@ -81,6 +97,13 @@ public class BackgroundObserver implements Observer, Closeable {
      */
     private final BlockingQueue<ContentChange> queue;
 
+    /**
+     * The changes not fitting into the {@link #queue} or {@code null} if
+     * spilling is disabled.
+     */
+    @Nullable
+    private final ChangeQueueSpill spill;
+
     /**
      * The max queue length used for this observer's queue
      */
@@ -95,10 +118,14 @@ public class BackgroundObserver implements Observer, Closeable {
     private static class ContentChange {
         private final NodeState root;
         private final CommitInfo info;
-        private final long created = System.currentTimeMillis();
+        private final long created;
         ContentChange(NodeState root, CommitInfo info) {
+            this(root, info, System.currentTimeMillis());
+        }
+        ContentChange(NodeState root, CommitInfo info, long created) {
             this.root = root;
             this.info = info;
+            this.created = created;
         }
     }
 
@@ -129,9 +156,17 @@ public class BackgroundObserver implements Observer, Closeable {
             public Void call() throws Exception {
                 try {
                     ContentChange change = queue.poll();
+                    if (change == null && spill != null) {
+                        // the spilled changes are newer than the changes
+                        // in the queue, see contentChanged()
+                        ChangeQueueSpill.Change spilled = spill.poll();
+                        if (spilled != null) {
+                            change = new ContentChange(spilled.root, spilled.info, spilled.created);
+                        }
+                    }
                     if (change != null && change != STOP) {
                         observer.contentChanged(change.root, change.info);
-                        removed(queue.size(), change.created);
+                        removed(getQueueSize(), change.created);
                         currentTask.onComplete(completionHandler);
                     }
                 } catch (Throwable t) {
@@ -148,28 +183,75 @@ public class BackgroundObserver implements Observer, Closeable {
         }
     };
 
+    /**
+     * {@code true} while a task writing the spilled changes is scheduled
+     */
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    /**
+     * Writes the spilled changes to disk on the background thread, off the
+     * thread calling {@link #contentChanged(NodeState, CommitInfo)}.
+     */
+    private final Runnable spillFlush = new Runnable() {
+        @Override
+        public void run() {
+            flushScheduled.set(false);
+            try {
+                spill.flush();
+            } catch (Throwable t) {
+                exceptionHandler.uncaughtException(Thread.currentThread(), t);
+            }
+        }
+    };
+
     /**
      * {@code true} after this observer has been stopped
      */
     private volatile boolean stopped;
 
+    /**
+     * @param observer          the observer to forward content changes to
+     * @param executor          executor for the background thread
+     * @param queueLength       length of the in memory change queue
+     * @param spillDirectory    directory for spilling content changes not
+     *                          fitting into the change queue, or {@code null}
+     *                          to merge them instead
+     * @param codec             codec for the commit context of spilled changes,
+     *                          or {@code null} to drop it
+     * @param exceptionHandler  handler for exceptions on the background thread
+     */
     public BackgroundObserver(
             @Nonnull Observer observer,
             @Nonnull Executor executor,
             int queueLength,
+            @Nullable File spillDirectory,
+            @Nullable CommitContextCodec codec,
             @Nonnull UncaughtExceptionHandler exceptionHandler) {
         this.observer = checkNotNull(observer);
         this.executor = checkNotNull(executor);
         this.exceptionHandler = checkNotNull(exceptionHandler);
         this.maxQueueLength = queueLength;
         this.queue = newArrayBlockingQueue(maxQueueLength);
+        this.spill = spillDirectory == null
+                ? null
+                : new ChangeQueueSpill(spillDirectory, MAX_SPILL_QUEUE_LENGTH, codec);
+    }
+
+    public BackgroundObserver(
+            @Nonnull Observer observer,
+            @Nonnull Executor executor,
+            int queueLength,
+            @Nonnull UncaughtExceptionHandler exceptionHandler) {
+        this(observer, executor, queueLength, null, null, exceptionHandler);
     }
 
     public BackgroundObserver(
             @Nonnull final Observer observer,
             @Nonnull Executor executor,
-            int queueLength) {
-        this(observer, executor, queueLength, new UncaughtExceptionHandler() {
+            int queueLength,
+            @Nullable File spillDirectory,
+            @Nullable CommitContextCodec codec) {
+        this(observer, executor, queueLength, spillDirectory, codec, new UncaughtExceptionHandler() {
             @Override
             public void uncaughtException(Thread t, Throwable e) {
                 getLogger(observer).error("Uncaught exception in " + observer, e);
@@ -177,6 +259,13 @@ public class BackgroundObserver implements Observer, Closeable {
         });
     }
 
+    public BackgroundObserver(
+            @Nonnull final Observer observer,
+            @Nonnull Executor executor,
+            int queueLength) {
+        this(observer, executor, queueLength, null, null);
+    }
+
     public BackgroundObserver(
             @Nonnull Observer observer,
             @Nonnull Executor executor) {
@@ -185,14 +274,15 @@ public class BackgroundObserver implements Observer, Closeable {
 
     /**
      * Called when ever an item has been added to the queue
-     * @param queueSize  size of the queue
+     * @param queueSize  size of the queue, including spilled items
      */
     protected void added(int queueSize) { }
 
     /**
      * Called when ever an item has been removed from the queue.
      *
-     * @param queueSize the size of the queue after the item was removed.
+     * @param queueSize the size of the queue after the item was removed,
+     *                  including spilled items.
      * @param created the time in milliseconds when the removed item was put
      *                into the queue.
      */
@@ -220,6 +310,9 @@ public class BackgroundObserver implements Observer, Closeable {
     public synchronized void close() {
         queue.clear();
         queue.add(STOP);
+        if (spill != null) {
+            spill.close();
+        }
         stopped = true;
     }
 
@@ -233,7 +326,7 @@ public class BackgroundObserver implements Observer, Closeable {
 
             @Override
             public int getQueueSize() {
-                return queue.size();
+                return BackgroundObserver.this.getQueueSize();
             }
 
             @Override
@@ -248,7 +341,7 @@ public class BackgroundObserver implements Observer, Closeable {
                     public boolean apply(ContentChange input) {
                         return input.info != null;
                     }
-                }));
+                })) + (spill == null ? 0 : spill.size() - spill.getExternalCount());
             }
 
             @Override
@@ -258,7 +351,26 @@ public class BackgroundObserver implements Observer, Closeable {
                     public boolean apply(ContentChange input) {
                         return input.info == null;
                     }
-                }));
+                })) + (spill == null ? 0 : spill.getExternalCount());
+            }
+
+            @Override
+            public int getSpillQueueSize() {
+                return spill == null ? 0 : spill.size();
+            }
+
+            @Override
+            public long getSpillBytes() {
+                return spill == null ? 0 : spill.getBytes();
+            }
+
+            @Override
+            public long getLag() {
+                ContentChange first = queue.peek();
+                long created = first != null && first != STOP
+                        ? first.created
+                        : spill == null ? -1 : spill.getFirstCreated();
+                return created < 0 ? 0 : System.currentTimeMillis() - created;
             }
         };
     }
@@ -273,7 +385,9 @@ public class BackgroundObserver implements Observer, Closeable {
         checkState(!stopped);
         checkNotNull(root);
 
-        if (alwaysCollapseExternalEvents && info == null && last != null && last.info == null) {
+        boolean spilling = spill != null && !spill.isEmpty();
+        if (alwaysCollapseExternalEvents && info == null && last != null && last.info == null
+                && !spilling) {
             // This is an external change. If the previous change was
             // also external, we can drop it from the queue (since external
             // changes in any case can cover multiple commits) to help
@@ -293,8 +407,17 @@ public class BackgroundObserver implements Observer, Closeable {
         }
 
         // Try to add this change to the queue without blocking, and
-        // mark the queue as full if there wasn't enough space
-        full = !queue.offer(change);
+        // mark the queue as full if there wasn't enough space. Once
+        // spilling, changes must go to the spill until the background
+        // thread consumed all spilled changes. These are only consumed
+        // once the queue is empty.
+        full = spilling || !queue.offer(change);
+        if (full && spill != null) {
+            full = !spill.add(change.root, change.info, change.created);
+            if (spill.needsFlush() && flushScheduled.compareAndSet(false, true)) {
+                executor.execute(spillFlush);
+            }
+        }
 
         if (!full) {
             // Keep track of the last change added, so we can do the
@@ -306,11 +429,15 @@ public class BackgroundObserver implements Observer, Closeable {
         // to onComplete are not a problem here since we always pass the same value.
         // Thus there is no question as to which of the handlers will effectively run.
         currentTask.onComplete(completionHandler);
-        added(queue.size());
+        added(getQueueSize());
     }
 
     //------------------------------------------------------------< internal >---
 
+    private int getQueueSize() {
+        return queue.size() + (spill == null ? 0 : spill.size());
+    }
+
     private static Logger getLogger(@Nonnull Observer observer) {
         return LoggerFactory.getLogger(checkNotNull(observer).getClass());
     }
@@ -322,15 +449,16 @@ public class BackgroundObserver implements Observer, Closeable {
         long done = System.currentTimeMillis() + unit.toMillis(timeout);
         boolean added;
         synchronized(this) {
-            added = queue.offer(STOP);
+            added = (spill == null || spill.isEmpty()) && queue.offer(STOP);
             currentTask.onComplete(completionHandler);
         }
         while(done > System.currentTimeMillis()) {
             synchronized(this) {
                 if (!added) {
-                    added = queue.offer(STOP);
+                    added = (spill == null || spill.isEmpty()) && queue.offer(STOP);
                 }
-                if (queue.size() == 0 || (queue.size() == 1 && queue.peek() == STOP)) {
+                boolean spillEmpty = spill == null || spill.isEmpty();
+                if (spillEmpty && (queue.size() == 0 || (queue.size() == 1 && queue.peek() == STOP))) {
                     return true;
                 }
                 wait(1);
@@ -31,4 +31,21 @@ public interface BackgroundObserverMBean {
     int getExternalEventCount();
 
     String getClassName();
+
+    /**
+     * @return the number of queued changes spilled to disk. These are
+     *         included in {@link #getQueueSize()}.
+     */
+    int getSpillQueueSize();
+
+    /**
+     * @return the number of bytes used on disk by the spilled changes
+     */
+    long getSpillBytes();
+
+    /**
+     * @return the time in milliseconds the oldest queued change has been
+     *         waiting, or 0 if the queue is empty
+     */
+    long getLag();
 }
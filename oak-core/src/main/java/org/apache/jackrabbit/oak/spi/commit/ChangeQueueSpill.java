@@ -0,0 +1,439 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.spi.commit;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Maps.newHashMap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The tail of the change queue of a {@link BackgroundObserver}, which doesn't
+ * fit into its in memory queue any more. The commit information of these
+ * changes is written to a local file, such that a slow observer can catch up
+ * with them one after each other instead of having them merged into a single
+ * large external change.
+ * <p>
+ * {@link #add(NodeState, CommitInfo, long)} only queues a change, it is
+ * called by the committing thread. The commit info is written to the file by
+ * {@link #flush()}, which is expected to be called by another thread. Until
+ * then the commit info is kept in memory and is delivered from there if the
+ * change is consumed before.
+ * <p>
+ * The root states of the changes are kept in memory, as they can't be
+ * serialized in general. With a persistent node store these are mere
+ * references to persisted revisions. Of the {@link CommitInfo#getInfo() info}
+ * map only values of type {@code String}, {@code Boolean}, {@code Integer}
+ * and {@code Long} are written, and the {@link CommitContext} if a
+ * {@link CommitContextCodec} is given. Other entries are dropped, which e.g.
+ * disables prefiltering of such changes.
+ * <p>
+ * The file is deleted whenever all spilled changes have been consumed.
+ * Failing to write or read the file turns the affected changes into external
+ * changes.
+ */
+final class ChangeQueueSpill implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChangeQueueSpill.class);
+
+    private static final byte STRING = 0;
+    private static final byte BOOLEAN = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte COMMIT_CONTEXT = 4;
+
+    /**
+     * A change read back from this spill.
+     */
+    static final class Change {
+
+        @Nonnull
+        final NodeState root;
+
+        @CheckForNull
+        final CommitInfo info;
+
+        final long created;
+
+        Change(@Nonnull NodeState root, @Nullable CommitInfo info, long created) {
+            this.root = root;
+            this.info = info;
+            this.created = created;
+        }
+    }
+
+    /**
+     * A spilled change. Its commit info is either still in memory, or in the
+     * file at {@code position}, or was dropped if neither.
+     */
+    private static final class Entry {
+
+        final NodeState root;
+
+        final long created;
+
+        CommitInfo info;
+
+        long position = -1;
+
+        Entry(NodeState root, CommitInfo info, long created) {
+            this.root = root;
+            this.info = info;
+            this.created = created;
+        }
+    }
+
+    @Nonnull
+    private final File directory;
+
+    private final int maxSize;
+
+    @Nullable
+    private final CommitContextCodec codec;
+
+    /**
+     * Guards the file. Acquired before the monitor of this spill, which
+     * guards the entries and is never held while accessing the file.
+     */
+    private final Object fileLock = new Object();
+
+    private final Deque<Entry> entries = new ArrayDeque<Entry>();
+
+    /**
+     * The entries with a commit info not yet written, in order.
+     */
+    private final Deque<Entry> unwritten = new ArrayDeque<Entry>();
+
+    private File file;
+
+    private RandomAccessFile access;
+
+    private volatile long writePosition;
+
+    private int externalCount;
+
+    /**
+     * @param directory  the directory for the spill file
+     * @param maxSize    maximum number of changes in this spill
+     * @param codec      the codec for the commit context of the changes,
+     *                   or {@code null} to drop the commit context
+     */
+    ChangeQueueSpill(@Nonnull File directory, int maxSize, @Nullable CommitContextCodec codec) {
+        checkArgument(maxSize > 0);
+        this.directory = checkNotNull(directory);
+        this.maxSize = maxSize;
+        this.codec = codec;
+    }
+
+    /**
+     * Add a change to the end of this spill. The commit info is written by
+     * the next call to {@link #flush()}.
+     *
+     * @return {@code false} if this spill is full
+     */
+    synchronized boolean add(@Nonnull NodeState root, @Nullable CommitInfo info, long created) {
+        if (entries.size() >= maxSize) {
+            return false;
+        }
+        Entry entry = new Entry(root, info, created);
+        if (info == null) {
+            externalCount++;
+        } else {
+            unwritten.addLast(entry);
+        }
+        entries.addLast(entry);
+        return true;
+    }
+
+    /**
+     * @return  {@code true} if there are commit infos to write
+     */
+    synchronized boolean needsFlush() {
+        return !unwritten.isEmpty();
+    }
+
+    /**
+     * Write the commit infos of the changes added so far to the file.
+     */
+    void flush() {
+        synchronized (fileLock) {
+            while (true) {
+                Entry entry;
+                synchronized (this) {
+                    entry = unwritten.peekFirst();
+                }
+                if (entry == null) {
+                    return;
+                }
+                long position = -1;
+                try {
+                    position = write(entry.info);
+                } catch (IOException e) {
+                    LOG.warn("Failed to write commit info to " + file
+                            + ". Queuing the change as external change", e);
+                }
+                synchronized (this) {
+                    // entries are only removed while holding the file lock
+                    unwritten.pollFirst();
+                    entry.info = null;
+                    entry.position = position;
+                    if (position < 0) {
+                        externalCount++;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove the first change from this spill.
+     *
+     * @return the change or {@code null} if empty
+     */
+    @CheckForNull
+    Change poll() {
+        synchronized (fileLock) {
+            Entry entry;
+            boolean empty;
+            CommitInfo info;
+            synchronized (this) {
+                entry = entries.pollFirst();
+                if (entry == null) {
+                    return null;
+                }
+                info = entry.info;
+                if (info != null) {
+                    // not yet written
+                    unwritten.pollFirst();
+                } else if (entry.position < 0) {
+                    externalCount--;
+                }
+                empty = entries.isEmpty();
+            }
+            if (info == null && entry.position >= 0) {
+                info = read(entry.position);
+            }
+            if (empty) {
+                // all changes added in the meantime are not yet written
+                deleteFile();
+            }
+            return new Change(entry.root, info, entry.created);
+        }
+    }
+
+    synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return  the number of changes without commit info
+     */
+    synchronized int getExternalCount() {
+        return externalCount;
+    }
+
+    /**
+     * @return  the number of bytes used by the commit infos in the file
+     */
+    long getBytes() {
+        return writePosition;
+    }
+
+    /**
+     * @return  the time in milliseconds the first change was added to the
+     *          change queue, or {@code -1} if empty
+     */
+    synchronized long getFirstCreated() {
+        Entry entry = entries.peekFirst();
+        return entry == null ? -1 : entry.created;
+    }
+
+    /**
+     * Remove all changes and delete the spill file.
+     */
+    @Override
+    public void close() {
+        synchronized (fileLock) {
+            synchronized (this) {
+                entries.clear();
+                unwritten.clear();
+                externalCount = 0;
+            }
+            deleteFile();
+        }
+    }
+
+    //------------------------------------------------------------< internal >---
+
+    private long write(CommitInfo info) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, info.getSessionId());
+        writeString(out, info.getUserId());
+        out.writeLong(info.getDate());
+        for (Map.Entry<String, Object> e : info.getInfo().entrySet()) {
+            writeEntry(out, e.getKey(), e.getValue());
+        }
+        out.writeByte(-1);
+        out.flush();
+
+        if (access == null) {
+            file = File.createTempFile("oak-observation-queue-", ".tmp", directory);
+            access = new RandomAccessFile(file, "rw");
+        }
+        long position = writePosition;
+        access.seek(position);
+        access.writeInt(bytes.size());
+        access.write(bytes.toByteArray());
+        writePosition = access.getFilePointer();
+        return position;
+    }
+
+    @CheckForNull
+    private CommitInfo read(long position) {
+        try {
+            access.seek(position);
+            byte[] bytes = new byte[access.readInt()];
+            access.readFully(bytes);
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            String sessionId = readString(in);
+            String userId = readString(in);
+            long date = in.readLong();
+            Map<String, Object> info = newHashMap();
+            for (byte type = in.readByte(); type >= 0; type = in.readByte()) {
+                String key = readString(in);
+                Object value = readValue(in, type);
+                if (value != null) {
+                    info.put(key, value);
+                }
+            }
+            return new CommitInfo(sessionId, userId, info, date);
+        } catch (IOException e) {
+            LOG.warn("Failed to read commit info from " + file
+                    + ". Delivering the change as external change", e);
+            return null;
+        }
+    }
+
+    private void deleteFile() {
+        writePosition = 0;
+        if (access != null) {
+            try {
+                access.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close " + file, e);
+            }
+            access = null;
+        }
+        if (file != null) {
+            if (!file.delete()) {
+                LOG.warn("Failed to delete {}", file);
+            }
+            file = null;
+        }
+    }
+
+    private void writeEntry(DataOutput out, String key, Object value) throws IOException {
+        if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, key);
+            writeString(out, (String) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            writeString(out, key);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            writeString(out, key);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            writeString(out, key);
+            out.writeLong((Long) value);
+        } else if (value instanceof CommitContext && codec != null) {
+            out.writeByte(COMMIT_CONTEXT);
+            writeString(out, key);
+            codec.write(out, (CommitContext) value);
+        }
+    }
+
+    @CheckForNull
+    private Object readValue(DataInput in, byte type) throws IOException {
+        switch (type) {
+            case STRING:
+                return readString(in);
+            case BOOLEAN:
+                return in.readBoolean();
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case COMMIT_CONTEXT:
+                if (codec == null) {
+                    throw new IOException("No codec for the commit context");
+                }
+                return codec.read(in);
+            default:
+                throw new IOException("Unknown value type " + type);
+        }
+    }
+
+    /**
+     * Unlike {@link DataOutput#writeUTF(String)} not limited to 64k bytes.
+     */
+    private static void writeString(DataOutput out, String s) throws IOException {
+        byte[] bytes = s.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.spi.commit;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * Writes and reads the {@link CommitContext} of a commit info, for
+ * {@link BackgroundObserver}s spilling their change queue to disk. The
+ * entries of a commit context are arbitrary objects, so an implementation
+ * decides which of them can be written. Entries which are not written are
+ * missing in the commit context read back.
+ */
+public interface CommitContextCodec {
+
+    /**
+     * Write the given commit context.
+     *
+     * @param out the output to write to
+     * @param context the commit context
+     */
+    void write(@Nonnull DataOutput out, @Nonnull CommitContext context) throws IOException;
+
+    /**
+     * Read a commit context written by {@link #write(DataOutput, CommitContext)}.
+     *
+     * @param in the input to read from
+     * @return the commit context, or {@code null} if none of its entries
+     *          were written
+     */
+    @CheckForNull
+    CommitContext read(@Nonnull DataInput in) throws IOException;
+}
@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.spi.state;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A {@link NodeStore} that can load a set of subtrees in bulk, ahead of a
+ * traversal that would otherwise read the nodes one by one from the backend.
+ */
+public interface Prefetchable {
+
+    /**
+     * Hint that the nodes at the given paths and their descendants up to the
+     * given depth are about to be read. An implementation may load these
+     * nodes into its caches. This method does not change what a read
+     * returns, and may do nothing at all.
+     *
+     * @param paths the absolute paths of the subtree roots.
+     * @param depth the depth of the subtrees to prefetch relative to the
+     *              given paths. With {@code 0} only the nodes at the given
+     *              paths are prefetched.
+     */
+    void prefetch(@Nonnull Iterable<String> paths, int depth);
+}
@@ -85,6 +85,33 @@ public class DataStoreTextWriterTest {
         assertEquals(ExtractionResult.ERROR, w2.getText("/a", new IdBlob("foo", "b")).getExtractionResult());
     }
 
+    @Test
+    public void emptyAndErrorBlobsPersistedWhenMarked() throws Exception{
+        DataStoreTextWriter w = new DataStoreTextWriter(temporaryFolder.getRoot(), false);
+        w.markEmpty("a");
+        w.markError("b");
+        w.markError("b");
+
+        // not closed, as after a crash
+        DataStoreTextWriter w2 = new DataStoreTextWriter(temporaryFolder.getRoot(), true);
+        assertEquals(ExtractionResult.EMPTY, w2.getText("/a", new IdBlob("foo", "a")).getExtractionResult());
+        assertEquals(ExtractionResult.ERROR, w2.getText("/a", new IdBlob("foo", "b")).getExtractionResult());
+        assertEquals(1, w2.getErrorBlobsHolder().get().size());
+    }
+
+    @Test
+    public void overwriteText() throws Exception{
+        File writerDir = temporaryFolder.newFolder();
+        DataStoreTextWriter w = new DataStoreTextWriter(writerDir, false);
+        String id = "abcdef0123456789";
+        w.write(id, "foo");
+        w.write(id, "bar");
+        assertEquals("bar", w.getText("/a", new IdBlob("foo", id)).getExtractedText());
+
+        File dir = new File(writerDir, "ab/cd/ef");
+        assertEquals(1, dir.list().length);
+    }
+
     @Test
     public void nonExistingEntry() throws Exception{
         File fdsDir = temporaryFolder.newFolder();
@@ -1038,6 +1038,91 @@ public class BasicDocumentStoreTest extends AbstractDocumentStoreTest {
         assertNull(ds.getIfCached(Collection.NODES, id));
     }
 
+    @Test
+    public void findAndUpdateMultipleNonExisting() throws Exception {
+        List<UpdateOp> updates = Lists.newArrayList();
+        for (String path : new String[]{"/foo", "/bar", "/baz"}) {
+            String id = Utils.getIdFromPath(path);
+            removeMe.add(id);
+            updates.add(updateDocument(path, "value"));
+        }
+
+        List<NodeDocument> results = ds.findAndUpdate(Collection.NODES, updates);
+
+        assertEquals(updates.size(), results.size());
+        for (int i = 0; i < updates.size(); i++) {
+            assertNull(results.get(i));
+            // must not create the document
+            assertNull(ds.find(Collection.NODES, updates.get(i).getId()));
+        }
+    }
+
+    @Test
+    public void findAndUpdateMultipleWithConditions() throws Exception {
+        List<UpdateOp> docs = Lists.newArrayList();
+        docs.add(newDocument("/foo", 100));
+        removeMe.add(Utils.getIdFromPath("/foo"));
+        docs.add(newDocument("/bar", 200));
+        removeMe.add(Utils.getIdFromPath("/bar"));
+        docs.add(newDocument("/baz", 300));
+        removeMe.add(Utils.getIdFromPath("/baz"));
+        ds.create(Collection.NODES, docs);
+
+        List<UpdateOp> updates = Lists.newArrayList();
+        updates.add(updateDocument("/foo", "value", 100)); // matches
+        updates.add(updateDocument("/bar", "value", 300)); // modified differs
+        updates.add(updateDocument("/baz", "value", 300)); // matches
+
+        List<NodeDocument> results = ds.findAndUpdate(Collection.NODES, updates);
+
+        assertEquals(3, results.size());
+        assertNotNull(results.get(0));
+        assertNull(results.get(0).get("prop"));
+        assertNull(results.get(1));
+        assertNotNull(results.get(2));
+        assertNull(results.get(2).get("prop"));
+
+        ds.invalidateCache();
+        assertEquals("value", ds.find(Collection.NODES, Utils.getIdFromPath("/foo")).get("prop"));
+        assertNull(ds.find(Collection.NODES, Utils.getIdFromPath("/bar")).get("prop"));
+        assertEquals("value", ds.find(Collection.NODES, Utils.getIdFromPath("/baz")).get("prop"));
+    }
+
+    @Test
+    public void findAndUpdateMultipleMixed() throws Exception {
+        List<UpdateOp> docs = Lists.newArrayList();
+        docs.add(newDocument("/foo", 100));
+        removeMe.add(Utils.getIdFromPath("/foo"));
+        docs.add(newDocument("/bar", 200));
+        removeMe.add(Utils.getIdFromPath("/bar"));
+        ds.create(Collection.NODES, docs);
+        removeMe.add(Utils.getIdFromPath("/qux"));
+
+        List<UpdateOp> updates = Lists.newArrayList();
+        updates.add(updateDocument("/foo", "a")); // unconditional
+        updates.add(updateDocument("/qux", "a")); // does not exist
+        updates.add(updateDocument("/bar", "a", 100)); // modified differs
+        updates.add(updateDocument("/bar", "b", 200)); // matches
+        updates.add(updateDocument("/foo", "b")); // second update on /foo
+
+        List<NodeDocument> results = ds.findAndUpdate(Collection.NODES, updates);
+
+        assertEquals(5, results.size());
+        assertNotNull(results.get(0));
+        assertNull(results.get(0).get("prop"));
+        assertNull(results.get(1));
+        assertNull(results.get(2));
+        assertNotNull(results.get(3));
+        assertNull(results.get(3).get("prop"));
+        assertNotNull(results.get(4));
+        assertEquals("a", results.get(4).get("prop"));
+
+        ds.invalidateCache();
+        assertEquals("b", ds.find(Collection.NODES, Utils.getIdFromPath("/foo")).get("prop"));
+        assertEquals("b", ds.find(Collection.NODES, Utils.getIdFromPath("/bar")).get("prop"));
+        assertNull(ds.find(Collection.NODES, Utils.getIdFromPath("/qux")));
+    }
+
     private UpdateOp newDocument(String path, long modified) {
         String id = Utils.getIdFromPath(path);
         UpdateOp op = new UpdateOp(id, true);
@@ -1045,6 +1130,18 @@ public class BasicDocumentStoreTest extends AbstractDocumentStoreTest {
         return op;
     }
 
+    private UpdateOp updateDocument(String path, String value) {
+        UpdateOp op = new UpdateOp(Utils.getIdFromPath(path), false);
+        op.set("prop", value);
+        return op;
+    }
+
+    private UpdateOp updateDocument(String path, String value, long modified) {
+        UpdateOp op = updateDocument(path, value);
+        op.equals(NodeDocument.MODIFIED_IN_SECS, modified);
+        return op;
+    }
+
     private void removeDocument(Map<String, Map<Key, Condition>> toRemove,
                                 String path,
                                 long modified) {
@@ -46,6 +46,7 @@ import static com.google.common.collect.Sets.union;
 import static java.util.Collections.synchronizedList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 /**
@@ -130,8 +131,59 @@ public class CommitQueueTest {
 
     @Test
     public void concurrentCommits2() throws Exception {
+        concurrentCommits(new CommitQueue(DummyRevisionContext.INSTANCE));
+    }
+
+    @Test
+    public void concurrentCommitsBatched() throws Exception {
+        CommitQueue queue = new CommitQueue(DummyRevisionContext.INSTANCE);
+        queue.setBatchCommits(true);
+        concurrentCommits(queue);
+    }
+
+    @Test
+    public void batchedCallbackFailure() throws Exception {
         final CommitQueue queue = new CommitQueue(DummyRevisionContext.INSTANCE);
+        queue.setBatchCommits(true);
+        final Revision r1 = queue.createRevision();
+        final Revision r2 = queue.createRevision();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    queue.done(r2, new CommitQueue.Callback() {
+                        @Override
+                        public void headOfQueue(@Nonnull Revision revision) {
+                            throw new IllegalStateException("failure");
+                        }
+                    });
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            }
+        });
+        t.start();
+        // r2 must not be processed before r1
+        t.join(100);
+        assertTrue(t.isAlive());
+
+        final AtomicBoolean processed = new AtomicBoolean();
+        queue.done(r1, new CommitQueue.Callback() {
+            @Override
+            public void headOfQueue(@Nonnull Revision revision) {
+                processed.set(true);
+            }
+        });
+        t.join(3000);
+        assertFalse(t.isAlive());
+        assertTrue(processed.get());
+        // failure must be propagated to the thread owning the commit
+        assertTrue(failure.get() instanceof IllegalStateException);
+        assertFalse(queue.contains(r2));
+    }
 
+    private void concurrentCommits(final CommitQueue queue) throws Exception {
         final CommitQueue.Callback c = new CommitQueue.Callback() {
             private Revision before = Revision.newRevision(1);
 
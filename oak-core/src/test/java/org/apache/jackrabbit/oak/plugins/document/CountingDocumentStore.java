@@ -40,6 +40,7 @@ public class CountingDocumentStore implements DocumentStore, RevisionListener {
         private int numQueryCalls;
         private int numRemoveCalls;
         private int numCreateOrUpdateCalls;
+        private int numFindAndUpdateCalls;
 
     }
 
@@ -69,6 +70,10 @@ public class CountingDocumentStore implements DocumentStore, RevisionListener {
         return getStats(collection).numCreateOrUpdateCalls;
     }
 
+    public int getNumFindAndUpdateCalls(Collection collection) {
+        return getStats(collection).numFindAndUpdateCalls;
+    }
+
     private Stats getStats(Collection collection) {
         if (!collectionStats.containsKey(collection)) {
             Stats s = new Stats();
@@ -192,6 +197,13 @@ public class CountingDocumentStore implements DocumentStore, RevisionListener {
         return delegate.findAndUpdate(collection, update);
     }
 
+    @Override
+    public <T extends Document> List<T> findAndUpdate(Collection<T> collection,
+                                                      List<UpdateOp> updateOps) {
+        getStats(collection).numFindAndUpdateCalls++;
+        return delegate.findAndUpdate(collection, updateOps);
+    }
+
     @Override
     public CacheInvalidationStats invalidateCache() {
         return delegate.invalidateCache();
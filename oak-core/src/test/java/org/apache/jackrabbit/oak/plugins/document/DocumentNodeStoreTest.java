@@ -319,6 +319,75 @@ public class DocumentNodeStoreTest {
                 doc.get(NodeDocument.DELETED_ONCE));
     }
 
+    @Test
+    public void rollbackWithConcurrentlyModifiedDocument() throws Exception {
+        final String rootId = Utils.getIdFromPath("/");
+        final AtomicBoolean failCommitRoot = new AtomicBoolean();
+        final AtomicReference<String> modifiedId = new AtomicReference<String>();
+        DocumentStore docStore = new MemoryDocumentStore() {
+            @Override
+            public <T extends Document> T findAndUpdate(Collection<T> collection,
+                                                        UpdateOp update) {
+                if (rootId.equals(update.getId())
+                        && failCommitRoot.compareAndSet(true, false)) {
+                    throw new DocumentStoreException("communication failure");
+                }
+                return super.findAndUpdate(collection, update);
+            }
+
+            @Override
+            public <T extends Document> List<T> findAndUpdate(Collection<T> collection,
+                                                              List<UpdateOp> updateOps) {
+                if (updateOps.size() > 1
+                        && modifiedId.compareAndSet(null, updateOps.get(1).getId())) {
+                    // apply the first update while another writer modifies
+                    // the second document and fail like a store that cannot
+                    // tell which of the updates were applied
+                    super.findAndUpdate(collection, updateOps.get(0));
+                    UpdateOp concurrent = new UpdateOp(modifiedId.get(), false);
+                    concurrent.set("concurrent", "value");
+                    super.findAndUpdate(collection, concurrent);
+                    throw new DocumentStoreException("Unable to determine which " +
+                            "of the bulk updates were applied");
+                }
+                return super.findAndUpdate(collection, updateOps);
+            }
+        };
+        DocumentNodeStore ns = builderProvider.newBuilder()
+                .setDocumentStore(docStore).setAsyncDelay(0).getNodeStore();
+
+        List<String> names = Lists.newArrayList("foo", "bar", "baz");
+        failCommitRoot.set(true);
+        Commit c = ns.newCommit(ns.getHeadRevision(), null);
+        Revision r = c.getRevision();
+        try {
+            for (String name : names) {
+                c.addNode(new DocumentNodeState(ns, "/" + name, c.getBaseRevision()));
+            }
+            c.apply();
+            fail("commit must fail");
+        } catch (DocumentStoreException e) {
+            // expected
+        } finally {
+            ns.canceled(c);
+        }
+        assertNotNull(modifiedId.get());
+
+        for (String name : names) {
+            NodeDocument doc = docStore.find(NODES, Utils.getIdFromPath("/" + name));
+            assertNotNull(doc);
+            assertTrue(doc.wasDeletedOnce());
+            assertFalse(doc.getLocalDeleted().containsKey(r));
+            assertFalse(doc.getLocalCommitRoot().containsKey(r));
+        }
+        NodeDocument modified = docStore.find(NODES, modifiedId.get());
+        assertNotNull(modified);
+        assertEquals("value", modified.get("concurrent"));
+        for (String name : names) {
+            assertFalse(ns.getRoot().hasChildNode(name));
+        }
+    }
+
     // OAK-1662
     @Test
     public void getNewestRevision() throws Exception {
@@ -2839,6 +2908,45 @@ public class DocumentNodeStoreTest {
         assertFalse(finds.contains(Utils.getIdFromPath("/node-1/bar")));
     }
 
+    @Test
+    public void prefetch() throws Exception {
+        MemoryDocumentStore docStore = new MemoryDocumentStore();
+        DocumentNodeStore ns1 = builderProvider.newBuilder().setClusterId(1)
+                .setAsyncDelay(0).setDocumentStore(docStore).getNodeStore();
+        NodeBuilder builder = ns1.getRoot().builder();
+        NodeBuilder a = builder.child("a");
+        for (int i = 0; i < 10; i++) {
+            NodeBuilder b = a.child("b" + i);
+            for (int j = 0; j < 5; j++) {
+                b.child("c" + j).setProperty("p", j);
+            }
+        }
+        merge(ns1, builder);
+        ns1.dispose();
+
+        CountingDocumentStore store = new CountingDocumentStore(docStore);
+        DocumentNodeStore ns2 = builderProvider.newBuilder().setClusterId(1)
+                .setAsyncDelay(0).setDocumentStore(store).getNodeStore();
+        store.resetCounters();
+        ns2.prefetch(Collections.singletonList("/a"), 2);
+        // one query per level
+        assertEquals(2, store.getNumQueryCalls(NODES));
+
+        // reading the prefetched subtree must not hit the document store
+        store.resetCounters();
+        int count = 0;
+        NodeState root = ns2.getRoot();
+        for (ChildNodeEntry b : root.getChildNode("a").getChildNodeEntries()) {
+            for (ChildNodeEntry c : b.getNodeState().getChildNodeEntries()) {
+                assertTrue(c.getNodeState().hasProperty("p"));
+                count++;
+            }
+        }
+        assertEquals(50, count);
+        assertEquals(0, store.getNumFindCalls(NODES));
+        assertEquals(0, store.getNumQueryCalls(NODES));
+    }
+
     private static class TestException extends RuntimeException {
 
     }
@@ -125,6 +125,12 @@ public class DocumentStoreWrapper implements DocumentStore, RevisionListener {
         return store.findAndUpdate(collection, update);
     }
 
+    @Override
+    public <T extends Document> List<T> findAndUpdate(Collection<T> collection,
+                                                      List<UpdateOp> updateOps) {
+        return store.findAndUpdate(collection, updateOps);
+    }
+
     @Override
     public CacheInvalidationStats invalidateCache() {
         return store.invalidateCache();
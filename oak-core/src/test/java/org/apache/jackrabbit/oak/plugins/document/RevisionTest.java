@@ -30,6 +30,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -91,6 +92,27 @@ public class RevisionTest {
         }
     }
 
+    @Test
+    public void fromStringInterned() {
+        String rs = new Revision(0x14a3b2c1d0eL, 3, 2).toString();
+        Revision r = Revision.fromString(rs);
+        assertSame(r, Revision.fromString(new String(rs)));
+
+        // parse a revision within a larger string
+        String s = "x," + rs + ",y";
+        assertSame(r, Revision.fromString(s, 2, 2 + rs.length()));
+
+        Revision b = Revision.fromString("b" + rs);
+        assertTrue(b.isBranch());
+        assertEquals(r, b.asTrunkRevision());
+        try {
+            Revision.fromString(s, 1, 2);
+            fail("Expected: Invalid revision id exception");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
     @Test
     public void difference() throws InterruptedException {
         long t0 = Revision.getCurrentTimestamp();
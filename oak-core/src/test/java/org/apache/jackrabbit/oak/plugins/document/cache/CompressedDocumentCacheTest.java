@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.collect.Iterables;
+import org.apache.jackrabbit.oak.cache.CacheLIRS;
+import org.apache.jackrabbit.oak.cache.CacheStats;
+import org.apache.jackrabbit.oak.cache.CacheValue;
+import org.apache.jackrabbit.oak.plugins.document.Collection;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
+import org.apache.jackrabbit.oak.plugins.document.Revision;
+import org.apache.jackrabbit.oak.plugins.document.StableRevisionComparator;
+import org.apache.jackrabbit.oak.plugins.document.locks.StripedNodeDocumentLocks;
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.util.StringValue;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class CompressedDocumentCacheTest {
+
+    private final DocumentStore ds = new MemoryDocumentStore();
+
+    @Test
+    public void roundTrip() throws Exception {
+        NodeDocument doc = createDoc("1:/foo");
+        doc.put("_modified", 1234L);
+        doc.put("_deletedOnce", true);
+        Map<Revision, Object> values = new TreeMap<Revision, Object>(StableRevisionComparator.REVERSE);
+        values.put(new Revision(1000, 0, 1), "\"a\"");
+        values.put(new Revision(2000, 3, 2, true), "\"" + Strings.repeat("x", 1000) + "\"");
+        values.put(new Revision(1500, 1, 1), null);
+        doc.put("p", values);
+        doc.seal();
+
+        ByteBuffer buffer = CompressedDocumentCache.encode(doc);
+        assertNotNull(buffer);
+        assertTrue(buffer.isDirect());
+        // the long value is compressed
+        assertTrue(buffer.remaining() < 500);
+
+        NodeDocument copy = CompressedDocumentCache.decode(ds, buffer);
+        assertEquals(doc.asString(), copy.asString());
+        assertEquals(doc.getCreated(), copy.getCreated());
+        assertEquals(doc.getLastCheckTime(), copy.getLastCheckTime());
+        assertEquals(doc.getValueMap("p").keySet(), copy.getValueMap("p").keySet());
+        assertTrue(copy.isSealed());
+
+        // the buffer can be decoded again
+        assertEquals(doc.asString(), CompressedDocumentCache.decode(ds, buffer).asString());
+    }
+
+    @Test
+    public void unsupportedValue() {
+        NodeDocument doc = createDoc("1:/foo");
+        doc.put("d", 1.5d);
+        assertNull(CompressedDocumentCache.encode(doc));
+    }
+
+    @Test
+    public void secondTier() throws Exception {
+        CompressedDocumentCache compressed = new CompressedDocumentCache(ds, 1024 * 1024);
+        NodeDocumentCache cache = createCache(compressed);
+        for (int i = 0; i < 100; i++) {
+            NodeDocument doc = createDoc("1:/node-" + i);
+            doc.put("_modCount", (long) i);
+            cache.put(doc);
+        }
+        assertEquals(100, compressed.size());
+
+        // evicted from the on-heap cache, but still cached
+        for (int i = 0; i < 100; i++) {
+            NodeDocument doc = cache.getIfPresent("1:/node-" + i);
+            assertNotNull(doc);
+            assertEquals((long) i, doc.get("_modCount"));
+        }
+        assertEquals(100, Iterables.size(cache.keys()));
+        assertEquals(3, Iterables.size(cache.getCacheStats()));
+
+        cache.invalidate("1:/node-0");
+        assertNull(cache.getIfPresent("1:/node-0"));
+        assertEquals(99, compressed.size());
+
+        // a newer document replaces the compressed copy
+        NodeDocument doc = createDoc("1:/node-1");
+        doc.put("_modCount", 1000L);
+        cache.putIfNewer(doc);
+        assertEquals(1000L, compressed.getIfPresent("1:/node-1").get("_modCount"));
+    }
+
+    private NodeDocumentCache createCache(CompressedDocumentCache compressed) {
+        Cache<CacheValue, NodeDocument> nodeDocumentsCache = new CacheLIRS<CacheValue, NodeDocument>(10);
+        Cache<StringValue, NodeDocument> prevDocumentsCache = new CacheLIRS<StringValue, NodeDocument>(10);
+        CacheStats nodeDocumentsCacheStats = Mockito.mock(CacheStats.class);
+        CacheStats prevDocumentsCacheStats = Mockito.mock(CacheStats.class);
+        return new NodeDocumentCache(nodeDocumentsCache, nodeDocumentsCacheStats,
+                prevDocumentsCache, prevDocumentsCacheStats, compressed,
+                new StripedNodeDocumentLocks());
+    }
+
+    private NodeDocument createDoc(String id) {
+        NodeDocument doc = Collection.NODES.newDocument(ds);
+        doc.put("_id", id);
+        return doc;
+    }
+}
@@ -71,7 +71,7 @@ public class CacheTest {
     public void closeAlways() throws Exception {
         FileUtils.deleteDirectory(new File("target/cacheTest"));
         PersistentCache cache = new PersistentCache("target/cacheTest,manualCommit");
-        CacheMap<String, String> map = cache.openMap(0, "test", null);
+        CacheMap<String, String> map = cache.openMap(0, "test", null, null);
         // break the map by calling interrupt
         Thread.currentThread().interrupt();
         map.put("hello", "world");
@@ -115,13 +115,40 @@ public class CacheTest {
         }
     }
     
+    @Test
+    public void memoryMapped() throws Exception {
+        FileUtils.deleteDirectory(new File("target/cacheTest"));
+        PersistentCache cache = new PersistentCache("target/cacheTest,mmap,size=1");
+        try {
+            MemoryBlobStore mem = new MemoryBlobStore();
+            mem.setBlockSizeMin(100);
+            BlobStore b = cache.wrapBlobStore(mem);
+            Random r = new Random(1);
+            for (int i = 0; i < 20000; i++) {
+                byte[] data = new byte[100];
+                r.nextBytes(data);
+                String id = b.writeBlob(new ByteArrayInputStream(data));
+                b.readBlob(id, 0, new byte[1], 0, 1);
+            }
+            assertEquals(0, cache.getExceptionCount());
+        } finally {
+            cache.close();
+        }
+        // at most two generations are kept
+        File[] files = new File("target/cacheTest").listFiles();
+        assertTrue(files.length <= 2);
+        for (File f : files) {
+            assertTrue(f.getName().endsWith(".mmap"));
+        }
+    }
+
     @Test
     public void interrupt() throws Exception {
         FileUtils.deleteDirectory(new File("target/cacheTest"));
         PersistentCache cache = new PersistentCache("target/cacheTest,size=1,-compress");
         try {
-            CacheMap<String, String> m1 = cache.openMap(0, "m1", null);
-            CacheMap<String, String> m2 = cache.openMap(0, "test", null);
+            CacheMap<String, String> m1 = cache.openMap(0, "m1", null, null);
+            CacheMap<String, String> m2 = cache.openMap(0, "test", null, null);
             
             // the cache file was opened once so far
             assertEquals(1, cache.getOpenCount());
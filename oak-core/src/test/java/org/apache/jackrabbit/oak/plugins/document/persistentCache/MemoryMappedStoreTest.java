@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.document.persistentCache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.apache.commons.io.FileUtils;
+import org.h2.mvstore.type.StringDataType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MemoryMappedStoreTest {
+
+    private static final int CHUNK_SIZE = 4 * 1024;
+
+    private final File dir = new File("target/memoryMappedStoreTest");
+
+    private final File file = new File(dir, "cache-0.mmap");
+
+    private MemoryMappedStore store;
+
+    @Before
+    public void before() throws Exception {
+        FileUtils.deleteDirectory(dir);
+        dir.mkdirs();
+    }
+
+    @After
+    public void after() throws Exception {
+        if (store != null) {
+            store.close();
+        }
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void putGetRemove() throws Exception {
+        store = new MemoryMappedStore(file, false, CHUNK_SIZE);
+        MemoryMappedMap<String, String> map = openMap("test");
+        assertNull(map.get("a"));
+        map.put("a", "1");
+        map.put("b", "2");
+        assertEquals("1", map.get("a"));
+        assertEquals("2", map.get("b"));
+        map.put("a", "3");
+        assertEquals("3", map.get("a"));
+        map.remove("a");
+        assertNull(map.get("a"));
+        assertFalse(map.containsKey("a"));
+        assertTrue(map.containsKey("b"));
+        map.put("a", "4");
+        assertEquals("4", map.get("a"));
+    }
+
+    @Test
+    public void separateMaps() throws Exception {
+        store = new MemoryMappedStore(file, false, CHUNK_SIZE);
+        MemoryMappedMap<String, String> m1 = openMap("m1");
+        MemoryMappedMap<String, String> m2 = openMap("m2");
+        m1.put("a", "1");
+        m2.put("a", "2");
+        assertEquals("1", m1.get("a"));
+        assertEquals("2", m2.get("a"));
+        m1.clear();
+        assertNull(m1.get("a"));
+        assertEquals("2", m2.get("a"));
+        m1.put("a", "3");
+        assertEquals("3", m1.get("a"));
+    }
+
+    @Test
+    public void manyEntriesAcrossChunks() throws Exception {
+        store = new MemoryMappedStore(file, false, CHUNK_SIZE);
+        MemoryMappedMap<String, String> map = openMap("test");
+        int count = 20000;
+        for (int i = 0; i < count; i++) {
+            map.put("key" + i, "value" + i);
+        }
+        for (int i = 0; i < count; i++) {
+            assertEquals("value" + i, map.get("key" + i));
+        }
+        assertTrue(store.getSize() > 10 * CHUNK_SIZE);
+    }
+
+    @Test
+    public void tooLarge() throws Exception {
+        store = new MemoryMappedStore(file, false, CHUNK_SIZE);
+        MemoryMappedMap<String, String> map = openMap("test");
+        map.put("large", new String(new char[CHUNK_SIZE]));
+        assertNull(map.get("large"));
+    }
+
+    @Test
+    public void reopen() throws Exception {
+        store = new MemoryMappedStore(file, false, CHUNK_SIZE);
+        MemoryMappedMap<String, String> map = openMap("test");
+        MemoryMappedMap<String, String> cleared = openMap("cleared");
+        for (int i = 0; i < 1000; i++) {
+            map.put("key" + i, "value" + i);
+            cleared.put("key" + i, "value" + i);
+        }
+        map.remove("key0");
+        cleared.clear();
+        cleared.put("x", "y");
+        store.close();
+
+        store = new MemoryMappedStore(file, true, CHUNK_SIZE);
+        map = openMap("test");
+        cleared = openMap("cleared");
+        assertNull(map.get("key0"));
+        for (int i = 1; i < 1000; i++) {
+            assertEquals("value" + i, map.get("key" + i));
+            assertNull(cleared.get("key" + i));
+        }
+        assertEquals("y", cleared.get("x"));
+        // read-only
+        map.put("new", "value");
+        assertNull(map.get("new"));
+    }
+
+    @Test
+    public void corruptTail() throws Exception {
+        store = new MemoryMappedStore(file, false, CHUNK_SIZE);
+        MemoryMappedMap<String, String> map = openMap("test");
+        map.put("a", "1");
+        long size = store.getSize();
+        map.put("b", "2");
+        store.close();
+
+        // overwrite the last byte of the second record
+        RandomAccessFile f = new RandomAccessFile(file, "rw");
+        try {
+            f.seek(store.getSize() - 1);
+            f.write(0x7f);
+        } finally {
+            f.close();
+        }
+
+        store = new MemoryMappedStore(file, false, CHUNK_SIZE);
+        map = openMap("test");
+        assertEquals("1", map.get("a"));
+        assertNull(map.get("b"));
+        assertEquals(size, store.getSize());
+        map.put("c", "3");
+        assertEquals("3", map.get("c"));
+    }
+
+    @Test
+    public void unknownFile() throws Exception {
+        FileUtils.writeStringToFile(file, "corrupt");
+        store = new MemoryMappedStore(file, false, CHUNK_SIZE);
+        MemoryMappedMap<String, String> map = openMap("test");
+        map.put("a", "1");
+        assertEquals("1", map.get("a"));
+    }
+
+    @Test
+    public void inMemory() throws Exception {
+        store = new MemoryMappedStore(null, false, CHUNK_SIZE);
+        MemoryMappedMap<String, String> map = openMap("test");
+        for (int i = 0; i < 1000; i++) {
+            map.put("key" + i, "value" + i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("value" + i, map.get("key" + i));
+        }
+    }
+
+    private MemoryMappedMap<String, String> openMap(String name) throws Exception {
+        return new MemoryMappedMap<String, String>(store, name,
+                StringDataType.INSTANCE, StringDataType.INSTANCE);
+    }
+}
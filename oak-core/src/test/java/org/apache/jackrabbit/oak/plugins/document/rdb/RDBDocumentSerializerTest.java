@@ -27,12 +27,17 @@ import java.io.UnsupportedEncodingException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+
+import com.google.common.base.Strings;
 
 import org.apache.jackrabbit.oak.plugins.document.Collection;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStoreFixture;
 import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
+import org.apache.jackrabbit.oak.plugins.document.Revision;
+import org.apache.jackrabbit.oak.plugins.document.StableRevisionComparator;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -117,6 +122,48 @@ public class RDBDocumentSerializerTest {
         }
     }
 
+    @Test
+    public void testBinaryBlobAndDiff() {
+        NodeDocument orig = Collection.NODES.newDocument(store);
+        orig.put("_id", "_foo");
+        orig.put("s", Strings.repeat("string", 100));
+        orig.put("l", -1L);
+        orig.put("d", 1.5d);
+        orig.put("b", Boolean.FALSE);
+        Map<Revision, Object> revs = new TreeMap<Revision, Object>(StableRevisionComparator.REVERSE);
+        revs.put(new Revision(0x150000000L, 0, 1), "c");
+        revs.put(new Revision(0x150000123L, 2, 3, true), null);
+        orig.put("_revisions", revs);
+
+        for (boolean compress : new boolean[] { false, true }) {
+            byte[] bdata = RDBBinarySupport.asBytes(orig, Collections.singleton("_id"), compress);
+            assertTrue(RDBBinarySupport.isBinary(bdata));
+            RDBRow row = new RDBRow("_foo", false, false, 1l, 2l, 3l, "\"blob\", [[\"=\", \"foo\", \"bar\"]]", bdata);
+            NodeDocument doc = this.ser.fromRow(Collection.NODES, row);
+            assertEquals("_foo", doc.getId());
+            assertEquals(orig.get("s"), doc.get("s"));
+            assertEquals(-1L, doc.get("l"));
+            assertEquals(1.5d, doc.get("d"));
+            assertEquals(Boolean.FALSE, doc.get("b"));
+            assertEquals(revs, doc.get("_revisions"));
+            assertEquals("bar", doc.get("foo"));
+        }
+    }
+
+    @Test
+    public void testBinaryBlobUnknownVersion() {
+        NodeDocument orig = Collection.NODES.newDocument(store);
+        orig.put("_id", "_foo");
+        byte[] bdata = RDBBinarySupport.asBytes(orig, Collections.singleton("_id"), false);
+        bdata[RDBBinarySupport.MAGIC.length] = RDBBinarySupport.VERSION + 1;
+        try {
+            RDBRow row = new RDBRow("_foo", false, false, 1l, 2l, 3l, "\"blob\"", bdata);
+            this.ser.fromRow(Collection.NODES, row);
+            fail("should fail");
+        } catch (DocumentStoreException expected) {
+        }
+    }
+
     @Test
     public void testNullModified() throws UnsupportedEncodingException {
         RDBRow row = new RDBRow("_foo", true, true, null, 2l, 3l, "{}", null);
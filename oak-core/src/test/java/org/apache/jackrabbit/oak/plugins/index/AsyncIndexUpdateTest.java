@@ -264,6 +264,56 @@ public class AsyncIndexUpdateTest {
                 find(lookupChild, "foo", "abc"));
     }
 
+    @Test
+    public void testAsyncPipelined() throws Exception {
+        NodeStore store = new MemoryNodeStore();
+        IndexEditorProvider provider = new PropertyIndexEditorProvider();
+
+        NodeBuilder builder = store.getRoot().builder();
+        for (String name : new String[]{"foo", "bar", "baz"}) {
+            createIndexDefinition(builder.child(INDEX_DEFINITIONS_NAME),
+                    name + "Index", true, false, ImmutableSet.of(name), null)
+                    .setProperty(ASYNC_PROPERTY_NAME, "async");
+        }
+        createIndexDefinition(
+                builder.child("newchild").child("other")
+                        .child(INDEX_DEFINITIONS_NAME), "subIndex", true,
+                false, ImmutableSet.of("foo"), null).setProperty(
+                ASYNC_PROPERTY_NAME, "async");
+        builder.child("testRoot").setProperty("foo", "abc")
+                .setProperty("bar", "def");
+        builder.child("newchild").child("other").child("testChild")
+                .setProperty("foo", "xyz");
+        store.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+
+        AsyncIndexUpdate async = new AsyncIndexUpdate("async", store, provider);
+        // a small queue to exercise the back pressure
+        async.setPipeline(3, 1);
+        async.run();
+        assertFalse(async.getIndexStats().isFailing());
+
+        // incremental update
+        builder = store.getRoot().builder();
+        for (int i = 0; i < PipelinedIndexUpdate.DEFAULT_BATCH_SIZE; i++) {
+            builder.child("test" + i).setProperty("baz", "v" + i);
+        }
+        builder.child("testRoot").removeProperty("bar");
+        store.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        async.run();
+        assertFalse(async.getIndexStats().isFailing());
+
+        NodeState root = store.getRoot();
+        PropertyIndexLookup lookup = new PropertyIndexLookup(root);
+        assertEquals(ImmutableSet.of("testRoot"), find(lookup, "foo", "abc"));
+        assertEquals(ImmutableSet.<String> of(), find(lookup, "bar", "def"));
+        assertEquals(ImmutableSet.of("test7"), find(lookup, "baz", "v7"));
+        PropertyIndexLookup lookupChild = new PropertyIndexLookup(root
+                .getChildNode("newchild").getChildNode("other"));
+        assertEquals(ImmutableSet.of("testChild"),
+                find(lookupChild, "foo", "xyz"));
+        assertEquals(0, async.getIndexStats().getConsumerQueueDepths().length);
+    }
+
     @Test
     public void testAsyncPause() throws Exception {
         NodeStore store = new MemoryNodeStore();
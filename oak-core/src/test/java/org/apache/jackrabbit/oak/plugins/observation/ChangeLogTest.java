@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.observation;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.apache.jackrabbit.oak.commons.PathUtils.concat;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Test;
+
+public class ChangeLogTest {
+    private final NodeState before;
+    private final NodeState after;
+
+    {
+        NodeBuilder builder = EMPTY_NODE.builder();
+        builder.setChildNode("a").setChildNode("b").setProperty("p", 1);
+        builder.setChildNode("c").setProperty("q", "x");
+        builder.setChildNode("d").setChildNode("e");
+        before = builder.getNodeState();
+
+        builder = before.builder();
+        builder.getChildNode("a").getChildNode("b").setProperty("p", 2);
+        builder.getChildNode("a").setChildNode("new").setProperty("r", true);
+        builder.getChildNode("c").removeProperty("q");
+        builder.getChildNode("d").remove();
+        after = builder.getNodeState();
+    }
+
+    @Test
+    public void replay() {
+        ChangeLog log = ChangeLog.record(before, after, Integer.MAX_VALUE);
+        assertTrue(log.isComplete());
+        assertEquals(9, log.getChangeCount());
+        assertNull(log.getChild("x"));
+
+        EventGenerator generator = new EventGenerator(before, after, new RecordingHandler("/"));
+        List<String> expected = generate(generator);
+
+        generator = new EventGenerator();
+        generator.addHandler(log, new RecordingHandler("/"));
+        assertEquals(expected, generate(generator));
+
+        // the same log can be replayed again
+        generator = new EventGenerator();
+        generator.addHandler(log, new RecordingHandler("/"));
+        assertEquals(expected, generate(generator));
+    }
+
+    @Test
+    public void incomplete() {
+        ChangeLog log = ChangeLog.record(before, after, 3);
+        assertFalse(log.isComplete());
+        assertNull(log.getChild("a"));
+    }
+
+    @Test
+    public void hiddenChangesNotRecorded() {
+        NodeBuilder builder = after.builder();
+        builder.setProperty(":hidden", 1);
+        builder.getChildNode("a").setChildNode(":index").setChildNode("x").setProperty("p", 1);
+        builder.getChildNode("c").setChildNode(":data");
+        NodeState hidden = builder.getNodeState();
+
+        // only the changes of the visible nodes a and c are recorded
+        ChangeLog log = ChangeLog.record(after, hidden, 2);
+        assertTrue(log.isComplete());
+        assertEquals(2, log.getChangeCount());
+        assertNull(log.getChild("a").getChild(":index"));
+        assertNull(log.getChild("c").getChild(":data"));
+
+        log = ChangeLog.record(before, hidden, Integer.MAX_VALUE);
+        assertEquals(9, log.getChangeCount());
+    }
+
+    private static List<String> generate(EventGenerator generator) {
+        RecordingHandler.events.clear();
+        while (!generator.isDone()) {
+            generator.generate();
+        }
+        return newArrayList(RecordingHandler.events);
+    }
+
+    private static class RecordingHandler extends DefaultEventHandler {
+        static final List<String> events = newArrayList();
+
+        private final String path;
+
+        RecordingHandler(String path) {
+            this.path = path;
+        }
+
+        @Override
+        public EventHandler getChildHandler(String name, NodeState before, NodeState after) {
+            return new RecordingHandler(concat(path, name));
+        }
+
+        @Override
+        public void propertyAdded(PropertyState after) {
+            events.add("property added " + concat(path, after.getName()));
+        }
+
+        @Override
+        public void propertyChanged(PropertyState before, PropertyState after) {
+            events.add("property changed " + concat(path, after.getName()));
+        }
+
+        @Override
+        public void propertyDeleted(PropertyState before) {
+            events.add("property deleted " + concat(path, before.getName()));
+        }
+
+        @Override
+        public void nodeAdded(String name, NodeState after) {
+            events.add("node added " + concat(path, name));
+        }
+
+        @Override
+        public void nodeDeleted(String name, NodeState before) {
+            events.add("node deleted " + concat(path, name));
+        }
+    }
+}
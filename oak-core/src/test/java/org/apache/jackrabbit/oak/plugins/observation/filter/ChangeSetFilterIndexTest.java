@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.observation.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.collect.Lists;
+import org.apache.jackrabbit.oak.plugins.observation.ChangeSet;
+import org.apache.jackrabbit.oak.plugins.observation.ChangeSetBuilder;
+import org.junit.Test;
+
+public class ChangeSetFilterIndexTest {
+
+    /** shortcut for creating a set of strings */
+    private static Set<String> s(String... entries) {
+        return new HashSet<String>(Arrays.asList(entries));
+    }
+
+    private static ChangeSet newChangeSet(Set<String> parentPaths, Set<String> parentNodeNames,
+            Set<String> parentNodeTypes, Set<String> propertyNames) {
+        ChangeSetBuilder changeSetBuilder = new ChangeSetBuilder(Integer.MAX_VALUE, 5);
+        changeSetBuilder.getParentPaths().addAll(parentPaths);
+        changeSetBuilder.getParentNodeNames().addAll(parentNodeNames);
+        changeSetBuilder.getParentNodeTypes().addAll(parentNodeTypes);
+        changeSetBuilder.getPropertyNames().addAll(propertyNames);
+        return changeSetBuilder.build();
+    }
+
+    private static List<ChangeSetFilterImpl> newFilters() {
+        return Lists.newArrayList(
+                new ChangeSetFilterImpl(s("/"), false, s("/excluded"), s(), s(), s()),
+                new ChangeSetFilterImpl(s("/"), true, s("/excluded"), s(), s(), s()),
+                new ChangeSetFilterImpl(s("/included"), true, s(), s(), s(), s()),
+                new ChangeSetFilterImpl(s("/included/a"), false, s(), s(), s(), s()),
+                new ChangeSetFilterImpl(s("/foo/**/included/**"), true, s("/excluded"), s(), s(), s()),
+                new ChangeSetFilterImpl(s("/main/**/included"), true, s("/main/excluded"), s(), s(), s()),
+                new ChangeSetFilterImpl(s("/main/*/included", "/other"), false, s(), s(), s(), s()),
+                new ChangeSetFilterImpl(s("/a.b"), false, s(), s(), s(), s()),
+                new ChangeSetFilterImpl(s("/"), true, s(), s(), s("nt:file"), s()),
+                new ChangeSetFilterImpl(s("/included"), true, s(), s("a"), s(), s("p1", "p2")),
+                new ChangeSetFilterImpl(s("/"), true, null, s(), s(), s("p2"), s()),
+                new ChangeSetFilterImpl(s("/main"), true, s("/parent/**/*.jsp"), s(), s(), s(), s()));
+    }
+
+    private static List<ChangeSet> newChangeSets() {
+        return Lists.newArrayList(
+                newChangeSet(s(), s(), s(), s()),
+                newChangeSet(s("/"), s(), s(), s()),
+                newChangeSet(s("/child1", "/child2"), s("child1", "child2"), s(), s()),
+                newChangeSet(s("/excluded/foo", "/excluded/bar"), s("foo", "bar"), s(), s()),
+                newChangeSet(s("/included/a", "/included/b"), s("a", "b"), s("nt:file"), s("p2")),
+                newChangeSet(s("/included/a"), s("a"), s(), s("p3")),
+                newChangeSet(s("/included"), s("included"), s("nt:folder"), s("p1")),
+                newChangeSet(s("/foo/included/a"), s("a"), s(), s()),
+                newChangeSet(s("/foo/bar/included/a", "/included/b"), s("a", "b"), s(), s()),
+                newChangeSet(s("/main/included", "/main/excluded"), s(), s(), s()),
+                newChangeSet(s("/main/foo/included"), s(), s(), s()),
+                newChangeSet(s("/main/excluded/included"), s(), s(), s()),
+                newChangeSet(s("/other", "/other/x"), s(), s(), s()),
+                newChangeSet(s("/axb"), s("axb"), s(), s()),
+                newChangeSet(s("/parent/x/y.jsp"), s("y.jsp"), s(), s()),
+                newChangeSet(s("/mainly"), s("mainly"), s(), s()));
+    }
+
+    @Test
+    public void sameAsFilter() {
+        ChangeSetFilterIndex index = new ChangeSetFilterIndex();
+        List<ChangeSetFilterImpl> filters = newFilters();
+        List<ChangeSetFilter> indexed = Lists.newArrayList();
+        for (ChangeSetFilterImpl filter : filters) {
+            indexed.add(index.add(filter));
+        }
+        assertEquals(filters.size(), index.size());
+
+        for (ChangeSet changeSet : newChangeSets()) {
+            for (int i = 0; i < filters.size(); i++) {
+                assertEquals(filters.get(i) + " " + changeSet,
+                        filters.get(i).excludes(changeSet),
+                        indexed.get(i).excludes(changeSet));
+            }
+        }
+    }
+
+    @Test
+    public void hitsAndMisses() {
+        ChangeSetFilterIndex index = new ChangeSetFilterIndex();
+        ChangeSetFilter f1 = index.add(new ChangeSetFilterImpl(s("/a"), true, s(), s(), s(), s()));
+        ChangeSetFilter f2 = index.add(new ChangeSetFilterImpl(s("/b"), true, s(), s(), s(), s()));
+
+        ChangeSet changeSet = newChangeSet(s("/a/x"), s("x"), s(), s());
+        assertFalse(f1.excludes(changeSet));
+        assertTrue(f2.excludes(changeSet));
+        assertEquals(1, index.getMissCount());
+        assertEquals(1, index.getHitCount());
+        assertEquals(1, ((ChangeSetFilterIndex.IndexedFilter) f1).getMissCount());
+        assertEquals(1, ((ChangeSetFilterIndex.IndexedFilter) f2).getHitCount());
+
+        // changing the index invalidates the candidates
+        index.remove(f2);
+        assertEquals(1, index.size());
+        assertFalse(f1.excludes(changeSet));
+        assertEquals(2, index.getMissCount());
+    }
+
+    @Test
+    public void overflow() {
+        ChangeSetFilterIndex index = new ChangeSetFilterIndex();
+        ChangeSetFilter filter = index.add(new ChangeSetFilterImpl(s("/a"), true, s(), s(), s(), s()));
+
+        ChangeSetBuilder builder = new ChangeSetBuilder(1, 5);
+        builder.getParentPaths().addAll(s("/a/x", "/a/y"));
+        ChangeSet changeSet = builder.build();
+        assertEquals(
+                new ChangeSetFilterImpl(s("/a"), true, s(), s(), s(), s()).excludes(changeSet),
+                filter.excludes(changeSet));
+        assertEquals(0, index.getHitCount());
+    }
+}
@@ -21,16 +21,20 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.File;
+import java.io.FilenameFilter;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 /**
  * Tests the filtering iterators.
@@ -48,6 +52,21 @@ public class IteratorsTest {
         
     };
 
+    private static final FilterIterators.EntrySerializer<Integer> INT_SERIALIZER = 
+            new FilterIterators.EntrySerializer<Integer>() {
+
+        @Override
+        public String serialize(Integer entry) {
+            return entry.toString();
+        }
+
+        @Override
+        public Integer deserialize(String line) {
+            return Integer.valueOf(line);
+        }
+
+    };
+
     @Test
     public void distinct() {
         assertEquals("", toString(FilterIterators.newDistinct(it(), settings)));
@@ -99,6 +118,119 @@ public class IteratorsTest {
         assertEquals("1, 1, 2", toString(FilterIterators.newSort(it(3, 3, 2, 1, 1), INT_COMP, 3, settings)));
     }
 
+    @Test
+    public void sortSpillToDisk() {
+        QueryEngineSettings s = new QueryEngineSettings();
+        s.setLimitInMemory(10);
+        s.setSortSpillToDisk(true);
+        assertEquals("1, 1, 2", toString(FilterIterators.newSort(
+                it(3, 3, 2, 1, 1), INT_COMP, INT_SERIALIZER, 3, s)));
+        
+        int len = 1000;
+        Random r = new Random(1);
+        Integer[] list = new Integer[len];
+        for (int i = 0; i < len; i++) {
+            list[i] = r.nextInt(100);
+        }
+        for (int keep : new int[] { 0, 1, 10, 100, 1000, Integer.MAX_VALUE }) {
+            Iterator<Integer> it = FilterIterators.newSort(it(list), INT_COMP, INT_SERIALIZER, keep, s);
+            int old = Integer.MIN_VALUE;
+            int count = 0;
+            while (it.hasNext()) {
+                int x = it.next();
+                assertTrue(x >= old);
+                old = x;
+                count++;
+            }
+            assertEquals(Math.min(len, keep), count);
+        }
+        
+        // without serializer, the limit still applies
+        try {
+            toString(FilterIterators.newSort(it(list), INT_COMP, 1000, s));
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void sortSpillToDiskClosed() {
+        QueryEngineSettings s = new QueryEngineSettings();
+        s.setLimitInMemory(10);
+        s.setSortSpillToDisk(true);
+        Integer[] list = new Integer[100];
+        for (int i = 0; i < list.length; i++) {
+            list[i] = list.length - i;
+        }
+        Set<String> before = sortRuns();
+
+        // abandoned after the first entry
+        Iterator<Integer> it = FilterIterators.newCombinedFilter(
+                it(list), false, Long.MAX_VALUE, 10, INT_COMP, INT_SERIALIZER, s);
+        assertEquals(11, it.next().intValue());
+        assertFalse(Sets.difference(sortRuns(), before).isEmpty());
+        FilterIterators.close(it);
+        assertEquals(before, sortRuns());
+        assertFalse(it.hasNext());
+
+        // the limit was reached
+        it = FilterIterators.newCombinedFilter(
+                it(list), false, 2, 0, INT_COMP, INT_SERIALIZER, s);
+        assertEquals("1, 2", toString(it));
+        assertEquals(before, sortRuns());
+    }
+
+    private static Set<String> sortRuns() {
+        String[] names = new File(System.getProperty("java.io.tmpdir")).list(
+                new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith("oak-query-sort-");
+            }
+        });
+        return names == null ? Collections.<String>emptySet() : Sets.newHashSet(names);
+    }
+
+    @Test
+    public void sortSpillToDiskNotSerializable() {
+        QueryEngineSettings s = new QueryEngineSettings();
+        s.setLimitInMemory(10);
+        s.setSortSpillToDisk(true);
+        // like a row with a binary value, 0 can not be serialized
+        FilterIterators.EntrySerializer<Integer> serializer = 
+                new FilterIterators.EntrySerializer<Integer>() {
+
+            @Override
+            public String serialize(Integer entry) {
+                return entry == 0 ? null : entry.toString();
+            }
+
+            @Override
+            public Integer deserialize(String line) {
+                return Integer.valueOf(line);
+            }
+
+        };
+        Integer[] list = new Integer[100];
+        for (int i = 0; i < list.length; i++) {
+            list[i] = i % 10;
+        }
+        // the limit applies, also if the entries are truncated
+        // to less than the limit before writing them
+        for (int keep : new int[] { 3, 1000 }) {
+            try {
+                toString(FilterIterators.newSort(it(list), INT_COMP, serializer, keep, s));
+                fail();
+            } catch (UnsupportedOperationException e) {
+                // expected
+            }
+        }
+        // runs without such entries are still written
+        assertEquals("9, 9, 9", toString(FilterIterators.newSort(
+                it(list), Collections.reverseOrder(INT_COMP), serializer, 3, s)));
+    }
+
     @Test
     public void sortCompareCalls() {
         sortCompareCalls(10000, 0);
@@ -22,6 +22,7 @@ package org.apache.jackrabbit.oak.spi.commit;
 import static java.util.concurrent.Executors.newFixedThreadPool;
 import static java.util.concurrent.Executors.newSingleThreadExecutor;
 import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.apache.jackrabbit.oak.plugins.observation.ChangeCollectorProvider.COMMIT_CONTEXT_OBSERVATION_CHANGESET;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
@@ -40,13 +41,19 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.core.SimpleCommitContext;
+import org.apache.jackrabbit.oak.plugins.observation.ChangeSet;
+import org.apache.jackrabbit.oak.plugins.observation.ChangeSetBuilder;
+import org.apache.jackrabbit.oak.plugins.observation.ChangeSetCodec;
 import org.apache.jackrabbit.oak.plugins.observation.Filter;
 import org.apache.jackrabbit.oak.plugins.observation.FilteringAwareObserver;
 import org.apache.jackrabbit.oak.plugins.observation.FilteringObserver;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.junit.After;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import com.google.common.collect.Lists;
 
@@ -60,6 +67,9 @@ public class BackgroundObserverTest {
     private CountDownLatch doneCounter;
     private final List<Closeable> closeables = Lists.newArrayList();
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     /**
      * Assert that each observer of many running concurrently sees the same
      * linearly sequence of commits (i.e. sees the commits in the correct
@@ -81,6 +91,106 @@ public class BackgroundObserverTest {
         }
     }
 
+    /**
+     * Assert that changes not fitting into the queue are spilled to disk and
+     * delivered in order with their commit info.
+     */
+    @Test
+    public void spillQueue() throws Exception {
+        final List<NodeState> roots = Collections.synchronizedList(Lists.<NodeState>newArrayList());
+        final List<CommitInfo> infos = Collections.synchronizedList(Lists.<CommitInfo>newArrayList());
+        final CountDownLatch release = new CountDownLatch(1);
+        // one thread for the observer, one for writing the spilled changes
+        ExecutorService executor = newFixedThreadPool(2);
+        BackgroundObserver observer = new BackgroundObserver(new Observer() {
+            @Override
+            public void contentChanged(@Nonnull NodeState root, @Nullable CommitInfo info) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                roots.add(root);
+                infos.add(info);
+            }
+        }, executor, 2, folder.getRoot(), ChangeSetCodec.INSTANCE);
+        closeables.add(observer);
+
+        List<NodeState> expectedRoots = Lists.newArrayList();
+        List<CommitInfo> expectedInfos = Lists.newArrayList();
+        for (int k = 0; k < 100; k++) {
+            NodeState root = EMPTY_NODE.builder().setProperty("p", k).getNodeState();
+            CommitInfo info = new CommitInfo("session-" + k, "user", Collections.<String, Object>singletonMap("k", k));
+            expectedRoots.add(root);
+            expectedInfos.add(info);
+            observer.contentChanged(root, info);
+        }
+
+        BackgroundObserverMBean mbean = observer.getMBean();
+        assertTrue(mbean.getSpillQueueSize() > 90);
+        assertTrue(mbean.getQueueSize() >= 99);
+        // the spilled changes are written asynchronously
+        for (int i = 0; i < 500 && mbean.getSpillBytes() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(mbean.getSpillBytes() > 0);
+        assertEquals(1, folder.getRoot().list().length);
+
+        release.countDown();
+        assertTrue(observer.waitUntilStopped(5, TimeUnit.SECONDS));
+        assertEquals(expectedInfos, infos);
+        for (int k = 0; k < expectedRoots.size(); k++) {
+            assertSame(expectedRoots.get(k), roots.get(k));
+        }
+        assertEquals(0, mbean.getSpillQueueSize());
+        assertEquals(0, mbean.getSpillBytes());
+        // the spill file is deleted once drained
+        assertEquals(0, folder.getRoot().list().length);
+    }
+
+    /**
+     * Assert that the change set of spilled changes is kept for prefiltering.
+     */
+    @Test
+    public void spillChangeSet() throws Exception {
+        final List<CommitInfo> infos = Collections.synchronizedList(Lists.<CommitInfo>newArrayList());
+        final CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = newFixedThreadPool(2);
+        BackgroundObserver observer = new BackgroundObserver(new Observer() {
+            @Override
+            public void contentChanged(@Nonnull NodeState root, @Nullable CommitInfo info) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                infos.add(info);
+            }
+        }, executor, 1, folder.getRoot(), ChangeSetCodec.INSTANCE);
+        closeables.add(observer);
+
+        for (int k = 0; k < 10; k++) {
+            ChangeSetBuilder builder = new ChangeSetBuilder(10, 5);
+            builder.getParentPaths().add("/a" + k);
+            builder.getPropertyNames().add("p" + k);
+            CommitContext context = new SimpleCommitContext();
+            context.set(COMMIT_CONTEXT_OBSERVATION_CHANGESET, builder.build());
+            observer.contentChanged(EMPTY_NODE.builder().setProperty("p", k).getNodeState(),
+                    new CommitInfo("session-" + k, "user",
+                            Collections.<String, Object>singletonMap(CommitContext.NAME, context)));
+        }
+
+        release.countDown();
+        assertTrue(observer.waitUntilStopped(5, TimeUnit.SECONDS));
+        assertEquals(10, infos.size());
+        for (int k = 0; k < 10; k++) {
+            CommitContext context = (CommitContext) infos.get(k).getInfo().get(CommitContext.NAME);
+            ChangeSet changeSet = (ChangeSet) context.get(COMMIT_CONTEXT_OBSERVATION_CHANGESET);
+            assertEquals(Collections.singleton("/a" + k), changeSet.getParentPaths());
+            assertEquals(Collections.singleton("p" + k), changeSet.getPropertyNames());
+        }
+    }
+
     private static void contentChanged(Observer observer, long value) {
         NodeState node = EMPTY_NODE.builder().setProperty("p", value).getNodeState();
         observer.contentChanged(node, COMMIT_INFO);
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.jcr.api;
+
+import javax.annotation.Nonnull;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import aQute.bnd.annotation.ProviderType;
+
+/**
+ * Oak specific extension of {@link Session} to announce that a number of
+ * subtrees are about to be read, e.g. by a script rendering a page. This
+ * allows the underlying node store to load these nodes with a few bulk
+ * reads instead of one read per node. Sessions of an Oak repository
+ * implement this interface:
+ * <code>
+ * ((PrefetchingSession) session).prefetch(new String[] {"/content/page"}, 3);
+ * </code>
+ */
+@ProviderType
+public interface PrefetchingSession extends Session {
+
+    /**
+     * Hint that the nodes at the given paths and their descendants up to
+     * the given depth are about to be read. This is a hint only: it does not
+     * change what the session reads, and is a no-op if the node store does
+     * not support prefetching.
+     *
+     * @param absPaths the absolute JCR paths of the subtree roots
+     * @param depth the depth of the subtrees relative to the given paths
+     * @throws RepositoryException if a path is invalid or the session is
+     *         not alive.
+     */
+    void prefetch(@Nonnull String[] absPaths, int depth) throws RepositoryException;
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.jcr.api;
+
+import javax.annotation.Nonnull;
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Value;
+
+import aQute.bnd.annotation.ProviderType;
+
+/**
+ * Oak specific extension of {@link Node} to read the values of several
+ * properties of a node in one call. This is cheaper than going through
+ * {@link Node#getProperty(String)} or {@link Node#getProperties()} for each
+ * of them, as no {@code Property} instances are created and the node is only
+ * checked once. Nodes of an Oak repository implement this interface:
+ * <code>
+ * Object[] values = ((PropertyValuesNode) node).getPropertyValues(names);
+ * </code>
+ */
+@ProviderType
+public interface PropertyValuesNode extends Node {
+
+    /**
+     * Returns the values of the given properties of this node.
+     *
+     * @param names the JCR names of the properties
+     * @return an array of the same length as {@code names}, which contains
+     *         for each name a {@link Value} if the property is single valued,
+     *         a {@code Value[]} if it is multi valued, or {@code null} if
+     *         there is no such (accessible) property.
+     * @throws RepositoryException if a name is invalid or the node is stale.
+     */
+    @Nonnull
+    Object[] getPropertyValues(@Nonnull String[] names) throws RepositoryException;
+
+}
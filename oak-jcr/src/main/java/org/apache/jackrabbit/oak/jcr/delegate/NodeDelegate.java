@@ -309,6 +309,59 @@ public class NodeDelegate extends ItemDelegate {
                 });
     }
 
+    /**
+     * Get the names of the properties of the node that match the given
+     * predicate. In contrast to {@link #getProperties()} no property delegates
+     * are created.
+     *
+     * @param predicate predicate on the oak names of the properties
+     * @return names of the matching properties
+     */
+    @Nonnull
+    public List<String> getPropertyNames(@Nonnull Predicate<String> predicate)
+            throws InvalidItemStateException {
+        List<String> names = newArrayList();
+        for (PropertyState property : getTree().getProperties()) {
+            String name = property.getName();
+            if (predicate.apply(name)) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Get the properties of the node with the given names. The property
+     * delegates are created lazily while iterating.
+     *
+     * @param names oak names of the properties
+     * @return properties of the node
+     */
+    @Nonnull
+    public Iterator<PropertyDelegate> getProperties(@Nonnull Iterator<String> names)
+            throws InvalidItemStateException {
+        final Tree tree = getTree();
+        return transform(names,
+                new Function<String, PropertyDelegate>() {
+                    @Override
+                    public PropertyDelegate apply(String name) {
+                        return new PropertyDelegate(sessionDelegate, tree, name);
+                    }
+                });
+    }
+
+    /**
+     * Get the state of a property of this node.
+     *
+     * @param name oak name of the property
+     * @return the property state or {@code null} if no such property exists
+     */
+    @CheckForNull
+    public PropertyState getPropertyState(@Nonnull String name)
+            throws InvalidItemStateException {
+        return getTree().getProperty(name);
+    }
+
     /**
      * Get the number of child nodes
      * <p>
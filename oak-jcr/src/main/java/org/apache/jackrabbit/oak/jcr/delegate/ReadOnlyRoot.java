@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.jcr.delegate;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.api.ContentSession;
+import org.apache.jackrabbit.oak.api.QueryEngine;
+import org.apache.jackrabbit.oak.api.Root;
+import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.jcr.session.SessionStats.ReadCounter;
+import org.apache.jackrabbit.oak.spi.security.authorization.permission.PermissionProvider;
+
+/**
+ * The {@code Root} of a read-only session, which can be used by many threads
+ * concurrently without synchronization. Each thread reads from its own
+ * {@link Snapshot snapshot} root acquired from the content session; all
+ * methods of this class delegate to the snapshot of the calling thread. As
+ * {@code Root} and the trees acquired from it are not thread-safe, trees and
+ * items must not be passed between threads.
+ * <p>
+ * A snapshot is only refreshed by its own thread. {@link #refreshAll()}
+ * increments a generation counter, which each thread compares with the
+ * generation of its snapshot when starting its next session operation.
+ * <p>
+ * No content changes are possible: {@link #move(String, String)} and
+ * {@link #commit(Map)} with pending changes fail with an
+ * {@code UnsupportedOperationException}, as do the session operations
+ * that would cause them.
+ */
+class ReadOnlyRoot implements Root {
+
+    private final ContentSession contentSession;
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final ThreadLocal<Snapshot> snapshot = new ThreadLocal<Snapshot>() {
+        @Override
+        protected Snapshot initialValue() {
+            Snapshot s = new Snapshot(contentSession.getLatestRoot(), generation.get());
+            snapshots.add(s);
+            return s;
+        }
+    };
+
+    /**
+     * The snapshots of all threads, to release their roots when the session
+     * is closed.
+     */
+    private final List<Snapshot> snapshots = new CopyOnWriteArrayList<Snapshot>();
+
+    ReadOnlyRoot(@Nonnull ContentSession contentSession) {
+        this.contentSession = checkNotNull(contentSession);
+    }
+
+    /**
+     * @return the snapshot of the calling thread
+     */
+    @Nonnull
+    Snapshot getSnapshot() {
+        Snapshot s = snapshot.get();
+        if (s.root == null) {
+            throw new IllegalStateException("This session has been closed.");
+        }
+        return s;
+    }
+
+    /**
+     * Refresh the snapshot of the calling thread if {@link #refreshAll()} was
+     * called since it was last refreshed.
+     *
+     * @return {@code true} if the snapshot was refreshed
+     */
+    boolean refreshIfStale() {
+        Snapshot s = getSnapshot();
+        long current = generation.get();
+        if (s.generation != current) {
+            s.refresh(current);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Cause the snapshots of all threads to be refreshed at their next access.
+     */
+    void refreshAll() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Release the snapshots of all threads.
+     */
+    void close() {
+        for (Snapshot s : snapshots) {
+            s.root = null;
+        }
+        snapshots.clear();
+    }
+
+    //---------------------------------------------------------------< Root >---
+
+    @Override
+    public boolean move(String sourcePath, String destPath) {
+        throw new UnsupportedOperationException("This session is read-only");
+    }
+
+    @Nonnull
+    @Override
+    public Tree getTree(@Nonnull String path) {
+        return getSnapshot().root.getTree(path);
+    }
+
+    @Override
+    public void rebase() {
+        getSnapshot().root.rebase();
+    }
+
+    /**
+     * Refresh the snapshot of the calling thread, and cause the snapshots of
+     * all other threads to be refreshed at their next access.
+     */
+    @Override
+    public void refresh() {
+        getSnapshot().refresh(generation.incrementAndGet());
+    }
+
+    @Override
+    public void commit(@Nonnull Map<String, Object> info) throws CommitFailedException {
+        if (hasPendingChanges()) {
+            throw new UnsupportedOperationException("This session is read-only");
+        }
+    }
+
+    @Override
+    public void commit() throws CommitFailedException {
+        if (hasPendingChanges()) {
+            throw new UnsupportedOperationException("This session is read-only");
+        }
+    }
+
+    @Override
+    public boolean hasPendingChanges() {
+        return getSnapshot().root.hasPendingChanges();
+    }
+
+    @Nonnull
+    @Override
+    public QueryEngine getQueryEngine() {
+        return getSnapshot().root.getQueryEngine();
+    }
+
+    @Nonnull
+    @Override
+    public Blob createBlob(@Nonnull InputStream stream) throws IOException {
+        throw new UnsupportedOperationException("This session is read-only");
+    }
+
+    @CheckForNull
+    @Override
+    public Blob getBlob(@Nonnull String reference) {
+        return getSnapshot().root.getBlob(reference);
+    }
+
+    @Nonnull
+    @Override
+    public ContentSession getContentSession() {
+        return contentSession;
+    }
+
+    //-----------------------------------------------------------< Snapshot >---
+
+    /**
+     * The root of a single thread, along with the session state that needs
+     * to be tracked per thread. Apart from {@link #root}, which is cleared
+     * when the session is closed, all fields are only accessed by the
+     * owning thread.
+     */
+    static final class Snapshot {
+
+        volatile Root root;
+
+        long generation;
+
+        /**
+         * Number of currently running, possibly nested, session operations.
+         */
+        int opCount;
+
+        /**
+         * Incremented whenever the root is refreshed, see
+         * {@link SessionDelegate#getUpdateCount()}.
+         */
+        long updateCount;
+
+        /**
+         * Time of the last access of this thread to the session.
+         */
+        long accessTime;
+
+        /**
+         * The number of saves on this thread as of the last refresh, see
+         * {@code SessionDelegate.SaveCountRefresh}.
+         */
+        long saveCount;
+
+        ReadCounter readCounter;
+
+        PermissionProvider permissionProvider;
+
+        Snapshot(Root root, long generation) {
+            this.root = root;
+            this.generation = generation;
+        }
+
+        private void refresh(long generation) {
+            root.refresh();
+            if (permissionProvider != null) {
+                permissionProvider.refresh();
+            }
+            this.generation = generation;
+            updateCount++;
+        }
+    }
+
+}
@@ -39,6 +39,7 @@ import javax.annotation.Nullable;
 import javax.jcr.ItemExistsException;
 import javax.jcr.PathNotFoundException;
 import javax.jcr.RepositoryException;
+import javax.jcr.UnsupportedRepositoryOperationException;
 import javax.jcr.nodetype.ConstraintViolationException;
 
 import com.google.common.collect.ImmutableMap;
@@ -58,6 +59,7 @@ import org.apache.jackrabbit.oak.jcr.session.SessionStats;
 import org.apache.jackrabbit.oak.jcr.session.SessionStats.Counters;
 import org.apache.jackrabbit.oak.jcr.session.operation.SessionOperation;
 import org.apache.jackrabbit.oak.plugins.identifier.IdentifierManager;
+import org.apache.jackrabbit.oak.plugins.tree.RootFactory;
 import org.apache.jackrabbit.oak.spi.security.SecurityProvider;
 import org.apache.jackrabbit.oak.spi.security.authorization.AuthorizationConfiguration;
 import org.apache.jackrabbit.oak.spi.security.authorization.permission.PermissionProvider;
@@ -84,6 +86,15 @@ public class SessionDelegate {
     private final RefreshStrategy refreshStrategy;
 
     private final Root root;
+
+    /**
+     * The root of a read-only session, {@code null} for other sessions. Same
+     * instance as {@link #root} if not {@code null}.
+     */
+    @CheckForNull
+    private final ReadOnlyRoot readOnlyRoot;
+
+    private final ThreadLocal<Long> threadSaveCount;
     private final IdentifierManager idManager;
     private final SessionStats sessionStats;
 
@@ -98,7 +109,7 @@ public class SessionDelegate {
     private final MeterStats writeCounter;
     private final TimerStats writeDuration;
 
-    private boolean isAlive = true;
+    private volatile boolean isAlive = true;
     private int sessionOpCount;
     private long updateCount = 0;
 
@@ -136,14 +147,56 @@ public class SessionDelegate {
             @Nonnull ThreadLocal<Long> threadSaveCount,
             @Nonnull StatisticManager statisticManager,
             @Nonnull Clock clock) {
+        this(contentSession, securityProvider, refreshStrategy, threadSaveCount,
+                statisticManager, clock, false);
+    }
+
+    /**
+     * Create a new session delegate for a {@code ContentSession}, which is
+     * read-only if {@code readOnly} is {@code true}.
+     * <p>
+     * A read-only session may be used by many threads concurrently: its
+     * operations are not serialized through the session lock, instead each
+     * thread reads from its own snapshot of the content, which is refreshed
+     * according to the refresh strategy. Nodes and properties must not be
+     * passed between threads, and operations that would modify content fail
+     * with an {@code UnsupportedRepositoryOperationException}. The namespace
+     * registry is read as of the login.
+     *
+     * @param contentSession  the content session
+     * @param securityProvider the security provider
+     * @param refreshStrategy  the refresh strategy used for auto refreshing this session
+     * @param statisticManager the statistics manager for tracking session operations
+     * @param readOnly  whether this session is read-only
+     */
+    public SessionDelegate(
+            @Nonnull ContentSession contentSession,
+            @Nonnull SecurityProvider securityProvider,
+            @Nonnull RefreshStrategy refreshStrategy,
+            @Nonnull ThreadLocal<Long> threadSaveCount,
+            @Nonnull StatisticManager statisticManager,
+            @Nonnull Clock clock,
+            boolean readOnly) {
         this.contentSession = checkNotNull(contentSession);
         this.securityProvider = checkNotNull(securityProvider);
-        this.root = contentSession.getLatestRoot();
-        this.namespaces = new SessionNamespaces(this.root);
-        this.saveCountRefresh = new SaveCountRefresh(checkNotNull(threadSaveCount));
-        this.refreshStrategy = Composite.create(checkNotNull(refreshStrategy),
-                refreshAtNextAccess, saveCountRefresh, new RefreshNamespaces(
-                        namespaces));
+        this.threadSaveCount = checkNotNull(threadSaveCount);
+        this.saveCountRefresh = new SaveCountRefresh(threadSaveCount);
+        if (readOnly) {
+            // refresh at next access and after saves on the same thread
+            // are tracked per thread, see prePerformReadOnly
+            this.readOnlyRoot = new ReadOnlyRoot(contentSession);
+            this.root = readOnlyRoot;
+            this.namespaces = new SessionNamespaces(createReadOnlyRoot());
+            this.refreshStrategy = Composite.create(checkNotNull(refreshStrategy),
+                    new RefreshNamespaces(namespaces));
+        } else {
+            this.readOnlyRoot = null;
+            this.root = contentSession.getLatestRoot();
+            this.namespaces = new SessionNamespaces(this.root);
+            this.refreshStrategy = Composite.create(checkNotNull(refreshStrategy),
+                    refreshAtNextAccess, saveCountRefresh, new RefreshNamespaces(
+                            namespaces));
+        }
         this.idManager = new IdentifierManager(root);
         this.clock = checkNotNull(clock);
         checkNotNull(statisticManager);
@@ -162,6 +215,10 @@ public class SessionDelegate {
     }
 
     public void refreshAtNextAccess() {
+        if (readOnlyRoot != null) {
+            readOnlyRoot.refreshAll();
+            return;
+        }
         lock.lock();
         try {
             refreshAtNextAccess.refreshAtNextAccess(true);
@@ -178,6 +235,10 @@ public class SessionDelegate {
      * @return  synchronized iterator
      */
     public <T> Iterator<T> sync(Iterator<T> iterator) {
+        if (readOnlyRoot != null) {
+            // the iterator is confined to the snapshot of the calling thread
+            return iterator;
+        }
         return new SynchronizedIterator<T>(iterator, lock);
     }
 
@@ -197,6 +258,17 @@ public class SessionDelegate {
     public <T> T perform(@Nonnull SessionOperation<T> sessionOperation) throws RepositoryException {
         long t0 = clock.getTime();
 
+        if (readOnlyRoot != null) {
+            ReadOnlyRoot.Snapshot snapshot = prePerformReadOnly(sessionOperation, t0);
+            try {
+                T result = sessionOperation.perform();
+                logOperationDetails(contentSession, sessionOperation);
+                return result;
+            } finally {
+                postPerformReadOnly(snapshot, t0);
+            }
+        }
+
         // Acquire the exclusive lock for accessing session internals.
         // No other session should be holding the lock, so we log a
         // message to let the user know of such cases.
@@ -232,6 +304,17 @@ public class SessionDelegate {
     public <T> T performNullable(@Nonnull SessionOperation<T> sessionOperation) throws RepositoryException {
         long t0 = clock.getTime();
 
+        if (readOnlyRoot != null) {
+            ReadOnlyRoot.Snapshot snapshot = prePerformReadOnly(sessionOperation, t0);
+            try {
+                T result = sessionOperation.performNullable();
+                logOperationDetails(contentSession, sessionOperation);
+                return result;
+            } finally {
+                postPerformReadOnly(snapshot, t0);
+            }
+        }
+
         // Acquire the exclusive lock for accessing session internals.
         // No other session should be holding the lock, so we log a
         // message to let the user know of such cases.
@@ -263,6 +346,17 @@ public class SessionDelegate {
     public void performVoid(SessionOperation<Void> sessionOperation) throws RepositoryException {
         long t0 = clock.getTime();
 
+        if (readOnlyRoot != null) {
+            ReadOnlyRoot.Snapshot snapshot = prePerformReadOnly(sessionOperation, t0);
+            try {
+                sessionOperation.performVoid();
+                logOperationDetails(contentSession, sessionOperation);
+            } finally {
+                postPerformReadOnly(snapshot, t0);
+            }
+            return;
+        }
+
         // Acquire the exclusive lock for accessing session internals.
         // No other session should be holding the lock, so we log a
         // message to let the user know of such cases.
@@ -325,10 +419,20 @@ public class SessionDelegate {
         }
     }
 
+    /**
+     * @return {@code true} if this session is read-only
+     */
+    public boolean isReadOnly() {
+        return readOnlyRoot != null;
+    }
+
     /**
      * @return session update counter
      */
     public long getUpdateCount() {
+        if (readOnlyRoot != null) {
+            return readOnlyRoot.getSnapshot().updateCount;
+        }
         return updateCount;
     }
 
@@ -397,6 +501,9 @@ public class SessionDelegate {
         isAlive = false;
         // TODO
 
+        if (readOnlyRoot != null) {
+            readOnlyRoot.close();
+        }
         sessionStats.close();
         try {
             contentSession.close();
@@ -507,6 +614,11 @@ public class SessionDelegate {
         } else {
             root.refresh();
         }
+        if (readOnlyRoot != null) {
+            // the permission provider of the snapshot was refreshed along
+            // with its root
+            return;
+        }
         if (permissionProvider != null) {
             permissionProvider.refresh();
         }
@@ -573,6 +685,15 @@ public class SessionDelegate {
 
     @Nonnull
     public PermissionProvider getPermissionProvider() {
+        if (readOnlyRoot != null) {
+            ReadOnlyRoot.Snapshot snapshot = readOnlyRoot.getSnapshot();
+            if (snapshot.permissionProvider == null) {
+                snapshot.permissionProvider = checkNotNull(securityProvider)
+                        .getConfiguration(AuthorizationConfiguration.class)
+                        .getPermissionProvider(snapshot.root, getWorkspaceName(), getAuthInfo().getPrincipals());
+            }
+            return snapshot.permissionProvider;
+        }
         if (permissionProvider == null) {
             permissionProvider = checkNotNull(securityProvider)
                     .getConfiguration(AuthorizationConfiguration.class)
@@ -594,6 +715,21 @@ public class SessionDelegate {
         return root;
     }
 
+    /**
+     * Create an immutable root on the base state of {@link #getRoot()},
+     * or, for a read-only session, of the snapshot of the calling thread.
+     *
+     * @return  immutable root
+     * @see RootFactory#createReadOnlyRoot(Root)
+     */
+    @Nonnull
+    public Root createReadOnlyRoot() {
+        if (readOnlyRoot != null) {
+            return RootFactory.createReadOnlyRoot(readOnlyRoot.getSnapshot().root);
+        }
+        return RootFactory.createReadOnlyRoot(root);
+    }
+
     @Override
     public String toString() {
         return contentSession.toString();
@@ -616,6 +752,59 @@ public class SessionDelegate {
         }
     }
 
+    /**
+     * Counterpart of {@link #prePerform(SessionOperation, long)} for read-only
+     * sessions. Instead of refreshing the session, the snapshot of the
+     * calling thread is refreshed if needed.
+     */
+    private ReadOnlyRoot.Snapshot prePerformReadOnly(@Nonnull SessionOperation<?> op, long t0)
+            throws RepositoryException {
+        if (op.isUpdate() && !op.isRefresh() && !op.isSave() && !op.isLogout()) {
+            throw new UnsupportedRepositoryOperationException(
+                    "Session " + this + " is read-only: " + op);
+        }
+        checkAlive();
+        ReadOnlyRoot.Snapshot snapshot = readOnlyRoot.getSnapshot();
+        if (snapshot.opCount == 0) {
+            if (snapshot.readCounter == null) {
+                snapshot.readCounter = sessionCounters.newReadCounter();
+                snapshot.accessTime = t0;
+                snapshot.saveCount = getThreadSaveCount();
+            }
+            if (!op.isRefresh() && !op.isSave() && !op.isLogout()) {
+                if (refreshStrategy.needsRefresh(SECONDS.convert(t0 - snapshot.accessTime, MILLISECONDS))) {
+                    synchronized (refreshStrategy) {
+                        refreshStrategy.refreshed();
+                    }
+                    readOnlyRoot.refreshAll();
+                }
+                long saveCount = getThreadSaveCount();
+                if (snapshot.saveCount != saveCount) {
+                    // some other session saved on this thread
+                    snapshot.saveCount = saveCount;
+                    readOnlyRoot.refreshAll();
+                }
+                readOnlyRoot.refreshIfStale();
+            }
+            op.checkPreconditions();
+        }
+        snapshot.opCount++;
+        return snapshot;
+    }
+
+    private void postPerformReadOnly(@Nonnull ReadOnlyRoot.Snapshot snapshot, long t0) {
+        snapshot.accessTime = t0;
+        snapshot.opCount--;
+        snapshot.readCounter.read(t0);
+        readCounter.mark();
+        readDuration.update(NANOSECONDS.convert(clock.getTime() - t0, MILLISECONDS), TimeUnit.NANOSECONDS);
+    }
+
+    private long getThreadSaveCount() {
+        Long c = threadSaveCount.get();
+        return c == null ? 0 : c;
+    }
+
     private void postPerform(@Nonnull SessionOperation<?> op, long t0) {
         sessionCounters.accessTime = t0;
         long dt = NANOSECONDS.convert(clock.getTime() - t0, MILLISECONDS);
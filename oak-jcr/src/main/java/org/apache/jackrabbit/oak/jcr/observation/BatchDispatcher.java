@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.jcr.observation;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import javax.annotation.Nonnull;
+import javax.jcr.RepositoryException;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
+
+import org.apache.jackrabbit.api.observation.JackrabbitEvent;
+import org.apache.jackrabbit.commons.iterator.EventIteratorAdapter;
+import org.apache.jackrabbit.commons.observation.ListenerTracker;
+import org.apache.jackrabbit.oak.jcr.observation.filter.BatchedEventListener;
+import org.apache.jackrabbit.oak.jcr.observation.filter.EventBatch;
+
+/**
+ * The listener registered with the {@link ListenerTracker} of a
+ * {@link BatchedEventListener}. Batches are passed through the tracked
+ * listener of the tracker, so that the tracker records deliveries, delivered
+ * events and delivery times for batched listeners as it does for plain
+ * listeners. The tracker counts the events of the batch through
+ * {@link BatchEvent} views, which read from the batch on demand, so no paths
+ * are created for that.
+ */
+class BatchDispatcher implements EventListener {
+    private final BatchedEventListener listener;
+
+    /**
+     * The batch being delivered. Only accessed by the thread delivering.
+     */
+    private EventBatch batch;
+
+    BatchDispatcher(@Nonnull BatchedEventListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Deliver a batch to the batched listener through the given tracked
+     * listener.
+     *
+     * @param trackedListener the tracked listener of the tracker this
+     *                        dispatcher is registered with
+     * @param batch the batch to deliver
+     */
+    void deliver(EventListener trackedListener, EventBatch batch) {
+        this.batch = batch;
+        try {
+            trackedListener.onEvent(new EventIteratorAdapter(new BatchIterator(batch)));
+        } finally {
+            this.batch = null;
+        }
+    }
+
+    @Override
+    public void onEvent(EventIterator events) {
+        listener.onEventBatch(batch);
+        // let the tracker count the delivered events
+        while (events.hasNext()) {
+            events.next();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return listener.toString();
+    }
+
+    /**
+     * Iterates over the events of a batch, as {@link BatchEvent} views.
+     */
+    private static class BatchIterator implements Iterator<Event> {
+        private final EventBatch batch;
+        private int index;
+
+        BatchIterator(EventBatch batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < batch.size();
+        }
+
+        @Override
+        public Event next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return new BatchEvent(batch, index++);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * A view of an event of a batch. It is only valid while the batch is
+     * delivered.
+     */
+    private static class BatchEvent implements JackrabbitEvent {
+        private final EventBatch batch;
+        private final int index;
+
+        BatchEvent(EventBatch batch, int index) {
+            this.batch = batch;
+            this.index = index;
+        }
+
+        @Override
+        public int getType() {
+            return batch.getType(index);
+        }
+
+        @Override
+        public String getPath() {
+            return batch.getPath(index);
+        }
+
+        @Override
+        public String getUserID() {
+            return batch.getUserID();
+        }
+
+        @Override
+        public String getIdentifier() {
+            return batch.getIdentifier(index);
+        }
+
+        @Override
+        public Map<?, ?> getInfo() throws RepositoryException {
+            return batch.getEvent(index).getInfo();
+        }
+
+        @Override
+        public String getUserData() {
+            return batch.getUserData();
+        }
+
+        @Override
+        public long getDate() {
+            return batch.getDate();
+        }
+
+        @Override
+        public boolean isExternal() {
+            return batch.isExternal();
+        }
+
+    }
+}
@@ -27,11 +27,15 @@ import static org.apache.jackrabbit.oak.spi.whiteboard.WhiteboardUtils.registerM
 import static org.apache.jackrabbit.oak.spi.whiteboard.WhiteboardUtils.registerObserver;
 import static org.apache.jackrabbit.oak.spi.whiteboard.WhiteboardUtils.scheduleWithFixedDelay;
 
+import java.io.File;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.jcr.observation.Event;
@@ -41,8 +45,11 @@ import javax.jcr.observation.EventListener;
 import org.apache.jackrabbit.api.jmx.EventListenerMBean;
 import org.apache.jackrabbit.commons.observation.ListenerTracker;
 import org.apache.jackrabbit.oak.api.ContentSession;
+import org.apache.jackrabbit.oak.jcr.observation.filter.BatchedEventListener;
 import org.apache.jackrabbit.oak.namepath.NamePathMapper;
+import org.apache.jackrabbit.oak.plugins.observation.ChangeLog;
 import org.apache.jackrabbit.oak.plugins.observation.ChangeSet;
+import org.apache.jackrabbit.oak.plugins.observation.ChangeSetCodec;
 import org.apache.jackrabbit.oak.plugins.observation.CommitRateLimiter;
 import org.apache.jackrabbit.oak.plugins.observation.Filter;
 import org.apache.jackrabbit.oak.plugins.observation.FilteringAwareObserver;
@@ -70,7 +77,10 @@ import org.apache.jackrabbit.stats.TimeSeriesMax;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.common.util.concurrent.Monitor;
 import com.google.common.util.concurrent.Monitor.Guard;
 
@@ -157,6 +167,45 @@ class ChangeProcessor implements FilteringAwareObserver {
         PREFILTERING_TESTMODE = prefilteringTestModeBool;
     }
     
+    /**
+     * Whether the content diff of a commit is computed once and shared by all
+     * change processors, instead of each change processor comparing the
+     * node states on its own.
+     */
+    private static final boolean SHARED_DIFF = Boolean.getBoolean("oak.observation.sharedDiff");
+
+    /**
+     * Maximum number of changes of a shared content diff. Larger commits are
+     * compared by each change processor, to bound the memory usage.
+     */
+    private static final int SHARED_DIFF_MAX_CHANGES =
+            Integer.getInteger("oak.observation.sharedDiffMaxChanges", 100000);
+
+    /**
+     * Recent shared content diffs by after state. Weak keys are compared by
+     * identity, which is what we want: all observers receive the same root
+     * state instance for a given commit.
+     */
+    private static final Cache<NodeState, ChangeLog> CHANGE_LOGS = CacheBuilder.newBuilder()
+            .weakKeys()
+            .maximumSize(Integer.getInteger("oak.observation.sharedDiffCacheSize", 16))
+            .build();
+
+    /**
+     * Directory to which the changes not fitting into the queue of a change
+     * processor are spilled, see {@link BackgroundObserver}. If not set, such
+     * changes are merged into a single external change.
+     */
+    @CheckForNull
+    private static final File SPILL_DIRECTORY = getSpillDirectory();
+
+    /**
+     * Number of events at which a batch delivered to a
+     * {@link BatchedEventListener} is complete.
+     */
+    private static final int EVENT_BATCH_SIZE =
+            Math.max(1, Integer.getInteger("oak.observation.eventBatchSize", 1000));
+
     private static final AtomicInteger COUNTER = new AtomicInteger();
 
     /**
@@ -169,6 +218,8 @@ class ChangeProcessor implements FilteringAwareObserver {
     private final NamePathMapper namePathMapper;
     private final ListenerTracker tracker;
     private final EventListener eventListener;
+    @CheckForNull
+    private final BatchDispatcher batchDispatcher;
     private final AtomicReference<FilterProvider> filterProvider;
     private final MeterStats eventCount;
     private final TimerStats eventDuration;
@@ -210,10 +261,31 @@ class ChangeProcessor implements FilteringAwareObserver {
             StatisticManager statisticManager,
             int queueLength,
             CommitRateLimiter commitRateLimiter) {
+        this(contentSession, namePathMapper, tracker, filter, statisticManager,
+                queueLength, commitRateLimiter, null);
+    }
+
+    /**
+     * Create a change processor that delivers the events in batches through
+     * the given {@code batchDispatcher} if not {@code null}, and as event
+     * iterators otherwise. In both cases the events are delivered through
+     * the tracked listener of the {@code tracker}, and the dispatcher must
+     * be the listener of the tracker.
+     */
+    public ChangeProcessor(
+            ContentSession contentSession,
+            NamePathMapper namePathMapper,
+            ListenerTracker tracker,
+            FilterProvider filter,
+            StatisticManager statisticManager,
+            int queueLength,
+            CommitRateLimiter commitRateLimiter,
+            @Nullable BatchDispatcher batchDispatcher) {
         this.contentSession = contentSession;
         this.namePathMapper = namePathMapper;
         this.tracker = tracker;
         eventListener = tracker.getTrackedListener();
+        this.batchDispatcher = batchDispatcher;
         filterProvider = new AtomicReference<FilterProvider>(filter);
         this.eventCount = statisticManager.getMeter(OBSERVATION_EVENT_COUNTER);
         this.eventDuration = statisticManager.getTimer(OBSERVATION_EVENT_DURATION);
@@ -307,7 +379,8 @@ class ChangeProcessor implements FilteringAwareObserver {
 
     private FilteringObserver createObserver(final WhiteboardExecutor executor) {
         FilteringDispatcher fd = new FilteringDispatcher(this);
-        BackgroundObserver bo = new BackgroundObserver(fd, executor, queueLength) {
+        BackgroundObserver bo = new BackgroundObserver(fd, executor, queueLength, SPILL_DIRECTORY,
+                ChangeSetCodec.INSTANCE) {
             private volatile long delay;
             private volatile boolean blocking;
 
@@ -456,6 +529,20 @@ class ChangeProcessor implements FilteringAwareObserver {
         }
     }
 
+    @CheckForNull
+    private static File getSpillDirectory() {
+        String dir = System.getProperty("oak.observation.spillDirectory");
+        if (dir == null) {
+            return null;
+        }
+        File file = new File(dir);
+        if (!file.isDirectory() && !file.mkdirs()) {
+            LOG.warn("Cannot create observation spill directory {}. Spilling disabled.", file);
+            return null;
+        }
+        return file;
+    }
+
     /**
      * Utility method that extracts the ChangeSet from a CommitInfo if possible.
      * @param info
@@ -499,27 +586,32 @@ class ChangeProcessor implements FilteringAwareObserver {
                 // FIXME don't rely on toString for session id
                 if (provider.includeCommit(contentSession.toString(), info)) {
                     EventFilter filter = provider.getFilter(before, after);
-                    EventIterator events = new EventQueue(namePathMapper, info, before, after,
-                            provider.getSubTrees(), Filters.all(filter, VISIBLE_FILTER), 
-                            provider.getEventAggregator());
-
-                    long time = System.nanoTime();
-                    boolean hasEvents = events.hasNext();
-                    tracker.recordProducerTime(System.nanoTime() - time, TimeUnit.NANOSECONDS);
-                    if (hasEvents && runningMonitor.enterIf(running)) {
-                        if (commitRateLimiter != null) {
-                            commitRateLimiter.beforeNonBlocking();
-                        }
-                        try {
-                            CountingIterator countingEvents = new CountingIterator(events);
-                            onEventInvoked = true;
-                            eventListener.onEvent(countingEvents);
-                            countingEvents.updateCounters(eventCount, eventDuration);
-                        } finally {
+                    ChangeLog log = SHARED_DIFF ? getChangeLog(before, after) : null;
+                    if (batchDispatcher != null) {
+                        onEventInvoked = deliverBatches(info, before, after, log, provider, filter);
+                    } else {
+                        EventIterator events = new EventQueue(namePathMapper, info, before, after, log,
+                                provider.getSubTrees(), Filters.all(filter, VISIBLE_FILTER),
+                                provider.getEventAggregator());
+
+                        long time = System.nanoTime();
+                        boolean hasEvents = events.hasNext();
+                        tracker.recordProducerTime(System.nanoTime() - time, TimeUnit.NANOSECONDS);
+                        if (hasEvents && runningMonitor.enterIf(running)) {
                             if (commitRateLimiter != null) {
-                                commitRateLimiter.afterNonBlocking();
+                                commitRateLimiter.beforeNonBlocking();
+                            }
+                            try {
+                                CountingIterator countingEvents = new CountingIterator(events);
+                                onEventInvoked = true;
+                                eventListener.onEvent(countingEvents);
+                                countingEvents.updateCounters(eventCount, eventDuration);
+                            } finally {
+                                if (commitRateLimiter != null) {
+                                    commitRateLimiter.afterNonBlocking();
+                                }
+                                runningMonitor.leave();
                             }
-                            runningMonitor.leave();
                         }
                     }
                 }
@@ -552,6 +644,74 @@ class ChangeProcessor implements FilteringAwareObserver {
         }
     }
 
+    /**
+     * Deliver the events of a content change in batches of about
+     * {@link #EVENT_BATCH_SIZE} events through the {@link #batchDispatcher}.
+     *
+     * @return {@code true} if the listener was invoked
+     */
+    private boolean deliverBatches(CommitInfo info, NodeState before, NodeState after,
+            ChangeLog log, FilterProvider provider, EventFilter filter) {
+        EventBatchImpl batch = new EventBatchImpl(namePathMapper, info, before, after, log,
+                provider.getSubTrees(), Filters.all(filter, VISIBLE_FILTER),
+                provider.getEventAggregator(), EVENT_BATCH_SIZE);
+        boolean onEventInvoked = false;
+        long time = System.nanoTime();
+        while (batch.next()) {
+            tracker.recordProducerTime(System.nanoTime() - time, TimeUnit.NANOSECONDS);
+            if (!runningMonitor.enterIf(running)) {
+                break;
+            }
+            if (commitRateLimiter != null) {
+                commitRateLimiter.beforeNonBlocking();
+            }
+            try {
+                onEventInvoked = true;
+                long start = System.nanoTime();
+                batchDispatcher.deliver(eventListener, batch);
+                eventCount.mark(batch.size());
+                eventDuration.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            } finally {
+                if (commitRateLimiter != null) {
+                    commitRateLimiter.afterNonBlocking();
+                }
+                runningMonitor.leave();
+            }
+            time = System.nanoTime();
+        }
+        return onEventInvoked;
+    }
+
+    /**
+     * Get the shared content diff between the given states. The diff is
+     * recorded by the first change processor asking for it, concurrent
+     * requests for the same diff wait for it to be recorded.
+     *
+     * @return the content diff, or {@code null} if the diff is too large or
+     *         if the cached diff is against a different before state (e.g.
+     *         because the revision queue of this change processor collapsed
+     *         some commits).
+     */
+    @CheckForNull
+    private static ChangeLog getChangeLog(final NodeState before, final NodeState after) {
+        try {
+            ChangeLog log = CHANGE_LOGS.get(after, new Callable<ChangeLog>() {
+                @Override
+                public ChangeLog call() {
+                    return ChangeLog.record(before, after, SHARED_DIFF_MAX_CHANGES);
+                }
+            });
+            if (log.getBefore() == before && log.isComplete()) {
+                return log;
+            }
+        } catch (ExecutionException e) {
+            LOG.warn("Error while recording the content diff", e);
+        } catch (UncheckedExecutionException e) {
+            LOG.warn("Error while recording the content diff", e);
+        }
+        return null;
+    }
+
     private static class CountingIterator implements EventIterator {
         private final long t0 = System.nanoTime();
         private final EventIterator events;
@@ -0,0 +1,328 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.jcr.observation;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static javax.jcr.observation.Event.NODE_ADDED;
+import static javax.jcr.observation.Event.NODE_MOVED;
+import static javax.jcr.observation.Event.NODE_REMOVED;
+import static javax.jcr.observation.Event.PROPERTY_ADDED;
+import static javax.jcr.observation.Event.PROPERTY_CHANGED;
+import static javax.jcr.observation.Event.PROPERTY_REMOVED;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.jcr.observation.Event;
+
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.jcr.observation.filter.EventBatch;
+import org.apache.jackrabbit.oak.namepath.NamePathMapper;
+import org.apache.jackrabbit.oak.plugins.identifier.IdentifierTracker;
+import org.apache.jackrabbit.oak.plugins.observation.ChangeLog;
+import org.apache.jackrabbit.oak.plugins.observation.EventGenerator;
+import org.apache.jackrabbit.oak.plugins.observation.EventHandler;
+import org.apache.jackrabbit.oak.plugins.observation.FilteredHandler;
+import org.apache.jackrabbit.oak.plugins.observation.filter.EventAggregator;
+import org.apache.jackrabbit.oak.plugins.observation.filter.EventFilter;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+
+/**
+ * Batches of JCR events generated from a given content change. Instead of
+ * creating an {@code Event} instance per change, the batch keeps the values
+ * passed by the {@link QueueingHandler} in arrays, which are reused for all
+ * batches of the content change. Parent paths come from the path trackers of
+ * the handlers and are thus shared among siblings; their JCR mapping is
+ * computed once per batch. Identifiers and events are only computed on
+ * request.
+ */
+class EventBatchImpl implements EventBatch, EventSink {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final EventGenerator generator;
+
+    private final EventFactory factory;
+
+    private final NamePathMapper mapper;
+
+    private final int maxSize;
+
+    private final Map<String, String> jcrPaths = new IdentityHashMap<String, String>();
+
+    private int size;
+
+    private int[] types;
+
+    private String[] parents;
+
+    private String[] names;
+
+    private IdentifierTracker[] identifiers;
+
+    private String[] primaryTypes;
+
+    private Object[] mixinTypes;
+
+    /**
+     * The before property state, or the source path of a moved node.
+     */
+    private Object[] befores;
+
+    /**
+     * The after property state, or the destination name of a reordered node.
+     */
+    private Object[] afters;
+
+    /**
+     * Create batches of events for the given content change.
+     *
+     * @param log      the recorded content diff between {@code before} and
+     *                 {@code after}, or {@code null} to compare the node states
+     * @param maxSize  the number of events at which a batch is complete. A
+     *                 batch may exceed this size by the number of events of
+     *                 a single generation step.
+     */
+    EventBatchImpl(
+            @Nonnull NamePathMapper mapper, CommitInfo info,
+            @Nonnull NodeState before, @Nonnull NodeState after,
+            @Nullable ChangeLog log,
+            @Nonnull Iterable<String> basePaths, @Nonnull EventFilter filter,
+            @Nonnull EventAggregator aggregator, int maxSize) {
+        this.generator = new EventGenerator();
+        this.factory = new EventFactory(mapper, info);
+        this.mapper = mapper;
+        this.maxSize = maxSize;
+        int capacity = INITIAL_CAPACITY;
+        this.types = new int[capacity];
+        this.parents = new String[capacity];
+        this.names = new String[capacity];
+        this.identifiers = new IdentifierTracker[capacity];
+        this.primaryTypes = new String[capacity];
+        this.mixinTypes = new Object[capacity];
+        this.befores = new Object[capacity];
+        this.afters = new Object[capacity];
+        EventHandler handler = new FilteredHandler(
+                filter, new QueueingHandler(this, aggregator, before, after));
+        for (String path : basePaths) {
+            EventQueue.addHandler(before, after, log, path, handler, generator);
+        }
+    }
+
+    /**
+     * Drop the events of the current batch and generate the next one.
+     *
+     * @return {@code false} if there are no more events
+     */
+    boolean next() {
+        Arrays.fill(parents, 0, size, null);
+        Arrays.fill(names, 0, size, null);
+        Arrays.fill(identifiers, 0, size, null);
+        Arrays.fill(primaryTypes, 0, size, null);
+        Arrays.fill(mixinTypes, 0, size, null);
+        Arrays.fill(befores, 0, size, null);
+        Arrays.fill(afters, 0, size, null);
+        jcrPaths.clear();
+        size = 0;
+        while (size < maxSize && !generator.isDone()) {
+            generator.generate();
+        }
+        return size > 0;
+    }
+
+    //--------------------------------------------------------< EventBatch >--
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int getType(int index) {
+        return types[checkElementIndex(index, size)];
+    }
+
+    @Override
+    public String getParentPath(int index) {
+        String parent = parents[checkElementIndex(index, size)];
+        String path = jcrPaths.get(parent);
+        if (path == null) {
+            path = mapper.getJcrPath(parent);
+            jcrPaths.put(parent, path);
+        }
+        return path;
+    }
+
+    @Override
+    public String getName(int index) {
+        return mapper.getJcrName(names[checkElementIndex(index, size)]);
+    }
+
+    @Override
+    public String getPath(int index) {
+        return PathUtils.concat(getParentPath(index), getName(index));
+    }
+
+    @Override
+    public String getIdentifier(int index) {
+        return identifiers[checkElementIndex(index, size)].getIdentifier();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Event getEvent(int index) {
+        checkElementIndex(index, size);
+        String primaryType = primaryTypes[index];
+        Iterable<String> mixins = (Iterable<String>) mixinTypes[index];
+        String parent = parents[index];
+        String name = names[index];
+        String identifier = identifiers[index].getIdentifier();
+        switch (types[index]) {
+            case PROPERTY_ADDED:
+                return factory.propertyAdded((PropertyState) afters[index],
+                        primaryType, mixins, parent, name, identifier);
+            case PROPERTY_CHANGED:
+                return factory.propertyChanged(
+                        (PropertyState) befores[index], (PropertyState) afters[index],
+                        primaryType, mixins, parent, name, identifier);
+            case PROPERTY_REMOVED:
+                return factory.propertyDeleted((PropertyState) befores[index],
+                        primaryType, mixins, parent, name, identifier);
+            case NODE_ADDED:
+                return factory.nodeAdded(primaryType, mixins, parent, name, identifier);
+            case NODE_REMOVED:
+                return factory.nodeDeleted(primaryType, mixins, parent, name, identifier);
+            case NODE_MOVED:
+                if (befores[index] != null) {
+                    return factory.nodeMoved(primaryType, mixins, parent, name, identifier,
+                            (String) befores[index]);
+                } else {
+                    return factory.nodeReordered(primaryType, mixins, parent, name, identifier,
+                            (String) afters[index]);
+                }
+            default:
+                throw new IllegalStateException("Unknown event type " + types[index]);
+        }
+    }
+
+    @Override
+    public String getUserID() {
+        return factory.getUserID();
+    }
+
+    @Override
+    public String getUserData() {
+        return factory.getUserData();
+    }
+
+    @Override
+    public long getDate() {
+        return factory.getDate();
+    }
+
+    @Override
+    public boolean isExternal() {
+        return factory.isExternal();
+    }
+
+    //---------------------------------------------------------< EventSink >--
+
+    @Override
+    public void propertyAdded(
+            PropertyState after, String primaryType, Iterable<String> mixinTypes,
+            String path, String name, IdentifierTracker identifier) {
+        add(PROPERTY_ADDED, primaryType, mixinTypes, path, name, identifier, null, after);
+    }
+
+    @Override
+    public void propertyChanged(
+            PropertyState before, PropertyState after,
+            String primaryType, Iterable<String> mixinTypes,
+            String path, String name, IdentifierTracker identifier) {
+        add(PROPERTY_CHANGED, primaryType, mixinTypes, path, name, identifier, before, after);
+    }
+
+    @Override
+    public void propertyDeleted(
+            PropertyState before, String primaryType, Iterable<String> mixinTypes,
+            String path, String name, IdentifierTracker identifier) {
+        add(PROPERTY_REMOVED, primaryType, mixinTypes, path, name, identifier, before, null);
+    }
+
+    @Override
+    public void nodeAdded(
+            String primaryType, Iterable<String> mixinTypes,
+            String path, String name, IdentifierTracker identifier) {
+        add(NODE_ADDED, primaryType, mixinTypes, path, name, identifier, null, null);
+    }
+
+    @Override
+    public void nodeDeleted(
+            String primaryType, Iterable<String> mixinTypes,
+            String path, String name, IdentifierTracker identifier) {
+        add(NODE_REMOVED, primaryType, mixinTypes, path, name, identifier, null, null);
+    }
+
+    @Override
+    public void nodeMoved(
+            String primaryType, Iterable<String> mixinTypes,
+            String path, String name, IdentifierTracker identifier,
+            String sourcePath) {
+        add(NODE_MOVED, primaryType, mixinTypes, path, name, identifier, sourcePath, null);
+    }
+
+    @Override
+    public void nodeReordered(
+            String primaryType, Iterable<String> mixinTypes,
+            String path, String name, IdentifierTracker identifier,
+            String destName) {
+        add(NODE_MOVED, primaryType, mixinTypes, path, name, identifier, null, destName);
+    }
+
+    //-----------------------------------------------------------< private >--
+
+    private void add(int type, String primaryType, Iterable<String> mixins,
+            String parent, String name, IdentifierTracker identifier,
+            Object before, Object after) {
+        if (size == types.length) {
+            int capacity = size * 2;
+            types = Arrays.copyOf(types, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            names = Arrays.copyOf(names, capacity);
+            identifiers = Arrays.copyOf(identifiers, capacity);
+            primaryTypes = Arrays.copyOf(primaryTypes, capacity);
+            mixinTypes = Arrays.copyOf(mixinTypes, capacity);
+            befores = Arrays.copyOf(befores, capacity);
+            afters = Arrays.copyOf(afters, capacity);
+        }
+        types[size] = type;
+        parents[size] = parent;
+        names[size] = name;
+        identifiers[size] = identifier;
+        primaryTypes[size] = primaryType;
+        mixinTypes[size] = mixins;
+        befores[size] = before;
+        afters[size] = after;
+        size++;
+    }
+
+}
@@ -78,6 +78,22 @@ public class EventFactory {
         }
     }
 
+    String getUserID() {
+        return userID;
+    }
+
+    String getUserData() {
+        return userData;
+    }
+
+    long getDate() {
+        return date;
+    }
+
+    boolean isExternal() {
+        return external;
+    }
+
     Event propertyAdded(
             final PropertyState after, final String primaryType, final Iterable<String> mixinTypes,
             String path, String name, String identifier) {
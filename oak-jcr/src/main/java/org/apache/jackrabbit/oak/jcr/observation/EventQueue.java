@@ -24,11 +24,15 @@ import java.util.LinkedList;
 import java.util.NoSuchElementException;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.jcr.observation.Event;
 import javax.jcr.observation.EventIterator;
 
+import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.namepath.NamePathMapper;
+import org.apache.jackrabbit.oak.plugins.identifier.IdentifierTracker;
+import org.apache.jackrabbit.oak.plugins.observation.ChangeLog;
 import org.apache.jackrabbit.oak.plugins.observation.EventGenerator;
 import org.apache.jackrabbit.oak.plugins.observation.EventHandler;
 import org.apache.jackrabbit.oak.plugins.observation.FilteredHandler;
@@ -40,10 +44,12 @@ import org.apache.jackrabbit.oak.spi.state.NodeState;
 /**
  * Queue of JCR Events generated from a given content change
  */
-class EventQueue implements EventIterator {
+class EventQueue implements EventIterator, EventSink {
 
     private final EventGenerator generator;
 
+    private final EventFactory factory;
+
     private final LinkedList<Event> queue = newLinkedList();
 
     private long position = 0;
@@ -53,17 +59,32 @@ class EventQueue implements EventIterator {
             @Nonnull NodeState before, @Nonnull NodeState after,
             @Nonnull Iterable<String> basePaths, @Nonnull EventFilter filter,
             @Nonnull EventAggregator aggregator) {
+        this(mapper, info, before, after, null, basePaths, filter, aggregator);
+    }
+
+    /**
+     * Create a queue of events for the given content change.
+     *
+     * @param log  the recorded content diff between {@code before} and
+     *             {@code after}, or {@code null} to compare the node states
+     */
+    public EventQueue(
+            @Nonnull NamePathMapper mapper, CommitInfo info,
+            @Nonnull NodeState before, @Nonnull NodeState after,
+            @Nullable ChangeLog log,
+            @Nonnull Iterable<String> basePaths, @Nonnull EventFilter filter,
+            @Nonnull EventAggregator aggregator) {
         this.generator = new EventGenerator();
-        EventFactory factory = new EventFactory(mapper, info);
+        this.factory = new EventFactory(mapper, info);
         EventHandler handler = new FilteredHandler(
-                filter, new QueueingHandler(this, factory, aggregator, before, after));
+                filter, new QueueingHandler(this, aggregator, before, after));
         for (String path : basePaths) {
-            addHandler(before, after, path, handler, generator);
+            addHandler(before, after, log, path, handler, generator);
         }
     }
 
-    private static void addHandler(NodeState before, NodeState after, String path,
-            EventHandler handler, EventGenerator generator) {
+    static void addHandler(NodeState before, NodeState after, ChangeLog log,
+            String path, EventHandler handler, EventGenerator generator) {
         for (String name : PathUtils.elements(path)) {
             before = before.getChildNode(name);
             after = after.getChildNode(name);
@@ -71,15 +92,76 @@ class EventQueue implements EventIterator {
             if (handler == null) {
                 return;
             }
+            if (log != null) {
+                log = log.getChild(name);
+            }
+        }
+        if (log != null) {
+            generator.addHandler(log, handler);
+        } else {
+            generator.addHandler(before, after, handler);
         }
-        generator.addHandler(before, after, handler);
     }
 
-    /**
-     * Called by the {@link QueueingHandler} to add new events to the queue.
-     */
-    void addEvent(Event event) {
-        queue.add(event);
+    //---------------------------------------------------------< EventSink >--
+
+    @Override
+    public void propertyAdded(
+            PropertyState after, String primaryType, Iterable<String> mixinTypes,
+            String path, String name, IdentifierTracker identifier) {
+        queue.add(factory.propertyAdded(
+                after, primaryType, mixinTypes, path, name, identifier.getIdentifier()));
+    }
+
+    @Override
+    public void propertyChanged(
+            PropertyState before, PropertyState after,
+            String primaryType, Iterable<String> mixinTypes,
+            String path, String name, IdentifierTracker identifier) {
+        queue.add(factory.propertyChanged(
+                before, after, primaryType, mixinTypes, path, name, identifier.getIdentifier()));
+    }
+
+    @Override
+    public void propertyDeleted(
+            PropertyState before, String primaryType, Iterable<String> mixinTypes,
+            String path, String name, IdentifierTracker identifier) {
+        queue.add(factory.propertyDeleted(
+                before, primaryType, mixinTypes, path, name, identifier.getIdentifier()));
+    }
+
+    @Override
+    public void nodeAdded(
+            String primaryType, Iterable<String> mixinTypes,
+            String path, String name, IdentifierTracker identifier) {
+        queue.add(factory.nodeAdded(
+                primaryType, mixinTypes, path, name, identifier.getIdentifier()));
+    }
+
+    @Override
+    public void nodeDeleted(
+            String primaryType, Iterable<String> mixinTypes,
+            String path, String name, IdentifierTracker identifier) {
+        queue.add(factory.nodeDeleted(
+                primaryType, mixinTypes, path, name, identifier.getIdentifier()));
+    }
+
+    @Override
+    public void nodeMoved(
+            String primaryType, Iterable<String> mixinTypes,
+            String path, String name, IdentifierTracker identifier,
+            String sourcePath) {
+        queue.add(factory.nodeMoved(
+                primaryType, mixinTypes, path, name, identifier.getIdentifier(), sourcePath));
+    }
+
+    @Override
+    public void nodeReordered(
+            String primaryType, Iterable<String> mixinTypes,
+            String path, String name, IdentifierTracker identifier,
+            String destName) {
+        queue.add(factory.nodeReordered(
+                primaryType, mixinTypes, path, name, identifier.getIdentifier(), destName));
     }
 
     //-----------------------------------------------------< EventIterator >--
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.jcr.observation;
+
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.plugins.identifier.IdentifierTracker;
+
+/**
+ * Receiver of the JCR events translated by a {@link QueueingHandler}. The
+ * arguments are the same as the ones of the corresponding {@link EventFactory}
+ * methods, except for the identifier, which is passed as a tracker so that
+ * it is only computed when needed.
+ */
+interface EventSink {
+
+    void propertyAdded(
+            PropertyState after, String primaryType, Iterable<String> mixinTypes,
+            String path, String name, IdentifierTracker identifier);
+
+    void propertyChanged(
+            PropertyState before, PropertyState after,
+            String primaryType, Iterable<String> mixinTypes,
+            String path, String name, IdentifierTracker identifier);
+
+    void propertyDeleted(
+            PropertyState before, String primaryType, Iterable<String> mixinTypes,
+            String path, String name, IdentifierTracker identifier);
+
+    void nodeAdded(
+            String primaryType, Iterable<String> mixinTypes,
+            String path, String name, IdentifierTracker identifier);
+
+    void nodeDeleted(
+            String primaryType, Iterable<String> mixinTypes,
+            String path, String name, IdentifierTracker identifier);
+
+    void nodeMoved(
+            String primaryType, Iterable<String> mixinTypes,
+            String path, String name, IdentifierTracker identifier,
+            String sourcePath);
+
+    void nodeReordered(
+            String primaryType, Iterable<String> mixinTypes,
+            String path, String name, IdentifierTracker identifier,
+            String destName);
+
+}
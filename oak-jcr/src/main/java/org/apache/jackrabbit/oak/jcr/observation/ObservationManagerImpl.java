@@ -54,11 +54,14 @@ import org.apache.jackrabbit.oak.api.ContentSession;
 import org.apache.jackrabbit.oak.api.Root;
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.jcr.delegate.SessionDelegate;
+import org.apache.jackrabbit.oak.jcr.observation.filter.BatchedEventListener;
 import org.apache.jackrabbit.oak.jcr.session.SessionContext;
 import org.apache.jackrabbit.oak.namepath.NamePathMapper;
 import org.apache.jackrabbit.oak.plugins.nodetype.ReadOnlyNodeTypeManager;
 import org.apache.jackrabbit.oak.plugins.observation.CommitRateLimiter;
 import org.apache.jackrabbit.oak.plugins.observation.ExcludeExternal;
+import org.apache.jackrabbit.oak.plugins.observation.filter.ChangeSetFilter;
+import org.apache.jackrabbit.oak.plugins.observation.filter.ChangeSetFilterIndex;
 import org.apache.jackrabbit.oak.plugins.observation.filter.FilterBuilder;
 import org.apache.jackrabbit.oak.plugins.observation.filter.FilterBuilder.Condition;
 import org.apache.jackrabbit.oak.plugins.observation.filter.UniversalFilter.Selector;
@@ -80,6 +83,15 @@ public class ObservationManagerImpl implements JackrabbitObservationManager {
     private static final Logger LOG = LoggerFactory.getLogger(ObservationManagerImpl.class);
     private static final int STOP_TIME_OUT = 1000;
 
+    /**
+     * Whether to evaluate the prefilters of all listeners through a shared
+     * {@link ChangeSetFilterIndex}.
+     */
+    static final boolean PREFILTER_INDEX = Boolean.parseBoolean(
+            System.getProperty("oak.observation.prefilterIndex", "true"));
+
+    private static final ChangeSetFilterIndex PREFILTERS = new ChangeSetFilterIndex();
+
     public static final Marker OBSERVATION =
             MarkerFactory.getMarker("observation");
 
@@ -88,6 +100,8 @@ public class ObservationManagerImpl implements JackrabbitObservationManager {
 
     private final Map<EventListener, ChangeProcessor> processors =
             new HashMap<EventListener, ChangeProcessor>();
+    private final Map<EventListener, ChangeSetFilter> prefilters =
+            new HashMap<EventListener, ChangeSetFilter>();
 
     private final SessionDelegate sessionDelegate;
     private final ReadOnlyNodeTypeManager ntMgr;
@@ -138,6 +152,10 @@ public class ObservationManagerImpl implements JackrabbitObservationManager {
         synchronized (this) {
             toBeStopped = newArrayList(processors.values());
             processors.clear();
+            for (ChangeSetFilter prefilter : prefilters.values()) {
+                PREFILTERS.remove(prefilter);
+            }
+            prefilters.clear();
         }
 
         for (ChangeProcessor processor : toBeStopped) {
@@ -151,7 +169,15 @@ public class ObservationManagerImpl implements JackrabbitObservationManager {
     }
 
     private synchronized void addEventListener(EventListener listener, ListenerTracker tracker,
-            FilterProvider filterProvider) {
+            @Nullable BatchDispatcher batchDispatcher, FilterProvider filterProvider,
+            @Nullable ChangeSetFilter prefilter) {
+
+        ChangeSetFilter oldPrefilter = prefilter == null
+                ? prefilters.remove(listener)
+                : prefilters.put(listener, prefilter);
+        if (oldPrefilter != null) {
+            PREFILTERS.remove(oldPrefilter);
+        }
 
         ChangeProcessor processor = processors.get(listener);
         if (processor == null) {
@@ -162,7 +188,7 @@ public class ObservationManagerImpl implements JackrabbitObservationManager {
             // session. See OAK-1368.
             processor = new ChangeProcessor(sessionDelegate.getContentSession(), namePathMapper,
                     tracker, filterProvider, statisticManager, queueLength,
-                    commitRateLimiter);
+                    commitRateLimiter, batchDispatcher);
             processors.put(listener, processor);
             processor.start(whiteboard);
         } else {
@@ -190,9 +216,10 @@ public class ObservationManagerImpl implements JackrabbitObservationManager {
      */
     public void addEventListener(EventListener listener, FilterProvider filterProvider) {
         // FIXME Add support for FilterProvider in ListenerTracker
+        BatchDispatcher batchDispatcher = createBatchDispatcher(listener);
         ListenerTracker tracker = new WarningListenerTracker(
-                true, listener, 0, null, true, null, null, false);
-        addEventListener(listener, tracker, filterProvider);
+                true, batchDispatcher != null ? batchDispatcher : listener, 0, null, true, null, null, false);
+        addEventListener(listener, tracker, batchDispatcher, filterProvider, null);
     }
 
     @Override
@@ -320,8 +347,10 @@ public class ObservationManagerImpl implements JackrabbitObservationManager {
             .condition(condition);
 
         // FIXME support multiple path in ListenerTracker
+        BatchDispatcher batchDispatcher = createBatchDispatcher(listener);
         ListenerTracker tracker = new WarningListenerTracker(
-                !noExternal, listener, eventTypes, absPath, isDeep, uuids, nodeTypeName, noLocal);
+                !noExternal, batchDispatcher != null ? batchDispatcher : listener,
+                eventTypes, absPath, isDeep, uuids, nodeTypeName, noLocal);
 
         Set<String> additionalIncludePaths = null;
         if (oakEventFilter != null) {
@@ -347,10 +376,13 @@ public class ObservationManagerImpl implements JackrabbitObservationManager {
         // OAK-4908 : prefiltering support. here we have explicit yes/no/maybe filtering
         // for things like propertyNames/nodeTypes/nodeNames/paths which cannot be 
         // applied on the full-fledged filterBuilder above but requires an explicit 'prefilter' for that.
-        filterBuilder.setChangeSetFilter(new ChangeSetFilterImpl(includePaths, isDeep, additionalIncludePaths, excludedPaths, null,
-                explodedNodeTypes, null));
+        ChangeSetFilterImpl prefilter = new ChangeSetFilterImpl(includePaths, isDeep, additionalIncludePaths, excludedPaths, null,
+                explodedNodeTypes, null);
+        // route the prefiltering of all listeners through a single index
+        ChangeSetFilter indexedPrefilter = PREFILTER_INDEX ? PREFILTERS.add(prefilter) : null;
+        filterBuilder.setChangeSetFilter(indexedPrefilter != null ? indexedPrefilter : prefilter);
         
-        addEventListener(listener, tracker, filterBuilder.build());
+        addEventListener(listener, tracker, batchDispatcher, filterBuilder.build(), indexedPrefilter);
     }
 
     private String pathWithoutGlob(String path) {
@@ -391,6 +423,10 @@ public class ObservationManagerImpl implements JackrabbitObservationManager {
         ChangeProcessor processor;
         synchronized (this) {
             processor = processors.remove(listener);
+            ChangeSetFilter prefilter = prefilters.remove(listener);
+            if (prefilter != null) {
+                PREFILTERS.remove(prefilter);
+            }
         }
         if (processor != null) {
             stop(processor); // needs to happen outside synchronization
@@ -456,6 +492,18 @@ public class ObservationManagerImpl implements JackrabbitObservationManager {
         }
     }
 
+    /**
+     * @return a dispatcher delivering event batches to the given listener if
+     *         it is a {@link BatchedEventListener}, {@code null} otherwise.
+     */
+    @CheckForNull
+    private static BatchDispatcher createBatchDispatcher(EventListener listener) {
+        if (listener instanceof BatchedEventListener) {
+            return new BatchDispatcher((BatchedEventListener) listener);
+        }
+        return null;
+    }
+
     private class WarningListenerTracker extends ListenerTracker {
         private final boolean enableWarning;
 
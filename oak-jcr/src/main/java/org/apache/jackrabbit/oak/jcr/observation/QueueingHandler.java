@@ -38,9 +38,9 @@ import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 
 /**
- * Event handler that uses the given {@link EventFactory} and tracked path
- * and identifier information to translate change callbacks to corresponding
- * JCR events that are then placed in the given {@link EventQueue}.
+ * Event handler that uses tracked path and identifier information to
+ * translate change callbacks to corresponding JCR events that are then
+ * passed to the given {@link EventSink}.
  */
 class QueueingHandler extends DefaultEventHandler {
     
@@ -64,9 +64,7 @@ class QueueingHandler extends DefaultEventHandler {
     
     private final QueueingHandler parent;
 
-    private final EventQueue queue;
-
-    private final EventFactory factory;
+    private final EventSink sink;
 
     private final PathTracker pathTracker;
 
@@ -89,11 +87,10 @@ class QueueingHandler extends DefaultEventHandler {
     private final List<ChildNodeEntry> parents;
     
     QueueingHandler(
-            EventQueue queue, EventFactory factory,
+            EventSink sink,
             EventAggregator aggregator, NodeState before, NodeState after) {
         this.parent = null;
-        this.queue = queue;
-        this.factory = factory;
+        this.sink = sink;
         this.name = null;
         this.aggregator = aggregator;
         this.pathTracker = new PathTracker();
@@ -116,8 +113,7 @@ class QueueingHandler extends DefaultEventHandler {
             QueueingHandler parent,
             String name, NodeState before, NodeState after) {
         this.parent = parent;
-        this.queue = parent.queue;
-        this.factory = parent.factory;
+        this.sink = parent.sink;
         this.root = parent.root;
         this.name = name;
         this.aggregator = parent.aggregator;
@@ -169,31 +165,31 @@ class QueueingHandler extends DefaultEventHandler {
     @Override
     public void propertyAdded(PropertyState after) {
         AggregationResult aggregated = aggregate(after);
-        queue.addEvent(factory.propertyAdded(
+        sink.propertyAdded(
                 after,
                 aggregated.primaryType, aggregated.mixinTypes,
                 aggregated.pathTracker.getPath(), aggregated.name,
-                aggregated.identifierTracker.getIdentifier()));
+                aggregated.identifierTracker);
     }
 
     @Override
     public void propertyChanged(PropertyState before, PropertyState after) {
         AggregationResult aggregated = aggregate(after);
-        queue.addEvent(factory.propertyChanged(
+        sink.propertyChanged(
                 before, after,
                 aggregated.primaryType, aggregated.mixinTypes,
                 aggregated.pathTracker.getPath(), aggregated.name,
-                aggregated.identifierTracker.getIdentifier()));
+                aggregated.identifierTracker);
     }
 
     @Override
     public void propertyDeleted(PropertyState before) {
         AggregationResult aggregated = aggregate(before);
-        queue.addEvent(factory.propertyDeleted(
+        sink.propertyDeleted(
                 before,
                 aggregated.primaryType, aggregated.mixinTypes,
                 aggregated.pathTracker.getPath(), aggregated.name,
-                aggregated.identifierTracker.getIdentifier()));
+                aggregated.identifierTracker);
     }
 
     private AggregationResult aggregate(String name, NodeState node, IdentifierTracker childTracker) {
@@ -231,9 +227,9 @@ class QueueingHandler extends DefaultEventHandler {
         IdentifierTracker tracker =
                 identifierTracker.getChildTracker(name, after);
         AggregationResult aggregated = aggregate(name, after, tracker);
-        queue.addEvent(factory.nodeAdded(
+        sink.nodeAdded(
                 aggregated.primaryType, aggregated.mixinTypes,
-                aggregated.pathTracker.getPath(), aggregated.name, aggregated.identifierTracker.getIdentifier()));
+                aggregated.pathTracker.getPath(), aggregated.name, aggregated.identifierTracker);
     }
 
     @Override
@@ -241,9 +237,9 @@ class QueueingHandler extends DefaultEventHandler {
         IdentifierTracker tracker =
                 beforeIdentifierTracker.getChildTracker(name, before);
         AggregationResult aggregated = aggregate(name, before, tracker);
-        queue.addEvent(factory.nodeDeleted(
+        sink.nodeDeleted(
                 aggregated.primaryType, aggregated.mixinTypes,
-                aggregated.pathTracker.getPath(), aggregated.name, aggregated.identifierTracker.getIdentifier()));
+                aggregated.pathTracker.getPath(), aggregated.name, aggregated.identifierTracker);
     }
 
     @Override
@@ -252,10 +248,10 @@ class QueueingHandler extends DefaultEventHandler {
         IdentifierTracker tracker =
                 identifierTracker.getChildTracker(name, moved);
         AggregationResult aggregated = aggregate(name, moved, tracker);
-        queue.addEvent(factory.nodeMoved(
+        sink.nodeMoved(
                 aggregated.primaryType, aggregated.mixinTypes,
-                aggregated.pathTracker.getPath(), aggregated.name, aggregated.identifierTracker.getIdentifier(),
-                sourcePath));
+                aggregated.pathTracker.getPath(), aggregated.name, aggregated.identifierTracker,
+                sourcePath);
     }
 
     @Override
@@ -264,10 +260,10 @@ class QueueingHandler extends DefaultEventHandler {
         IdentifierTracker tracker =
                 identifierTracker.getChildTracker(name, reordered);
         AggregationResult aggregated = aggregate(name, reordered, tracker);
-        queue.addEvent(factory.nodeReordered(
+        sink.nodeReordered(
                 aggregated.primaryType, aggregated.mixinTypes,
-                aggregated.pathTracker.getPath(), aggregated.name, aggregated.identifierTracker.getIdentifier(),
-                destName));
+                aggregated.pathTracker.getPath(), aggregated.name, aggregated.identifierTracker,
+                destName);
     }
 
     private static String getPrimaryType(NodeState before) {
@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.jcr.observation.filter;
+
+import javax.jcr.observation.EventListener;
+
+import aQute.bnd.annotation.ConsumerType;
+
+/**
+ * Oak specific extension of the EventListener that receives the events of a
+ * commit in batches instead of through an EventIterator. A batch keeps the
+ * events in column form and only materialises {@code Event} instances on
+ * request, which avoids most of the per event allocation for listeners that
+ * just count or route events.
+ * <p>
+ * Usage: implement this interface and register the listener as usual, e.g.
+ * <code>
+ * observationManager.addEventListener(batchedListener, oakFilter);
+ * </code>
+ * Events are then delivered exclusively through {@link #onEventBatch(EventBatch)}.
+ * {@link #onEvent(javax.jcr.observation.EventIterator)} is not called by Oak.
+ */
+@ConsumerType
+public interface BatchedEventListener extends EventListener {
+
+    /**
+     * Called with the events of a commit. The events of a large commit are
+     * split into several consecutive batches. The batch and the values
+     * returned by it are only valid for the duration of the call.
+     *
+     * @param batch the events
+     */
+    void onEventBatch(EventBatch batch);
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.jcr.observation.filter;
+
+import javax.jcr.observation.Event;
+
+import aQute.bnd.annotation.ProviderType;
+
+/**
+ * A batch of observation events of a single commit, delivered to a
+ * {@link BatchedEventListener}. Events are addressed by their index in
+ * the batch, from {@code 0} to {@code size() - 1}.
+ * <p>
+ * Parent paths are shared: all events of the batch with the same parent
+ * return the same {@code String} instance from {@link #getParentPath(int)},
+ * so listeners can route events by parent using identity comparison.
+ */
+@ProviderType
+public interface EventBatch {
+
+    /**
+     * @return the number of events in this batch
+     */
+    int size();
+
+    /**
+     * @param index the index of the event
+     * @return the type of the event, as in {@link Event#getType()}
+     */
+    int getType(int index);
+
+    /**
+     * @param index the index of the event
+     * @return the JCR path of the parent of the item the event is about
+     */
+    String getParentPath(int index);
+
+    /**
+     * @param index the index of the event
+     * @return the JCR name of the item the event is about
+     */
+    String getName(int index);
+
+    /**
+     * @param index the index of the event
+     * @return the JCR path of the item, as in {@link Event#getPath()}
+     */
+    String getPath(int index);
+
+    /**
+     * @param index the index of the event
+     * @return the identifier, as in {@link Event#getIdentifier()}
+     */
+    String getIdentifier(int index);
+
+    /**
+     * Create the {@code Event} instance for the event with the given index.
+     * The returned event remains valid after the batch was delivered.
+     *
+     * @param index the index of the event
+     * @return the event
+     */
+    Event getEvent(int index);
+
+    /**
+     * @return the user id of the commit, as in {@link Event#getUserID()}
+     */
+    String getUserID();
+
+    /**
+     * @return the user data of the commit, as in {@link Event#getUserData()}
+     */
+    String getUserData();
+
+    /**
+     * @return the date of the commit, as in {@link Event#getDate()}
+     */
+    long getDate();
+
+    /**
+     * @return {@code true} if the commit happened on another cluster node
+     */
+    boolean isExternal();
+
+}
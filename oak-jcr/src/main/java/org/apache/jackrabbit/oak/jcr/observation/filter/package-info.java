@@ -15,7 +15,7 @@
  * limitations under the License.
  */
 
-@Version("1.0.0")
+@Version("1.1.0")
 package org.apache.jackrabbit.oak.jcr.observation.filter;
 
 import aQute.bnd.annotation.Version;
\ No newline at end of file
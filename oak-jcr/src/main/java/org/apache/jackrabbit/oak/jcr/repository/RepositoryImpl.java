@@ -90,6 +90,15 @@ public class RepositoryImpl implements JackrabbitRepository {
      */
     public static final String RELAXED_LOCKING = "oak.relaxed-locking";
 
+    /**
+     * Name of the session attribute for creating a read-only session, which
+     * can be used by many threads concurrently without serializing their
+     * operations.
+     *
+     * @see SessionDelegate#isReadOnly()
+     */
+    public static final String READ_ONLY = "oak.read-only";
+
     /**
      * logger instance
      */
@@ -274,16 +283,17 @@ public class RepositoryImpl implements JackrabbitRepository {
                 throw new RepositoryException("Duplicate attribute '" + REFRESH_INTERVAL + "'.");
             }
             boolean relaxedLocking = getRelaxedLocking(attributes);
+            boolean readOnly = getBoolean(attributes, READ_ONLY);
 
             RefreshPredicate predicate = new RefreshPredicate();
             RefreshStrategy refreshStrategy = refreshInterval == null
                 ? new RefreshStrategy.ConditionalRefreshStrategy(new RefreshStrategy.LogOnce(60), predicate)
                 : new RefreshStrategy.Timed(refreshInterval);
             ContentSession contentSession = contentRepository.login(credentials, workspaceName);
-            SessionDelegate sessionDelegate = createSessionDelegate(refreshStrategy, contentSession);
+            SessionDelegate sessionDelegate = createSessionDelegate(refreshStrategy, contentSession, readOnly);
             SessionContext context = createSessionContext(
                     statisticManager, securityProvider,
-                    createAttributes(refreshInterval, relaxedLocking),
+                    createAttributes(refreshInterval, relaxedLocking, readOnly),
                     sessionDelegate, observationQueueLength, commitRateLimiter);
             predicate.setSessionContext(context);
             return context.getSession();
@@ -294,14 +304,15 @@ public class RepositoryImpl implements JackrabbitRepository {
 
     private SessionDelegate createSessionDelegate(
             RefreshStrategy refreshStrategy,
-            ContentSession contentSession) {
+            ContentSession contentSession,
+            boolean readOnly) {
 
         final RefreshOnGC refreshOnGC = new RefreshOnGC(gcMonitor);
         refreshStrategy = Composite.create(refreshStrategy, refreshOnGC);
 
         return new SessionDelegate(
                 contentSession, securityProvider, refreshStrategy,
-                threadSaveCount, statisticManager, clock) {
+                threadSaveCount, statisticManager, clock, readOnly) {
             // Defer session MBean registration to avoid cluttering the
             // JMX name space with short lived sessions
             RegistrationTask registrationTask = new RegistrationTask(getSessionStats(), whiteboard);
@@ -429,7 +440,11 @@ public class RepositoryImpl implements JackrabbitRepository {
     }
 
     private static boolean getRelaxedLocking(Map<String, Object> attributes) {
-        Object value = attributes.get(RELAXED_LOCKING);
+        return getBoolean(attributes, RELAXED_LOCKING);
+    }
+
+    private static boolean getBoolean(Map<String, Object> attributes, String name) {
+        Object value = attributes.get(name);
         if (value instanceof Boolean) {
             return (Boolean) value;
         } else if (value instanceof String) {
@@ -462,8 +477,17 @@ public class RepositoryImpl implements JackrabbitRepository {
     }
 
     private static Map<String, Object> createAttributes(
-            Long refreshInterval, boolean relaxedLocking) {
-        if (refreshInterval == null && !relaxedLocking) {
+            Long refreshInterval, boolean relaxedLocking, boolean readOnly) {
+        if (readOnly) {
+            ImmutableMap.Builder<String, Object> attributes = ImmutableMap.builder();
+            if (refreshInterval != null) {
+                attributes.put(REFRESH_INTERVAL, refreshInterval);
+            }
+            if (relaxedLocking) {
+                attributes.put(RELAXED_LOCKING, Boolean.TRUE);
+            }
+            return attributes.put(READ_ONLY, Boolean.TRUE).build();
+        } else if (refreshInterval == null && !relaxedLocking) {
             return emptyMap();
         } else if (refreshInterval == null) {
             return singletonMap(RELAXED_LOCKING, (Object) Boolean.valueOf(relaxedLocking));
@@ -80,6 +80,7 @@ import org.apache.jackrabbit.oak.api.Tree;
 import org.apache.jackrabbit.oak.api.Tree.Status;
 import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.jcr.api.PropertyValuesNode;
 import org.apache.jackrabbit.oak.jcr.delegate.NodeDelegate;
 import org.apache.jackrabbit.oak.jcr.delegate.PropertyDelegate;
 import org.apache.jackrabbit.oak.jcr.delegate.VersionManagerDelegate;
@@ -90,7 +91,7 @@ import org.apache.jackrabbit.oak.jcr.version.VersionImpl;
 import org.apache.jackrabbit.oak.plugins.identifier.IdentifierManager;
 import org.apache.jackrabbit.oak.plugins.memory.PropertyStates;
 import org.apache.jackrabbit.oak.plugins.nodetype.EffectiveNodeType;
-import org.apache.jackrabbit.oak.plugins.tree.RootFactory;
+import org.apache.jackrabbit.oak.plugins.value.ValueFactoryImpl;
 import org.apache.jackrabbit.oak.spi.security.authorization.permission.Permissions;
 import org.apache.jackrabbit.oak.util.TreeUtil;
 import org.apache.jackrabbit.value.ValueHelper;
@@ -102,7 +103,7 @@ import org.slf4j.LoggerFactory;
  *
  * @param <T> the delegate type
  */
-public class NodeImpl<T extends NodeDelegate> extends ItemImpl<T> implements Node, JackrabbitNode {
+public class NodeImpl<T extends NodeDelegate> extends ItemImpl<T> implements Node, JackrabbitNode, PropertyValuesNode {
 
     /**
      * The maximum returned value for {@link NodeIterator#getSize()}. If there
@@ -660,19 +661,16 @@ public class NodeImpl<T extends NodeDelegate> extends ItemImpl<T> implements Nod
             @Nonnull
             @Override
             public PropertyIterator perform() throws RepositoryException {
-                final PropertyIteratorDelegate delegate = new PropertyIteratorDelegate(node, new Predicate<PropertyDelegate>() {
+                // match the names once, property delegates are created on demand
+                List<String> names = node.getPropertyNames(new Predicate<String>() {
                     @Override
-                    public boolean apply(PropertyDelegate entry) {
+                    public boolean apply(String oakName) {
                         // TODO: use Oak names
-                        return ItemNameMatcher.matches(toJcrPath(entry.getName()), namePattern);
+                        return ItemNameMatcher.matches(toJcrPath(oakName), namePattern);
                     }
                 });
-                return new PropertyIteratorAdapter(propertyIterator(delegate.iterator())){
-                    @Override
-                    public long getSize() {
-                        return delegate.getSize();
-                    }
-                };
+                return new PropertyIteratorAdapter(
+                        propertyIterator(node.getProperties(names.iterator())), names.size());
             }
         });
     }
@@ -684,19 +682,41 @@ public class NodeImpl<T extends NodeDelegate> extends ItemImpl<T> implements Nod
             @Nonnull
             @Override
             public PropertyIterator perform() throws RepositoryException {
-                final PropertyIteratorDelegate delegate = new PropertyIteratorDelegate(node, new Predicate<PropertyDelegate>() {
+                // match the names once, property delegates are created on demand
+                List<String> names = node.getPropertyNames(new Predicate<String>() {
                     @Override
-                    public boolean apply(PropertyDelegate entry) {
+                    public boolean apply(String oakName) {
                         // TODO: use Oak names
-                        return ItemNameMatcher.matches(toJcrPath(entry.getName()), nameGlobs);
+                        return ItemNameMatcher.matches(toJcrPath(oakName), nameGlobs);
                     }
                 });
-                return new PropertyIteratorAdapter(propertyIterator(delegate.iterator())){
-                    @Override
-                    public long getSize() {
-                        return delegate.getSize();
+                return new PropertyIteratorAdapter(
+                        propertyIterator(node.getProperties(names.iterator())), names.size());
+            }
+        });
+    }
+
+    @Override
+    @Nonnull
+    public Object[] getPropertyValues(@Nonnull final String[] names) throws RepositoryException {
+        return perform(new NodeOperation<Object[]>(dlg, "getPropertyValues") {
+            @Nonnull
+            @Override
+            public Object[] perform() throws RepositoryException {
+                Object[] values = new Object[names.length];
+                for (int i = 0; i < names.length; i++) {
+                    PropertyState property = node.getPropertyState(getOakName(names[i]));
+                    if (property == null) {
+                        continue;
                     }
-                };
+                    if (property.isArray()) {
+                        values[i] = ValueFactoryImpl.createValues(property, sessionContext)
+                                .toArray(new Value[property.count()]);
+                    } else {
+                        values[i] = ValueFactoryImpl.createValue(property, sessionContext);
+                    }
+                }
+                return values;
             }
         });
     }
@@ -1278,7 +1298,7 @@ public class NodeImpl<T extends NodeDelegate> extends ItemImpl<T> implements Nod
         } else if (tree.getStatus() != Status.NEW) {
             // OAK-2441: for backwards compatibility with Jackrabbit 2.x try to
             // read the primary type from the underlying node state.
-            primaryTypeName = TreeUtil.getPrimaryTypeName(RootFactory.createReadOnlyRoot(sessionDelegate.getRoot()).getTree(tree.getPath()));
+            primaryTypeName = TreeUtil.getPrimaryTypeName(sessionDelegate.createReadOnlyRoot().getTree(tree.getPath()));
         }
         return primaryTypeName;
     }
@@ -1292,7 +1312,7 @@ public class NodeImpl<T extends NodeDelegate> extends ItemImpl<T> implements Nod
             // OAK-2441: for backwards compatibility with Jackrabbit 2.x try to
             // read the primary type from the underlying node state.
             mixinNames = TreeUtil.getNames(
-                    RootFactory.createReadOnlyRoot(sessionDelegate.getRoot()).getTree(tree.getPath()),
+                    sessionDelegate.createReadOnlyRoot().getTree(tree.getPath()),
                     JcrConstants.JCR_MIXINTYPES).iterator();
         }
         return mixinNames;
@@ -1598,28 +1618,4 @@ public class NodeImpl<T extends NodeDelegate> extends ItemImpl<T> implements Nod
     private String getNodePath(){
         return dlg.getPath();
     }
-
-    private static class PropertyIteratorDelegate {
-        private final NodeDelegate node;
-        private final Predicate<PropertyDelegate> predicate;
-
-        PropertyIteratorDelegate(NodeDelegate node, Predicate<PropertyDelegate> predicate) {
-            this.node = node;
-            this.predicate = predicate;
-        }
-
-        public Iterator<PropertyDelegate> iterator() throws InvalidItemStateException {
-            return Iterators.filter(node.getProperties(), predicate);
-        }
-
-        public long getSize() {
-            try {
-                return Iterators.size(iterator());
-            } catch (InvalidItemStateException e) {
-                throw new IllegalStateException(
-                        "This iterator is no longer valid", e);
-            }
-        }
-
-    }
 }
@@ -62,7 +62,9 @@ import org.apache.jackrabbit.oak.spi.security.authorization.AuthorizationConfigu
 import org.apache.jackrabbit.oak.spi.security.principal.PrincipalConfiguration;
 import org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConfiguration;
 import org.apache.jackrabbit.oak.spi.security.user.UserConfiguration;
+import org.apache.jackrabbit.oak.spi.state.Prefetchable;
 import org.apache.jackrabbit.oak.spi.whiteboard.Whiteboard;
+import org.apache.jackrabbit.oak.spi.whiteboard.WhiteboardUtils;
 import org.apache.jackrabbit.oak.spi.xml.ProtectedItemImporter;
 import org.apache.jackrabbit.oak.stats.StatisticManager;
 import org.apache.jackrabbit.oak.stats.CounterStats;
@@ -102,6 +104,7 @@ public class SessionContext implements NamePathMapper {
     private UserManager userManager;
     private PrivilegeManager privilegeManager;
     private ObservationManagerImpl observationManager;
+    private Prefetchable prefetchable;
 
     /** Paths (tokens) of all open scoped locks held by this session. */
     private final Set<String> openScopedLocks = newTreeSet();
@@ -295,6 +298,18 @@ public class SessionContext implements NamePathMapper {
         return observationManager;
     }
 
+    /**
+     * @return the node store prefetcher registered with the whiteboard, or
+     *         {@code null} if the node store does not support prefetching.
+     */
+    @CheckForNull
+    public Prefetchable getPrefetchable() {
+        if (prefetchable == null) {
+            prefetchable = WhiteboardUtils.getService(whiteboard, Prefetchable.class);
+        }
+        return prefetchable;
+    }
+
     public boolean hasEventListeners(){
         if (observationManager != null){
             return observationManager.getRegisteredEventListeners().hasNext();
@@ -17,6 +17,7 @@
 package org.apache.jackrabbit.oak.jcr.session;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Lists.newArrayListWithCapacity;
 import static com.google.common.collect.Sets.newTreeSet;
 import static org.apache.jackrabbit.api.stats.RepositoryStatistics.Type.SESSION_COUNT;
 import static org.apache.jackrabbit.oak.commons.PathUtils.getParentPath;
@@ -26,6 +27,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.security.AccessControlException;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 import javax.annotation.CheckForNull;
@@ -59,6 +61,7 @@ import org.apache.jackrabbit.commons.xml.SystemViewExporter;
 import org.apache.jackrabbit.commons.xml.ToXmlContentHandler;
 import org.apache.jackrabbit.oak.api.Tree;
 import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.jcr.api.PrefetchingSession;
 import org.apache.jackrabbit.oak.jcr.delegate.ItemDelegate;
 import org.apache.jackrabbit.oak.jcr.delegate.NodeDelegate;
 import org.apache.jackrabbit.oak.jcr.delegate.PropertyDelegate;
@@ -68,6 +71,7 @@ import org.apache.jackrabbit.oak.jcr.session.operation.SessionOperation;
 import org.apache.jackrabbit.oak.jcr.xml.ImportHandler;
 import org.apache.jackrabbit.oak.spi.security.authentication.ImpersonationCredentials;
 import org.apache.jackrabbit.oak.spi.security.authorization.permission.Permissions;
+import org.apache.jackrabbit.oak.spi.state.Prefetchable;
 import org.apache.jackrabbit.oak.stats.CounterStats;
 import org.apache.jackrabbit.util.Text;
 import org.slf4j.Logger;
@@ -78,7 +82,7 @@ import org.xml.sax.SAXException;
 /**
  * TODO document
  */
-public class SessionImpl implements JackrabbitSession {
+public class SessionImpl implements JackrabbitSession, PrefetchingSession {
     private static final Logger log = LoggerFactory.getLogger(SessionImpl.class);
 
     private SessionContext sessionContext;
@@ -764,6 +768,23 @@ public class SessionImpl implements JackrabbitSession {
         return sessionContext.getUserManager();
     }
 
+    //-------------------------------------------------< PrefetchingSession >---
+
+    @Override
+    public void prefetch(@Nonnull String[] absPaths, int depth) throws RepositoryException {
+        checkAlive();
+        Prefetchable prefetchable = sessionContext.getPrefetchable();
+        if (prefetchable != null) {
+            List<String> oakPaths = newArrayListWithCapacity(absPaths.length);
+            for (String absPath : absPaths) {
+                oakPaths.add(getOakPathOrThrow(absPath));
+            }
+            // no need for the session lock: prefetching only warms
+            // the caches of the node store
+            prefetchable.prefetch(oakPaths, depth);
+        }
+    }
+
     @Override
     public String toString() {
         if (isLive()) {
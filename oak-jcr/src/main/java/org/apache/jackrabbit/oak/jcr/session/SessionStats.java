@@ -26,8 +26,10 @@ import java.io.StringWriter;
 import java.text.DateFormat;
 import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.jcr.RepositoryException;
@@ -102,6 +104,12 @@ public class SessionStats implements SessionMBean {
         public long refreshCount = 0;
         public long saveCount = 0;
 
+        /**
+         * Read counters of the threads using a read-only session, see
+         * {@link #newReadCounter()}.
+         */
+        private final List<ReadCounter> readCounters = new CopyOnWriteArrayList<ReadCounter>();
+
         public Counters(Clock clock) {
             long time = clock.getTime();
             this.clock = clock;
@@ -113,12 +121,43 @@ public class SessionStats implements SessionMBean {
             return new Date(loginTime);
         }
 
+        /**
+         * Create a read counter for a thread of a read-only session. Such
+         * threads perform their operations concurrently, so each thread
+         * records its reads in its own counter, which is included in the
+         * values returned by {@link #getReadCount()}, {@link #getReadTime()}
+         * and {@link #getAccessTime()}.
+         *
+         * @return a new read counter
+         */
+        public ReadCounter newReadCounter() {
+            ReadCounter counter = new ReadCounter();
+            readCounters.add(counter);
+            return counter;
+        }
+
+        public long getAccessTime() {
+            long time = accessTime;
+            for (ReadCounter counter : readCounters) {
+                time = Math.max(time, counter.readTime);
+            }
+            return time;
+        }
+
         public Date getReadTime() {
-            return getTime(readTime);
+            long time = readTime;
+            for (ReadCounter counter : readCounters) {
+                time = Math.max(time, counter.readTime);
+            }
+            return getTime(time);
         }
 
         public long getReadCount() {
-            return readCount;
+            long count = readCount;
+            for (ReadCounter counter : readCounters) {
+                count += counter.readCount;
+            }
+            return count;
         }
 
         public Date getWriteTime() {
@@ -158,6 +197,23 @@ public class SessionStats implements SessionMBean {
         }
     }
 
+    /**
+     * Read counter of a single thread, see {@link Counters#newReadCounter()}.
+     * Only the owning thread updates the counter.
+     */
+    public static final class ReadCounter {
+        private volatile long readTime;
+        private volatile long readCount;
+
+        private ReadCounter() {
+        }
+
+        public void read(long time) {
+            readTime = time;
+            readCount++;
+        }
+    }
+
     public Counters getCounters() {
         return counters;
     }
@@ -235,7 +291,7 @@ public class SessionStats implements SessionMBean {
     @Override
     public boolean getRefreshPending() {
         return refreshStrategy.needsRefresh(
-                SECONDS.convert(clock.getTime() - counters.accessTime, MILLISECONDS));
+                SECONDS.convert(clock.getTime() - counters.getAccessTime(), MILLISECONDS));
     }
 
     @Override
@@ -25,6 +25,7 @@ import static org.apache.jackrabbit.commons.JcrUtils.getChildNodes;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -63,6 +64,7 @@ import javax.jcr.Repository;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.SimpleCredentials;
+import javax.jcr.UnsupportedRepositoryOperationException;
 import javax.jcr.Value;
 import javax.jcr.ValueFactory;
 import javax.jcr.nodetype.NodeDefinition;
@@ -86,6 +88,8 @@ import org.apache.jackrabbit.commons.cnd.ParseException;
 import org.apache.jackrabbit.commons.jackrabbit.SimpleReferenceBinary;
 import org.apache.jackrabbit.core.data.RandomInputStream;
 import org.apache.jackrabbit.oak.fixture.NodeStoreFixture;
+import org.apache.jackrabbit.oak.jcr.api.PrefetchingSession;
+import org.apache.jackrabbit.oak.jcr.api.PropertyValuesNode;
 import org.apache.jackrabbit.oak.jcr.repository.RepositoryImpl;
 import org.apache.jackrabbit.oak.plugins.nodetype.NodeTypeConstants;
 import org.apache.jackrabbit.spi.QValue;
@@ -166,6 +170,55 @@ public class RepositoryTest extends AbstractRepositoryTest {
         }
     }
 
+    @Test
+    public void readOnlySession() throws Exception {
+        final Session session = ((JackrabbitRepository) getRepository()).login(
+                getAdminCredentials(), null,
+                Collections.<String, Object>singletonMap(RepositoryImpl.READ_ONLY, true));
+        try {
+            assertEquals(Boolean.TRUE, session.getAttribute(RepositoryImpl.READ_ONLY));
+
+            final List<Throwable> failures = Collections.synchronizedList(Lists.<Throwable>newArrayList());
+            List<Thread> readers = Lists.newArrayList();
+            for (int i = 0; i < 4; i++) {
+                Thread reader = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (int k = 0; k < 100; k++) {
+                                assertEquals("stringVal",
+                                        session.getNode("/foo").getProperty("stringProp").getString());
+                                assertTrue(session.nodeExists("/bar"));
+                            }
+                        } catch (Throwable t) {
+                            failures.add(t);
+                        }
+                    }
+                });
+                reader.start();
+                readers.add(reader);
+            }
+            for (Thread reader : readers) {
+                reader.join();
+            }
+            assertTrue(failures.toString(), failures.isEmpty());
+
+            try {
+                session.getNode("/foo").setProperty("p", "v");
+                fail("Read-only session must not allow writes");
+            } catch (UnsupportedRepositoryOperationException expected) {
+            }
+
+            Session admin = getAdminSession();
+            admin.getNode("/foo").setProperty("stringProp", "changed");
+            admin.save();
+            session.refresh(false);
+            assertEquals("changed", session.getNode("/foo").getProperty("stringProp").getString());
+        } finally {
+            session.logout();
+        }
+    }
+
     @Test(expected = NoSuchWorkspaceException.class)
     public void loginInvalidWorkspace() throws RepositoryException {
         Repository repository = getRepository();
@@ -526,6 +579,43 @@ public class RepositoryTest extends AbstractRepositoryTest {
         assertTrue(values.isEmpty());
     }
 
+    @Test
+    public void getPropertiesWithGlobs() throws RepositoryException {
+        Node node = getNode("/foo");
+        node.setProperty("added", "added");        // transiently added
+        PropertyIterator properties = node.getProperties(new String[] {"*Prop", "added"});
+        assertEquals(4, properties.getSize());
+        Set<String> names = new HashSet<String>();
+        while (properties.hasNext()) {
+            names.add(properties.nextProperty().getName());
+        }
+        assertEquals(new HashSet<String>(asList("stringProp", "intProp", "mvProp", "added")), names);
+        assertEquals(1, node.getProperties("intProp").getSize());
+    }
+
+    @Test
+    public void getPropertyValues() throws RepositoryException {
+        Node node = getNode("/foo");
+        node.setProperty("added", "added");        // transiently added
+        node.getProperty("stringProp").remove();   // transiently removed
+        Object[] values = ((PropertyValuesNode) node).getPropertyValues(new String[] {
+                "intProp", "mvProp", "added", "stringProp", "jcr:primaryType"});
+        assertEquals(5, values.length);
+        assertEquals(42, ((Value) values[0]).getLong());
+        assertEquals(3, ((Value[]) values[1]).length);
+        assertEquals(2, ((Value[]) values[1])[1].getLong());
+        assertEquals("added", ((Value) values[2]).getString());
+        assertNull(values[3]);
+        assertEquals(PropertyType.NAME, ((Value) values[4]).getType());
+    }
+
+    @Test
+    public void prefetch() throws RepositoryException {
+        PrefetchingSession session = (PrefetchingSession) getAdminSession();
+        session.prefetch(new String[] {"/foo", "/bar", "/qoo"}, 2);
+        assertEquals("stringVal", session.getNode("/foo").getProperty("stringProp").getString());
+    }
+
     @Test(expected = PathNotFoundException.class)
     public void getNonExistingNode() throws RepositoryException {
         getNode("/qoo");
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.jcr.observation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.jcr.observation.Event;
+import javax.jcr.RepositoryException;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
+
+import org.apache.jackrabbit.api.jmx.EventListenerMBean;
+import org.apache.jackrabbit.commons.observation.ListenerTracker;
+import org.apache.jackrabbit.oak.jcr.observation.filter.BatchedEventListener;
+import org.apache.jackrabbit.oak.jcr.observation.filter.EventBatch;
+import org.junit.Test;
+
+public class BatchDispatcherTest {
+
+    @Test
+    public void deliveriesAreTracked() {
+        final List<EventBatch> batches = new ArrayList<EventBatch>();
+        BatchedEventListener listener = new BatchedEventListener() {
+            @Override
+            public void onEventBatch(EventBatch batch) {
+                batches.add(batch);
+            }
+
+            @Override
+            public void onEvent(EventIterator events) {
+                throw new AssertionError("Batched listener called with event iterator");
+            }
+        };
+        BatchDispatcher dispatcher = new BatchDispatcher(listener);
+        ListenerTracker tracker = new ListenerTracker(dispatcher, 0, null, true, null, null, false) {};
+
+        EventBatch batch1 = new TestBatch(3);
+        EventBatch batch2 = new TestBatch(2);
+        dispatcher.deliver(tracker.getTrackedListener(), batch1);
+        dispatcher.deliver(tracker.getTrackedListener(), batch2);
+
+        assertEquals(2, batches.size());
+        assertSame(batch1, batches.get(0));
+        assertSame(batch2, batches.get(1));
+
+        EventListenerMBean mbean = tracker.getListenerMBean();
+        assertEquals(2, mbean.getEventDeliveries());
+        assertEquals(5, mbean.getEventsDelivered());
+    }
+
+    @Test
+    public void trackerSeesBatchEvents() throws RepositoryException {
+        BatchDispatcher dispatcher = new BatchDispatcher(new BatchedEventListener() {
+            @Override
+            public void onEventBatch(EventBatch batch) {
+            }
+
+            @Override
+            public void onEvent(EventIterator events) {
+            }
+        });
+        final List<Event> events = new ArrayList<Event>();
+        EventListener trackedListener = new EventListener() {
+            @Override
+            public void onEvent(EventIterator it) {
+                while (it.hasNext()) {
+                    events.add(it.nextEvent());
+                }
+            }
+        };
+        dispatcher.deliver(trackedListener, new TestBatch(2));
+
+        assertEquals(2, events.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(Event.NODE_ADDED, events.get(i).getType());
+            assertEquals("/n" + i, events.get(i).getPath());
+            assertEquals("/n" + i, events.get(i).getIdentifier());
+        }
+    }
+
+    private static class TestBatch implements EventBatch {
+        private final int size;
+
+        TestBatch(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public int getType(int index) {
+            return Event.NODE_ADDED;
+        }
+
+        @Override
+        public String getParentPath(int index) {
+            return "/";
+        }
+
+        @Override
+        public String getName(int index) {
+            return "n" + index;
+        }
+
+        @Override
+        public String getPath(int index) {
+            return "/n" + index;
+        }
+
+        @Override
+        public String getIdentifier(int index) {
+            return getPath(index);
+        }
+
+        @Override
+        public Event getEvent(int index) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getUserID() {
+            return null;
+        }
+
+        @Override
+        public String getUserData() {
+            return null;
+        }
+
+        @Override
+        public long getDate() {
+            return 0;
+        }
+
+        @Override
+        public boolean isExternal() {
+            return false;
+        }
+    }
+}
@@ -53,6 +53,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.jcr.AccessDeniedException;
 import javax.jcr.InvalidItemStateException;
@@ -92,13 +93,18 @@ import org.apache.jackrabbit.JcrConstants;
 import org.apache.jackrabbit.api.JackrabbitNode;
 import org.apache.jackrabbit.api.observation.JackrabbitEventFilter;
 import org.apache.jackrabbit.api.observation.JackrabbitObservationManager;
+import org.apache.jackrabbit.commons.iterator.EventIteratorAdapter;
 import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.fixture.NodeStoreFixture;
 import org.apache.jackrabbit.oak.jcr.AbstractRepositoryTest;
+import org.apache.jackrabbit.oak.jcr.observation.filter.BatchedEventListener;
+import org.apache.jackrabbit.oak.jcr.observation.filter.EventBatch;
 import org.apache.jackrabbit.oak.jcr.observation.filter.FilterFactory;
 import org.apache.jackrabbit.oak.jcr.observation.filter.OakEventFilter;
+import org.apache.jackrabbit.oak.plugins.observation.filter.ChangeSetFilter;
 import org.apache.jackrabbit.oak.plugins.observation.filter.ChangeSetFilterImpl;
+import org.apache.jackrabbit.oak.plugins.observation.filter.ChangeSetFilterIndex;
 import org.apache.jackrabbit.oak.plugins.observation.filter.FilterBuilder;
 import org.apache.jackrabbit.oak.plugins.observation.filter.FilterProvider;
 import org.apache.jackrabbit.oak.plugins.observation.filter.Selectors;
@@ -195,6 +201,39 @@ public class ObservationTest extends AbstractRepositoryTest {
         }
     }
 
+    @Test
+    public void batchedObservation() throws RepositoryException, ExecutionException, InterruptedException {
+        BatchedExpectationListener listener = new BatchedExpectationListener();
+        observationManager.addEventListener(listener, ALL_EVENTS, "/", true, null, null, false);
+        try {
+            Node n = getNode(TEST_PATH);
+            listener.expectAdd(n.setProperty("p0", "v0"));
+            Node n1 = listener.expectAdd(n.addNode("n1"));
+            listener.expectAdd(n1.setProperty("p1", "v1"));
+            listener.expectAdd(n.addNode("n2"));
+            getAdminSession().save();
+
+            List<Expectation> missing = listener.getMissing(TIME_OUT, TimeUnit.SECONDS);
+            assertTrue("Missing events: " + missing, missing.isEmpty());
+            List<Event> unexpected = listener.getUnexpected();
+            assertTrue("Unexpected events: " + unexpected, unexpected.isEmpty());
+
+            listener.expectChange(n1.setProperty("p1", "v1.1"));
+            listener.expectRemove(n.getNode("n2")).remove();
+            getAdminSession().save();
+
+            missing = listener.getMissing(TIME_OUT, TimeUnit.SECONDS);
+            assertTrue("Missing events: " + missing, missing.isEmpty());
+            unexpected = listener.getUnexpected();
+            assertTrue("Unexpected events: " + unexpected, unexpected.isEmpty());
+            assertTrue("Batch mismatches: " + listener.mismatches, listener.mismatches.isEmpty());
+            assertTrue(listener.batches.get() > 0);
+        }
+        finally {
+            observationManager.removeEventListener(listener);
+        }
+    }
+
     @Test
     public void infoMap() throws RepositoryException, ExecutionException, InterruptedException {
         Node n = getNode(TEST_PATH);
@@ -1139,6 +1178,34 @@ public class ObservationTest extends AbstractRepositoryTest {
         }
     }
 
+    private static class BatchedExpectationListener extends ExpectationListener
+            implements BatchedEventListener {
+        private final List<String> mismatches = synchronizedList(Lists.<String>newArrayList());
+        private final AtomicInteger batches = new AtomicInteger();
+
+        @Override
+        public void onEventBatch(EventBatch batch) {
+            batches.incrementAndGet();
+            List<Event> events = Lists.newArrayList();
+            for (int i = 0; i < batch.size(); i++) {
+                Event event = batch.getEvent(i);
+                try {
+                    if (batch.getType(i) != event.getType()
+                            || !batch.getPath(i).equals(event.getPath())
+                            || !batch.getIdentifier(i).equals(event.getIdentifier())
+                            || !equal(batch.getUserID(), event.getUserID())
+                            || batch.getDate() != event.getDate()) {
+                        mismatches.add(batch.getPath(i));
+                    }
+                } catch (RepositoryException e) {
+                    mismatches.add(e.toString());
+                }
+                events.add(event);
+            }
+            onEvent(new EventIteratorAdapter(events));
+        }
+    }
+
     private static class ExpectationListener implements EventListener {
         private final Set<Expectation> expected = synchronizedSet(
                 Sets.<Expectation>newCopyOnWriteArraySet());
@@ -2141,7 +2208,11 @@ public class ObservationTest extends AbstractRepositoryTest {
         FilterProvider filterProvider = cp.getFilterProvider();
         assertNotNull(filterProvider);
         assertMatches(filterProvider.getSubTrees(), expectedSubTrees);
-        ChangeSetFilterImpl changeSetFilter = (ChangeSetFilterImpl)PrivateAccessor.getField(filterProvider, "changeSetFilter");
+        ChangeSetFilter prefilter = (ChangeSetFilter)PrivateAccessor.getField(filterProvider, "changeSetFilter");
+        if (prefilter instanceof ChangeSetFilterIndex.IndexedFilter) {
+            prefilter = ((ChangeSetFilterIndex.IndexedFilter) prefilter).getFilter();
+        }
+        ChangeSetFilterImpl changeSetFilter = (ChangeSetFilterImpl) prefilter;
         assertNotNull(changeSetFilter);
         assertMatches(changeSetFilter.getRootIncludePaths(), expectedPrefilterPaths);
         
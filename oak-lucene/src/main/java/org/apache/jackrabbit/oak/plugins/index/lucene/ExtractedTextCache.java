@@ -20,17 +20,27 @@
 package org.apache.jackrabbit.oak.plugins.index.lucene;
 
 import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
+import com.google.common.base.Throwables;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.Weigher;
 import org.apache.jackrabbit.oak.api.Blob;
 import org.apache.jackrabbit.oak.cache.CacheStats;
 import org.apache.jackrabbit.oak.commons.IOUtils;
+import org.apache.jackrabbit.oak.plugins.blob.datastore.DataStoreTextWriter;
 import org.apache.jackrabbit.oak.plugins.index.fulltext.ExtractedText;
 import org.apache.jackrabbit.oak.plugins.index.fulltext.PreExtractedTextProvider;
 import org.slf4j.Logger;
@@ -50,6 +60,11 @@ class ExtractedTextCache {
     private final Cache<String, String> cache;
     private final CacheStats cacheStats;
     private final boolean alwaysUsePreExtractedCache;
+    private volatile DataStoreTextWriter extractedTextStore;
+    private volatile ExecutorService extractionExecutor;
+    private volatile long extractionTimeoutMillis;
+    private final AtomicInteger activeExtractionCount = new AtomicInteger();
+    private final AtomicInteger timeoutCount = new AtomicInteger();
 
     public ExtractedTextCache(long maxWeight, long expiryTimeInSecs){
         this(maxWeight, expiryTimeInSecs, false);
@@ -90,17 +105,7 @@ class ExtractedTextCache {
                 ExtractedText text = extractedTextProvider.getText(propertyPath, blob);
                 if (text != null) {
                     preFetchedCount++;
-                    switch (text.getExtractionResult()) {
-                        case SUCCESS:
-                            result = text.getExtractedText().toString();
-                            break;
-                        case ERROR:
-                            result = LuceneIndexEditor.TEXT_EXTRACTION_ERROR;
-                            break;
-                        case EMPTY:
-                            result = EMPTY_STRING;
-                            break;
-                    }
+                    result = asText(text);
                 }
             } catch (IOException e) {
                 log.warn("Error occurred while fetching pre extracted text for {}", propertyPath, e);
@@ -111,9 +116,28 @@ class ExtractedTextCache {
         if (cache != null && id != null && result == null) {
             result = cache.getIfPresent(id);
         }
+
+        DataStoreTextWriter store = extractedTextStore;
+        if (store != null && result == null && isPersistable(blob)) {
+            try {
+                ExtractedText text = store.getText(propertyPath, blob);
+                if (text != null) {
+                    result = asText(text);
+                }
+            } catch (IOException e) {
+                log.warn("Error occurred while reading extracted text for {} from {}", propertyPath, store, e);
+            }
+        }
         return result;
     }
 
+    /**
+     * Caches the result of a text extraction. If an extracted text store is
+     * configured, the result is also persisted, including errors. Hence an
+     * error must only be passed if the binary can not be parsed, not if the
+     * extraction failed for a transient reason (e.g. the binary could not be
+     * read).
+     */
     public void put(@Nonnull Blob blob, @Nonnull ExtractedText extractedText) {
         String id = blob.getContentIdentity();
         if (extractedText.getExtractionResult() == ExtractedText.ExtractionResult.SUCCESS
@@ -121,9 +145,88 @@ class ExtractedTextCache {
                 && id != null) {
             cache.put(id, extractedText.getExtractedText().toString());
         }
+
+        DataStoreTextWriter store = extractedTextStore;
+        if (store != null && isPersistable(blob)) {
+            try {
+                switch (extractedText.getExtractionResult()) {
+                    case SUCCESS:
+                        store.write(id, extractedText.getExtractedText().toString());
+                        break;
+                    case ERROR:
+                        store.markError(id);
+                        break;
+                    case EMPTY:
+                        store.markEmpty(id);
+                        break;
+                }
+            } catch (IOException e) {
+                log.warn("Error occurred while storing extracted text for blob [{}] in {}", id, store, e);
+            }
+        }
+    }
+
+    /**
+     * Runs the given text extraction. If an extraction executor is configured
+     * the extraction runs in that pool and the caller waits at most for the
+     * configured timeout, including the time the extraction waits for a free
+     * thread. An extraction which times out is cancelled and its thread is
+     * interrupted, such that a binary which can not be parsed in time does
+     * not keep a thread of the pool busy. If the executor does not accept the
+     * extraction, the binary is indexed without its text. If no executor is
+     * configured the extraction runs in the calling thread.
+     *
+     * @param path the path of the node with the binary
+     * @param extraction the extraction, returning the text to index
+     * @return the text returned by the extraction or
+     *      {@link LuceneIndexEditor#TEXT_EXTRACTION_ERROR} if it timed out
+     */
+    public String extract(String path, final Callable<String> extraction) {
+        ExecutorService executor = extractionExecutor;
+        Callable<String> task = new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                activeExtractionCount.incrementAndGet();
+                try {
+                    return extraction.call();
+                } finally {
+                    activeExtractionCount.decrementAndGet();
+                }
+            }
+        };
+        if (executor == null) {
+            try {
+                return task.call();
+            } catch (Exception e) {
+                throw Throwables.propagate(e);
+            }
+        }
+        Future<String> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            log.warn("Text extraction for {} rejected, all text extraction threads are busy. " +
+                    "Indexing it without the text", path);
+            return LuceneIndexEditor.TEXT_EXTRACTION_ERROR;
+        }
+        try {
+            return future.get(extractionTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timeoutCount.incrementAndGet();
+            log.warn("Text extraction for {} did not complete within {} ms and is cancelled. " +
+                    "Indexing it without the text", path, extractionTimeoutMillis);
+            return LuceneIndexEditor.TEXT_EXTRACTION_ERROR;
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            return LuceneIndexEditor.TEXT_EXTRACTION_ERROR;
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
     }
 
-    public void addStats(int count, long timeInMillis, long bytesRead, long textLength){
+    public synchronized void addStats(int count, long timeInMillis, long bytesRead, long textLength){
         this.textExtractionCount += count;
         this.totalTime += timeInMillis;
         this.totalBytesRead += bytesRead;
@@ -166,6 +269,21 @@ class ExtractedTextCache {
             public boolean isAlwaysUsePreExtractedCache() {
                 return alwaysUsePreExtractedCache;
             }
+
+            @Override
+            public boolean isExtractedTextStoreConfigured() {
+                return extractedTextStore != null;
+            }
+
+            @Override
+            public int getActiveExtractionCount() {
+                return activeExtractionCount.get();
+            }
+
+            @Override
+            public int getTimeoutCount() {
+                return timeoutCount.get();
+            }
         };
     }
 
@@ -182,6 +300,27 @@ class ExtractedTextCache {
         return extractedTextProvider;
     }
 
+    /**
+     * Sets the store where extracted text of binaries from the blob store is
+     * persisted, such that it survives restarts and reindexing.
+     */
+    public void setExtractedTextStore(@Nullable DataStoreTextWriter extractedTextStore) {
+        this.extractedTextStore = extractedTextStore;
+    }
+
+    /**
+     * Sets the executor to run text extractions in, see
+     * {@link #extract(String, Callable)}.
+     *
+     * @param executor the executor, or {@code null} to extract in the calling
+     *                 thread
+     * @param timeoutInMillis the time to wait for an extraction
+     */
+    public void setExtractionExecutor(@Nullable ExecutorService executor, long timeoutInMillis) {
+        this.extractionTimeoutMillis = timeoutInMillis;
+        this.extractionExecutor = executor;
+    }
+
     void resetCache(){
         if (cache != null){
             cache.invalidateAll();
@@ -192,6 +331,25 @@ class ExtractedTextCache {
         return alwaysUsePreExtractedCache;
     }
 
+    private static String asText(ExtractedText text) {
+        switch (text.getExtractionResult()) {
+            case SUCCESS:
+                return text.getExtractedText().toString();
+            case ERROR:
+                return LuceneIndexEditor.TEXT_EXTRACTION_ERROR;
+            default:
+                return EMPTY_STRING;
+        }
+    }
+
+    /**
+     * Only the text of binaries in a blob store is persisted, the content
+     * identity of other binaries is not suitable as a file name.
+     */
+    private static boolean isPersistable(Blob blob) {
+        return blob.getContentIdentity() != null && blob.getReference() != null;
+    }
+
     //Taken from DocumentNodeStore and cache packages as they are private
     private static class EmpiricalWeigher implements Weigher<String, String> {
         public static final EmpiricalWeigher INSTANCE = new EmpiricalWeigher();
@@ -91,6 +91,11 @@ public class IndexNode {
 
     private final int indexNodeId = INDEX_NODE_COUNTER.incrementAndGet();
 
+    /**
+     * Incremented after the searcher got refreshed
+     */
+    private final AtomicInteger searcherVersion = new AtomicInteger();
+
     IndexNode(String name, IndexDefinition definition, List<LuceneIndexReader> readers, @Nullable NRTIndex nrtIndex)
             throws IOException {
         checkArgument(!readers.isEmpty());
@@ -142,6 +147,15 @@ public class IndexNode {
         return indexNodeId;
     }
 
+    /**
+     * Returns the version of the searcher. If the version is read before
+     * {@link #getSearcher()}, then the searcher is the one of that version
+     * or a later one.
+     */
+    int getSearcherVersion() {
+        return searcherVersion.get();
+    }
+
     void close() throws IOException {
         lock.writeLock().lock();
         try {
@@ -175,6 +189,7 @@ public class IndexNode {
         if (newNRTReaders != nrtReaders) {
             nrtReaders = newNRTReaders;
             indexSearcher = new IndexSearcher(createReader(nrtReaders));
+            searcherVersion.incrementAndGet();
             log.debug("Refreshed reader for index [{}]", definition);
         }
     }
@@ -71,6 +71,8 @@ public class IndexTracker {
 
     private volatile boolean refresh;
 
+    private volatile QueryResultCache queryResultCache;
+
     public IndexTracker() {
         this((IndexCopier)null);
     }
@@ -88,6 +90,15 @@ public class IndexTracker {
         this.nrtFactory = nrtFactory;
     }
 
+    @CheckForNull
+    QueryResultCache getQueryResultCache() {
+        return queryResultCache;
+    }
+
+    void setQueryResultCache(@Nullable QueryResultCache queryResultCache) {
+        this.queryResultCache = queryResultCache;
+    }
+
     synchronized void close() {
         Map<String, IndexNode> indices = this.indices;
         this.indices = emptyMap();
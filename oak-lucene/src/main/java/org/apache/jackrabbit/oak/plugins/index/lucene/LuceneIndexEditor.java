@@ -17,11 +17,14 @@
 package org.apache.jackrabbit.oak.plugins.index.lucene;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.google.common.collect.Iterables;
@@ -57,6 +60,7 @@ import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetField;
 import org.apache.lucene.util.BytesRef;
+import org.apache.tika.io.TaggedInputStream;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.parser.ParseContext;
 import org.apache.tika.sax.WriteOutContentHandler;
@@ -940,14 +944,20 @@ public class LuceneIndexEditor implements IndexEditor, Aggregate.AggregateRoot {
         return context.isSupportedMediaType(type);
     }
 
-    private String parseStringValue(Blob v, Metadata metadata, String path, String propertyName) {
+    private String parseStringValue(final Blob v, final Metadata metadata, final String path,
+                                    String propertyName) {
         if (!context.isAsyncIndexing()){
             //Skip text extraction for sync indexing
             return null;
         }
         String text = context.getExtractedTextCache().get(path, propertyName, v, context.isReindex());
         if (text == null){
-            text = parseStringValue0(v, metadata, path);
+            text = context.getExtractedTextCache().extract(path, new Callable<String>() {
+                @Override
+                public String call() {
+                    return parseStringValue0(v, metadata, path);
+                }
+            });
         }
         return text;
     }
@@ -966,8 +976,10 @@ public class LuceneIndexEditor implements IndexEditor, Aggregate.AggregateRoot {
             oldThreadName = t.getName();
             t.setName(oldThreadName + ": Extracting " + path + ", " + length + " bytes");
         }
+        // tags the exceptions thrown while reading the binary
+        TaggedInputStream blobStream = new TaggedInputStream(new LazyInputStream(new BlobByteSource(v)));
         try {
-            CountingInputStream stream = new CountingInputStream(new LazyInputStream(new BlobByteSource(v)));
+            CountingInputStream stream = new CountingInputStream(blobStream);
             try {
                 context.getParser().parse(stream, handler, metadata, new ParseContext());
             } finally {
@@ -989,7 +1001,14 @@ public class LuceneIndexEditor implements IndexEditor, Aggregate.AggregateRoot {
                         + " worry about. The stack trace is included to"
                         + " help improve the text extraction feature.",
                         getIndexName(), path, t);
-                context.getExtractedTextCache().put(v, ExtractedText.ERROR);
+                if (isTransientFailure(t, blobStream)) {
+                    // do not remember the error, such that the text
+                    // is extracted again the next time
+                    log.info("[{}] Text extraction of {} was interrupted or the binary could not be read",
+                            getIndexName(), path);
+                } else {
+                    context.getExtractedTextCache().put(v, ExtractedText.ERROR);
+                }
                 return TEXT_EXTRACTION_ERROR;
             }
         } finally {
@@ -1015,6 +1034,30 @@ public class LuceneIndexEditor implements IndexEditor, Aggregate.AggregateRoot {
         return context.getDefinition().getIndexName();
     }
 
+    /**
+     * Checks whether a text extraction failed because the extracting thread
+     * was interrupted or the binary could not be read, rather than because
+     * the parser could not handle the binary.
+     *
+     * @param t the exception thrown by the extraction
+     * @param blobStream the stream over the binary passed to the parser
+     * @return true if the failure is not caused by the parser
+     */
+    private static boolean isTransientFailure(Throwable t, TaggedInputStream blobStream) {
+        if (Thread.currentThread().isInterrupted()) {
+            return true;
+        }
+        for (Throwable c = t; c != null; c = c.getCause()) {
+            if (blobStream.isCauseOf(c)
+                    || c instanceof InterruptedException
+                    || c instanceof InterruptedIOException
+                    || c instanceof ClosedByInterruptException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
 
     /**
      * Extracts the local name of the current node ignoring any namespace prefix
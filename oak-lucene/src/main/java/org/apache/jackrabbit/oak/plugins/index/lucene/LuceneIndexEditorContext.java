@@ -311,14 +311,14 @@ public class LuceneIndexEditorContext {
         private long totalTime;
         private long totalTextLength;
 
-        public void addStats(long timeInMillis, long bytesRead, int textLength) {
+        public synchronized void addStats(long timeInMillis, long bytesRead, int textLength) {
             count++;
             totalBytesRead += bytesRead;
             totalTime += timeInMillis;
             totalTextLength += textLength;
         }
 
-        public void log(boolean reindex) {
+        public synchronized void log(boolean reindex) {
             if (log.isDebugEnabled()) {
                 log.debug("Text extraction stats {}", this);
             } else if (anyParsingDone() && (reindex || isTakingLotsOfTime())) {
@@ -326,7 +326,7 @@ public class LuceneIndexEditorContext {
             }
         }
 
-        public void collectStats(ExtractedTextCache cache){
+        public synchronized void collectStats(ExtractedTextCache cache){
             cache.addStats(count, totalTime, totalBytesRead, totalTextLength);
         }
 
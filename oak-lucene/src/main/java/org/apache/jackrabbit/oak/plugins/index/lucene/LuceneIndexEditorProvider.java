@@ -55,7 +55,7 @@ public class LuceneIndexEditorProvider implements IndexEditorProvider {
     private final IndexCopier indexCopier;
     private final ExtractedTextCache extractedTextCache;
     private final IndexAugmentorFactory augmentorFactory;
-    private final LuceneIndexWriterFactory indexWriterFactory;
+    private LuceneIndexWriterFactory indexWriterFactory;
     private final IndexTracker indexTracker;
 
     /**
@@ -169,6 +169,15 @@ public class LuceneIndexEditorProvider implements IndexEditorProvider {
         this.inMemoryDocsLimit = inMemoryDocsLimit;
     }
 
+    /**
+     * Sets the factory for the writers used by asynchronous index editors.
+     * This allows writing the index to a different location than the index
+     * definition, e.g. when reindexing out of band.
+     */
+    public void setIndexWriterFactory(@Nonnull LuceneIndexWriterFactory indexWriterFactory) {
+        this.indexWriterFactory = checkNotNull(indexWriterFactory);
+    }
+
     private LuceneDocumentHolder getDocumentHolder(CommitContext commitContext){
         LuceneDocumentHolder holder = (LuceneDocumentHolder) commitContext.get(LuceneDocumentHolder.NAME);
         if (holder == null) {
@@ -48,4 +48,13 @@ public interface LuceneIndexMBean {
             int maxPathCount
             ) throws IOException;
 
+    @Description("Number of Lucene queries answered from the query result cache")
+    long getQueryResultCacheHitCount();
+
+    @Description("Number of Lucene queries which were not found in the query result cache")
+    long getQueryResultCacheMissCount();
+
+    @Description("Number of query results in the query result cache")
+    long getQueryResultCacheSize();
+
 }
@@ -105,6 +105,24 @@ public class LuceneIndexMBeanImpl extends AnnotatedStandardMBean implements Luce
         return tds;
     }
 
+    @Override
+    public long getQueryResultCacheHitCount() {
+        QueryResultCache cache = indexTracker.getQueryResultCache();
+        return cache != null ? cache.getStats().hitCount() : 0;
+    }
+
+    @Override
+    public long getQueryResultCacheMissCount() {
+        QueryResultCache cache = indexTracker.getQueryResultCache();
+        return cache != null ? cache.getStats().missCount() : 0;
+    }
+
+    @Override
+    public long getQueryResultCacheSize() {
+        QueryResultCache cache = indexTracker.getQueryResultCache();
+        return cache != null ? cache.size() : 0;
+    }
+
     @Override
     public String[] getIndexedPaths(String indexPath, int maxLevel, int maxPathCount) throws IOException {
         IndexNode indexNode = null;
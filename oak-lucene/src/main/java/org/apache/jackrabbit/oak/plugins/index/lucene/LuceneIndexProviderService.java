@@ -48,9 +48,11 @@ import org.apache.jackrabbit.oak.api.jmx.CacheStatsMBean;
 import org.apache.jackrabbit.oak.cache.CacheStats;
 import org.apache.jackrabbit.oak.commons.PropertiesUtil;
 import org.apache.jackrabbit.oak.osgi.OsgiWhiteboard;
+import org.apache.jackrabbit.oak.plugins.blob.datastore.DataStoreTextWriter;
 import org.apache.jackrabbit.oak.plugins.index.IndexEditorProvider;
 import org.apache.jackrabbit.oak.plugins.index.aggregate.NodeAggregator;
 import org.apache.jackrabbit.oak.plugins.index.fulltext.PreExtractedTextProvider;
+import org.apache.jackrabbit.oak.plugins.index.lucene.directory.LocalBlockCache;
 import org.apache.jackrabbit.oak.plugins.index.lucene.hybrid.DocumentQueue;
 import org.apache.jackrabbit.oak.plugins.index.lucene.hybrid.LocalIndexObserver;
 import org.apache.jackrabbit.oak.plugins.index.lucene.hybrid.NRTIndexFactory;
@@ -187,6 +189,31 @@ public class LuceneIndexProviderService {
     )
     private static final String PROP_PRE_EXTRACTED_TEXT_ALWAYS_USE = "alwaysUsePreExtractedCache";
 
+    private static final int PROP_TEXT_EXTRACTION_TIMEOUT_DEFAULT = 0;
+    @Property(
+            intValue = PROP_TEXT_EXTRACTION_TIMEOUT_DEFAULT,
+            label = "Text extraction timeout (secs)",
+            description = "Time in seconds the indexer waits for the text extraction of a single binary. " +
+                    "Extractions taking longer are cancelled and the binary is indexed " +
+                    "without its text. When set to 0 then text is extracted in the indexing thread without timeout"
+    )
+    private static final String PROP_TEXT_EXTRACTION_TIMEOUT = "textExtractionTimeoutInSecs";
+
+    private static final int PROP_TEXT_EXTRACTION_THREADS_DEFAULT = 2;
+    @Property(
+            intValue = PROP_TEXT_EXTRACTION_THREADS_DEFAULT,
+            label = "Text extraction threads",
+            description = "Number of threads used for text extraction if a text extraction timeout is set"
+    )
+    private static final String PROP_TEXT_EXTRACTION_THREADS = "textExtractionThreads";
+
+    @Property(
+            label = "Extracted text store directory",
+            description = "Directory where the extracted text of binaries is stored such that it survives " +
+                    "restarts and reindexing. When not set then extracted text is only cached in memory"
+    )
+    private static final String PROP_EXTRACTED_TEXT_STORE_DIR = "extractedTextStoreDir";
+
     private static final int PROP_BOOLEAN_CLAUSE_LIMIT_DEFAULT = 1024;
     @Property(
             intValue = PROP_BOOLEAN_CLAUSE_LIMIT_DEFAULT,
@@ -195,6 +222,34 @@ public class LuceneIndexProviderService {
     )
     private static final String PROP_BOOLEAN_CLAUSE_LIMIT = "booleanClauseLimit";
 
+    private static final int PROP_BLOCK_CACHE_SIZE_DEFAULT = 0;
+    @Property(
+            intValue = PROP_BLOCK_CACHE_SIZE_DEFAULT,
+            label = "Local block cache size (in MB)",
+            description = "Size of the memory mapped file under the local index directory which caches the " +
+                    "index blocks read from the repository. With CopyOnRead enabled, only the suggester " +
+                    "data is read through it. " +
+                    "Setting it to 0 disables the block cache"
+    )
+    private static final String PROP_BLOCK_CACHE_SIZE = "blockCacheSizeInMB";
+
+    private static final int PROP_QUERY_RESULT_CACHE_SIZE_DEFAULT = 0;
+    @Property(
+            intValue = PROP_QUERY_RESULT_CACHE_SIZE_DEFAULT,
+            label = "Query result cache size (in MB)",
+            description = "Memory used for caching the paths of recently executed Lucene queries until the " +
+                    "index gets updated. Setting it to 0 disables the query result cache"
+    )
+    private static final String PROP_QUERY_RESULT_CACHE_SIZE = "queryResultCacheSizeInMB";
+
+    private static final int PROP_QUERY_RESULT_CACHE_MAX_ROWS_DEFAULT = 1000;
+    @Property(
+            intValue = PROP_QUERY_RESULT_CACHE_MAX_ROWS_DEFAULT,
+            label = "Query result cache max rows",
+            description = "Results with more rows than this are not cached"
+    )
+    private static final String PROP_QUERY_RESULT_CACHE_MAX_ROWS = "queryResultCacheMaxRows";
+
     private static final boolean PROP_HYBRID_INDEXING_DEFAULT = true;
     @Property(
             boolValue = PROP_HYBRID_INDEXING_DEFAULT,
@@ -212,6 +267,15 @@ public class LuceneIndexProviderService {
     )
     private static final String PROP_HYBRID_QUEUE_SIZE = "hybridQueueSize";
 
+    private static final int PROP_HYBRID_INDEXING_THREADS_DEFAULT = 2;
+    @Property(
+            intValue = PROP_HYBRID_INDEXING_THREADS_DEFAULT,
+            label = "Hybrid indexing threads",
+            description = "Number of threads which concurrently add queued Lucene Documents of an index " +
+                    "to its local index under load"
+    )
+    private static final String PROP_HYBRID_INDEXING_THREADS = "hybridIndexingThreads";
+
     private Whiteboard whiteboard;
 
     private BackgroundObserver backgroundObserver;
@@ -244,6 +308,12 @@ public class LuceneIndexProviderService {
 
     private ExtractedTextCache extractedTextCache;
 
+    private ExecutorService textExtractionExecutor;
+
+    private DataStoreTextWriter extractedTextStore;
+
+    private LocalBlockCache blockCache;
+
     private boolean hybridIndex;
 
     private NRTIndexFactory nrtIndexFactory;
@@ -268,6 +338,7 @@ public class LuceneIndexProviderService {
         threadPoolSize = PropertiesUtil.toInteger(config.get(PROP_THREAD_POOL_SIZE), PROP_THREAD_POOL_SIZE_DEFAULT);
         initializeExtractedTextCache(bundleContext, config);
         IndexTracker tracker = createTracker(bundleContext, config);
+        initializeQueryResultCache(tracker, config);
         indexProvider = new LuceneIndexProvider(tracker, scorerFactory, augmentorFactory);
         initializeLogging(config);
         initialize();
@@ -322,6 +393,19 @@ public class LuceneIndexProviderService {
             executorService.awaitTermination(1, TimeUnit.MINUTES);
         }
 
+        if (textExtractionExecutor != null){
+            textExtractionExecutor.shutdownNow();
+            textExtractionExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+
+        if (extractedTextStore != null){
+            extractedTextStore.close();
+        }
+
+        if (blockCache != null){
+            blockCache.close();
+        }
+
         InfoStream.setDefault(InfoStream.NO_OUTPUT);
     }
 
@@ -376,25 +460,52 @@ public class LuceneIndexProviderService {
 
     private IndexTracker createTracker(BundleContext bundleContext, Map<String, ?> config) throws IOException {
         boolean enableCopyOnRead = PropertiesUtil.toBoolean(config.get(PROP_COPY_ON_READ), true);
+        initializeBlockCache(bundleContext, config);
         if (enableCopyOnRead){
             initializeIndexCopier(bundleContext, config);
             log.info("Enabling CopyOnRead support. Index files would be copied under {}", indexDir.getAbsolutePath());
             if (hybridIndex) {
                 nrtIndexFactory = new NRTIndexFactory(indexCopier);
             }
-            return new IndexTracker(new DefaultIndexReaderFactory(mountInfoProvider, indexCopier), nrtIndexFactory);
+            return new IndexTracker(new DefaultIndexReaderFactory(mountInfoProvider, indexCopier, blockCache),
+                    nrtIndexFactory);
         }
 
+        if (blockCache != null) {
+            return new IndexTracker(new DefaultIndexReaderFactory(mountInfoProvider, null, blockCache), null);
+        }
         return new IndexTracker();
     }
 
-    private void initializeIndexCopier(BundleContext bundleContext, Map<String, ?> config) throws IOException {
-        if(indexCopier != null){
+    private void initializeQueryResultCache(IndexTracker tracker, Map<String, ?> config) {
+        int cacheSizeInMB = PropertiesUtil.toInteger(config.get(PROP_QUERY_RESULT_CACHE_SIZE),
+                PROP_QUERY_RESULT_CACHE_SIZE_DEFAULT);
+        if (cacheSizeInMB <= 0) {
             return;
         }
+        int maxRows = PropertiesUtil.toInteger(config.get(PROP_QUERY_RESULT_CACHE_MAX_ROWS),
+                PROP_QUERY_RESULT_CACHE_MAX_ROWS_DEFAULT);
+        tracker.setQueryResultCache(new QueryResultCache(cacheSizeInMB * ONE_MB, maxRows));
+        log.info("Query result cache enabled with size {} MB for results of up to {} rows", cacheSizeInMB, maxRows);
+    }
+
+    private void initializeBlockCache(BundleContext bundleContext, Map<String, ?> config) throws IOException {
+        int cacheSizeInMB = PropertiesUtil.toInteger(config.get(PROP_BLOCK_CACHE_SIZE), PROP_BLOCK_CACHE_SIZE_DEFAULT);
+        if (cacheSizeInMB <= 0) {
+            return;
+        }
+        File cacheFile = new File(new File(getLocalIndexDirPath(bundleContext, config), "blockcache"), "blocks.dat");
+        blockCache = new LocalBlockCache(cacheFile, cacheSizeInMB * ONE_MB, IndexDefinition.DEFAULT_BLOB_SIZE);
+
+        oakRegs.add(registerMBean(whiteboard,
+                BlockCacheStatsMBean.class,
+                blockCache.getStatsMBean(),
+                BlockCacheStatsMBean.TYPE,
+                "Lucene block cache statistics"));
+    }
+
+    private static String getLocalIndexDirPath(BundleContext bundleContext, Map<String, ?> config) {
         String indexDirPath = PropertiesUtil.toString(config.get(PROP_LOCAL_INDEX_DIR), null);
-        boolean prefetchEnabled = PropertiesUtil.toBoolean(config.get(PROP_PREFETCH_INDEX_FILES),
-                PROP_PREFETCH_INDEX_FILES_DEFAULT);
         if (Strings.isNullOrEmpty(indexDirPath)) {
             String repoHome = bundleContext.getProperty(REPOSITORY_HOME);
             if (repoHome != null){
@@ -404,6 +515,16 @@ public class LuceneIndexProviderService {
 
         checkNotNull(indexDirPath, "Index directory cannot be determined as neither index " +
                 "directory path [%s] nor repository home [%s] defined", PROP_LOCAL_INDEX_DIR, REPOSITORY_HOME);
+        return indexDirPath;
+    }
+
+    private void initializeIndexCopier(BundleContext bundleContext, Map<String, ?> config) throws IOException {
+        if(indexCopier != null){
+            return;
+        }
+        String indexDirPath = getLocalIndexDirPath(bundleContext, config);
+        boolean prefetchEnabled = PropertiesUtil.toBoolean(config.get(PROP_PREFETCH_INDEX_FILES),
+                PROP_PREFETCH_INDEX_FILES_DEFAULT);
 
         if (prefetchEnabled){
             log.info("Prefetching of index files enabled. Index would be opened after copying all new files locally");
@@ -428,7 +549,9 @@ public class LuceneIndexProviderService {
     }
 
     private ExecutorService createExecutor() {
-        ThreadPoolExecutor executor = new ThreadPoolExecutor(0, 5, 60L, TimeUnit.SECONDS,
+        //With an unbounded queue the pool never grows beyond the core size, so core
+        //threads are used and allowed to time out
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(5, 5, 60L, TimeUnit.SECONDS,
                 new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
             private final AtomicInteger counter = new AtomicInteger();
             private final Thread.UncaughtExceptionHandler handler = new Thread.UncaughtExceptionHandler() {
@@ -478,10 +601,14 @@ public class LuceneIndexProviderService {
         }
 
         int queueSize = PropertiesUtil.toInteger(config.get(PROP_HYBRID_QUEUE_SIZE), PROP_HYBRID_QUEUE_SIZE_DEFAULT);
-        documentQueue = new DocumentQueue(queueSize, tracker, getExecutorService(), statisticsProvider);
+        int indexingThreads = Math.max(1, PropertiesUtil.toInteger(config.get(PROP_HYBRID_INDEXING_THREADS),
+                PROP_HYBRID_INDEXING_THREADS_DEFAULT));
+        documentQueue = new DocumentQueue(queueSize, tracker, getExecutorService(), statisticsProvider,
+                indexingThreads);
         LocalIndexObserver localIndexObserver = new LocalIndexObserver(documentQueue, statisticsProvider);
         regs.add(bundleContext.registerService(Observer.class.getName(), localIndexObserver, null));
-        log.info("Hybrid indexing enabled for configured indexes with queue size of {}", queueSize);
+        log.info("Hybrid indexing enabled for configured indexes with queue size of {} and {} indexing threads",
+                queueSize, indexingThreads);
     }
 
     private void initializeFactoryClassLoaders(ClassLoader classLoader) {
@@ -520,7 +647,8 @@ public class LuceneIndexProviderService {
         log.debug("Lucene46Codec is loaded: {}", ensureLucene46CodecLoaded);
     }
 
-    private void initializeExtractedTextCache(BundleContext bundleContext, Map<String, ?> config) {
+    private void initializeExtractedTextCache(BundleContext bundleContext, Map<String, ?> config)
+            throws IOException {
         int cacheSizeInMB = PropertiesUtil.toInteger(config.get(PROP_EXTRACTED_TEXT_CACHE_SIZE),
                 PROP_EXTRACTED_TEXT_CACHE_SIZE_DEFAULT);
         int cacheExpiryInSecs = PropertiesUtil.toInteger(config.get(PROP_EXTRACTED_TEXT_CACHE_EXPIRY),
@@ -532,6 +660,7 @@ public class LuceneIndexProviderService {
         if (extractedTextProvider != null){
             registerExtractedTextProvider(extractedTextProvider);
         }
+        initializeTextExtraction(config);
         CacheStats stats = extractedTextCache.getCacheStats();
         if (stats != null){
             oakRegs.add(registerMBean(whiteboard,
@@ -542,6 +671,45 @@ public class LuceneIndexProviderService {
         }
     }
 
+    private void initializeTextExtraction(Map<String, ?> config) throws IOException {
+        String storeDir = PropertiesUtil.toString(config.get(PROP_EXTRACTED_TEXT_STORE_DIR), null);
+        if (!Strings.isNullOrEmpty(storeDir)) {
+            extractedTextStore = new DataStoreTextWriter(new File(storeDir), false);
+            extractedTextCache.setExtractedTextStore(extractedTextStore);
+        }
+
+        int timeoutInSecs = PropertiesUtil.toInteger(config.get(PROP_TEXT_EXTRACTION_TIMEOUT),
+                PROP_TEXT_EXTRACTION_TIMEOUT_DEFAULT);
+        int threads = PropertiesUtil.toInteger(config.get(PROP_TEXT_EXTRACTION_THREADS),
+                PROP_TEXT_EXTRACTION_THREADS_DEFAULT);
+        if (timeoutInSecs > 0 && threads > 0) {
+            textExtractionExecutor = createTextExtractionExecutor(threads);
+            extractedTextCache.setExtractionExecutor(textExtractionExecutor, TimeUnit.SECONDS.toMillis(timeoutInSecs));
+            log.info("Text extraction enabled with {} threads and a timeout of {} secs", threads, timeoutInSecs);
+        }
+    }
+
+    /**
+     * Creates the executor for text extraction. Extractions wait in a queue
+     * with one entry per thread. If the queue is full (e.g. because threads
+     * are stuck in extractions which ignore the interrupt on timeout) the
+     * extraction is rejected and the binary is indexed without its text.
+     */
+    private ExecutorService createTextExtractionExecutor(int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(threads), new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+            @Override
+            public Thread newThread(@Nonnull Runnable r) {
+                Thread thread = new Thread(r, "oak-lucene-text-extraction-" + counter.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     private void registerExtractedTextProvider(PreExtractedTextProvider provider){
         if (extractedTextCache != null){
             if (provider != null){
@@ -311,6 +311,12 @@ public class LucenePropertyIndex implements AdvancedQueryIndex, QueryIndex, Nati
             private boolean noDocs = false;
             private IndexSearcher indexSearcher;
             private int indexNodeId = -1;
+            private final QueryResultCache resultCache = getResultCache(plan);
+            /**
+             * The rows read so far if the result is to be cached, or null
+             */
+            private List<QueryResultCache.CachedRow> rowsToCache;
+            private QueryResultCache.Key cacheKey;
 
             @Override
             protected LuceneResultRow computeNext() {
@@ -382,6 +388,11 @@ public class LucenePropertyIndex implements AdvancedQueryIndex, QueryIndex, Nati
                             query = customScoreQuery;
                         }
 
+                        if (lastDoc == null && cacheKey == null && resultCache != null
+                                && loadCachedDocs(indexNode, query)) {
+                            return !queue.isEmpty();
+                        }
+
                         TopDocs docs;
                         long start = PERF_LOGGER.start();
                         while (true) {
@@ -438,10 +449,15 @@ public class LucenePropertyIndex implements AdvancedQueryIndex, QueryIndex, Nati
                                 LuceneResultRow row = convertToRow(doc, searcher, excerpt, facets, explanation);
                                 if (row != null) {
                                     queue.add(row);
+                                    recordRow(row);
                                 }
                                 lastDocToRecord = doc;
                             }
 
+                            if (docs.scoreDocs.length == 0) {
+                                cacheRows(indexNode, searcher);
+                            }
+
                             if (queue.isEmpty() && docs.scoreDocs.length > 0) {
                                 //queue is still empty but more results can be fetched
                                 //from Lucene so still continue
@@ -524,6 +540,50 @@ public class LucenePropertyIndex implements AdvancedQueryIndex, QueryIndex, Nati
                 return !queue.isEmpty();
             }
 
+            /**
+             * Adds the cached result of the query to the queue, if any. Otherwise
+             * starts recording the rows so that the result can be cached once
+             * all documents have been read.
+             *
+             * @return true if the cached result was used
+             */
+            private boolean loadCachedDocs(IndexNode indexNode, Query query) {
+                //Read the version before the searcher such that the
+                //recorded result is never older than the version
+                int version = indexNode.getSearcherVersion();
+                cacheKey = new QueryResultCache.Key(indexNode.getIndexNodeId(), version, query, sort);
+                List<QueryResultCache.CachedRow> rows = resultCache.get(cacheKey);
+                if (rows == null) {
+                    rowsToCache = Lists.newArrayList();
+                    return false;
+                }
+                LOG.debug("Using cached result of {} entries for query {}", rows.size(), query);
+                for (QueryResultCache.CachedRow row : rows) {
+                    queue.add(new LuceneResultRow(row.path, row.score, null, null, null));
+                }
+                noDocs = true;
+                return true;
+            }
+
+            private void recordRow(LuceneResultRow row) {
+                if (rowsToCache != null) {
+                    if (rowsToCache.size() < resultCache.getMaxRows()) {
+                        rowsToCache.add(new QueryResultCache.CachedRow(row.path, (float) row.score));
+                    } else {
+                        rowsToCache = null;
+                    }
+                }
+            }
+
+            private void cacheRows(IndexNode indexNode, IndexSearcher searcher) {
+                //Only cache if the whole result was read from the searcher
+                //which belongs to the version the key was created with
+                if (rowsToCache != null && indexNode.getSearcher() == searcher) {
+                    resultCache.put(cacheKey, rowsToCache);
+                }
+                rowsToCache = null;
+            }
+
             private IndexSearcher getCurrentSearcher(IndexNode indexNode) {
                 //The searcher once obtained is held till either cursor is finished
                 //or if the index gets updated. It needs to be ensured that
@@ -545,6 +605,8 @@ public class LucenePropertyIndex implements AdvancedQueryIndex, QueryIndex, Nati
                     indexSearcher = indexNode.getSearcher();
                     indexNodeId = indexNode.getIndexNodeId();
                     lastDoc = null;
+                    //The result is read again from start
+                    rowsToCache = null;
                 }
                 return indexSearcher;
             }
@@ -582,6 +644,28 @@ public class LucenePropertyIndex implements AdvancedQueryIndex, QueryIndex, Nati
         return new LucenePathCursor(itr, plan, settings, sizeEstimator);
     }
 
+    /**
+     * Returns the cache for the result of the plan if the result can be cached,
+     * i.e. it only consists of paths and scores.
+     */
+    @CheckForNull
+    private QueryResultCache getResultCache(IndexPlan plan) {
+        QueryResultCache cache = tracker.getQueryResultCache();
+        if (cache == null || getPlanResult(plan).isPathTransformed()) {
+            return null;
+        }
+        Filter filter = plan.getFilter();
+        if (filter.getPropertyRestriction(QueryImpl.REP_EXCERPT) != null
+                || filter.getPropertyRestriction(QueryImpl.OAK_SCORE_EXPLANATION) != null) {
+            return null;
+        }
+        List<?> facetFields = (List<?>) plan.getAttribute(FacetHelper.ATTR_FACET_FIELDS);
+        if (facetFields != null && !facetFields.isEmpty()) {
+            return null;
+        }
+        return cache;
+    }
+
     private static Query addDescendantClauseIfRequired(Query query, IndexPlan plan) {
         Filter filter = plan.getFilter();
 
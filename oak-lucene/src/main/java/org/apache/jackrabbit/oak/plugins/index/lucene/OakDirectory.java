@@ -28,6 +28,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
+import javax.annotation.Nullable;
+
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import com.google.common.io.ByteStreams;
@@ -36,6 +38,7 @@ import org.apache.jackrabbit.oak.api.Blob;
 import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.commons.StringUtils;
+import org.apache.jackrabbit.oak.plugins.index.lucene.directory.LocalBlockCache;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.util.PerfLogger;
 import org.apache.lucene.store.AlreadyClosedException;
@@ -83,12 +86,22 @@ public class OakDirectory extends Directory {
     private final Set<String> fileNames = Sets.newConcurrentHashSet();
     private final boolean activeDeleteEnabled;
     private final String indexName;
+    private final LocalBlockCache blockCache;
 
     public OakDirectory(NodeBuilder builder, IndexDefinition definition, boolean readOnly) {
         this(builder, INDEX_DATA_CHILD_NAME, definition, readOnly);
     }
 
     public OakDirectory(NodeBuilder builder, String dataNodeName, IndexDefinition definition, boolean readOnly) {
+        this(builder, dataNodeName, definition, readOnly, null);
+    }
+
+    /**
+     * @param blockCache the cache for blocks read from the index files. Only
+     *                   used for read only directories.
+     */
+    public OakDirectory(NodeBuilder builder, String dataNodeName, IndexDefinition definition, boolean readOnly,
+                        @Nullable LocalBlockCache blockCache) {
         this.lockFactory = NoLockFactory.getNoLockFactory();
         this.builder = builder;
         this.directoryBuilder = readOnly ? builder.getChildNode(dataNodeName) : builder.child(dataNodeName);
@@ -97,6 +110,7 @@ public class OakDirectory extends Directory {
         this.fileNames.addAll(getListing());
         this.activeDeleteEnabled = definition.getActiveDeleteEnabled();
         this.indexName = definition.getIndexName();
+        this.blockCache = readOnly ? blockCache : null;
     }
 
     @Override
@@ -141,7 +155,7 @@ public class OakDirectory extends Directory {
     @Override
     public long fileLength(String name) throws IOException {
         NodeBuilder file = directoryBuilder.getChildNode(name);
-        OakIndexInput input = new OakIndexInput(name, file, indexName);
+        OakIndexInput input = new OakIndexInput(name, file, indexName, null);
         try {
             return input.length();
         } finally {
@@ -174,7 +188,7 @@ public class OakDirectory extends Directory {
             throws IOException {
         NodeBuilder file = directoryBuilder.getChildNode(name);
         if (file.exists()) {
-            return new OakIndexInput(name, file, indexName);
+            return new OakIndexInput(name, file, indexName, blockCache);
         } else {
             String msg = String.format("[%s] %s", indexName, name);
             throw new FileNotFoundException(msg);
@@ -292,7 +306,8 @@ public class OakDirectory extends Directory {
         private int index = -1;
 
         /**
-         * The data of the currently loaded blob.
+         * The data of the currently loaded blob. Allocated lazily, as clones
+         * of an input are often only used to read a few bytes.
          */
         private byte[] blob;
         
@@ -309,13 +324,19 @@ public class OakDirectory extends Directory {
 
         private final String dirDetails;
 
-        public OakIndexFile(String name, NodeBuilder file, String dirDetails) {
+        /**
+         * The cache for blobs read from the file, or {@code null}.
+         */
+        private final LocalBlockCache blockCache;
+
+        public OakIndexFile(String name, NodeBuilder file, String dirDetails,
+                            @Nullable LocalBlockCache blockCache) {
             this.name = name;
             this.file = file;
             this.dirDetails = dirDetails;
+            this.blockCache = blockCache;
             this.blobSize = determineBlobSize(file);
             this.uniqueKey = readUniqueKey(file);
-            this.blob = new byte[blobSize];
 
             PropertyState property = file.getProperty(JCR_DATA);
             if (property != null && property.getType() == BINARIES) {
@@ -338,9 +359,9 @@ public class OakDirectory extends Directory {
             this.name = that.name;
             this.file = that.file;
             this.dirDetails = that.dirDetails;
+            this.blockCache = that.blockCache;
             this.blobSize = that.blobSize;
             this.uniqueKey = that.uniqueKey;
-            this.blob = new byte[blobSize];
 
             this.position = that.position;
             this.length = that.length;
@@ -354,17 +375,39 @@ public class OakDirectory extends Directory {
                 flushBlob();
                 checkState(!blobModified);
 
-                int n = (int) Math.min(blobSize, length - (long)i * blobSize);
-                InputStream stream = data.get(i).getNewStream();
+                if (blob == null) {
+                    blob = new byte[blobSize];
+                }
+                readBlob(i, blob, 0);
+                index = i;
+            }
+        }
+
+        /**
+         * Reads the content of the blob at the given index into the given
+         * array, without changing the currently loaded blob.
+         */
+        private void readBlob(int i, byte[] b, int offset) throws IOException {
+            int n = blobLength(i);
+            Blob content = data.get(i);
+            String key = blockCache != null ? content.getContentIdentity() : null;
+            if (key == null || !blockCache.get(key, b, offset, n)) {
+                InputStream stream = content.getNewStream();
                 try {
-                    ByteStreams.readFully(stream, blob, 0, n);
+                    ByteStreams.readFully(stream, b, offset, n);
                 } finally {
                     stream.close();
                 }
-                index = i;
+                if (key != null) {
+                    blockCache.put(key, b, offset, n);
+                }
             }
         }
 
+        private int blobLength(int i) {
+            return (int) Math.min(blobSize, length - (long)i * blobSize);
+        }
+
         private void flushBlob() throws IOException {
             if (blobModified) {
                 int n = (int) Math.min(blobSize, length - (long)index * blobSize);
@@ -410,10 +453,16 @@ public class OakDirectory extends Directory {
             int i = (int) (position / blobSize);
             int o = (int) (position % blobSize);
             while (len > 0) {
-                loadBlob(i);
-
                 int l = Math.min(len, blobSize - o);
-                System.arraycopy(blob, o, b, offset, l);
+                if (o == 0 && l == blobLength(i) && index != i && !blobModified) {
+                    // the whole blob is requested, read it directly into the
+                    // target array instead of going through the buffer
+                    checkElementIndex(i, data.size());
+                    readBlob(i, b, offset);
+                } else {
+                    loadBlob(i);
+                    System.arraycopy(blob, o, b, offset, l);
+                }
 
                 offset += l;
                 len -= l;
@@ -425,6 +474,16 @@ public class OakDirectory extends Directory {
             }
         }
 
+        public byte readByte() throws IOException {
+            if (position >= length) {
+                String msg = String.format("Invalid byte range request for [%s][%s], " +
+                        "position: %d, file length: %d, len: %d", dirDetails, name, position, length, 1);
+                throw new IOException(msg);
+            }
+            loadBlob((int) (position / blobSize));
+            return blob[(int) (position++ % blobSize)];
+        }
+
         public void writeBytes(byte[] b, int offset, int len)
                 throws IOException {
             int i = (int) (position / blobSize);
@@ -444,6 +503,9 @@ public class OakDirectory extends Directory {
                         // and either: l is the blockSize, or
                         // we write at least to the end of the file
                         flushBlob();
+                        if (blob == null) {
+                            blob = new byte[blobSize];
+                        }
                         index = i;
                     }
                 }
@@ -501,10 +563,11 @@ public class OakDirectory extends Directory {
         private final WeakIdentityMap<OakIndexInput, Boolean> clones;
         private final String dirDetails;
 
-        public OakIndexInput(String name, NodeBuilder file, String dirDetails) {
+        public OakIndexInput(String name, NodeBuilder file, String dirDetails,
+                             @Nullable LocalBlockCache blockCache) {
             super(name);
             this.dirDetails = dirDetails;
-            this.file = new OakIndexFile(name, file, dirDetails);
+            this.file = new OakIndexFile(name, file, dirDetails, blockCache);
             clones = WeakIdentityMap.newConcurrentHashMap();
         }
 
@@ -535,9 +598,7 @@ public class OakDirectory extends Directory {
         @Override
         public byte readByte() throws IOException {
             checkNotClosed();
-            byte[] b = new byte[1];
-            readBytes(b, 0, 1);
-            return b[0];
+            return file.readByte();
         }
 
         @Override
@@ -586,7 +647,7 @@ public class OakDirectory extends Directory {
 
         public OakIndexOutput(String name, NodeBuilder file, String dirDetails) throws IOException {
             this.dirDetails = dirDetails;
-            this.file = new OakIndexFile(name, file, dirDetails);
+            this.file = new OakIndexFile(name, file, dirDetails, null);
         }
 
         @Override
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Caches the complete result of Lucene queries, i.e. the paths and scores of
+ * the matching documents. Entries are keyed by the {@link IndexNode} and the
+ * version of its searcher. So an entry is not used anymore once the
+ * {@link IndexTracker} opens a new IndexNode or the NRT readers of the
+ * IndexNode are refreshed, and it is evicted eventually.
+ *
+ * <p>The access check of the paths is not cached, it is still done by the
+ * query engine for every query execution.</p>
+ */
+class QueryResultCache {
+    /**
+     * Estimated memory used by an entry and a row, excluding the paths
+     */
+    private static final int ENTRY_OVERHEAD = 256;
+    private static final int ROW_OVERHEAD = 48;
+
+    private final Cache<Key, List<CachedRow>> cache;
+
+    private final int maxRows;
+
+    /**
+     * @param maxSize the maximum estimated memory used by the cache in bytes
+     * @param maxRows the maximum number of rows of a result to be cached
+     */
+    QueryResultCache(long maxSize, int maxRows) {
+        checkArgument(maxSize > 0, "Cache size must be positive: %s", maxSize);
+        this.maxRows = maxRows;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxSize)
+                .weigher(new Weigher<Key, List<CachedRow>>() {
+                    @Override
+                    public int weigh(Key key, List<CachedRow> rows) {
+                        long weight = ENTRY_OVERHEAD;
+                        for (CachedRow row : rows) {
+                            weight += ROW_OVERHEAD + 2L * row.path.length();
+                        }
+                        return (int) Math.min(weight, Integer.MAX_VALUE);
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    int getMaxRows() {
+        return maxRows;
+    }
+
+    @CheckForNull
+    List<CachedRow> get(Key key) {
+        return cache.getIfPresent(key);
+    }
+
+    void put(Key key, List<CachedRow> rows) {
+        if (rows.size() <= maxRows) {
+            cache.put(key, rows);
+        }
+    }
+
+    CacheStats getStats() {
+        return cache.stats();
+    }
+
+    long size() {
+        return cache.size();
+    }
+
+    static final class Key {
+        private final int indexNodeId;
+        private final int searcherVersion;
+        private final Query query;
+        private final Sort sort;
+
+        Key(int indexNodeId, int searcherVersion, Query query, @Nullable Sort sort) {
+            this.indexNodeId = indexNodeId;
+            this.searcherVersion = searcherVersion;
+            this.query = query;
+            this.sort = sort;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return indexNodeId == other.indexNodeId
+                    && searcherVersion == other.searcherVersion
+                    && query.equals(other.query)
+                    && Objects.equal(sort, other.sort);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(indexNodeId, searcherVersion, query, sort);
+        }
+
+        @Override
+        public String toString() {
+            return query + " (index node: " + indexNodeId + ", version: " + searcherVersion + ")";
+        }
+    }
+
+    static final class CachedRow {
+        final String path;
+        final float score;
+
+        CachedRow(String path, float score) {
+            this.path = path;
+            this.score = score;
+        }
+    }
+}
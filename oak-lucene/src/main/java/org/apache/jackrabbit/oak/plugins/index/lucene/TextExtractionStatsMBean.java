@@ -38,4 +38,10 @@ public interface TextExtractionStatsMBean {
     String getExtractedTextSize();
 
     String getBytesRead();
+
+    boolean isExtractedTextStoreConfigured();
+
+    int getActiveExtractionCount();
+
+    int getTimeoutCount();
 }
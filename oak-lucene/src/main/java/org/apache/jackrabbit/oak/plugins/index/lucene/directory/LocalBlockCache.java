@@ -0,0 +1,278 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index.lucene.directory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.commons.IOUtils;
+import org.apache.jackrabbit.oak.plugins.index.lucene.BlockCacheStatsMBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A cache of index file blocks in a local, memory mapped file. Blocks are
+ * identified by the content identity of the blob they were read from, which
+ * is immutable, so cached blocks never need to be invalidated. The file is
+ * split into slots of {@code blockSize} bytes, which are reused in least
+ * recently used order once all slots are taken. The file is created sparse,
+ * so it only takes disk space for the slots actually used.
+ * <p>
+ * Slots are pinned while a block is copied out of them, a pinned slot is
+ * never reused.
+ */
+public class LocalBlockCache implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(LocalBlockCache.class);
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final int blockSize;
+    private final int slotCount;
+    private final int slotsPerRegion;
+    private final MappedByteBuffer[] regions;
+
+    /**
+     * The slot of each cached block, in access order.
+     */
+    private final LinkedHashMap<String, Integer> slots =
+            new LinkedHashMap<String, Integer>(16, 0.75f, true);
+    private final int[] lengths;
+    private final int[] pins;
+    private final Deque<Integer> freeSlots = new ArrayDeque<Integer>();
+    private int nextFreeSlot;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * @param file the file to map. An existing file is overwritten.
+     * @param maxSize the maximum size of the file in bytes
+     * @param blockSize the size of the blocks
+     */
+    public LocalBlockCache(File file, long maxSize, int blockSize) throws IOException {
+        checkArgument(blockSize > 0, "Block size must be positive: %s", blockSize);
+        long count = maxSize / blockSize;
+        checkArgument(count > 0 && count <= Integer.MAX_VALUE,
+                "Invalid cache size %s for block size %s", maxSize, blockSize);
+        this.file = file;
+        this.blockSize = blockSize;
+        this.slotCount = (int) count;
+        this.slotsPerRegion = Integer.MAX_VALUE / blockSize;
+        this.lengths = new int[slotCount];
+        this.pins = new int[slotCount];
+
+        FileUtils.forceMkdir(file.getParentFile());
+        FileUtils.deleteQuietly(file);
+        this.raf = new RandomAccessFile(file, "rw");
+        long size = (long) slotCount * blockSize;
+        raf.setLength(size);
+        FileChannel channel = raf.getChannel();
+        int regionCount = (slotCount + slotsPerRegion - 1) / slotsPerRegion;
+        this.regions = new MappedByteBuffer[regionCount];
+        for (int i = 0; i < regionCount; i++) {
+            long start = (long) i * slotsPerRegion * blockSize;
+            regions[i] = channel.map(FileChannel.MapMode.READ_WRITE, start,
+                    Math.min(size - start, (long) slotsPerRegion * blockSize));
+        }
+        log.info("Caching index blocks in {} with a maximum size of {}",
+                file.getAbsolutePath(), IOUtils.humanReadableByteCount(size));
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Copies a cached block.
+     *
+     * @param key the content identity of the block
+     * @param dest the array to copy the block to
+     * @param offset the offset within the array
+     * @param len the expected length of the block
+     * @return {@code true} if the block was cached and has been copied
+     */
+    public boolean get(String key, byte[] dest, int offset, int len) {
+        int slot;
+        synchronized (this) {
+            Integer s = slots.get(key);
+            if (s == null || lengths[s] != len) {
+                missCount++;
+                return false;
+            }
+            slot = s;
+            pins[slot]++;
+            hitCount++;
+        }
+        try {
+            slice(slot).get(dest, offset, len);
+        } finally {
+            synchronized (this) {
+                pins[slot]--;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds a block to the cache, unless it is cached already, larger than the
+     * block size, or all slots are pinned.
+     *
+     * @param key the content identity of the block
+     * @param src the array containing the block
+     * @param offset the offset of the block within the array
+     * @param len the length of the block
+     */
+    public void put(String key, byte[] src, int offset, int len) {
+        if (len > blockSize) {
+            return;
+        }
+        int slot;
+        synchronized (this) {
+            if (slots.containsKey(key)) {
+                return;
+            }
+            slot = allocateSlot();
+            if (slot < 0) {
+                return;
+            }
+            // not reachable by readers until added to the map again
+            pins[slot]++;
+        }
+        slice(slot).put(src, offset, len);
+        synchronized (this) {
+            pins[slot]--;
+            if (slots.containsKey(key)) {
+                // added concurrently
+                freeSlots.push(slot);
+            } else {
+                lengths[slot] = len;
+                slots.put(key, slot);
+            }
+        }
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public synchronized int size() {
+        return slots.size();
+    }
+
+    public BlockCacheStatsMBean getStatsMBean() {
+        return new BlockCacheStatsMBean() {
+            @Override
+            public String getCacheFile() {
+                return file.getAbsolutePath();
+            }
+
+            @Override
+            public String getCacheSize() {
+                return IOUtils.humanReadableByteCount((long) slotCount * blockSize);
+            }
+
+            @Override
+            public int getBlockCount() {
+                return size();
+            }
+
+            @Override
+            public int getMaxBlockCount() {
+                return slotCount;
+            }
+
+            @Override
+            public long getHitCount() {
+                return LocalBlockCache.this.getHitCount();
+            }
+
+            @Override
+            public long getMissCount() {
+                return LocalBlockCache.this.getMissCount();
+            }
+
+            @Override
+            public long getEvictionCount() {
+                return LocalBlockCache.this.getEvictionCount();
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        // the mapping is released once the buffers are garbage collected
+        raf.close();
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s (blocks: %d/%d, hits: %d, misses: %d, evictions: %d)",
+                file.getAbsolutePath(), slots.size(), slotCount, hitCount, missCount, evictionCount);
+    }
+
+    private int allocateSlot() {
+        if (!freeSlots.isEmpty()) {
+            return freeSlots.pop();
+        }
+        if (nextFreeSlot < slotCount) {
+            return nextFreeSlot++;
+        }
+        for (Iterator<Map.Entry<String, Integer>> it = slots.entrySet().iterator(); it.hasNext(); ) {
+            int slot = it.next().getValue();
+            if (pins[slot] == 0) {
+                it.remove();
+                evictionCount++;
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private ByteBuffer slice(int slot) {
+        ByteBuffer buffer = regions[slot / slotsPerRegion].duplicate();
+        buffer.position((slot % slotsPerRegion) * blockSize);
+        return buffer;
+    }
+}
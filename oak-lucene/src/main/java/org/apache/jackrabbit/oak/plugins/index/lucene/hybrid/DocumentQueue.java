@@ -29,6 +29,7 @@ import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
 
@@ -40,6 +41,7 @@ import org.apache.jackrabbit.oak.plugins.index.lucene.IndexNode;
 import org.apache.jackrabbit.oak.plugins.index.lucene.IndexTracker;
 import org.apache.jackrabbit.oak.plugins.index.lucene.writer.LuceneIndexWriter;
 import org.apache.jackrabbit.oak.stats.CounterStats;
+import org.apache.jackrabbit.oak.stats.HistogramStats;
 import org.apache.jackrabbit.oak.stats.MeterStats;
 import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.apache.jackrabbit.oak.stats.StatsOptions;
@@ -47,10 +49,17 @@ import org.apache.lucene.index.IndexableField;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 
 public class DocumentQueue implements Closeable{
     private static final LuceneDoc STOP = LuceneDoc.forUpdate("", "", Collections.<IndexableField>emptyList());
+
+    /**
+     * Minimum number of documents per worker before the documents of an index
+     * get indexed concurrently
+     */
+    static final int MIN_DOCS_PER_WORKER = 50;
     private final Logger log = LoggerFactory.getLogger(getClass());
     private final IndexTracker tracker;
     private final BlockingQueue<LuceneDoc> docsQueue;
@@ -58,6 +67,13 @@ public class DocumentQueue implements Closeable{
     private final CounterStats queueSizeStats;
     private final MeterStats added;
     private final MeterStats dropped;
+    private final HistogramStats batchSize;
+
+    /**
+     * Number of threads which concurrently add the queued documents of
+     * an index to its writer
+     */
+    private final int workers;
 
     /**
      * Time in millis for which add call to queue
@@ -102,6 +118,7 @@ public class DocumentQueue implements Closeable{
                     }
 
                     queueSizeStats.dec(count);
+                    batchSize.update(count);
 
                     for (int i = 0; i < count; i++) {
                         LuceneDoc doc = docs.get(i);
@@ -111,7 +128,13 @@ public class DocumentQueue implements Closeable{
                         docsPerIndex.get(doc.indexPath).add(doc);
                     }
 
-                    addAllSynchronously(docsPerIndex.asMap());
+                    //Under load the batches get larger and thus readers
+                    //are refreshed once for more documents
+                    for (String indexPath : docsPerIndex.keySet()) {
+                        List<LuceneDoc> indexDocs = docsPerIndex.get(indexPath);
+                        processDocsConcurrently(indexPath, indexDocs);
+                        added.mark(indexDocs.size());
+                    }
 
                     currentTask.onComplete(completionHandler);
                 } catch (Throwable t) {
@@ -133,13 +156,26 @@ public class DocumentQueue implements Closeable{
     }
 
     public DocumentQueue(int maxQueueSize, IndexTracker tracker, Executor executor, StatisticsProvider sp) {
+        this(maxQueueSize, tracker, executor, sp, 1);
+    }
+
+    /**
+     * @param workers number of threads used to index the queued documents of
+     *                an index. Queued documents are only used for NRT indexes
+     *                which only add documents, so they can be indexed in any order
+     */
+    public DocumentQueue(int maxQueueSize, IndexTracker tracker, Executor executor, StatisticsProvider sp,
+                         int workers) {
+        checkArgument(workers > 0, "Number of workers must be positive: %s", workers);
         this.docsQueue = new LinkedBlockingDeque<>(maxQueueSize);
         this.tracker = tracker;
         this.executor = executor;
+        this.workers = workers;
         this.offerTimeMillis = 100; //Wait for at most 100 mills while adding stuff to queue
         this.queueSizeStats = sp.getCounterStats("HYBRID_QUEUE_SIZE", StatsOptions.DEFAULT);
         this.added = sp.getMeter("HYBRID_ADDED", StatsOptions.DEFAULT);
         this.dropped = sp.getMeter("HYBRID_DROPPED", StatsOptions.DEFAULT);
+        this.batchSize = sp.getHistogram("HYBRID_BATCH_SIZE", StatsOptions.DEFAULT);
     }
 
     public boolean add(LuceneDoc doc){
@@ -178,6 +214,25 @@ public class DocumentQueue implements Closeable{
     }
 
     private void processDocs(String indexPath, Iterable<LuceneDoc> docs){
+        processPartitions(indexPath, Collections.singletonList(docs));
+    }
+
+    /**
+     * Splits the documents of an index between the workers. The current thread
+     * takes part in the indexing, and also runs the tasks which the executor
+     * did not start yet, so it does not depend on free threads in the executor.
+     * The IndexWriter keeps a separate in memory segment per indexing thread.
+     */
+    private void processDocsConcurrently(String indexPath, List<LuceneDoc> docs){
+        int n = Math.min(workers, docs.size() / MIN_DOCS_PER_WORKER);
+        if (n <= 1) {
+            processDocs(indexPath, docs);
+            return;
+        }
+        processPartitions(indexPath, Lists.partition(docs, (docs.size() + n - 1) / n));
+    }
+
+    private void processPartitions(String indexPath, List<? extends Iterable<LuceneDoc>> partitions){
 
         //Drop the write call if stopped
         if (stopped) {
@@ -191,21 +246,33 @@ public class DocumentQueue implements Closeable{
         }
 
         try{
-            LuceneIndexWriter writer = indexNode.getLocalWriter();
-            for (LuceneDoc doc : docs) {
-                if (writer == null) {
-                    //IndexDefinition per IndexNode might have changed and local
-                    //indexing is disabled. Ignore
-                    log.debug("No local IndexWriter found for index [{}]. Skipping index " +
-                            "entry for [{}]", indexPath, doc.docPath);
-                    return;
-                }
-                if (doc.delete) {
-                    writer.deleteDocuments(doc.docPath);
-                } else {
-                    writer.updateDocument(doc.docPath, doc.doc);
-                }
-                log.trace("Updated index with doc {}", doc);
+            final LuceneIndexWriter writer = indexNode.getLocalWriter();
+            if (writer == null) {
+                //IndexDefinition per IndexNode might have changed and local
+                //indexing is disabled. Ignore
+                log.debug("No local IndexWriter found for index [{}]. Skipping index " +
+                        "entries", indexPath);
+                return;
+            }
+
+            List<FutureTask<Void>> tasks = Lists.newArrayListWithCapacity(partitions.size() - 1);
+            for (final Iterable<LuceneDoc> docs : partitions.subList(1, partitions.size())) {
+                FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        writeDocs(writer, docs);
+                        return null;
+                    }
+                });
+                tasks.add(task);
+                executor.execute(task);
+            }
+
+            writeDocs(writer, partitions.get(0));
+            for (FutureTask<Void> task : tasks) {
+                //No-op if the executor already started the task
+                task.run();
+                task.get();
             }
             indexNode.refreshReadersOnWriteIfRequired();
         } catch (Exception e) {
@@ -217,6 +284,17 @@ public class DocumentQueue implements Closeable{
         }
     }
 
+    private void writeDocs(LuceneIndexWriter writer, Iterable<LuceneDoc> docs) throws IOException {
+        for (LuceneDoc doc : docs) {
+            if (doc.delete) {
+                writer.deleteDocuments(doc.docPath);
+            } else {
+                writer.updateDocument(doc.docPath, doc.doc);
+            }
+            log.trace("Updated index with doc {}", doc);
+        }
+    }
+
     @Override
     public void close() throws IOException {
         //Its fine to "drop" any entry in queue as
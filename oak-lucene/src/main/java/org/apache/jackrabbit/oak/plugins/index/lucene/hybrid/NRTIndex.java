@@ -88,7 +88,7 @@ public class NRTIndex implements Closeable {
         return reader != null ? new NRTReader(reader) : null;
     }
 
-    public LuceneIndexWriter getWriter() throws IOException {
+    public synchronized LuceneIndexWriter getWriter() throws IOException {
         checkState(!closed);
         if (nrtIndexWriter == null) {
             nrtIndexWriter = createWriter();
@@ -31,6 +31,7 @@ import com.google.common.collect.ImmutableList;
 import org.apache.jackrabbit.oak.plugins.index.lucene.IndexCopier;
 import org.apache.jackrabbit.oak.plugins.index.lucene.IndexDefinition;
 import org.apache.jackrabbit.oak.plugins.index.lucene.OakDirectory;
+import org.apache.jackrabbit.oak.plugins.index.lucene.directory.LocalBlockCache;
 import org.apache.jackrabbit.oak.plugins.index.lucene.writer.MultiplexersLucene;
 import org.apache.jackrabbit.oak.spi.mount.Mount;
 import org.apache.jackrabbit.oak.spi.mount.MountInfoProvider;
@@ -48,10 +49,17 @@ import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstant
 public class DefaultIndexReaderFactory implements LuceneIndexReaderFactory {
     private final IndexCopier cloner;
     private final MountInfoProvider mountInfoProvider;
+    private final LocalBlockCache blockCache;
 
     public DefaultIndexReaderFactory(MountInfoProvider mountInfoProvider, @Nullable IndexCopier cloner) {
+        this(mountInfoProvider, cloner, null);
+    }
+
+    public DefaultIndexReaderFactory(MountInfoProvider mountInfoProvider, @Nullable IndexCopier cloner,
+                                     @Nullable LocalBlockCache blockCache) {
         this.cloner = cloner;
         this.mountInfoProvider = mountInfoProvider;
+        this.blockCache = blockCache;
     }
 
     @Override
@@ -97,7 +105,10 @@ public class DefaultIndexReaderFactory implements LuceneIndexReaderFactory {
         Directory directory = null;
         NodeState data = defnNodeState.getChildNode(indexDataNodeName);
         if (data.exists()) {
-            directory = new OakDirectory(new ReadOnlyBuilder(defnNodeState), indexDataNodeName, definition, true);
+            // with copy-on-read, the directory is only read to copy whole files
+            // to the local index directory, which would evict all other blocks
+            directory = new OakDirectory(new ReadOnlyBuilder(defnNodeState), indexDataNodeName, definition, true,
+                    cloner == null ? blockCache : null);
             if (cloner != null) {
                 directory = cloner.wrapForRead(indexPath, definition, directory, indexDataNodeName);
             }
@@ -111,7 +122,8 @@ public class DefaultIndexReaderFactory implements LuceneIndexReaderFactory {
         if (directory != null) {
             OakDirectory suggestDirectory = null;
             if (definition.isSuggestEnabled()) {
-                suggestDirectory = new OakDirectory(new ReadOnlyBuilder(defnNodeState), suggestDataNodeName, definition, true);
+                suggestDirectory = new OakDirectory(new ReadOnlyBuilder(defnNodeState), suggestDataNodeName, definition,
+                        true, blockCache);
             }
 
             try{
@@ -19,17 +19,28 @@
 
 package org.apache.jackrabbit.oak.plugins.index.lucene;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.commons.io.FileUtils;
 import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.plugins.blob.datastore.DataStoreTextWriter;
 import org.apache.jackrabbit.oak.plugins.index.fulltext.ExtractedText;
 import org.apache.jackrabbit.oak.plugins.index.fulltext.ExtractedText.ExtractionResult;
 import org.apache.jackrabbit.oak.plugins.index.fulltext.PreExtractedTextProvider;
 import org.apache.jackrabbit.oak.plugins.memory.ArrayBasedBlob;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
@@ -38,6 +49,9 @@ import static org.mockito.Mockito.when;
 
 public class ExtractedTextCacheTest {
 
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Test
     public void cacheDisabling() throws Exception {
         ExtractedTextCache cache = new ExtractedTextCache(0, 0);
@@ -135,6 +149,114 @@ public class ExtractedTextCacheTest {
         assertEquals("bar", text);
     }
 
+    @Test
+    public void extractedTextStore() throws Exception{
+        ExtractedTextCache cache = new ExtractedTextCache(0, 0);
+        DataStoreTextWriter store = new DataStoreTextWriter(temporaryFolder.getRoot(), false);
+        cache.setExtractedTextStore(store);
+
+        Blob b = new ReferenceBlob("hello", "abcdef0123");
+        Blob e = new ReferenceBlob("world", "abcdef4567");
+        Blob inline = new IdBlob("hello", "123456789");
+        cache.put(b, new ExtractedText(ExtractionResult.SUCCESS, "test hello"));
+        cache.put(e, ExtractedText.ERROR);
+        cache.put(inline, new ExtractedText(ExtractionResult.SUCCESS, "test hello"));
+        assertNull(cache.get("/a", "foo", inline, false));
+        store.close();
+
+        // text survives a restart
+        cache = new ExtractedTextCache(0, 0);
+        cache.setExtractedTextStore(new DataStoreTextWriter(temporaryFolder.getRoot(), false));
+        assertTrue(cache.getStatsMBean().isExtractedTextStoreConfigured());
+        assertEquals("test hello", cache.get("/a", "foo", b, false));
+        assertEquals(LuceneIndexEditor.TEXT_EXTRACTION_ERROR, cache.get("/b", "foo", e, false));
+    }
+
+    @Test
+    public void extractionTimeout() throws Exception{
+        ExtractedTextCache cache = new ExtractedTextCache(0, 0);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final CountDownLatch latch = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        try {
+            cache.setExtractionExecutor(executor, 100);
+            assertEquals("done", cache.extract("/a", new Callable<String>() {
+                @Override
+                public String call() {
+                    return "done";
+                }
+            }));
+
+            String text = cache.extract("/b", new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    try {
+                        latch.await();
+                    } catch (InterruptedException e) {
+                        interrupted.countDown();
+                        throw e;
+                    }
+                    return "late";
+                }
+            });
+            assertEquals(LuceneIndexEditor.TEXT_EXTRACTION_ERROR, text);
+            assertEquals(1, cache.getStatsMBean().getTimeoutCount());
+            // the extraction which timed out is cancelled
+            assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        } finally {
+            latch.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void extractionWithBusyExecutor() throws Exception{
+        ExtractedTextCache cache = new ExtractedTextCache(0, 0);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Thread caller = Thread.currentThread();
+        try {
+            cache.setExtractionExecutor(executor, 100);
+            // an extraction which ignores the interrupt keeps the thread busy
+            String text = cache.extract("/a", new Callable<String>() {
+                @Override
+                public String call() {
+                    Uninterruptibles.awaitUninterruptibly(latch);
+                    return "late";
+                }
+            });
+            assertEquals(LuceneIndexEditor.TEXT_EXTRACTION_ERROR, text);
+
+            // the next extraction is neither run by the caller
+            // nor does it wait longer than the timeout
+            text = cache.extract("/b", new Callable<String>() {
+                @Override
+                public String call() {
+                    return Thread.currentThread() == caller ? "inline" : "pooled";
+                }
+            });
+            assertEquals(LuceneIndexEditor.TEXT_EXTRACTION_ERROR, text);
+            assertEquals(2, cache.getStatsMBean().getTimeoutCount());
+            assertEquals(1, cache.getStatsMBean().getActiveExtractionCount());
+        } finally {
+            latch.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void extractionWithoutExecutor() throws Exception{
+        ExtractedTextCache cache = new ExtractedTextCache(0, 0);
+        final Thread caller = Thread.currentThread();
+        String text = cache.extract("/a", new Callable<String>() {
+            @Override
+            public String call() {
+                return Thread.currentThread() == caller ? "inline" : "pooled";
+            }
+        });
+        assertEquals("inline", text);
+    }
+
     private static class IdBlob extends ArrayBasedBlob {
         final String id;
 
@@ -148,4 +270,16 @@ public class ExtractedTextCacheTest {
             return id;
         }
     }
+
+    private static class ReferenceBlob extends IdBlob {
+
+        public ReferenceBlob(String value, String id) {
+            super(value, id);
+        }
+
+        @Override
+        public String getReference() {
+            return id;
+        }
+    }
 }
@@ -103,6 +103,7 @@ import org.apache.jackrabbit.oak.api.ResultRow;
 import org.apache.jackrabbit.oak.api.Tree;
 import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
+import org.apache.jackrabbit.oak.plugins.blob.datastore.DataStoreTextWriter;
 import org.apache.jackrabbit.oak.plugins.index.IndexConstants;
 import org.apache.jackrabbit.oak.plugins.index.fulltext.ExtractedText;
 import org.apache.jackrabbit.oak.plugins.index.fulltext.ExtractedText.ExtractionResult;
@@ -150,6 +151,8 @@ public class LucenePropertyIndexTest extends AbstractQueryTest {
 
     private NodeStore nodeStore;
 
+    private IndexTracker tracker;
+
     @After
     public void after() {
         new ExecutorCloser(executorService).close();
@@ -165,6 +168,7 @@ public class LucenePropertyIndexTest extends AbstractQueryTest {
         IndexCopier copier = createIndexCopier();
         editorProvider = new LuceneIndexEditorProvider(copier, new ExtractedTextCache(10* FileUtils.ONE_MB, 100));
         LuceneIndexProvider provider = new LuceneIndexProvider(copier);
+        tracker = provider.getTracker();
         nodeStore = new MemoryNodeStore();
         return new Oak(nodeStore)
                 .with(new InitialContent())
@@ -290,6 +294,37 @@ public class LucenePropertyIndexTest extends AbstractQueryTest {
         assertQuery("select [jcr:path] from [nt:base] where [propc] = 'foo'", asList("/test/d"));
     }
 
+    @Test
+    public void queryResultCache() throws Exception {
+        QueryResultCache cache = new QueryResultCache(FileUtils.ONE_MB, 2);
+        tracker.setQueryResultCache(cache);
+        createIndex("test1", of("propa"));
+
+        Tree test = root.getTree("/").addChild("test");
+        test.addChild("a").setProperty("propa", "foo");
+        test.addChild("b").setProperty("propa", "foo");
+        test.addChild("c").setProperty("propa", "bar");
+        root.commit();
+
+        String query = "select [jcr:path] from [nt:base] where [propa] = 'foo'";
+        assertQuery(query, asList("/test/a", "/test/b"));
+        assertEquals(0, cache.getStats().hitCount());
+        assertEquals(1, cache.size());
+
+        assertQuery(query, asList("/test/a", "/test/b"));
+        assertEquals(1, cache.getStats().hitCount());
+
+        //Index update opens a new IndexNode, so the cached result is not used
+        test.addChild("d").setProperty("propa", "foo");
+        root.commit();
+        assertQuery(query, asList("/test/a", "/test/b", "/test/d"));
+        assertEquals(1, cache.getStats().hitCount());
+
+        //Results with more rows than the limit are not cached
+        assertQuery(query, asList("/test/a", "/test/b", "/test/d"));
+        assertEquals(1, cache.getStats().hitCount());
+    }
+
     @Test
     public void indexSelectionVsNodeType() throws Exception {
         Tree luceneIndex = createIndex("test1", of("propa"));
@@ -1783,6 +1818,31 @@ public class LucenePropertyIndexTest extends AbstractQueryTest {
         assertEquals(0, testBlob.accessCount);
     }
 
+    @Test
+    public void extractedTextStoreReadFailure() throws Exception{
+        DataStoreTextWriter store = new DataStoreTextWriter(temporaryFolder.newFolder(), false);
+        editorProvider.getExtractedTextCache().setExtractedTextStore(store);
+        Tree idx = createFulltextIndex(root.getTree("/"), "test");
+        TestUtil.useV2(idx);
+        root.commit();
+
+        UnreadableBlob testBlob = new UnreadableBlob("fox is jumping", "abcdef0123");
+        Tree test = root.getTree("/").addChild("test");
+        createFileNode(test, "text", testBlob, "text/plain");
+        root.commit();
+        assertQuery("select * from [nt:base] where CONTAINS(*, 'fox ')", Collections.<String>emptyList());
+
+        //The read failure must not be persisted as an extraction
+        //error, a reindex extracts the text once the blob is readable
+        testBlob.readable = true;
+        root.getTree(idx.getPath()).setProperty(IndexConstants.REINDEX_PROPERTY_NAME, true);
+        root.commit();
+        assertQuery("select * from [nt:base] where CONTAINS(*, 'fox ')", asList("/test/text/jcr:content"));
+
+        editorProvider.getExtractedTextCache().setExtractedTextStore(null);
+        store.close();
+    }
+
     @Test
     public void maxFieldLengthCheck() throws Exception{
         Tree idx = createFulltextIndex(root.getTree("/"), "test");
@@ -2582,6 +2642,40 @@ public class LucenePropertyIndexTest extends AbstractQueryTest {
         }
     }
 
+    private static class UnreadableBlob extends ArrayBasedBlob {
+        private final String id;
+        private boolean readable;
+
+        public UnreadableBlob(String content, String id) {
+            super(content.getBytes(Charsets.UTF_8));
+            this.id = id;
+        }
+
+        @Nonnull
+        @Override
+        public InputStream getNewStream() {
+            if (readable) {
+                return super.getNewStream();
+            }
+            return new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    throw new IOException("Blob not readable");
+                }
+            };
+        }
+
+        @Override
+        public String getContentIdentity() {
+            return id;
+        }
+
+        @Override
+        public String getReference() {
+            return id;
+        }
+    }
+
     private static class AccessStateProvidingBlob extends ArrayBasedBlob {
         private CountingInputStream stream;
         private String id;
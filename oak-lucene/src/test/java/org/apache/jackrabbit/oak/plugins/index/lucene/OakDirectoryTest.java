@@ -49,6 +49,7 @@ import org.apache.commons.io.input.NullInputStream;
 import org.apache.jackrabbit.oak.api.Blob;
 import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.plugins.index.IndexConstants;
+import org.apache.jackrabbit.oak.plugins.index.lucene.directory.LocalBlockCache;
 import org.apache.jackrabbit.oak.plugins.memory.ArrayBasedBlob;
 import org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState;
 import org.apache.jackrabbit.oak.plugins.memory.PropertyStates;
@@ -335,6 +336,74 @@ public class OakDirectoryTest {
         store.close();
     }
 
+    @Test
+    public void readByteAndPartialReads() throws Exception{
+        Directory dir = createDir(builder, false);
+        byte[] data = assertWrites(dir, IndexDefinition.DEFAULT_BLOB_SIZE);
+
+        IndexInput i = dir.openInput("test", IOContext.DEFAULT);
+        for (int pos = 0; pos < 10; pos++) {
+            assertEquals(data[pos], i.readByte());
+        }
+
+        IndexInput clone = i.clone();
+        byte[] result = new byte[fileSize];
+        clone.seek(10);
+        clone.readBytes(result, 10, fileSize - 10);
+        System.arraycopy(data, 0, result, 0, 10);
+        assertTrue(Arrays.equals(data, result));
+
+        //Read across the blob boundary byte by byte
+        i.seek(IndexDefinition.DEFAULT_BLOB_SIZE - 2);
+        for (int pos = IndexDefinition.DEFAULT_BLOB_SIZE - 2; pos < IndexDefinition.DEFAULT_BLOB_SIZE + 2; pos++) {
+            assertEquals(data[pos], i.readByte());
+        }
+
+        i.seek(fileSize);
+        try {
+            i.readByte();
+            fail();
+        } catch (IOException ignore) {
+            // expected
+        }
+        i.close();
+    }
+
+    @Test
+    public void blockCache() throws Exception{
+        FileStore store = FileStore.builder(tempFolder.newFolder())
+                .withMemoryMapping(false)
+                .build();
+        LocalBlockCache blockCache = new LocalBlockCache(new File(tempFolder.getRoot(), "blocks"),
+                4 * ONE_MB, IndexDefinition.DEFAULT_BLOB_SIZE);
+        try {
+            SegmentNodeStore nodeStore = SegmentNodeStore.builder(store).build();
+            NodeBuilder builder = nodeStore.getRoot().builder();
+            IndexDefinition defn = new IndexDefinition(INITIAL_CONTENT, EmptyNodeState.EMPTY_NODE);
+            Directory dir = new OakDirectory(builder, INDEX_DATA_CHILD_NAME, defn, false);
+            byte[] data = randomBytes(fileSize);
+            IndexOutput o = dir.createOutput("test", IOContext.DEFAULT);
+            o.writeBytes(data, data.length);
+            o.close();
+
+            NodeState state = builder.getNodeState();
+            for (int i = 0; i < 2; i++) {
+                dir = new OakDirectory(new ReadOnlyBuilder(state), INDEX_DATA_CHILD_NAME, defn, true, blockCache);
+                IndexInput in = dir.openInput("test", IOContext.DEFAULT);
+                byte[] result = new byte[fileSize];
+                in.readBytes(result, 0, result.length);
+                assertTrue(Arrays.equals(data, result));
+                in.close();
+            }
+            assertEquals(3, blockCache.size());
+            assertEquals(3, blockCache.getHitCount());
+            assertEquals(3, blockCache.getMissCount());
+        } finally {
+            blockCache.close();
+            store.close();
+        }
+    }
+
     @Test
     public void dirNameInExceptionMessage() throws Exception{
         String indexPath = "/foo/bar";
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index.lucene.directory;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.apache.jackrabbit.oak.plugins.index.lucene.BlockCacheStatsMBean;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LocalBlockCacheTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder(new File("target"));
+
+    private LocalBlockCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        cache = new LocalBlockCache(new File(temporaryFolder.getRoot(), "cache/blocks"), 3 * 16, 16);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        cache.close();
+    }
+
+    @Test
+    public void putAndGet() throws Exception {
+        byte[] block = bytes(10, 1);
+        byte[] dest = new byte[16];
+        assertFalse(cache.get("a", dest, 0, 10));
+
+        cache.put("a", block, 0, 10);
+        assertTrue(cache.get("a", dest, 0, 10));
+        assertArrayEquals(block, Arrays.copyOf(dest, 10));
+
+        // a block of a different length is not returned
+        assertFalse(cache.get("a", dest, 0, 11));
+        // blocks larger than the block size are not cached
+        cache.put("b", bytes(17, 2), 0, 17);
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() throws Exception {
+        cache.put("a", bytes(16, 1), 0, 16);
+        cache.put("b", bytes(16, 2), 0, 16);
+        cache.put("c", bytes(16, 3), 0, 16);
+        byte[] dest = new byte[16];
+        assertTrue(cache.get("a", dest, 0, 16));
+
+        cache.put("d", bytes(16, 4), 0, 16);
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertFalse(cache.get("b", dest, 0, 16));
+        assertTrue(cache.get("a", dest, 0, 16));
+        assertArrayEquals(bytes(16, 1), dest);
+        assertTrue(cache.get("d", dest, 0, 16));
+        assertArrayEquals(bytes(16, 4), dest);
+    }
+
+    @Test
+    public void statsMBean() throws Exception {
+        BlockCacheStatsMBean stats = cache.getStatsMBean();
+        assertEquals(3, stats.getMaxBlockCount());
+
+        byte[] dest = new byte[16];
+        for (String key : new String[] {"a", "b", "c", "d"}) {
+            cache.put(key, bytes(16, 1), 0, 16);
+        }
+        assertTrue(cache.get("d", dest, 0, 16));
+        assertFalse(cache.get("a", dest, 0, 16));
+
+        assertEquals(3, stats.getBlockCount());
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(1, stats.getEvictionCount());
+    }
+
+    private static byte[] bytes(int len, int value) {
+        byte[] b = new byte[len];
+        for (int i = 0; i < len; i++) {
+            b[i] = (byte) (value + i);
+        }
+        return b;
+    }
+}
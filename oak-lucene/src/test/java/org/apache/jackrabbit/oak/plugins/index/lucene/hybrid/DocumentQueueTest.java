@@ -31,6 +31,7 @@ import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
 import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.core.SimpleCommitContext;
 import org.apache.jackrabbit.oak.plugins.index.IndexEditorProvider;
@@ -48,6 +49,7 @@ import org.apache.jackrabbit.oak.spi.commit.EditorHook;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.oak.stats.Clock;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.StringField;
@@ -155,6 +157,40 @@ public class DocumentQueueTest {
         assertEquals(1, index.getPrimaryReader().getReader().numDocs());
     }
 
+    @Test
+    public void concurrentIndexing() throws Exception{
+        IndexTracker tracker = createTracker();
+        NodeState indexed = createAndPopulateAsyncIndex(IndexingMode.NRT);
+        tracker.update(indexed);
+
+        final List<Runnable> tasks = Lists.newArrayList();
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        };
+        DocumentQueue queue = new DocumentQueue(1000, tracker, executor, StatisticsProvider.NOOP, 2);
+
+        int numDocs = DocumentQueue.MIN_DOCS_PER_WORKER * 4;
+        for (int i = 0; i < numDocs; i++) {
+            assertTrue(queue.add(createDoc("/a/b" + i, "bar")));
+        }
+
+        //Only the task draining the queue is scheduled so far
+        assertEquals(1, tasks.size());
+        tasks.remove(0).run();
+
+        //Second half got scheduled as separate task but was run by
+        //the draining thread itself. Followed by next drain task
+        assertEquals(2, tasks.size());
+        assertTrue(queue.getQueuedDocs().isEmpty());
+
+        List<NRTIndex> indexes = indexFactory.getIndexes("/oak:index/fooIndex");
+        NRTIndex index = indexes.get(indexes.size() - 1);
+        assertEquals(numDocs, index.getPrimaryReader().getReader().numDocs());
+    }
+
     @Test
     public void indexRefresh() throws Exception{
         tracker = createTracker();
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.benchmark.micro;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jackrabbit.oak.cache.CacheLIRS;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Concurrent {@code get} and {@code put} calls on a {@link CacheLIRS}. The
+ * key space is twice the size of the cache, so roughly half of the reads
+ * are misses and puts cause evictions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CacheLIRSBenchmark {
+
+    private static final int CACHE_SIZE = 16 * 1024;
+
+    private static final int KEY_SPACE = 2 * CACHE_SIZE;
+
+    @Param({"16"})
+    public int segmentCount;
+
+    private CacheLIRS<Integer, String> cache;
+
+    private Integer[] keys;
+
+    @Setup
+    public void setup() {
+        cache = CacheLIRS.<Integer, String>newBuilder()
+                .maximumSize(CACHE_SIZE)
+                .segmentCount(segmentCount)
+                .build();
+        keys = new Integer[KEY_SPACE];
+        for (int i = 0; i < KEY_SPACE; i++) {
+            keys[i] = i;
+            if (i % 2 == 0) {
+                cache.put(keys[i], String.valueOf(i));
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Keys {
+
+        private final Random random = new Random();
+
+        int next() {
+            return random.nextInt(KEY_SPACE);
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String getOnly(Keys k) {
+        return cache.getIfPresent(keys[k.next()]);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(3)
+    public String readWriteGet(Keys k) {
+        return cache.getIfPresent(keys[k.next()]);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public void readWritePut(Keys k) {
+        int i = k.next();
+        cache.put(keys[i], String.valueOf(i));
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.benchmark.micro;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jackrabbit.oak.commons.json.JsopBuilder;
+import org.apache.jackrabbit.oak.commons.json.JsopReader;
+import org.apache.jackrabbit.oak.commons.json.JsopTokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Tokenizing and building a JSON representation of a document similar to
+ * what the {@code RDBDocumentStore} and the persistent cache serialise.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class JsopBenchmark {
+
+    private static final int NUM_REVISIONS = 50;
+
+    private String json;
+
+    @Setup
+    public void setup() {
+        json = build();
+    }
+
+    @Benchmark
+    public void tokenize(Blackhole bh) {
+        JsopTokenizer t = new JsopTokenizer(json);
+        int type;
+        while ((type = t.read()) != JsopReader.END) {
+            bh.consume(type);
+            bh.consume(t.getToken());
+        }
+    }
+
+    @Benchmark
+    public String buildDocument() {
+        return build();
+    }
+
+    private static String build() {
+        JsopBuilder json = new JsopBuilder();
+        json.object();
+        json.key("_id").value("4:/content/site/en/page");
+        json.key("_modified").value(1475568000L);
+        json.key("_deleted").object();
+        json.key("r1579a3b6d21-0-1").value("false");
+        json.endObject();
+        json.key("jcr:title").object();
+        for (int i = 0; i < NUM_REVISIONS; i++) {
+            json.key("r1579a3b6" + Integer.toHexString(0x100 + i) + "-0-1");
+            json.value("\"Title with some \\\"escaped\\\" text " + i + "\"");
+        }
+        json.endObject();
+        json.key("_commitRoot").object();
+        for (int i = 0; i < NUM_REVISIONS; i++) {
+            json.key("r1579a3b6" + Integer.toHexString(0x100 + i) + "-0-1").value("0");
+        }
+        json.endObject();
+        json.endObject();
+        return json.toString();
+    }
+}
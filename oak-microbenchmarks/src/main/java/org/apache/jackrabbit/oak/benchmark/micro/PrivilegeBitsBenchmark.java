@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.benchmark.micro;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeBits;
+import org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link PrivilegeBits} operations performed while evaluating permission
+ * entries.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class PrivilegeBitsBenchmark {
+
+    private PrivilegeBits read;
+
+    private PrivilegeBits write;
+
+    private PrivilegeBits readWrite;
+
+    private PrivilegeBits custom;
+
+    @Setup
+    public void setup() {
+        read = PrivilegeBits.BUILT_IN.get(PrivilegeConstants.JCR_READ);
+        write = PrivilegeBits.BUILT_IN.get(PrivilegeConstants.JCR_WRITE);
+        readWrite = PrivilegeBits.getInstance(read, write).unmodifiable();
+        // custom privileges are backed by a long array instead of a single long
+        PrivilegeBits next = PrivilegeBits.NEXT_AFTER_BUILT_INS;
+        for (int i = 0; i < 70; i++) {
+            next = next.nextBits();
+        }
+        custom = PrivilegeBits.getInstance(readWrite, next).unmodifiable();
+    }
+
+    @Benchmark
+    public boolean includes() {
+        return readWrite.includes(read);
+    }
+
+    @Benchmark
+    public boolean includesCustom() {
+        return custom.includes(readWrite);
+    }
+
+    @Benchmark
+    public PrivilegeBits add() {
+        return PrivilegeBits.getInstance().add(read).add(write);
+    }
+
+    @Benchmark
+    public PrivilegeBits diff() {
+        return PrivilegeBits.getInstance(readWrite).diff(write);
+    }
+
+    @Benchmark
+    public long calculatePermissions() {
+        return PrivilegeBits.calculatePermissions(readWrite, readWrite, true);
+    }
+}
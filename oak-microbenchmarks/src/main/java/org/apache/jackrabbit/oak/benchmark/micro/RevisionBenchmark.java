@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.benchmark.micro;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jackrabbit.oak.plugins.document.Revision;
+import org.apache.jackrabbit.oak.plugins.document.RevisionVector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing, formatting and comparison of {@link Revision} and
+ * {@link RevisionVector} instances as done when reading
+ * {@code NodeDocument}s.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class RevisionBenchmark {
+
+    private String revisionString;
+
+    private String branchRevisionString;
+
+    private String vectorString;
+
+    private Revision revision;
+
+    private RevisionVector vector;
+
+    private RevisionVector otherVector;
+
+    @Setup
+    public void setup() {
+        long now = System.currentTimeMillis();
+        revision = new Revision(now, 3, 1);
+        revisionString = revision.toString();
+        branchRevisionString = new Revision(now, 0, 2, true).toString();
+        vector = new RevisionVector(
+                new Revision(now, 0, 1),
+                new Revision(now - 10, 1, 2),
+                new Revision(now - 20, 0, 3));
+        vectorString = vector.asString();
+        otherVector = new RevisionVector(
+                new Revision(now, 0, 1),
+                new Revision(now - 5, 0, 2),
+                new Revision(now - 20, 0, 3));
+    }
+
+    @Benchmark
+    public Revision revisionFromString() {
+        return Revision.fromString(revisionString);
+    }
+
+    @Benchmark
+    public Revision branchRevisionFromString() {
+        return Revision.fromString(branchRevisionString);
+    }
+
+    @Benchmark
+    public String revisionToString() {
+        return revision.toString();
+    }
+
+    @Benchmark
+    public RevisionVector vectorFromString() {
+        return RevisionVector.fromString(vectorString);
+    }
+
+    @Benchmark
+    public String vectorAsString() {
+        return vector.asString();
+    }
+
+    @Benchmark
+    public int vectorCompareTo() {
+        return vector.compareTo(otherVector);
+    }
+
+    @Benchmark
+    public RevisionVector vectorPmax() {
+        return vector.pmax(otherVector);
+    }
+}
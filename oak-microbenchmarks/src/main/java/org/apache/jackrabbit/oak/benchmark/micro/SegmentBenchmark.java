@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.benchmark.micro;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jackrabbit.oak.segment.RecordId;
+import org.apache.jackrabbit.oak.segment.SegmentNodeState;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStore;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
+import org.apache.jackrabbit.oak.segment.SegmentParser;
+import org.apache.jackrabbit.oak.segment.SegmentParser.NodeInfo;
+import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Child node lookups (backed by {@code MapRecord}) and {@link SegmentParser}
+ * traversals on an in-memory segment store.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SegmentBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int childCount;
+
+    private MemoryStore store;
+
+    private NodeState content;
+
+    private RecordId contentId;
+
+    private String[] names;
+
+    @Setup
+    public void setup() throws Exception {
+        store = new MemoryStore();
+        SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+        NodeBuilder builder = nodeStore.getRoot().builder();
+        NodeBuilder c = builder.child("content");
+        names = new String[childCount];
+        for (int i = 0; i < childCount; i++) {
+            names[i] = "node-" + i;
+            NodeBuilder child = c.child(names[i]);
+            child.setProperty("jcr:primaryType", "nt:unstructured");
+            child.setProperty("title", "Title " + i);
+            child.setProperty("index", (long) i);
+        }
+        nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        content = nodeStore.getRoot().getChildNode("content");
+        contentId = ((SegmentNodeState) content).getRecordId();
+    }
+
+    @State(Scope.Thread)
+    public static class Names {
+
+        private final Random random = new Random();
+
+        int next(int bound) {
+            return random.nextInt(bound);
+        }
+    }
+
+    @Benchmark
+    public NodeState getChildNode(Names n) {
+        return content.getChildNode(names[n.next(childCount)]);
+    }
+
+    @Benchmark
+    public boolean hasMissingChildNode() {
+        return content.hasChildNode("does-not-exist");
+    }
+
+    @Benchmark
+    public NodeInfo parseSubtree() {
+        return new SegmentParser(store.getReader()).parseNode(contentId);
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.benchmark.micro;
+
+import java.security.Principal;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.SimpleCredentials;
+import javax.jcr.security.AccessControlManager;
+
+import org.apache.jackrabbit.JcrConstants;
+import org.apache.jackrabbit.api.security.JackrabbitAccessControlList;
+import org.apache.jackrabbit.commons.jackrabbit.authorization.AccessControlUtils;
+import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.api.ContentRepository;
+import org.apache.jackrabbit.oak.api.ContentSession;
+import org.apache.jackrabbit.oak.api.Root;
+import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.namepath.NamePathMapper;
+import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeStore;
+import org.apache.jackrabbit.oak.plugins.nodetype.write.InitialContent;
+import org.apache.jackrabbit.oak.plugins.tree.RootFactory;
+import org.apache.jackrabbit.oak.security.SecurityProviderImpl;
+import org.apache.jackrabbit.oak.spi.security.SecurityProvider;
+import org.apache.jackrabbit.oak.spi.security.authorization.AuthorizationConfiguration;
+import org.apache.jackrabbit.oak.spi.security.authorization.permission.PermissionProvider;
+import org.apache.jackrabbit.oak.spi.security.authorization.permission.TreePermission;
+import org.apache.jackrabbit.oak.spi.security.principal.EveryonePrincipal;
+import org.apache.jackrabbit.oak.spi.security.privilege.PrivilegeConstants;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Evaluation of {@code TreePermission}s along a content path for a
+ * non-admin principal set, which is served by {@code CompiledPermissionImpl}
+ * of the default authorization model. The content is kept in a
+ * {@link MemoryNodeStore}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class TreePermissionBenchmark {
+
+    @Param({"10"})
+    public int depth;
+
+    @Param({"1", "10"})
+    public int aceCount;
+
+    private MemoryNodeStore store;
+
+    private SecurityProvider securityProvider;
+
+    private ContentSession session;
+
+    private String[] names;
+
+    private NodeState rootState;
+
+    private Root readOnlyRoot;
+
+    private PermissionProvider permissionProvider;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        store = new MemoryNodeStore();
+        securityProvider = new SecurityProviderImpl();
+        ContentRepository repository = new Oak(store)
+                .with(new InitialContent())
+                .with(securityProvider)
+                .createContentRepository();
+        session = repository.login(new SimpleCredentials("admin", "admin".toCharArray()), null);
+        Root root = session.getLatestRoot();
+
+        AccessControlManager acMgr = securityProvider
+                .getConfiguration(AuthorizationConfiguration.class)
+                .getAccessControlManager(root, NamePathMapper.DEFAULT);
+        Principal everyone = EveryonePrincipal.getInstance();
+
+        names = new String[depth];
+        Tree tree = root.getTree("/");
+        String path = "";
+        for (int i = 0; i < depth; i++) {
+            names[i] = i == 0 ? "content" : "node-" + i;
+            tree = tree.addChild(names[i]);
+            tree.setProperty(JcrConstants.JCR_PRIMARYTYPE, JcrConstants.NT_UNSTRUCTURED, Type.NAME);
+            path = path + "/" + names[i];
+            if (i < aceCount) {
+                JackrabbitAccessControlList acl = AccessControlUtils.getAccessControlList(acMgr, path);
+                acl.addEntry(everyone, AccessControlUtils.privilegesFromNames(acMgr,
+                        i % 2 == 0 ? PrivilegeConstants.JCR_READ : PrivilegeConstants.REP_WRITE), true);
+                acMgr.setPolicy(path, acl);
+            }
+        }
+        root.commit();
+
+        rootState = store.getRoot();
+        readOnlyRoot = RootFactory.createReadOnlyRoot(rootState);
+        Set<Principal> principals = Collections.singleton(everyone);
+        permissionProvider = securityProvider
+                .getConfiguration(AuthorizationConfiguration.class)
+                .getPermissionProvider(readOnlyRoot, session.getWorkspaceName(), principals);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        session.close();
+    }
+
+    @Benchmark
+    public boolean getTreePermission() {
+        Tree tree = readOnlyRoot.getTree("/");
+        TreePermission tp = permissionProvider.getTreePermission(tree, TreePermission.EMPTY);
+        for (String name : names) {
+            tree = tree.getChild(name);
+            tp = permissionProvider.getTreePermission(tree, tp);
+        }
+        return tp.canRead();
+    }
+
+    @Benchmark
+    public boolean getChildPermission() {
+        Tree tree = readOnlyRoot.getTree("/");
+        TreePermission tp = permissionProvider.getTreePermission(tree, TreePermission.EMPTY);
+        NodeState state = rootState;
+        for (String name : names) {
+            state = state.getChildNode(name);
+            tp = tp.getChildPermission(name, state);
+        }
+        return tp.canRead();
+    }
+}
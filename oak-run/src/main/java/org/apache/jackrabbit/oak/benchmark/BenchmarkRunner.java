@@ -233,6 +233,9 @@ public class BenchmarkRunner {
             new NamespaceTest(),
             new NamespaceRegistryTest(),
             new ReadPropertyTest(),
+            ReadPropertyValuesTest.withGetProperty(),
+            ReadPropertyValuesTest.withGetProperties(),
+            ReadPropertyValuesTest.withGetPropertyValues(),
             GetNodeTest.withAdmin(),
             GetNodeTest.withAnonymous(),
             new GetDeepNodeTest(),
@@ -241,6 +244,7 @@ public class BenchmarkRunner {
             new SmallFileReadTest(),
             new SmallFileWriteTest(),
             new ConcurrentReadTest(),
+            new ConcurrentReadSharedSessionTest(),
             new ConcurrentReadWriteTest(),
             new ConcurrentWriteReadTest(),
             new ConcurrentWriteTest(),
@@ -332,6 +336,7 @@ public class BenchmarkRunner {
             ReadManyTest.uniform("UniformReadFiles", 1, ReadManyTest.FILES),
             ReadManyTest.uniform("UniformReadNodes", 1, ReadManyTest.NODES),
             new ConcurrentCreateNodesTest(),
+            new ConcurrentDisjointCommitTest(),
             new SequentialCreateNodesTest(),
             new CreateManyIndexedNodesTest(),
             new GetPoliciesTest(),
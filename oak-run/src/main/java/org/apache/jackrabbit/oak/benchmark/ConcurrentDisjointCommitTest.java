@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+/**
+ * Concurrent writers, each committing small changes to its own subtree. As
+ * the commits never conflict, the throughput should scale with the number of
+ * writers up to the number of available cores. The number of writers defaults
+ * to the number of available processors and can be changed with the
+ * {@code workerCount} system property. With a DocumentNodeStore fixture, the
+ * {@code oak.documentMK.batchCommits} system property enables batching of
+ * done commits in the commit queue.
+ */
+public class ConcurrentDisjointCommitTest extends AbstractTest {
+
+    private static final String ROOT_NODE_NAME = "test" + TEST_ID;
+    private static final int WORKER_COUNT = Integer.getInteger("workerCount",
+            Runtime.getRuntime().availableProcessors());
+    private static final int COMMITS_PER_RUN = Integer.getInteger("commitsPerRun", 100);
+    private static final boolean BATCH_COMMITS = Boolean.getBoolean("oak.documentMK.batchCommits");
+
+    private final AtomicLong commits = new AtomicLong();
+    private Writer writer;
+    private long start;
+
+    @Override
+    protected void beforeSuite() throws Exception {
+        Session session = loginWriter();
+        Node rootNode = session.getRootNode();
+        if (rootNode.hasNode(ROOT_NODE_NAME)) {
+            rootNode.getNode(ROOT_NODE_NAME).remove();
+        }
+        rootNode = rootNode.addNode(ROOT_NODE_NAME, "nt:unstructured");
+        for (int i = 0; i < WORKER_COUNT; i++) {
+            rootNode.addNode("node" + i, "nt:unstructured");
+        }
+        session.save();
+        for (int i = 1; i < WORKER_COUNT; i++) {
+            addBackgroundJob(new Writer(rootNode.getPath() + "/node" + i));
+        }
+        writer = new Writer(rootNode.getPath() + "/node" + 0);
+        start = System.nanoTime();
+    }
+
+    @Override
+    protected void runTest() throws Exception {
+        writer.run();
+    }
+
+    @Override
+    protected String[] statsNames() {
+        return new String[]{"Commits/s"};
+    }
+
+    @Override
+    protected String[] statsFormats() {
+        return new String[]{"%9d"};
+    }
+
+    @Override
+    protected Object[] statsValues() {
+        long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return new Object[]{commits.get() * 1000 / millis};
+    }
+
+    @Override
+    protected String comment() {
+        return "workers=" + WORKER_COUNT + ",batchCommits=" + BATCH_COMMITS;
+    }
+
+    private class Writer implements Runnable {
+
+        private final Session session = loginWriter();
+        private final String path;
+        private int count = 0;
+
+        private Writer(String path) {
+            this.path = path;
+        }
+
+        @Override
+        public void run() {
+            try {
+                session.refresh(false);
+                Node parent = session.getNode(path).addNode("node" + count++);
+                session.save();
+                commits.incrementAndGet();
+                for (int i = 0; i < COMMITS_PER_RUN; i++) {
+                    parent.addNode("node" + i).setProperty("count", i);
+                    session.save();
+                    commits.incrementAndGet();
+                }
+            } catch (RepositoryException e) {
+                e.printStackTrace();
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.benchmark;
+
+import java.util.Collections;
+
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.jackrabbit.api.JackrabbitRepository;
+import org.apache.jackrabbit.oak.jcr.repository.RepositoryImpl;
+
+/**
+ * Same as {@link ConcurrentReadTest}, but all readers share a single
+ * read-only session.
+ */
+public class ConcurrentReadSharedSessionTest extends ConcurrentReadTest {
+
+    private Session shared;
+
+    @Override
+    protected synchronized Session loginReader() {
+        if (shared == null) {
+            Repository repository = getRepository();
+            try {
+                if (repository instanceof JackrabbitRepository) {
+                    shared = ((JackrabbitRepository) repository).login(getCredentials(), null,
+                            Collections.<String, Object>singletonMap(RepositoryImpl.READ_ONLY, true));
+                } else {
+                    shared = repository.login(getCredentials());
+                }
+            } catch (RepositoryException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return shared;
+    }
+
+    @Override
+    public void afterSuite() throws Exception {
+        super.afterSuite();
+        logout(shared);
+        shared = null;
+    }
+
+}
@@ -83,7 +83,7 @@ public class ConcurrentReadTest extends AbstractTest {
 
         private final Random random = new Random();
 
-        private final Session session = loginWriter(); // TODO: anonymous is slow
+        private final Session session = loginReader();
 
         public void run() {
             try {
@@ -100,6 +100,15 @@ public class ConcurrentReadTest extends AbstractTest {
 
     }
 
+    /**
+     * Returns the session used by a reader.
+     *
+     * @return reader session
+     */
+    protected Session loginReader() {
+        return loginWriter(); // TODO: anonymous is slow
+    }
+
     private class Writer implements Runnable {
 
         private final Random random = new Random();
@@ -66,6 +66,9 @@ public class ObservationTest extends Benchmark {
     private static final int SAVE_INTERVAL = Integer.getInteger("saveInterval", 100);
     private static final int OUTPUT_RESOLUTION = 100;
     private static final int LISTENER_COUNT = Integer.getInteger("listenerCount", 100);
+    /** Comma separated listener counts, to measure how the throughput scales with the number of listeners */
+    private static final String LISTENER_COUNTS = System.getProperty("listenerCounts");
+    private static final boolean SHARED_DIFF = Boolean.getBoolean("oak.observation.sharedDiff");
     private static final int WRITER_COUNT = Integer.getInteger("writerCount", 1);
     private static final String PATH_FILTER = System.getProperty("pathFilter");
 
@@ -105,7 +108,9 @@ public class ObservationTest extends Benchmark {
         Session session = createSession(repository);
         long t0 = System.currentTimeMillis();
         try {
-            observationThroughput(repository, whiteboard);
+            for (int listenerCount : getListenerCounts()) {
+                observationThroughput(repository, whiteboard, listenerCount);
+            }
         } finally {
             System.out.println("Time elapsed: " + (System.currentTimeMillis() - t0) + " ms");
             session.logout();
@@ -115,6 +120,13 @@ public class ObservationTest extends Benchmark {
     public void observationThroughput(final Repository repository,
                                       @Nullable Whiteboard whiteboard)
             throws RepositoryException, InterruptedException, ExecutionException {
+        observationThroughput(repository, whiteboard, LISTENER_COUNT);
+    }
+
+    public void observationThroughput(final Repository repository,
+                                      @Nullable Whiteboard whiteboard,
+                                      int listenerCount)
+            throws RepositoryException, InterruptedException, ExecutionException {
         long t = 0;
         final AtomicInteger eventCount = new AtomicInteger();
         final AtomicInteger nodeCount = new AtomicInteger();
@@ -124,7 +136,7 @@ public class ObservationTest extends Benchmark {
 
         List<String> testPaths = Lists.newArrayList();
         Session s = createSession(repository);
-        String path = "/path/to/observation/benchmark-" + AbstractTest.TEST_ID;
+        String path = "/path/to/observation/benchmark-" + AbstractTest.TEST_ID + "-" + listenerCount;
         try {
             Node testRoot = JcrUtils.getOrCreateByPath(path, null, s);
             for (int i = 0; i < WRITER_COUNT; i++) {
@@ -137,9 +149,10 @@ public class ObservationTest extends Benchmark {
 
         String pathFilter = PATH_FILTER == null ? path : PATH_FILTER;
         System.out.println("Path filter for event listener: " + pathFilter);
+        System.out.println("Listeners: " + listenerCount + ", shared diff: " + SHARED_DIFF);
         ExecutorService service = Executors.newFixedThreadPool(WRITER_COUNT);
         try {
-            for (int k = 0; k < LISTENER_COUNT; k++) {
+            for (int k = 0; k < listenerCount; k++) {
                 sessions.add(createSession(repository));
                 listeners.add(new Listener(eventCount));
                 ObservationManager obsMgr = sessions.get(k).getWorkspace().getObservationManager();
@@ -186,13 +199,13 @@ public class ObservationTest extends Benchmark {
             }
 
             System.out.println("ms      #node   nodes/s #event  event/s event-ratio queue external");
-            while (!isDone(createNodes) || (eventCount.get() / LISTENER_COUNT < nodeCount.get() * EVENTS_PER_NODE)) {
+            while (!isDone(createNodes) || (eventCount.get() / listenerCount < nodeCount.get() * EVENTS_PER_NODE)) {
                 long t0 = System.currentTimeMillis();
                 Thread.sleep(OUTPUT_RESOLUTION);
                 t += System.currentTimeMillis() - t0;
 
                 int nc = nodeCount.get();
-                int ec = eventCount.get() / LISTENER_COUNT;
+                int ec = eventCount.get() / listenerCount;
                 int[] ql = getObservationQueueLength(whiteboard);
 
                 double nps = (double) nc / t * 1000;
@@ -204,6 +217,8 @@ public class ObservationTest extends Benchmark {
                            t, nc,  nps, ec,  eps,  epn, ql[0], ql[1]);
             }
             get(createNodes);
+            System.out.format("Listeners: %d, total event/s: %.1f%n",
+                    listenerCount, (double) eventCount.get() / Math.max(1, t) * 1000);
         } finally {
             for (int k = 0; k < sessions.size(); k++) {
                 sessions.get(k).getWorkspace().getObservationManager()
@@ -227,6 +242,18 @@ public class ObservationTest extends Benchmark {
         listeners.add(listener);
     }
 
+    private static List<Integer> getListenerCounts() {
+        List<Integer> counts = Lists.newArrayList();
+        if (LISTENER_COUNTS == null) {
+            counts.add(LISTENER_COUNT);
+        } else {
+            for (String c : LISTENER_COUNTS.split(",")) {
+                counts.add(Integer.parseInt(c.trim()));
+            }
+        }
+        return counts;
+    }
+
     private static int[] getObservationQueueLength(@Nullable Whiteboard wb) {
         if (wb == null) {
             return new int[]{-1, -1};
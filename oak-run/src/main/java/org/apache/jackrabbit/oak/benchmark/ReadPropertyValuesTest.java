@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.benchmark;
+
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.Session;
+
+import org.apache.jackrabbit.oak.jcr.api.PropertyValuesNode;
+
+/**
+ * {@code ReadPropertyValuesTest} implements a performance test, which reads
+ * a few of the many properties of a node, the way a rendering script would.
+ * The properties are either read one by one, by iterating over all properties
+ * or in bulk through {@link PropertyValuesNode#getPropertyValues(String[])}.
+ */
+public abstract class ReadPropertyValuesTest extends AbstractTest {
+
+    private static final int PROPERTY_COUNT = 50;
+
+    private static final String[] NAMES = {
+            "jcr:primaryType", "property1", "property10", "does-not-exist"};
+
+    private final String name;
+
+    private Session session;
+
+    private Node root;
+
+    public static Benchmark withGetProperty() {
+        return new ReadPropertyValuesTest("ReadPropertyValuesOneByOne") {
+            @Override
+            protected void read(Node node) throws Exception {
+                for (String name : NAMES) {
+                    if (node.hasProperty(name)) {
+                        node.getProperty(name).getValue();
+                    }
+                }
+            }
+        };
+    }
+
+    public static Benchmark withGetProperties() {
+        return new ReadPropertyValuesTest("ReadPropertyValuesIterate") {
+            @Override
+            protected void read(Node node) throws Exception {
+                PropertyIterator properties = node.getProperties(NAMES);
+                while (properties.hasNext()) {
+                    Property property = properties.nextProperty();
+                    if (property.isMultiple()) {
+                        property.getValues();
+                    } else {
+                        property.getValue();
+                    }
+                }
+            }
+        };
+    }
+
+    public static Benchmark withGetPropertyValues() {
+        return new ReadPropertyValuesTest("ReadPropertyValuesBulk") {
+            @Override
+            protected void read(Node node) throws Exception {
+                if (node instanceof PropertyValuesNode) {
+                    ((PropertyValuesNode) node).getPropertyValues(NAMES);
+                } else {
+                    for (String name : NAMES) {
+                        if (node.hasProperty(name)) {
+                            node.getProperty(name).getValue();
+                        }
+                    }
+                }
+            }
+        };
+    }
+
+    protected ReadPropertyValuesTest(String name) {
+        this.name = name;
+    }
+
+    protected abstract void read(Node node) throws Exception;
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    @Override
+    protected void beforeSuite() throws Exception {
+        session = loginWriter();
+        root = session.getRootNode().addNode(
+                getClass().getSimpleName() + TEST_ID, "nt:unstructured");
+        for (int i = 0; i < PROPERTY_COUNT; i++) {
+            root.setProperty("property" + i, "value" + i);
+        }
+        session.save();
+    }
+
+    @Override
+    protected void runTest() throws Exception {
+        for (int i = 0; i < 10000; i++) {
+            read(root);
+        }
+    }
+
+    @Override
+    protected void afterSuite() throws Exception {
+        root.remove();
+        session.save();
+    }
+}
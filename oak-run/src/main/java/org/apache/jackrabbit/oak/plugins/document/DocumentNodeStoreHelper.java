@@ -27,6 +27,8 @@ import java.util.PriorityQueue;
 import javax.annotation.Nullable;
 
 import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
 import com.google.common.base.Stopwatch;
 import com.google.common.cache.Cache;
 import com.google.common.collect.Iterables;
@@ -43,9 +45,11 @@ import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.commons.json.JsopReader;
 import org.apache.jackrabbit.oak.commons.json.JsopTokenizer;
+import org.apache.jackrabbit.oak.plugins.index.flatfile.NodeStateEntry;
 import org.apache.jackrabbit.oak.plugins.document.mongo.MongoDocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.mongo.MongoDocumentStoreHelper;
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
 
 import static org.apache.jackrabbit.oak.plugins.document.mongo.MongoDocumentStoreHelper.convertFromDBObject;
 
@@ -69,6 +73,32 @@ public class DocumentNodeStoreHelper {
         System.out.println("Collected in " + sw.stop());
     }
 
+    /**
+     * Reads all node documents once and returns the node states as seen from
+     * the given root state. Split documents and hidden nodes are skipped. The
+     * entries are returned in the order of the underlying document scan and
+     * not in tree order.
+     */
+    public static Iterable<NodeStateEntry> getNodeStateEntries(final DocumentNodeStore dns,
+                                                               DocumentNodeState root) {
+        final RevisionVector rootRevision = root.getRootRevision();
+        Iterable<NodeDocument> docs = Iterables.filter(getAllDocuments(dns.getDocumentStore()),
+                new Predicate<NodeDocument>() {
+            @Override
+            public boolean apply(NodeDocument input) {
+                return !input.isSplitDocument()
+                        && !NodeStateUtils.isHiddenPath(input.getPath());
+            }
+        });
+        return Iterables.filter(Iterables.transform(docs, new Function<NodeDocument, NodeStateEntry>() {
+            @Override
+            public NodeStateEntry apply(NodeDocument input) {
+                DocumentNodeState state = input.getNodeAtRevision(dns, rootRevision, null);
+                return state != null ? new NodeStateEntry(state.getPath(), state) : null;
+            }
+        }), Predicates.notNull());
+    }
+
     private static Iterable<BlobReferences> scan(DocumentNodeStore store,
                                                  Comparator<BlobReferences> comparator,
                                                  int num) {
@@ -159,6 +189,25 @@ public class DocumentNodeStoreHelper {
     }
 
 
+    private static Iterable<NodeDocument> getAllDocuments(DocumentStore store) {
+        if (store instanceof MongoDocumentStore) {
+            // read all documents with a single query
+            final MongoDocumentStore mds = (MongoDocumentStore) store;
+            DBCollection dbCol = MongoDocumentStoreHelper.getDBCollection(
+                    mds, Collection.NODES);
+            DBCursor cursor = dbCol.find();
+            return Iterables.transform(cursor, new Function<DBObject, NodeDocument>() {
+                @Nullable
+                @Override
+                public NodeDocument apply(DBObject input) {
+                    return convertFromDBObject(mds, Collection.NODES, input);
+                }
+            });
+        } else {
+            return Utils.getAllDocuments(store);
+        }
+    }
+
     private static long size(Iterable<Blob> blobs) {
         long size = 0;
         for (Blob b : blobs) {
@@ -0,0 +1,493 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index.flatfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Function;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.plugins.index.ContextAwareCallback;
+import org.apache.jackrabbit.oak.plugins.index.IndexingContext;
+import org.apache.jackrabbit.oak.plugins.index.lucene.IndexDefinition;
+import org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexEditorProvider;
+import org.apache.jackrabbit.oak.plugins.index.lucene.OakDirectory;
+import org.apache.jackrabbit.oak.plugins.index.lucene.writer.IndexWriterUtils;
+import org.apache.jackrabbit.oak.plugins.index.lucene.writer.LuceneIndexWriter;
+import org.apache.jackrabbit.oak.plugins.index.lucene.writer.LuceneIndexWriterFactory;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.CompositeEditor;
+import org.apache.jackrabbit.oak.spi.commit.Editor;
+import org.apache.jackrabbit.oak.spi.state.ApplyDiff;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static org.apache.jackrabbit.oak.commons.PathUtils.concat;
+import static org.apache.jackrabbit.oak.commons.PathUtils.denotesRoot;
+import static org.apache.jackrabbit.oak.commons.PathUtils.elements;
+import static org.apache.jackrabbit.oak.commons.PathUtils.getName;
+import static org.apache.jackrabbit.oak.commons.PathUtils.getParentPath;
+import static org.apache.jackrabbit.oak.commons.PathUtils.isAncestor;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.REINDEX_COUNT;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.REINDEX_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.INDEX_DATA_CHILD_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.TYPE_LUCENE;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.TermFactory.newPathTerm;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.MISSING_NODE;
+
+/**
+ * Builds Lucene indexes from a sorted flat file written by
+ * {@link FlatFileWriter}. The file is split into ranges, which are indexed
+ * concurrently into local file system directories. The directories of an
+ * index are then merged and copied into the {@code :data} node of the index
+ * definition.
+ * <p>
+ * Each node is indexed as soon as it is read from the file. Aggregated
+ * content of a node is resolved from the lines following the node, up to
+ * the configured lookahead.
+ */
+public class FlatFileLuceneIndexer {
+    private static final Logger log = LoggerFactory.getLogger(FlatFileLuceneIndexer.class);
+
+    private final NodeState root;
+
+    private final File flatFile;
+
+    private final Function<String, Blob> blobs;
+
+    private final File workDir;
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private int maxLookahead = 100000;
+
+    /**
+     * @param root the root state the flat file was written from.
+     * @param flatFile the sorted flat file.
+     * @param blobs resolves the binary values of the flat file.
+     * @param workDir directory for the local index directories.
+     */
+    public FlatFileLuceneIndexer(@Nonnull NodeState root,
+                                 @Nonnull File flatFile,
+                                 @Nonnull Function<String, Blob> blobs,
+                                 @Nonnull File workDir) {
+        checkArgument(workDir.isDirectory(), "Not a directory: %s", workDir);
+        this.root = root;
+        this.flatFile = flatFile;
+        this.blobs = blobs;
+        this.workDir = workDir;
+    }
+
+    public void setThreads(int threads) {
+        checkArgument(threads > 0, "threads must be positive");
+        this.threads = threads;
+    }
+
+    public void setMaxLookahead(int maxLookahead) {
+        this.maxLookahead = maxLookahead;
+    }
+
+    /**
+     * Reindexes the Lucene indexes with the given paths. The existing index
+     * data is replaced with the new index data in the given builder. The
+     * caller is responsible to merge the builder.
+     *
+     * @param indexPaths the paths of the index definitions.
+     * @param builder the root builder.
+     */
+    public void reindex(final List<String> indexPaths, NodeBuilder builder)
+            throws IOException, CommitFailedException {
+        Stopwatch w = Stopwatch.createStarted();
+        final List<NodeBuilder> definitions = Lists.newArrayList();
+        final List<NodeState> definitionStates = Lists.newArrayList();
+        for (String path : indexPaths) {
+            NodeBuilder definition = builder;
+            for (String name : elements(path)) {
+                definition = definition.getChildNode(name);
+            }
+            checkArgument(definition.exists(), "No index definition at %s", path);
+            checkArgument(TYPE_LUCENE.equals(definition.getString("type")),
+                    "Not a Lucene index definition: %s", path);
+            // same as IndexUpdate on reindex
+            for (String name : definition.getChildNodeNames()) {
+                if (NodeStateUtils.isHidden(name)) {
+                    definition.getChildNode(name).remove();
+                }
+            }
+            definitions.add(definition);
+            definitionStates.add(definition.getNodeState());
+        }
+
+        final long[] offsets = FlatFileReader.split(flatFile, threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<List<NodeBuilder>>> results = Lists.newArrayList();
+        try {
+            for (int i = 0; i < threads; i++) {
+                final int chunk = i;
+                results.add(executor.submit(new Callable<List<NodeBuilder>>() {
+                    @Override
+                    public List<NodeBuilder> call() throws Exception {
+                        return indexChunk(chunk, offsets, indexPaths, definitionStates);
+                    }
+                }));
+            }
+            List<NodeBuilder> firstChunk = null;
+            for (Future<List<NodeBuilder>> f : results) {
+                List<NodeBuilder> b = f.get();
+                if (firstChunk == null) {
+                    firstChunk = b;
+                }
+            }
+            checkState(firstChunk != null);
+            log.info("Indexed {} ranges of {} in {}", threads, flatFile, w);
+
+            for (int i = 0; i < indexPaths.size(); i++) {
+                importIndex(indexPaths.get(i), i, definitions.get(i),
+                        definitionStates.get(i), firstChunk.get(i));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            Throwable t = e.getCause();
+            if (t instanceof IOException) {
+                throw (IOException) t;
+            } else if (t instanceof CommitFailedException) {
+                throw (CommitFailedException) t;
+            }
+            throw new IllegalStateException(t);
+        } finally {
+            executor.shutdownNow();
+        }
+        log.info("Reindexed {} in {}", indexPaths, w);
+    }
+
+    /**
+     * Indexes the entries of a range of the flat file into local directories,
+     * one per index.
+     *
+     * @return the definition builders used by the editors of the range.
+     */
+    private List<NodeBuilder> indexChunk(int chunk,
+                                         long[] offsets,
+                                         List<String> indexPaths,
+                                         List<NodeState> definitionStates)
+            throws IOException, CommitFailedException {
+        List<NodeBuilder> builders = Lists.newArrayList();
+        List<Editor> editors = Lists.newArrayList();
+        for (int i = 0; i < indexPaths.size(); i++) {
+            NodeBuilder definition = definitionStates.get(i).builder();
+            LuceneIndexEditorProvider provider = new LuceneIndexEditorProvider();
+            provider.setIndexWriterFactory(new LocalIndexWriterFactory(getDirectory(i, chunk)));
+            Editor editor = provider.getIndexEditor(TYPE_LUCENE, definition, root,
+                    new ReindexCallback(indexPaths.get(i)));
+            builders.add(definition);
+            if (editor != null) {
+                editors.add(editor);
+            }
+        }
+        Editor rootEditor = CompositeEditor.compose(editors);
+        if (rootEditor == null) {
+            return builders;
+        }
+
+        long count = 0;
+        Deque<Frame> stack = new ArrayDeque<Frame>();
+        FlatFileReader reader = new FlatFileReader(flatFile,
+                offsets[chunk], offsets[chunk + 1], blobs, maxLookahead);
+        try {
+            rootEditor.enter(MISSING_NODE, root);
+            stack.push(new Frame("/", rootEditor));
+            while (reader.hasNext()) {
+                NodeStateEntry entry = reader.next();
+                String path = entry.getPath();
+                if (denotesRoot(path)) {
+                    continue;
+                }
+                if (count++ == 0 && chunk > 0) {
+                    openAncestors(stack, getParentPath(path));
+                }
+                while (!denotesRoot(stack.peek().path)
+                        && !isAncestor(stack.peek().path, path)) {
+                    stack.pop();
+                }
+                Editor parent = stack.peek().editor;
+                Editor editor = null;
+                if (parent != null) {
+                    NodeState state = entry.getState();
+                    editor = parent.childNodeAdded(getName(path), state);
+                    if (editor != null) {
+                        editor.enter(MISSING_NODE, state);
+                        for (PropertyState p : state.getProperties()) {
+                            editor.propertyAdded(p);
+                        }
+                        editor.leave(MISSING_NODE, state);
+                    }
+                }
+                stack.push(new Frame(path, editor));
+                if (count % 100000 == 0) {
+                    log.info("Range {}: indexed {} nodes, at {}", chunk, count, path);
+                }
+            }
+            // only the first range indexes the root node, all
+            // ranges close their writers
+            rootEditor.leave(chunk == 0 ? MISSING_NODE : root, root);
+        } finally {
+            reader.close();
+        }
+        log.info("Range {}: indexed {} nodes", chunk, count);
+        return builders;
+    }
+
+    /**
+     * Opens editors for the ancestors of the first entry of a range. The
+     * ancestors were indexed by a previous range, hence they are passed as
+     * unchanged nodes.
+     */
+    private void openAncestors(Deque<Frame> stack, String path)
+            throws CommitFailedException {
+        NodeState state = root;
+        String current = "/";
+        for (String name : elements(path)) {
+            state = state.getChildNode(name);
+            current = concat(current, name);
+            Editor parent = stack.peek().editor;
+            Editor editor = null;
+            if (parent != null) {
+                editor = parent.childNodeChanged(name, state, state);
+                if (editor != null) {
+                    editor.enter(state, state);
+                }
+            }
+            stack.push(new Frame(current, editor));
+        }
+    }
+
+    private void importIndex(String indexPath,
+                             int index,
+                             NodeBuilder definition,
+                             NodeState definitionState,
+                             NodeBuilder indexed) throws IOException {
+        Stopwatch w = Stopwatch.createStarted();
+        // index format version, unique id and status
+        indexed.getNodeState().compareAgainstBaseState(
+                definitionState, new ApplyDiff(definition));
+        definition.setProperty(REINDEX_PROPERTY_NAME, false);
+        long count = 0;
+        if (definition.hasProperty(REINDEX_COUNT)) {
+            count = definition.getProperty(REINDEX_COUNT).getValue(Type.LONG);
+        }
+        definition.setProperty(REINDEX_COUNT, count + 1);
+
+        IndexDefinition indexDefinition = new IndexDefinition(root, definition);
+        File merged = new File(workDir, "index-" + index);
+        Directory dir = FSDirectory.open(merged);
+        try {
+            IndexWriter writer = new IndexWriter(dir, newIndexWriterConfig(indexDefinition));
+            try {
+                Directory[] chunks = new Directory[threads];
+                for (int i = 0; i < threads; i++) {
+                    chunks[i] = FSDirectory.open(getDirectory(index, i));
+                }
+                try {
+                    writer.addIndexes(chunks);
+                } finally {
+                    for (Directory d : chunks) {
+                        d.close();
+                    }
+                }
+            } finally {
+                writer.close();
+            }
+            log.info("Merged {} ranges of {} in {}", threads, indexPath, w);
+
+            Directory data = new OakDirectory(definition,
+                    INDEX_DATA_CHILD_NAME, indexDefinition, false);
+            try {
+                for (String file : dir.listAll()) {
+                    dir.copy(data, file, file, IOContext.DEFAULT);
+                }
+            } finally {
+                data.close();
+            }
+        } finally {
+            dir.close();
+            FileUtils.deleteQuietly(merged);
+            for (int i = 0; i < threads; i++) {
+                FileUtils.deleteQuietly(getDirectory(index, i));
+            }
+        }
+        log.info("Imported {} into {} in {}", merged, indexPath, w);
+    }
+
+    private File getDirectory(int index, int chunk) {
+        return new File(workDir, "index-" + index + "-" + chunk);
+    }
+
+    /**
+     * Creates the configuration for a writer on a local directory. The
+     * directory names only depend on the position of the index and the
+     * range, hence an existing index in the directory (e.g. left over by a
+     * failed run) is replaced instead of appended to.
+     */
+    private static IndexWriterConfig newIndexWriterConfig(IndexDefinition definition) {
+        IndexWriterConfig config = IndexWriterUtils.getIndexWriterConfig(definition, false);
+        config.setOpenMode(OpenMode.CREATE);
+        return config;
+    }
+
+    private static final class Frame {
+        final String path;
+        final Editor editor;
+
+        Frame(String path, Editor editor) {
+            this.path = path;
+            this.editor = editor;
+        }
+    }
+
+    private static class ReindexCallback implements ContextAwareCallback, IndexingContext {
+
+        private final String indexPath;
+
+        ReindexCallback(String indexPath) {
+            this.indexPath = indexPath;
+        }
+
+        @Override
+        public IndexingContext getIndexingContext() {
+            return this;
+        }
+
+        @Override
+        public void indexUpdate() {
+        }
+
+        @Override
+        public String getIndexPath() {
+            return indexPath;
+        }
+
+        @Override
+        public CommitInfo getCommitInfo() {
+            return CommitInfo.EMPTY;
+        }
+
+        @Override
+        public boolean isReindexing() {
+            return true;
+        }
+
+        @Override
+        public boolean isAsync() {
+            return true;
+        }
+    }
+
+    /**
+     * Creates writers for a local file system directory. As every node is
+     * indexed only once, documents are added without a lookup of an existing
+     * document with the same path.
+     */
+    private static class LocalIndexWriterFactory implements LuceneIndexWriterFactory {
+
+        private final File dir;
+
+        LocalIndexWriterFactory(File dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        public LuceneIndexWriter newInstance(IndexDefinition definition,
+                                             NodeBuilder definitionBuilder,
+                                             boolean reindex) {
+            try {
+                Directory directory = FSDirectory.open(dir);
+                IndexWriter writer = new IndexWriter(directory, newIndexWriterConfig(definition));
+                return new LocalIndexWriter(directory, writer);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to open index writer for " + dir, e);
+            }
+        }
+    }
+
+    private static class LocalIndexWriter implements LuceneIndexWriter {
+
+        private final Directory directory;
+
+        private final IndexWriter writer;
+
+        LocalIndexWriter(Directory directory, IndexWriter writer) {
+            this.directory = directory;
+            this.writer = writer;
+        }
+
+        @Override
+        public void updateDocument(String path, Iterable<? extends IndexableField> doc)
+                throws IOException {
+            writer.addDocument(doc);
+        }
+
+        @Override
+        public void deleteDocuments(String path) throws IOException {
+            writer.deleteDocuments(newPathTerm(path));
+            writer.deleteDocuments(new PrefixQuery(newPathTerm(path + "/")));
+        }
+
+        @Override
+        public boolean close(long timestamp) throws IOException {
+            try {
+                writer.close();
+            } finally {
+                directory.close();
+            }
+            return true;
+        }
+    }
+}
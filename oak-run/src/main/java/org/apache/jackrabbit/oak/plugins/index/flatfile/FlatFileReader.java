@@ -0,0 +1,503 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index.flatfile;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.jcr.PropertyType;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
+import com.google.common.io.BaseEncoding;
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.commons.json.JsopReader;
+import org.apache.jackrabbit.oak.commons.json.JsopTokenizer;
+import org.apache.jackrabbit.oak.json.TypeCodes;
+import org.apache.jackrabbit.oak.plugins.blob.BlobStoreBlob;
+import org.apache.jackrabbit.oak.plugins.memory.ArrayBasedBlob;
+import org.apache.jackrabbit.oak.plugins.memory.BinaryPropertyState;
+import org.apache.jackrabbit.oak.plugins.memory.BooleanPropertyState;
+import org.apache.jackrabbit.oak.plugins.memory.DoublePropertyState;
+import org.apache.jackrabbit.oak.plugins.memory.LongPropertyState;
+import org.apache.jackrabbit.oak.plugins.memory.MemoryChildNodeEntry;
+import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeBuilder;
+import org.apache.jackrabbit.oak.plugins.memory.StringPropertyState;
+import org.apache.jackrabbit.oak.plugins.value.Conversions;
+import org.apache.jackrabbit.oak.spi.blob.BlobStore;
+import org.apache.jackrabbit.oak.spi.state.AbstractNodeState;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Collections.emptyList;
+import static org.apache.jackrabbit.oak.commons.PathUtils.getName;
+import static org.apache.jackrabbit.oak.commons.PathUtils.getParentPath;
+import static org.apache.jackrabbit.oak.commons.PathUtils.isAncestor;
+import static org.apache.jackrabbit.oak.plugins.index.flatfile.FlatFileWriter.BLOB_ID;
+import static org.apache.jackrabbit.oak.plugins.index.flatfile.FlatFileWriter.BLOB_INLINE;
+import static org.apache.jackrabbit.oak.plugins.index.flatfile.FlatFileWriter.BLOB_REFERENCE;
+import static org.apache.jackrabbit.oak.plugins.index.flatfile.FlatFileWriter.DELIMITER;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.MISSING_NODE;
+import static org.apache.jackrabbit.oak.plugins.memory.PropertyStates.createProperty;
+
+/**
+ * Reads the entries of a flat file written by {@link FlatFileWriter}. The
+ * reader can be restricted to a range of the file, which must start at the
+ * beginning of a line. Entries are returned for all lines starting within
+ * the range.
+ * <p>
+ * The children of a node state returned by this reader are resolved from
+ * the lines following the entry. To limit memory usage, at most
+ * {@code maxLookahead} lines are buffered for this purpose. Descendants
+ * beyond that limit are not visible through the node state. Child node
+ * states must only be accessed until the next entry is read.
+ */
+public class FlatFileReader implements Iterator<NodeStateEntry>, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(FlatFileReader.class);
+
+    private static final int COMPACT_THRESHOLD = 1024;
+
+    private final InputStream in;
+
+    private final long end;
+
+    private final Function<String, Blob> blobs;
+
+    private final int maxLookahead;
+
+    private final byte[] readBuffer = new byte[64 * 1024];
+
+    private int readPos;
+
+    private int readLimit;
+
+    private byte[] lineBuffer = new byte[1024];
+
+    /**
+     * The offset in the file of the next line to read.
+     */
+    private long offset;
+
+    /**
+     * The lines read from the file but not yet returned by {@link #next()},
+     * preceded by the lines already returned since the last compaction.
+     */
+    private final List<Line> lines = Lists.newArrayList();
+
+    /**
+     * The sequence number of the first line in {@link #lines}.
+     */
+    private long firstSeq;
+
+    /**
+     * The index in {@link #lines} of the next line to return.
+     */
+    private int pos;
+
+    private boolean lookaheadExceeded;
+
+    public FlatFileReader(@Nonnull File file,
+                          long start,
+                          long end,
+                          @Nonnull Function<String, Blob> blobs,
+                          int maxLookahead) throws IOException {
+        checkArgument(start <= end, "start %s > end %s", start, end);
+        checkArgument(maxLookahead > 0, "maxLookahead must be positive");
+        FileInputStream fin = new FileInputStream(file);
+        fin.getChannel().position(start);
+        this.in = fin;
+        this.offset = start;
+        this.end = end;
+        this.blobs = blobs;
+        this.maxLookahead = maxLookahead;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return ensure(pos) && lines.get(pos).offset < end;
+    }
+
+    @Override
+    public NodeStateEntry next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Line line = lines.get(pos++);
+        if (pos > COMPACT_THRESHOLD && pos > lines.size() / 2) {
+            lines.subList(0, pos).clear();
+            firstSeq += pos;
+            pos = 0;
+        }
+        return new NodeStateEntry(line.path, new FlatFileNodeState(line));
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Splits the given file into the given number of ranges of roughly
+     * equal size. Each range starts at the beginning of a line.
+     *
+     * @param file the flat file.
+     * @param count the number of ranges.
+     * @return {@code count + 1} offsets, where range {@code i} starts at
+     *          offset {@code i} and ends before offset {@code i + 1}.
+     */
+    public static long[] split(File file, int count) throws IOException {
+        checkArgument(count > 0, "count must be positive");
+        long length = file.length();
+        long[] offsets = new long[count + 1];
+        offsets[count] = length;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            for (int i = 1; i < count; i++) {
+                long o = Math.max(offsets[i - 1], length * i / count);
+                if (o > 0 && o < length) {
+                    // move to the beginning of the next line
+                    raf.seek(o - 1);
+                    int b;
+                    while ((b = raf.read()) != -1 && b != '\n') {
+                        o++;
+                    }
+                }
+                offsets[i] = Math.min(o, length);
+            }
+        } finally {
+            raf.close();
+        }
+        return offsets;
+    }
+
+    /**
+     * Creates a function resolving the binary values written by
+     * {@link FlatFileWriter}.
+     *
+     * @param store the node store to resolve blob references.
+     * @param blobStore the blob store to resolve blob ids or {@code null}
+     *                  if the node store does not use a blob store.
+     */
+    public static Function<String, Blob> newBlobResolver(@Nonnull final NodeStore store,
+                                                         @Nullable final BlobStore blobStore) {
+        return new Function<String, Blob>() {
+            @Override
+            public Blob apply(String value) {
+                Blob blob = null;
+                if (value.startsWith(BLOB_ID)) {
+                    if (blobStore != null) {
+                        blob = new BlobStoreBlob(blobStore, value.substring(BLOB_ID.length()));
+                    }
+                } else if (value.startsWith(BLOB_REFERENCE)) {
+                    blob = store.getBlob(value.substring(BLOB_REFERENCE.length()));
+                } else if (value.startsWith(BLOB_INLINE)) {
+                    blob = new ArrayBasedBlob(BaseEncoding.base64().decode(
+                            value.substring(BLOB_INLINE.length())));
+                }
+                if (blob == null) {
+                    throw new IllegalArgumentException("Unable to resolve blob " + value);
+                }
+                return blob;
+            }
+        };
+    }
+
+    /**
+     * Makes sure the line with the given index is read into {@link #lines}.
+     *
+     * @return {@code false} if the end of the file was reached before.
+     */
+    private boolean ensure(int index) {
+        try {
+            while (lines.size() <= index) {
+                Line line = readLine();
+                if (line == null) {
+                    return false;
+                }
+                lines.add(line);
+            }
+            return true;
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read flat file", e);
+        }
+    }
+
+    @Nullable
+    private Line readLine() throws IOException {
+        long lineOffset = offset;
+        int len = 0;
+        while (true) {
+            if (readPos == readLimit) {
+                readLimit = in.read(readBuffer);
+                readPos = 0;
+                if (readLimit <= 0) {
+                    readLimit = 0;
+                    break;
+                }
+            }
+            byte b = readBuffer[readPos++];
+            offset++;
+            if (b == '\n') {
+                break;
+            }
+            if (len == lineBuffer.length) {
+                lineBuffer = Arrays.copyOf(lineBuffer, len * 2);
+            }
+            lineBuffer[len++] = b;
+        }
+        if (len > 0 && lineBuffer[len - 1] == '\r') {
+            len--;
+        }
+        if (len == 0) {
+            return offset == lineOffset ? null : readLine();
+        }
+        String s = new String(lineBuffer, 0, len, UTF_8);
+        long seq = firstSeq + lines.size();
+        int idx = s.indexOf(DELIMITER);
+        checkArgument(idx != -1, "Malformed line at offset %s: %s", lineOffset, s);
+        return new Line(s.substring(0, idx), s.substring(idx + 1), lineOffset, seq);
+    }
+
+    private List<Line> getChildren(Line parent) {
+        int idx = (int) (parent.seq - firstSeq);
+        if (idx < 0) {
+            log.warn("Children of {} accessed after the entry was discarded", parent.path);
+            return emptyList();
+        }
+        List<Line> children = Lists.newArrayList();
+        for (int i = idx + 1; ensure(i); i++) {
+            if (i - idx > maxLookahead) {
+                if (!lookaheadExceeded) {
+                    lookaheadExceeded = true;
+                    log.warn("Descendants of {} exceed the lookahead of {} entries. " +
+                            "Remaining descendants are not visible", parent.path, maxLookahead);
+                }
+                break;
+            }
+            Line line = lines.get(i);
+            if (!isAncestor(parent.path, line.path)) {
+                break;
+            }
+            if (getParentPath(line.path).equals(parent.path)) {
+                children.add(line);
+            }
+        }
+        return children;
+    }
+
+    private PropertyState readProperty(String name, JsopReader reader) {
+        if (reader.matches(JsopReader.NUMBER)) {
+            String number = reader.getToken();
+            try {
+                return new LongPropertyState(name, Long.parseLong(number));
+            } catch (NumberFormatException e) {
+                return new DoublePropertyState(name, Double.parseDouble(number));
+            }
+        } else if (reader.matches(JsopReader.TRUE)) {
+            return BooleanPropertyState.booleanProperty(name, true);
+        } else if (reader.matches(JsopReader.FALSE)) {
+            return BooleanPropertyState.booleanProperty(name, false);
+        } else if (reader.matches(JsopReader.STRING)) {
+            String jsonString = reader.getToken();
+            if (jsonString.startsWith(TypeCodes.EMPTY_ARRAY)) {
+                int type = PropertyType.valueFromName(jsonString.substring(TypeCodes.EMPTY_ARRAY.length()));
+                return createProperty(name, emptyList(), Type.fromTag(type, true));
+            }
+            int split = TypeCodes.split(jsonString);
+            if (split != -1) {
+                int type = TypeCodes.decodeType(split, jsonString);
+                String value = TypeCodes.decodeName(split, jsonString);
+                if (type == PropertyType.BINARY) {
+                    return BinaryPropertyState.binaryProperty(name, blobs.apply(value));
+                } else {
+                    return createProperty(name, value, type);
+                }
+            } else {
+                return StringPropertyState.stringProperty(name, jsonString);
+            }
+        } else if (reader.matches('[')) {
+            return readArrayProperty(name, reader);
+        } else {
+            throw new IllegalArgumentException("Unexpected token: " + reader.getToken());
+        }
+    }
+
+    private PropertyState readArrayProperty(String name, JsopReader reader) {
+        int type = PropertyType.STRING;
+        List<Object> values = Lists.newArrayList();
+        while (!reader.matches(']')) {
+            if (reader.matches(JsopReader.NUMBER)) {
+                String number = reader.getToken();
+                try {
+                    type = PropertyType.LONG;
+                    values.add(Long.parseLong(number));
+                } catch (NumberFormatException e) {
+                    type = PropertyType.DOUBLE;
+                    values.add(Double.parseDouble(number));
+                }
+            } else if (reader.matches(JsopReader.TRUE)) {
+                type = PropertyType.BOOLEAN;
+                values.add(true);
+            } else if (reader.matches(JsopReader.FALSE)) {
+                type = PropertyType.BOOLEAN;
+                values.add(false);
+            } else if (reader.matches(JsopReader.STRING)) {
+                String jsonString = reader.getToken();
+                int split = TypeCodes.split(jsonString);
+                if (split != -1) {
+                    type = TypeCodes.decodeType(split, jsonString);
+                    String value = TypeCodes.decodeName(split, jsonString);
+                    if (type == PropertyType.BINARY) {
+                        values.add(blobs.apply(value));
+                    } else if (type == PropertyType.DOUBLE) {
+                        values.add(Conversions.convert(value).toDouble());
+                    } else if (type == PropertyType.DECIMAL) {
+                        values.add(Conversions.convert(value).toDecimal());
+                    } else {
+                        values.add(value);
+                    }
+                } else {
+                    type = PropertyType.STRING;
+                    values.add(jsonString);
+                }
+            } else {
+                throw new IllegalArgumentException("Unexpected token: " + reader.getToken());
+            }
+            reader.matches(',');
+        }
+        return createProperty(name, values, Type.fromTag(type, true));
+    }
+
+    private static final class Line {
+        final String path;
+        final String json;
+        final long offset;
+        final long seq;
+
+        Line(String path, String json, long offset, long seq) {
+            this.path = path;
+            this.json = json;
+            this.offset = offset;
+            this.seq = seq;
+        }
+    }
+
+    private final class FlatFileNodeState extends AbstractNodeState {
+
+        private final Line line;
+
+        private List<PropertyState> properties;
+
+        private List<Line> children;
+
+        FlatFileNodeState(Line line) {
+            this.line = line;
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Nonnull
+        @Override
+        public Iterable<? extends PropertyState> getProperties() {
+            if (properties == null) {
+                List<PropertyState> props = Lists.newArrayList();
+                JsopReader reader = new JsopTokenizer(line.json);
+                reader.read('{');
+                if (!reader.matches('}')) {
+                    do {
+                        String name = reader.readString();
+                        reader.read(':');
+                        props.add(readProperty(name, reader));
+                    } while (reader.matches(','));
+                    reader.read('}');
+                }
+                properties = props;
+            }
+            return properties;
+        }
+
+        @Override
+        public boolean hasChildNode(@Nonnull String name) {
+            return getChildNode(name).exists();
+        }
+
+        @Nonnull
+        @Override
+        public NodeState getChildNode(@Nonnull String name) {
+            for (Line child : getChildLines()) {
+                if (getName(child.path).equals(name)) {
+                    return new FlatFileNodeState(child);
+                }
+            }
+            return MISSING_NODE;
+        }
+
+        @Nonnull
+        @Override
+        public Iterable<? extends ChildNodeEntry> getChildNodeEntries() {
+            List<ChildNodeEntry> entries = Lists.newArrayList();
+            for (Line child : getChildLines()) {
+                entries.add(new MemoryChildNodeEntry(
+                        getName(child.path), new FlatFileNodeState(child)));
+            }
+            return entries;
+        }
+
+        @Nonnull
+        @Override
+        public NodeBuilder builder() {
+            return new MemoryNodeBuilder(this);
+        }
+
+        private List<Line> getChildLines() {
+            if (children == null) {
+                children = Collections.unmodifiableList(getChildren(line));
+            }
+            return children;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index.flatfile;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closer;
+import com.google.common.io.Files;
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.commons.json.JsopBuilder;
+import org.apache.jackrabbit.oak.commons.sort.ExternalSort;
+import org.apache.jackrabbit.oak.json.BlobSerializer;
+import org.apache.jackrabbit.oak.json.JsonSerializer;
+import org.apache.jackrabbit.oak.plugins.blob.BlobStoreBlob;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.apache.jackrabbit.oak.commons.PathUtils.concat;
+
+/**
+ * Writes node states to a flat file, one node per line, and sorts the file
+ * with {@link ExternalSort}. Each line consists of the path of the node,
+ * a {@code '|'} and the properties of the node serialized as a JSON object.
+ * Hidden nodes and properties are not written.
+ * <p>
+ * The lines are sorted with {@link #PATH_COMPARATOR}, which puts a node
+ * before its descendants and keeps the descendants of a node together. This
+ * allows {@link FlatFileReader} to resolve the children of a node from the
+ * lines that follow it.
+ */
+public class FlatFileWriter {
+    private static final Logger log = LoggerFactory.getLogger(FlatFileWriter.class);
+
+    static final char DELIMITER = '|';
+
+    static final String BLOB_ID = "id:";
+
+    static final String BLOB_REFERENCE = "ref:";
+
+    static final String BLOB_INLINE = "b64:";
+
+    /**
+     * Compares the paths of two lines. A {@code '/'} sorts before any other
+     * character, which results in a depth first pre-order of the nodes.
+     */
+    public static final Comparator<String> PATH_COMPARATOR = new Comparator<String>() {
+        @Override
+        public int compare(String line1, String line2) {
+            int len1 = pathLength(line1);
+            int len2 = pathLength(line2);
+            int len = Math.min(len1, len2);
+            for (int i = 0; i < len; i++) {
+                char c1 = line1.charAt(i);
+                char c2 = line2.charAt(i);
+                if (c1 != c2) {
+                    if (c1 == '/') {
+                        return -1;
+                    } else if (c2 == '/') {
+                        return 1;
+                    }
+                    return c1 - c2;
+                }
+            }
+            return len1 - len2;
+        }
+    };
+
+    private final File workDir;
+
+    private long maxMemory = Long.getLong("oak.flatfile.maxMemory", 64 * 1024 * 1024);
+
+    public FlatFileWriter(@Nonnull File workDir) {
+        checkArgument(workDir.isDirectory(), "Not a directory: %s", workDir);
+        this.workDir = workDir;
+    }
+
+    /**
+     * The maximum amount of memory in bytes used to sort a batch of lines
+     * before it is written to a temporary file.
+     */
+    public void setMaxMemory(long maxMemory) {
+        this.maxMemory = maxMemory;
+    }
+
+    /**
+     * Writes the given entries to a sorted flat file in the work directory.
+     * The entries can be passed in any order.
+     *
+     * @param entries the node state entries.
+     * @return the sorted flat file.
+     */
+    public File write(Iterable<NodeStateEntry> entries) throws IOException {
+        Stopwatch w = Stopwatch.createStarted();
+        File unsorted = new File(workDir, "nodes-unsorted.txt");
+        File sorted = new File(workDir, "nodes.txt");
+        long count = 0;
+        Closer closer = Closer.create();
+        try {
+            BufferedWriter writer = closer.register(Files.newWriter(unsorted, UTF_8));
+            for (NodeStateEntry e : entries) {
+                writer.write(toLine(e));
+                writer.newLine();
+                if (++count % 100000 == 0) {
+                    log.info("Dumped {} nodes", count);
+                }
+            }
+        } catch (Throwable t) {
+            throw closer.rethrow(t);
+        } finally {
+            closer.close();
+        }
+        log.info("Dumped {} nodes to {} in {}", count, unsorted, w);
+
+        w = Stopwatch.createStarted();
+        List<File> batches = ExternalSort.sortInBatch(unsorted, PATH_COMPARATOR,
+                1024, maxMemory, UTF_8, workDir, false);
+        ExternalSort.mergeSortedFiles(batches, sorted, PATH_COMPARATOR,
+                UTF_8, false, false, false);
+        if (!unsorted.delete()) {
+            log.warn("Unable to delete {}", unsorted);
+        }
+        log.info("Sorted {} into {} in {}", unsorted, sorted, w);
+        return sorted;
+    }
+
+    /**
+     * Traverses the tree of the given root state in depth first order. Hidden
+     * nodes and their descendants are skipped.
+     *
+     * @param root the root node state.
+     * @return the entries of the tree, starting with the root itself.
+     */
+    public static Iterable<NodeStateEntry> traverse(final NodeState root) {
+        return new Iterable<NodeStateEntry>() {
+            @Override
+            public Iterator<NodeStateEntry> iterator() {
+                return new TraversingIterator(root);
+            }
+        };
+    }
+
+    static String toLine(NodeStateEntry entry) {
+        JsopBuilder json = new JsopBuilder();
+        JsonSerializer serializer = new JsonSerializer(json, BLOBS);
+        json.object();
+        for (PropertyState p : entry.getState().getProperties()) {
+            if (!NodeStateUtils.isHidden(p.getName())) {
+                json.key(p.getName());
+                serializer.serialize(p);
+            }
+        }
+        json.endObject();
+        return entry.getPath() + DELIMITER + json.toString();
+    }
+
+    static int pathLength(String line) {
+        int idx = line.indexOf(DELIMITER);
+        return idx == -1 ? line.length() : idx;
+    }
+
+    private static final BlobSerializer BLOBS = new BlobSerializer() {
+        @Override
+        public String serialize(Blob blob) {
+            if (blob instanceof BlobStoreBlob) {
+                return BLOB_ID + ((BlobStoreBlob) blob).getBlobId();
+            }
+            String reference = blob.getReference();
+            if (reference != null) {
+                return BLOB_REFERENCE + reference;
+            }
+            try {
+                InputStream in = blob.getNewStream();
+                try {
+                    return BLOB_INLINE + BaseEncoding.base64().encode(ByteStreams.toByteArray(in));
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to read blob " + blob, e);
+            }
+        }
+    };
+
+    private static class TraversingIterator extends AbstractIterator<NodeStateEntry> {
+
+        private final Deque<Iterator<NodeStateEntry>> stack = new ArrayDeque<Iterator<NodeStateEntry>>();
+
+        private NodeStateEntry current;
+
+        TraversingIterator(NodeState root) {
+            stack.push(Iterators.singletonIterator(new NodeStateEntry("/", root)));
+        }
+
+        @Override
+        protected NodeStateEntry computeNext() {
+            if (current != null) {
+                // descend into the children of the entry returned last
+                stack.push(children(current));
+                current = null;
+            }
+            while (!stack.isEmpty()) {
+                Iterator<NodeStateEntry> it = stack.peek();
+                if (it.hasNext()) {
+                    current = it.next();
+                    return current;
+                }
+                stack.pop();
+            }
+            return endOfData();
+        }
+
+        private static Iterator<NodeStateEntry> children(final NodeStateEntry parent) {
+            final Iterator<? extends ChildNodeEntry> children =
+                    parent.getState().getChildNodeEntries().iterator();
+            return new AbstractIterator<NodeStateEntry>() {
+                @Override
+                protected NodeStateEntry computeNext() {
+                    while (children.hasNext()) {
+                        ChildNodeEntry c = children.next();
+                        if (!NodeStateUtils.isHidden(c.getName())) {
+                            return new NodeStateEntry(
+                                    concat(parent.getPath(), c.getName()),
+                                    c.getNodeState());
+                        }
+                    }
+                    return endOfData();
+                }
+            };
+        }
+    }
+}
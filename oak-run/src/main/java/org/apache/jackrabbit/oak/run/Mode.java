@@ -36,6 +36,7 @@ enum Mode {
     RECOVERY("recovery", new RecoveryCommand()),
     REPAIR("repair", new RepairCommand()),
     TIKA("tika", new TikaCommand()),
+    REINDEX("reindex", new ReindexCommand()),
     GARBAGE("garbage", new GarbageCommand()),
     TARMKDIFF("tarmkdiff", new FileStoreDiffCommand()),
     TARMKRECOVERY("tarmkrecovery", new FileStoreRevisionRecoveryCommand()),
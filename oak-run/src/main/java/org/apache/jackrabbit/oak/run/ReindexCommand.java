@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.run;
+
+import static java.util.Arrays.asList;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Function;
+import com.google.common.base.Stopwatch;
+import com.google.common.io.Closer;
+import com.mongodb.MongoClientURI;
+import com.mongodb.MongoURI;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.plugins.document.DocumentMK;
+import org.apache.jackrabbit.oak.plugins.document.DocumentNodeState;
+import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStore;
+import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStoreHelper;
+import org.apache.jackrabbit.oak.plugins.document.util.MongoConnection;
+import org.apache.jackrabbit.oak.plugins.index.flatfile.FlatFileLuceneIndexer;
+import org.apache.jackrabbit.oak.plugins.index.flatfile.FlatFileReader;
+import org.apache.jackrabbit.oak.plugins.index.flatfile.FlatFileWriter;
+import org.apache.jackrabbit.oak.plugins.index.flatfile.NodeStateEntry;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStore;
+
+/**
+ * Reindexes Lucene indexes out of band. All node states are first written
+ * to a sorted flat file, which is then indexed on multiple threads. The
+ * resulting index is imported into the repository. The content is read from
+ * a checkpoint, asynchronous indexing of the affected indexes should be
+ * paused while the command runs.
+ */
+class ReindexCommand implements Command {
+
+    @Override
+    public void execute(String... args) throws Exception {
+        OptionParser parser = new OptionParser();
+        OptionSpec<String> indexPaths = parser
+                .accepts("index-paths", "Comma separated paths of the Lucene index definitions")
+                .withRequiredArg().ofType(String.class).withValuesSeparatedBy(',');
+        OptionSpec<File> workDir = parser
+                .accepts("work-dir", "Directory for the flat file and the local indexes")
+                .withRequiredArg().ofType(File.class).defaultsTo(new File("reindex-work"));
+        OptionSpec<Integer> threads = parser
+                .accepts("threads", "Number of indexing threads. Defaults to the number of cores")
+                .withRequiredArg().ofType(Integer.class)
+                .defaultsTo(Runtime.getRuntime().availableProcessors());
+        OptionSpec<Integer> maxLookahead = parser
+                .accepts("max-lookahead", "Maximum number of descendants read ahead to resolve aggregates")
+                .withRequiredArg().ofType(Integer.class).defaultsTo(100000);
+        OptionSpec<Integer> clusterId = parser
+                .accepts("clusterId", "MongoMK clusterId").withRequiredArg()
+                .ofType(Integer.class).defaultsTo(0);
+        OptionSpec segment = parser.accepts("segment", "Use oak-segment instead of oak-segment-tar");
+        OptionSpec<?> help = parser.acceptsAll(asList("h", "?", "help"),
+                "show help").forHelp();
+        OptionSet options = parser.parse(args);
+
+        if (options.has(help)) {
+            parser.printHelpOn(System.out);
+            System.exit(0);
+        }
+        if (options.nonOptionArguments().isEmpty() || !options.has(indexPaths)) {
+            System.err.println("usage: reindex {<path>|<mongo-uri>} --index-paths <path>[,<path>] [options]");
+            parser.printHelpOn(System.err);
+            System.exit(1);
+        }
+
+        Closer closer = Closer.create();
+        try {
+            String src = options.nonOptionArguments().get(0).toString();
+            NodeStore store;
+            DocumentNodeStore dns = null;
+            if (src.startsWith(MongoURI.MONGODB_PREFIX)) {
+                MongoClientURI uri = new MongoClientURI(src);
+                if (uri.getDatabase() == null) {
+                    System.err.println("Database missing in MongoDB URI: " + uri.getURI());
+                    System.exit(1);
+                }
+                MongoConnection mongo = new MongoConnection(uri.getURI());
+                closer.register(Utils.asCloseable(mongo));
+                dns = new DocumentMK.Builder()
+                        .setMongoDB(mongo.getDB())
+                        .setLeaseCheck(false)
+                        .setClusterId(clusterId.value(options)).getNodeStore();
+                closer.register(Utils.asCloseable(dns));
+                store = dns;
+            } else if (options.has(segment)) {
+                store = SegmentUtils.bootstrapNodeStore(src, closer);
+            } else {
+                store = SegmentTarUtils.bootstrapNodeStore(src, closer);
+            }
+
+            File dir = workDir.value(options);
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                System.err.println("Unable to create work directory " + dir);
+                System.exit(1);
+            }
+            reindex(store, dns, indexPaths.values(options), dir,
+                    threads.value(options), maxLookahead.value(options));
+        } catch (Throwable e) {
+            throw closer.rethrow(e);
+        } finally {
+            closer.close();
+        }
+    }
+
+    private static void reindex(NodeStore store, DocumentNodeStore dns,
+                                List<String> indexPaths, File workDir,
+                                int threads, int maxLookahead) throws Exception {
+        Stopwatch w = Stopwatch.createStarted();
+        String checkpoint = store.checkpoint(TimeUnit.DAYS.toMillis(1),
+                Collections.singletonMap("creator", "oak-run reindex"));
+        try {
+            NodeState root = store.retrieve(checkpoint);
+            if (root == null) {
+                throw new IllegalStateException("Unable to retrieve checkpoint " + checkpoint);
+            }
+
+            Iterable<NodeStateEntry> entries;
+            if (dns != null && root instanceof DocumentNodeState) {
+                entries = DocumentNodeStoreHelper.getNodeStateEntries(dns, (DocumentNodeState) root);
+            } else {
+                entries = FlatFileWriter.traverse(root);
+            }
+            File flatFile = new FlatFileWriter(workDir).write(entries);
+            System.out.println("Created flat file " + flatFile + " in " + w);
+
+            Function<String, Blob> blobs = FlatFileReader.newBlobResolver(
+                    store, dns != null ? dns.getBlobStore() : null);
+            FlatFileLuceneIndexer indexer = new FlatFileLuceneIndexer(root, flatFile, blobs, workDir);
+            indexer.setThreads(threads);
+            indexer.setMaxLookahead(maxLookahead);
+            NodeBuilder builder = store.getRoot().builder();
+            indexer.reindex(indexPaths, builder);
+            store.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+            System.out.println("Reindexed " + indexPaths + " at checkpoint " + checkpoint + " in " + w);
+        } finally {
+            store.release(checkpoint);
+        }
+    }
+
+}
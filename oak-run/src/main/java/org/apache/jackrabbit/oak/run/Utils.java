@@ -163,7 +163,7 @@ class Utils {
         };
     }
 
-    private static Closeable asCloseable(final MongoConnection con) {
+    static Closeable asCloseable(final MongoConnection con) {
         return new Closeable() {
 
             @Override
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index.flatfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import com.google.common.base.Function;
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.plugins.index.lucene.IndexDefinition;
+import org.apache.jackrabbit.oak.plugins.index.lucene.OakDirectory;
+import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeStore;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.store.Directory;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.apache.jackrabbit.JcrConstants.JCR_PRIMARYTYPE;
+import static org.apache.jackrabbit.JcrConstants.NT_UNSTRUCTURED;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.util.LuceneIndexHelper.newLucenePropertyIndexDefinition;
+import static org.apache.jackrabbit.oak.plugins.nodetype.write.InitialContent.INITIAL_CONTENT;
+import static org.junit.Assert.assertEquals;
+
+public class FlatFileLuceneIndexerTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder(new File("target"));
+
+    private NodeState root;
+
+    private File flatFile;
+
+    private Function<String, Blob> blobs;
+
+    private File workDir;
+
+    @Before
+    public void setUp() throws Exception {
+        NodeBuilder builder = INITIAL_CONTENT.builder();
+        NodeBuilder index = builder.child(INDEX_DEFINITIONS_NAME);
+        newLucenePropertyIndexDefinition(index, "foo", Collections.singleton("foo"), "async");
+        newLucenePropertyIndexDefinition(index, "bar", Collections.singleton("bar"), "async");
+        NodeBuilder content = builder.child("content");
+        for (int i = 0; i < 10; i++) {
+            NodeBuilder child = content.child("n" + i);
+            child.setProperty(JCR_PRIMARYTYPE, NT_UNSTRUCTURED, Type.NAME);
+            child.setProperty("foo", "x");
+            if (i % 2 == 0) {
+                child.setProperty("bar", "y");
+            }
+        }
+        root = builder.getNodeState();
+
+        workDir = temporaryFolder.newFolder();
+        flatFile = new FlatFileWriter(workDir).write(FlatFileWriter.traverse(root));
+        blobs = FlatFileReader.newBlobResolver(new MemoryNodeStore(), null);
+    }
+
+    @Test
+    public void reindexTwice() throws Exception {
+        // the second run must not add to the local
+        // directories left by the first run, also
+        // not if the order of the indexes changes
+        for (String[] paths : new String[][] {
+                {"/oak:index/foo", "/oak:index/bar"},
+                {"/oak:index/bar", "/oak:index/foo"}}) {
+            NodeBuilder builder = root.builder();
+            FlatFileLuceneIndexer indexer = new FlatFileLuceneIndexer(
+                    root, flatFile, blobs, workDir);
+            indexer.setThreads(2);
+            indexer.reindex(Arrays.asList(paths), builder);
+
+            NodeBuilder index = builder.getChildNode(INDEX_DEFINITIONS_NAME);
+            assertEquals(10, numDocs(index.getChildNode("foo")));
+            assertEquals(5, numDocs(index.getChildNode("bar")));
+        }
+    }
+
+    private int numDocs(NodeBuilder definition) throws IOException {
+        Directory dir = new OakDirectory(definition,
+                new IndexDefinition(root, definition), true);
+        try {
+            IndexReader reader = DirectoryReader.open(dir);
+            try {
+                return reader.numDocs();
+            } finally {
+                reader.close();
+            }
+        } finally {
+            dir.close();
+        }
+    }
+}
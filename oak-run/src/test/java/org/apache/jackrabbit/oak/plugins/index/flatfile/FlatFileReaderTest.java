@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index.flatfile;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.plugins.memory.ArrayBasedBlob;
+import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeStore;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FlatFileReaderTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder(new File("target"));
+
+    private NodeState root;
+
+    private File flatFile;
+
+    private Function<String, Blob> blobs;
+
+    @Before
+    public void setUp() throws Exception {
+        NodeBuilder builder = EMPTY_NODE.builder();
+        NodeBuilder a = builder.child("a");
+        a.setProperty("p", "x");
+        a.setProperty("n", 1L);
+        a.setProperty("d", 1.5d);
+        a.setProperty("arr", Arrays.asList(1L, 2L), Type.LONGS);
+        a.setProperty("empty", ImmutableList.<String>of(), Type.NAMES);
+        a.child("b").setProperty("bin", new ArrayBasedBlob("hello".getBytes()));
+        a.child(":hidden");
+        builder.child("a-x");
+        builder.child("c").child("d").child("e");
+        root = builder.getNodeState();
+
+        File workDir = temporaryFolder.newFolder();
+        // write in an order different from the sorted order
+        List<NodeStateEntry> entries = Lists.newArrayList(FlatFileWriter.traverse(root));
+        flatFile = new FlatFileWriter(workDir).write(Lists.reverse(entries));
+        blobs = FlatFileReader.newBlobResolver(new MemoryNodeStore(), null);
+    }
+
+    @Test
+    public void readSorted() throws Exception {
+        assertEquals(Arrays.asList("/", "/a", "/a/b", "/a-x", "/c", "/c/d", "/c/d/e"),
+                readPaths(0, flatFile.length()));
+    }
+
+    @Test
+    public void properties() throws Exception {
+        FlatFileReader reader = new FlatFileReader(flatFile, 0, flatFile.length(), blobs, 100);
+        try {
+            reader.next();
+            NodeStateEntry a = reader.next();
+            assertEquals("/a", a.getPath());
+            NodeState expected = root.getChildNode("a");
+            assertEquals(expected.getProperty("p"), a.getState().getProperty("p"));
+            assertEquals(expected.getProperty("n"), a.getState().getProperty("n"));
+            assertEquals(expected.getProperty("d"), a.getState().getProperty("d"));
+            assertEquals(expected.getProperty("arr"), a.getState().getProperty("arr"));
+            assertEquals(expected.getProperty("empty"), a.getState().getProperty("empty"));
+
+            // children are resolved from the following lines
+            NodeState b = a.getState().getChildNode("b");
+            assertTrue(b.exists());
+            assertEquals(expected.getChildNode("b").getProperty("bin"), b.getProperty("bin"));
+            assertFalse(a.getState().hasChildNode(":hidden"));
+            assertEquals(1, a.getState().getChildNodeCount(10));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void lookahead() throws Exception {
+        FlatFileReader reader = new FlatFileReader(flatFile, 0, flatFile.length(), blobs, 1);
+        try {
+            NodeState r = reader.next().getState();
+            assertTrue(r.hasChildNode("a"));
+            assertFalse(r.hasChildNode("c"));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void split() throws Exception {
+        for (int count = 1; count <= 10; count++) {
+            long[] offsets = FlatFileReader.split(flatFile, count);
+            List<String> paths = Lists.newArrayList();
+            for (int i = 0; i < count; i++) {
+                paths.addAll(readPaths(offsets[i], offsets[i + 1]));
+            }
+            assertEquals(readPaths(0, flatFile.length()), paths);
+        }
+    }
+
+    private List<String> readPaths(long start, long end) throws Exception {
+        List<String> paths = Lists.newArrayList();
+        FlatFileReader reader = new FlatFileReader(flatFile, start, end, blobs, 100);
+        try {
+            while (reader.hasNext()) {
+                paths.add(reader.next().getPath());
+            }
+        } finally {
+            reader.close();
+        }
+        return paths;
+    }
+}
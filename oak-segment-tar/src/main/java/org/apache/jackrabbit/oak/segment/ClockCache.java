@@ -0,0 +1,282 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import com.google.common.cache.AbstractCache;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Maps;
+
+/**
+ * A weight bounded cache, which does not acquire any locks. Entries are kept
+ * in a {@link ConcurrentHashMap} and evicted according to the CLOCK (second
+ * chance) policy: a read sets the reference bit of an entry. The clock hand
+ * is a {@link ConcurrentLinkedQueue} of all entries in insertion order. On
+ * eviction an entry with its reference bit set is cleared and moved to the
+ * tail of the queue, while an entry without the reference bit is removed.
+ * <p>
+ * Evictions are done by the threads adding entries to the cache. Concurrent
+ * evictions may temporarily let the cache exceed its maximum weight or evict
+ * slightly more entries than strictly necessary.
+ * <p>
+ * Subclasses can override {@link #onRemoval(Object, Object, RemovalCause)}
+ * to get notified about removed entries. The {@link #asMap()} view is read
+ * only.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+class ClockCache<K, V> extends AbstractCache<K, V> {
+
+    private final ConcurrentMap<K, Node<K, V>> map = new ConcurrentHashMap<K, Node<K, V>>();
+
+    private final ConcurrentLinkedQueue<Node<K, V>> clock = new ConcurrentLinkedQueue<Node<K, V>>();
+
+    private final AtomicLong weight = new AtomicLong();
+
+    private final StatsCounter stats = new SimpleStatsCounter();
+
+    private final long maximumWeight;
+
+    @Nonnull
+    private final Weigher<? super K, ? super V> weigher;
+
+    /**
+     * Create a new cache.
+     * @param maximumWeight    the maximum weight of all entries in the cache
+     * @param weigher          the weigher for the entries
+     */
+    ClockCache(long maximumWeight, @Nonnull Weigher<? super K, ? super V> weigher) {
+        checkArgument(maximumWeight >= 0);
+        this.maximumWeight = maximumWeight;
+        this.weigher = checkNotNull(weigher);
+    }
+
+    @CheckForNull
+    @Override
+    public V getIfPresent(@Nonnull Object key) {
+        Node<K, V> e = map.get(key);
+        if (e == null) {
+            stats.recordMisses(1);
+            return null;
+        }
+        V value = e.value;
+        if (value == null) {
+            // concurrently removed
+            stats.recordMisses(1);
+            return null;
+        }
+        if (!e.referenced) {
+            // avoid the volatile write if the bit is already set
+            e.referenced = true;
+        }
+        stats.recordHits(1);
+        return value;
+    }
+
+    @Override
+    public void put(@Nonnull K key, @Nonnull V value) {
+        Node<K, V> e = new Node<K, V>(key, value, weigher.weigh(key, value));
+        Node<K, V> old = map.put(key, e);
+        clock.add(e);
+        weight.addAndGet(e.weight);
+        if (old != null) {
+            removed(old, RemovalCause.REPLACED);
+        }
+        evict();
+    }
+
+    @Override
+    public void invalidate(@Nonnull Object key) {
+        Node<K, V> e = map.remove(key);
+        if (e != null) {
+            removed(e, RemovalCause.EXPLICIT);
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        for (K key : map.keySet()) {
+            invalidate(key);
+        }
+        // drop the stale entries from the clock
+        for (Iterator<Node<K, V>> it = clock.iterator(); it.hasNext(); ) {
+            Node<K, V> e = it.next();
+            if (map.get(e.key) != e) {
+                it.remove();
+            }
+        }
+    }
+
+    @Override
+    public long size() {
+        return map.size();
+    }
+
+    @Override
+    public void cleanUp() {
+        evict();
+    }
+
+    @Nonnull
+    @Override
+    public CacheStats stats() {
+        return stats.snapshot();
+    }
+
+    @Nonnull
+    @Override
+    public ConcurrentMap<K, V> asMap() {
+        return new ReadOnlyMapView();
+    }
+
+    /**
+     * @return the current weight of all entries in the cache.
+     */
+    long weight() {
+        return weight.get();
+    }
+
+    /**
+     * Called whenever an entry is removed from this cache. This
+     * implementation does nothing.
+     * @param key    the key of the removed entry
+     * @param value  the value of the removed entry
+     * @param cause  the reason for the removal
+     */
+    protected void onRemoval(@Nonnull K key, @Nonnull V value, @Nonnull RemovalCause cause) {
+    }
+
+    private void evict() {
+        while (weight.get() > maximumWeight) {
+            Node<K, V> e = clock.poll();
+            if (e == null) {
+                // concurrently evicted by another thread
+                return;
+            }
+            if (map.get(e.key) != e) {
+                // stale clock entry of a replaced or removed entry
+                continue;
+            }
+            if (e.referenced) {
+                // second chance
+                e.referenced = false;
+                clock.add(e);
+            } else if (map.remove(e.key, e)) {
+                stats.recordEviction();
+                removed(e, RemovalCause.SIZE);
+            }
+        }
+    }
+
+    private void removed(Node<K, V> e, RemovalCause cause) {
+        weight.addAndGet(-e.weight);
+        V value = e.value;
+        // a stale entry may remain in the clock until the hand passes
+        // by. Release the value, so it can be garbage collected
+        e.value = null;
+        onRemoval(e.key, value, cause);
+    }
+
+    private static final class Node<K, V> {
+
+        final K key;
+
+        volatile V value;
+
+        final int weight;
+
+        volatile boolean referenced;
+
+        Node(K key, V value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private class ReadOnlyMapView extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        public V get(Object key) {
+            Node<K, V> e = map.get(key);
+            return e == null ? null : e.value;
+        }
+
+        @Nonnull
+        @Override
+        public Set<Map.Entry<K, V>> entrySet() {
+            Map<K, V> snapshot = Maps.newHashMap();
+            for (Node<K, V> e : map.values()) {
+                V value = e.value;
+                if (value != null) {
+                    snapshot.put(e.key, value);
+                }
+            }
+            return snapshot.entrySet();
+        }
+
+        @Override
+        public V putIfAbsent(@Nonnull K key, V value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean remove(@Nonnull Object key, Object value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean replace(@Nonnull K key, @Nonnull V oldValue, @Nonnull V newValue) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public V replace(@Nonnull K key, @Nonnull V value) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
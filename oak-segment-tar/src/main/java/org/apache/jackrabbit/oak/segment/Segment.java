@@ -418,6 +418,25 @@ public class Segment {
         return data.remaining();
     }
 
+    /**
+     * Copy the data of this segment to a direct buffer outside of the Java
+     * heap. A segment whose data already is outside of the heap (e.g. a
+     * memory mapped segment) is returned as is.
+     *
+     * @return a segment with the same id and data as this segment, whose
+     *         data is kept outside of the Java heap.
+     */
+    @Nonnull
+    Segment copyOffHeap() {
+        if (data.isDirect()) {
+            return this;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.remaining());
+        buffer.put(data.duplicate());
+        buffer.flip();
+        return new Segment(store, reader, id, buffer);
+    }
+
     byte readByte(int recordNumber) {
         return readByte(recordNumber, 0);
     }
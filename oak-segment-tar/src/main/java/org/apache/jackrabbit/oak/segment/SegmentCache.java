@@ -26,6 +26,7 @@ import javax.annotation.Nonnull;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
 import com.google.common.cache.Weigher;
@@ -43,6 +44,11 @@ import org.apache.jackrabbit.oak.cache.CacheStats;
  * which are then loaded through the loader passed to {@link #getSegment(SegmentId, Callable)}.
  * This behaviour is eventually reflected in the cache statistics (see {@link #getCacheStats()}),
  * which always reports a {@link CacheStats#getHitRate()} () miss rate} of 1.
+ * <p>
+ * An off heap segment cache (see {@link #SegmentCache(long, boolean)}) keeps the data
+ * of segments, which are not memory mapped, in direct buffers outside of the Java heap.
+ * Instead of a Guava cache it uses a {@link ClockCache}, which does not acquire any locks
+ * on access, insertion or eviction.
  */
 public class SegmentCache {
     public static final int DEFAULT_SEGMENT_CACHE_MB = 256;
@@ -56,6 +62,8 @@ public class SegmentCache {
 
     private final long maximumWeight;
 
+    private final boolean offHeap;
+
     /**
      * Cache of recently accessed segments
      */
@@ -67,21 +75,42 @@ public class SegmentCache {
      * @param cacheSizeMB  size of the cache in megabytes.
      */
     public SegmentCache(long cacheSizeMB) {
+        this(cacheSizeMB, false);
+    }
+
+    /**
+     * Create a new segment cache of the given size.
+     * @param cacheSizeMB  size of the cache in megabytes.
+     * @param offHeap      {@code true} for a lock free cache keeping the segments
+     *                     outside of the Java heap.
+     */
+    public SegmentCache(long cacheSizeMB, boolean offHeap) {
         this.maximumWeight = cacheSizeMB * 1024 * 1024;
-        this.cache = CacheBuilder.newBuilder()
-                .concurrencyLevel(16)
-                .recordStats()
-                .maximumWeight(maximumWeight)
-                .weigher(weigher)
-                .removalListener(new RemovalListener<SegmentId, Segment>() {
-                    @Override
-                    public void onRemoval(@Nonnull RemovalNotification<SegmentId, Segment> notification) {
-                        SegmentId id = notification.getKey();
-                        if (id != null) {
-                            id.unloaded();
+        this.offHeap = offHeap;
+        if (offHeap) {
+            this.cache = new ClockCache<SegmentId, Segment>(maximumWeight, weigher) {
+                @Override
+                protected void onRemoval(@Nonnull SegmentId id, @Nonnull Segment segment,
+                                         @Nonnull RemovalCause cause) {
+                    id.unloaded();
+                }
+            };
+        } else {
+            this.cache = CacheBuilder.newBuilder()
+                    .concurrencyLevel(16)
+                    .recordStats()
+                    .maximumWeight(maximumWeight)
+                    .weigher(weigher)
+                    .removalListener(new RemovalListener<SegmentId, Segment>() {
+                        @Override
+                        public void onRemoval(@Nonnull RemovalNotification<SegmentId, Segment> notification) {
+                            SegmentId id = notification.getKey();
+                            if (id != null) {
+                                id.unloaded();
+                            }
                         }
-                    }
-                }).build();
+                    }).build();
+        }
     }
 
     /**
@@ -95,7 +124,7 @@ public class SegmentCache {
     public Segment getSegment(@Nonnull final SegmentId id, @Nonnull final Callable<Segment> loader)
     throws ExecutionException {
         try {
-            Segment segment = loader.call();
+            Segment segment = cacheable(loader.call());
             cache.put(id, segment);
             id.loaded(segment);
             return segment;
@@ -109,6 +138,7 @@ public class SegmentCache {
      * @param segment  the segment to cache
      */
     public void putSegment(@Nonnull Segment segment) {
+        segment = cacheable(segment);
         SegmentId segmentId = segment.getSegmentId();
         cache.put(segmentId, segment);
         segmentId.loaded(segment);
@@ -129,4 +159,9 @@ public class SegmentCache {
     public CacheStats getCacheStats() {
         return new CacheStats(cache, "Segment Cache", weigher, maximumWeight);
     }
-}
\ No newline at end of file
+
+    @Nonnull
+    private Segment cacheable(@Nonnull Segment segment) {
+        return offHeap ? segment.copyOffHeap() : segment;
+    }
+}
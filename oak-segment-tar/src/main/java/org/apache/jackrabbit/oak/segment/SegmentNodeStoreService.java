@@ -26,6 +26,7 @@ import static org.apache.jackrabbit.oak.commons.PropertiesUtil.toLong;
 import static org.apache.jackrabbit.oak.osgi.OsgiUtil.lookupConfigurationThenFramework;
 import static org.apache.jackrabbit.oak.segment.SegmentNotFoundExceptionListener.IGNORE_SNFE;
 import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.FORCE_TIMEOUT_DEFAULT;
+import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.COMPACTION_THREADS_DEFAULT;
 import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.MEMORY_THRESHOLD_DEFAULT;
 import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.PAUSE_DEFAULT;
 import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.RETAINED_GENERATIONS_DEFAULT;
@@ -151,6 +152,14 @@ public class SegmentNodeStoreService extends ProxyNodeStore
     )
     public static final String SEGMENT_CACHE_SIZE = "segmentCache.size";
 
+    @Property(
+            boolValue = false,
+            label = "Off heap segment cache",
+            description = "Boolean value indicating that segments, which are not memory mapped, " +
+                    "are cached in a lock free cache outside of the Java heap"
+    )
+    public static final String SEGMENT_CACHE_OFF_HEAP = "segmentCache.offHeap";
+
     @Property(
             intValue = 256,
             label = "String cache size (MB)",
@@ -242,6 +251,14 @@ public class SegmentNodeStoreService extends ProxyNodeStore
     )
     public static final String MEMORY_THRESHOLD = "compaction.memoryThreshold";
 
+    @Property(
+            intValue = COMPACTION_THREADS_DEFAULT,
+            label = "Compaction Threads",
+            description = "Number of threads used by online compaction. With more than one thread " +
+                    "the subtrees of the repository are compacted concurrently."
+    )
+    public static final String COMPACTION_THREADS = "compaction.threads";
+
     @Property(
             boolValue = false,
             label = "Standby Mode",
@@ -397,6 +414,7 @@ public class SegmentNodeStoreService extends ProxyNodeStore
         // Build the FileStore
         FileStoreBuilder builder = fileStoreBuilder(getDirectory())
                 .withSegmentCacheSize(getSegmentCacheSize())
+                .withOffHeapSegmentCache(toBoolean(property(SEGMENT_CACHE_OFF_HEAP), false))
                 .withStringCacheSize(getStringCacheSize())
                 .withTemplateCacheSize(getTemplateCacheSize())
                 .withStringDeduplicationCacheSize(getStringDeduplicationCacheSize())
@@ -641,6 +659,7 @@ public class SegmentNodeStoreService extends ProxyNodeStore
         long sizeDeltaEstimation = toLong(property(COMPACTION_SIZE_DELTA_ESTIMATION), SIZE_DELTA_ESTIMATION_DEFAULT);
         int memoryThreshold = toInteger(property(MEMORY_THRESHOLD), MEMORY_THRESHOLD_DEFAULT);
         boolean disableEstimation = toBoolean(property(COMPACTION_DISABLE_ESTIMATION), DISABLE_ESTIMATION_DEFAULT);
+        int compactionThreads = toInteger(property(COMPACTION_THREADS), COMPACTION_THREADS_DEFAULT);
 
         if (property("compaction.gainThreshold") != null) {
             log.warn("Deprecated property compaction.gainThreshold was detected. In order to configure compaction please use the new property "
@@ -651,7 +670,8 @@ public class SegmentNodeStoreService extends ProxyNodeStore
                 .setRetainedGenerations(retainedGenerations)
                 .setGcSizeDeltaEstimation(sizeDeltaEstimation)
                 .setMemoryThreshold(memoryThreshold)
-                .setEstimationDisabled(disableEstimation);
+                .setEstimationDisabled(disableEstimation)
+                .setCompactionThreads(compactionThreads);
     }
 
     private void unregisterNodeStore() {
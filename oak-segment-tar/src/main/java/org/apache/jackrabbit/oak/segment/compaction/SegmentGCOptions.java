@@ -61,6 +61,11 @@ public class SegmentGCOptions {
      */
     public static final int MEMORY_THRESHOLD_DEFAULT = 15;
 
+    /**
+     * Default value for {@link #getCompactionThreads()}
+     */
+    public static final int COMPACTION_THREADS_DEFAULT = 1;
+
     private boolean paused = PAUSE_DEFAULT;
 
     /**
@@ -78,6 +83,10 @@ public class SegmentGCOptions {
 
     private int memoryThreshold = MEMORY_THRESHOLD_DEFAULT;
 
+    private int compactionThreads = Integer.getInteger(
+            "oak.segment.compaction.threads",
+            COMPACTION_THREADS_DEFAULT);
+
     private boolean ocBinDeduplication = Boolean
             .getBoolean("oak.segment.compaction.binaryDeduplication");
 
@@ -209,7 +218,8 @@ public class SegmentGCOptions {
                     ", retryCount=" + retryCount +
                     ", forceTimeout=" + forceTimeout +
                     ", retainedGenerations=" + retainedGenerations +
-                    ", gcSizeDeltaEstimation=" + gcSizeDeltaEstimation + "}";
+                    ", gcSizeDeltaEstimation=" + gcSizeDeltaEstimation +
+                    ", compactionThreads=" + compactionThreads + "}";
         }
     }
 
@@ -317,4 +327,27 @@ public class SegmentGCOptions {
         this.estimationDisabled = disabled;
         return this;
     }
+
+    /**
+     * Get the number of threads used by online compaction. With more than one
+     * thread the subtrees of the head state are compacted concurrently.
+     * @return  number of compaction threads
+     */
+    public int getCompactionThreads() {
+        return compactionThreads;
+    }
+
+    /**
+     * Set the number of threads used by online compaction. {@code 1} compacts
+     * the head state on a single thread.
+     * @param compactionThreads  number of compaction threads. Must be {@code >= 1}.
+     * @return this instance
+     * @throws IllegalArgumentException if {@code compactionThreads < 1}
+     */
+    public SegmentGCOptions setCompactionThreads(int compactionThreads) {
+        checkArgument(compactionThreads > 0,
+                "CompactionThreads must not be below 1. Got %s", compactionThreads);
+        this.compactionThreads = compactionThreads;
+        return this;
+    }
 }
@@ -164,4 +164,25 @@ public interface SegmentRevisionGC {
      * @param memoryThreshold
      */
     void setMemoryThreshold(int memoryThreshold);
+
+    /**
+     * Get the number of threads used by online compaction.
+     * @return  number of compaction threads
+     */
+    int getCompactionThreads();
+
+    /**
+     * Set the number of threads used by online compaction. With more than one
+     * thread the subtrees of the head state are compacted concurrently.
+     * @param compactionThreads  number of compaction threads. Must be {@code >= 1}.
+     * @throws IllegalArgumentException if {@code compactionThreads < 1}
+     */
+    void setCompactionThreads(int compactionThreads);
+
+    /**
+     * @return  progress of the current or last parallel compaction including the
+     *          throughput of each compaction thread or {@code null} if none.
+     */
+    @CheckForNull
+    String getCompactionProgress();
 }
@@ -166,4 +166,20 @@ public class SegmentRevisionGCMBean
     public void setMemoryThreshold(int memoryThreshold) {
         gcOptions.setMemoryThreshold(memoryThreshold);
     }
+
+    @Override
+    public int getCompactionThreads() {
+        return gcOptions.getCompactionThreads();
+    }
+
+    @Override
+    public void setCompactionThreads(int compactionThreads) {
+        gcOptions.setCompactionThreads(compactionThreads);
+    }
+
+    @CheckForNull
+    @Override
+    public String getCompactionProgress() {
+        return fileStore.getCompactionProgress();
+    }
 }
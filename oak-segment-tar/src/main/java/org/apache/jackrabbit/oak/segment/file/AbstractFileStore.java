@@ -124,7 +124,8 @@ public abstract class AbstractFileStore implements SegmentStore, Closeable {
         this.directory = builder.getDirectory();
         this.tracker = new SegmentTracker();
         this.blobStore = builder.getBlobStore();
-        this.segmentCache = new SegmentCache(builder.getSegmentCacheSize());
+        this.segmentCache = new SegmentCache(
+                builder.getSegmentCacheSize(), builder.getOffHeapSegmentCache());
         this.segmentReader = new CachingSegmentReader(new Supplier<SegmentWriter>() {
             @Override
             public SegmentWriter get() {
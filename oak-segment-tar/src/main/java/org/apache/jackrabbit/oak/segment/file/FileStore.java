@@ -55,6 +55,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -428,6 +429,16 @@ public class FileStore extends AbstractFileStore {
         garbageCollector.cancel();
     }
 
+    /**
+     * @return  progress of the current or last parallel compaction or {@code null}
+     *          if the last compaction did not run on multiple threads.
+     * @see SegmentGCOptions#getCompactionThreads()
+     */
+    @CheckForNull
+    public String getCompactionProgress() {
+        return garbageCollector.getCompactionProgress();
+    }
+
     @Override
     @Nonnull
     public SegmentWriter getWriter() {
@@ -710,6 +721,13 @@ public class FileStore extends AbstractFileStore {
 
         private volatile boolean cancelled;
 
+        /**
+         * The parallel compactor of the current or last compaction if it
+         * ran on multiple threads.
+         */
+        @CheckForNull
+        private volatile ParallelCompactor parallelCompactor;
+
         GarbageCollector(
                 @Nonnull SegmentGCOptions gcOptions,
                 @Nonnull GCListener gcListener,
@@ -830,6 +848,11 @@ public class FileStore extends AbstractFileStore {
                         .withGeneration(newGeneration)
                         .withoutWriterPool()
                         .build(FileStore.this);
+                if (!gcOptions.isOffline() && gcOptions.getCompactionThreads() > 1) {
+                    parallelCompactor = newParallelCompactor(newGeneration);
+                } else {
+                    parallelCompactor = null;
+                }
 
                 SegmentNodeState after = compact(before, writer, cancel);
                 if (after == null) {
@@ -940,14 +963,42 @@ public class FileStore extends AbstractFileStore {
 
         private SegmentNodeState compact(NodeState head, SegmentWriter writer, Supplier<Boolean> cancel)
         throws IOException {
+            ParallelCompactor parallel = parallelCompactor;
             if (gcOptions.isOffline()) {
                 return new Compactor(segmentReader, writer, getBlobStore(), cancel, gcOptions)
                         .compact(EMPTY_NODE, head, EMPTY_NODE);
+            } else if (parallel != null) {
+                return parallel.compact(head, writer, cancel);
             } else {
                 return writer.writeNode(head, cancel);
             }
         }
 
+        /**
+         * Create a parallel compactor, whose threads each write the given
+         * generation with their own {@code SegmentWriter}.
+         */
+        private ParallelCompactor newParallelCompactor(final int newGeneration) {
+            final AtomicInteger writerCount = new AtomicInteger();
+            return new ParallelCompactor(gcOptions.getCompactionThreads(),
+                    new Supplier<SegmentWriter>() {
+                        @Override
+                        public SegmentWriter get() {
+                            return segmentWriterBuilder("c" + writerCount.incrementAndGet())
+                                    .with(cacheManager)
+                                    .withGeneration(newGeneration)
+                                    .withoutWriterPool()
+                                    .build(FileStore.this);
+                        }
+                    }, gcListener);
+        }
+
+        @CheckForNull
+        String getCompactionProgress() {
+            ParallelCompactor parallel = parallelCompactor;
+            return parallel == null ? null : parallel.getProgress();
+        }
+
         private boolean forceCompact(@Nonnull final SegmentWriter writer,
                                      @Nonnull final Supplier<Boolean> cancel)
         throws InterruptedException {
@@ -69,6 +69,8 @@ public class FileStoreBuilder {
 
     private int segmentCacheSize = DEFAULT_SEGMENT_CACHE_MB;
 
+    private boolean offHeapSegmentCache;
+
     private int stringCacheSize = DEFAULT_STRING_CACHE_MB;
 
     private int templateCacheSize = DEFAULT_TEMPLATE_CACHE_MB;
@@ -157,6 +159,20 @@ public class FileStoreBuilder {
         return this;
     }
 
+    /**
+     * Turn the off heap segment cache on or off. The off heap segment cache
+     * keeps segments, which are not memory mapped, in direct buffers outside
+     * of the Java heap and does not acquire any locks on access. It is
+     * turned off by default.
+     * @param offHeapSegmentCache
+     * @return this instance
+     */
+    @Nonnull
+    public FileStoreBuilder withOffHeapSegmentCache(boolean offHeapSegmentCache) {
+        this.offHeapSegmentCache = offHeapSegmentCache;
+        return this;
+    }
+
     /**
      * Size of the string cache in MB.
      * @param stringCacheSize  None negative cache size
@@ -349,6 +365,10 @@ public class FileStoreBuilder {
         return segmentCacheSize;
     }
 
+    boolean getOffHeapSegmentCache() {
+        return offHeapSegmentCache;
+    }
+
     int getStringCacheSize() {
         return stringCacheSize;
     }
@@ -397,6 +417,7 @@ public class FileStoreBuilder {
                 ", blobStore=" + blobStore +
                 ", maxFileSize=" + maxFileSize +
                 ", segmentCacheSize=" + segmentCacheSize +
+                ", offHeapSegmentCache=" + offHeapSegmentCache +
                 ", stringCacheSize=" + stringCacheSize +
                 ", templateCacheSize=" + templateCacheSize +
                 ", stringDeduplicationCacheSize=" + stringDeduplicationCacheSize +
@@ -0,0 +1,353 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newLinkedHashMap;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.apache.jackrabbit.oak.commons.PathUtils.concat;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Supplier;
+import com.google.common.collect.Maps;
+import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeBuilder;
+import org.apache.jackrabbit.oak.segment.SegmentNodeState;
+import org.apache.jackrabbit.oak.segment.SegmentWriter;
+import org.apache.jackrabbit.oak.spi.gc.GCMonitor;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Online compaction of a head state on multiple threads.
+ * <p>
+ * The tree is partitioned into the subtrees at {@link #PARTITION_DEPTH} below
+ * each child of the head state (i.e. below {@code /root} and below
+ * {@code /checkpoints}). The partitions are compacted concurrently, each
+ * thread writing with its own {@link SegmentWriter}. The compacted
+ * partitions are then stitched into the new head state, which is written by
+ * the writer passed to {@link #compact(NodeState, SegmentWriter, Supplier)}.
+ * <p>
+ * The children of the head state are compacted one after each other,
+ * starting with {@code root}. This way the checkpoints, which mostly share
+ * their content with {@code root}, are de-duplicated through the node cache
+ * of the shared {@link org.apache.jackrabbit.oak.segment.WriterCacheManager}.
+ * <p>
+ * Instances of this class are not thread safe. The progress reported by
+ * {@link #getProgress()} can be read concurrently though.
+ */
+class ParallelCompactor {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelCompactor.class);
+
+    /**
+     * Depth of the partitions below each child of the head state.
+     */
+    static final int PARTITION_DEPTH = Integer.getInteger("oak.compaction.partitionDepth", 2);
+
+    @Nonnull
+    private final Supplier<SegmentWriter> writerFactory;
+
+    @Nonnull
+    private final GCMonitor gcMonitor;
+
+    private final int threads;
+
+    /**
+     * Compaction writers not currently used by a compaction thread.
+     */
+    private final BlockingQueue<SegmentWriter> idleWriters = new LinkedBlockingQueue<SegmentWriter>();
+
+    /**
+     * All compaction writers created so far.
+     */
+    private final List<SegmentWriter> writers = newArrayList();
+
+    private final AtomicInteger partitionCount = new AtomicInteger();
+
+    private final AtomicInteger compactedCount = new AtomicInteger();
+
+    private final ConcurrentMap<String, ThreadStats> threadStats = Maps.newConcurrentMap();
+
+    private volatile long start;
+
+    /**
+     * @param threads        number of compaction threads
+     * @param writerFactory  factory for the writers of the compaction threads.
+     *                       The writers must write the same generation as
+     *                       the writer passed to {@link #compact(NodeState, SegmentWriter, Supplier)}.
+     * @param gcMonitor      monitor for logging the progress
+     */
+    ParallelCompactor(int threads,
+                      @Nonnull Supplier<SegmentWriter> writerFactory,
+                      @Nonnull GCMonitor gcMonitor) {
+        checkArgument(threads > 0);
+        this.threads = threads;
+        this.writerFactory = checkNotNull(writerFactory);
+        this.gcMonitor = checkNotNull(gcMonitor);
+    }
+
+    /**
+     * Compact {@code head} unless cancelled.
+     *
+     * @param head    the node state to compact
+     * @param writer  the writer for the stitched head state
+     * @param cancel  supplier to signal cancellation of the compaction
+     * @return the compacted head state or {@code null} if cancelled.
+     * @throws IOException
+     */
+    @CheckForNull
+    SegmentNodeState compact(@Nonnull NodeState head,
+                             @Nonnull SegmentWriter writer,
+                             @Nonnull Supplier<Boolean> cancel)
+    throws IOException {
+        start = System.nanoTime();
+        partitionCount.set(0);
+        compactedCount.set(0);
+        threadStats.clear();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(@Nonnull Runnable r) {
+                Thread thread = new Thread(r, "TarMK compaction thread-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            NodeBuilder builder = new MemoryNodeBuilder(head);
+            for (String name : childNamesRootFirst(head)) {
+                Partition partition = partition(
+                        head.getChildNode(name), "/" + name, PARTITION_DEPTH, executor, cancel);
+                NodeState compacted = stitch(partition);
+                if (compacted == null) {
+                    return null;
+                }
+                builder.setChildNode(name, compacted);
+            }
+
+            // The partitions must be persisted before the stitched head
+            // state refers to them
+            synchronized (writers) {
+                for (SegmentWriter w : writers) {
+                    w.flush();
+                }
+            }
+
+            SegmentNodeState compacted = writer.writeNode(builder.getNodeState(), cancel);
+            gcMonitor.info("TarMK GC: parallel compaction {}", getProgress());
+            return compacted;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the progress of the current or last compaction: the number of
+     *         compacted partitions and the throughput per compaction thread.
+     */
+    @Nonnull
+    String getProgress() {
+        long elapsed = Math.max(1, NANOSECONDS.toMillis(System.nanoTime() - start));
+        StringBuilder sb = new StringBuilder();
+        sb.append(compactedCount.get()).append('/').append(partitionCount.get())
+                .append(" partitions compacted in ").append(elapsed).append(" ms");
+        for (Entry<String, ThreadStats> e : threadStats.entrySet()) {
+            sb.append(", ").append(e.getKey()).append(": ").append(e.getValue());
+        }
+        return sb.toString();
+    }
+
+    private static Iterable<String> childNamesRootFirst(NodeState head) {
+        List<String> names = newArrayList();
+        for (String name : head.getChildNodeNames()) {
+            if ("root".equals(name)) {
+                names.add(0, name);
+            } else {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Recursively partition {@code state} and submit the compaction of all
+     * partitions to the {@code executor}.
+     */
+    private Partition partition(final NodeState state, final String path, int depth,
+                                ExecutorService executor, final Supplier<Boolean> cancel) {
+        if (depth == 0 || state.getChildNodeCount(1) == 0) {
+            partitionCount.incrementAndGet();
+            return new Partition(state, executor.submit(new Callable<SegmentNodeState>() {
+                @Override
+                public SegmentNodeState call() throws Exception {
+                    return compactPartition(state, path, cancel);
+                }
+            }));
+        }
+
+        Map<String, Partition> children = newLinkedHashMap();
+        for (ChildNodeEntry child : state.getChildNodeEntries()) {
+            String name = child.getName();
+            children.put(name, partition(
+                    child.getNodeState(), concat(path, name), depth - 1, executor, cancel));
+        }
+        return new Partition(state, children);
+    }
+
+    @CheckForNull
+    private SegmentNodeState compactPartition(NodeState state, String path, Supplier<Boolean> cancel)
+    throws IOException {
+        SegmentWriter writer = idleWriters.poll();
+        if (writer == null) {
+            writer = writerFactory.get();
+            synchronized (writers) {
+                writers.add(writer);
+            }
+        }
+        try {
+            long t0 = System.nanoTime();
+            SegmentNodeState compacted = writer.writeNode(state, cancel);
+            if (compacted != null) {
+                getThreadStats().add(System.nanoTime() - t0);
+                int n = compactedCount.incrementAndGet();
+                log.debug("Compacted partition {} ({}/{})", path, n, partitionCount.get());
+            }
+            return compacted;
+        } finally {
+            idleWriters.add(writer);
+        }
+    }
+
+    /**
+     * Wait for the compaction of all partitions and stitch them together.
+     * @return the stitched node state or {@code null} if cancelled.
+     */
+    @CheckForNull
+    private NodeState stitch(Partition partition) throws IOException, InterruptedException {
+        if (partition.compacted != null) {
+            try {
+                return partition.compacted.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+
+        NodeBuilder builder = new MemoryNodeBuilder(partition.state);
+        for (Entry<String, Partition> child : partition.children.entrySet()) {
+            NodeState compacted = stitch(child.getValue());
+            if (compacted == null) {
+                return null;
+            }
+            builder.setChildNode(child.getKey(), compacted);
+        }
+        return builder.getNodeState();
+    }
+
+    @Nonnull
+    private ThreadStats getThreadStats() {
+        String name = Thread.currentThread().getName();
+        ThreadStats stats = threadStats.get(name);
+        if (stats == null) {
+            threadStats.putIfAbsent(name, new ThreadStats());
+            stats = threadStats.get(name);
+        }
+        return stats;
+    }
+
+    /**
+     * Either a subtree compacted by a single thread or the parent of
+     * partitions.
+     */
+    private static class Partition {
+
+        @Nonnull
+        final NodeState state;
+
+        @CheckForNull
+        final Future<SegmentNodeState> compacted;
+
+        @CheckForNull
+        final Map<String, Partition> children;
+
+        Partition(@Nonnull NodeState state, @Nonnull Future<SegmentNodeState> compacted) {
+            this.state = state;
+            this.compacted = compacted;
+            this.children = null;
+        }
+
+        Partition(@Nonnull NodeState state, @Nonnull Map<String, Partition> children) {
+            this.state = state;
+            this.compacted = null;
+            this.children = children;
+        }
+    }
+
+    private static class ThreadStats {
+
+        private final AtomicInteger partitions = new AtomicInteger();
+
+        private final AtomicLong nanos = new AtomicLong();
+
+        void add(long duration) {
+            partitions.incrementAndGet();
+            nanos.addAndGet(duration);
+        }
+
+        @Override
+        public String toString() {
+            int count = partitions.get();
+            long millis = Math.max(1, NANOSECONDS.toMillis(nanos.get()));
+            return count + " partitions in " + millis + " ms (" +
+                    (count * 60000L / millis) + " partitions/min)";
+        }
+    }
+}
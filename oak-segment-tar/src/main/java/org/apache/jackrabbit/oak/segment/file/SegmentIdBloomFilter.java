@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A Bloom filter for the identifiers of the segments contained in a tar file.
+ * With the default of {@link #BITS_PER_ENTRY} bits per entry and
+ * {@link #HASH_COUNT} hash functions, the false positive rate is about one
+ * percent.
+ * <p>
+ * The hash functions are derived from the most and least significant bits of
+ * the segment identifier with double hashing. Segment identifiers are random,
+ * the bits are mixed anyway to be independent of the fixed version and type
+ * bits.
+ */
+final class SegmentIdBloomFilter {
+
+    static final int BITS_PER_ENTRY = 10;
+
+    static final int HASH_COUNT = 7;
+
+    private final long[] bits;
+
+    private final int hashCount;
+
+    private SegmentIdBloomFilter(long[] bits, int hashCount) {
+        checkArgument(bits.length > 0);
+        checkArgument(hashCount > 0);
+        this.bits = bits;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Create an empty Bloom filter for the given number of entries.
+     *
+     * @param entryCount the expected number of entries
+     * @return a new Bloom filter
+     */
+    static SegmentIdBloomFilter create(int entryCount) {
+        long bitCount = Math.max(64, (long) entryCount * BITS_PER_ENTRY);
+        return new SegmentIdBloomFilter(new long[(int) ((bitCount + 63) / 64)], HASH_COUNT);
+    }
+
+    /**
+     * Read a Bloom filter previously written with {@link #write(ByteBuffer)}.
+     *
+     * @param buffer    buffer positioned at the start of the filter
+     * @param size      the size of the filter in bytes (see {@link #size()})
+     * @param hashCount the number of hash functions (see {@link #getHashCount()})
+     * @return the Bloom filter
+     */
+    static SegmentIdBloomFilter read(ByteBuffer buffer, int size, int hashCount) {
+        long[] bits = new long[size / 8];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = buffer.getLong();
+        }
+        return new SegmentIdBloomFilter(bits, hashCount);
+    }
+
+    void add(long msb, long lsb) {
+        int h1 = mix(msb);
+        int h2 = mix(lsb);
+        long bitCount = bits.length * 64L;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = ((h1 + i * h2) & 0x7fffffffL) % bitCount;
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * @return {@code false} if the given segment identifier was never added
+     *         to this filter, {@code true} if it possibly was.
+     */
+    boolean mightContain(long msb, long lsb) {
+        int h1 = mix(msb);
+        int h2 = mix(lsb);
+        long bitCount = bits.length * 64L;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = ((h1 + i * h2) & 0x7fffffffL) % bitCount;
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * @return the number of bytes written by {@link #write(ByteBuffer)}.
+     */
+    int size() {
+        return bits.length * 8;
+    }
+
+    void write(ByteBuffer buffer) {
+        for (long b : bits) {
+            buffer.putLong(b);
+        }
+    }
+
+    /**
+     * The finalizer of the 64 bit MurmurHash3, folded to an int.
+     */
+    private static int mix(long x) {
+        x ^= x >>> 33;
+        x *= 0xff51afd7ed558ccdL;
+        x ^= x >>> 33;
+        x *= 0xc4ceb9fe1a85ec53L;
+        x ^= x >>> 33;
+        return (int) (x ^ (x >>> 32));
+    }
+}
@@ -31,6 +31,7 @@ import static java.nio.ByteBuffer.wrap;
 import static java.util.Collections.singletonList;
 import static org.apache.jackrabbit.oak.segment.SegmentId.isDataSegmentId;
 import static org.apache.jackrabbit.oak.segment.file.TarWriter.BINARY_REFERENCES_MAGIC;
+import static org.apache.jackrabbit.oak.segment.file.TarWriter.BLOOM_FILTER_MAGIC;
 import static org.apache.jackrabbit.oak.segment.file.TarWriter.GRAPH_MAGIC;
 
 import java.io.Closeable;
@@ -500,6 +501,12 @@ class TarReader implements Closeable {
 
     private final ByteBuffer index;
 
+    /**
+     * Bloom filter over the identifiers of the segments in this file, which
+     * allows to skip the index lookup for segments not contained in it.
+     */
+    private final SegmentIdBloomFilter bloomFilter;
+
     private volatile boolean closed;
 
     private volatile boolean hasGraph;
@@ -508,6 +515,7 @@ class TarReader implements Closeable {
         this.file = file;
         this.access = access;
         this.index = index;
+        this.bloomFilter = loadBloomFilter();
     }
 
     long size() {
@@ -589,6 +597,10 @@ class TarReader implements Closeable {
      * @return the position in the file, or -1 if not found
      */
     private int findEntry(long msb, long lsb) {
+        if (!bloomFilter.mightContain(msb, lsb)) {
+            return -1;
+        }
+
         // The segment identifiers are randomly generated with uniform
         // distribution, so we can use interpolation search to find the
         // matching entry in the index. The average runtime is O(log log n).
@@ -1057,6 +1069,117 @@ class TarReader implements Closeable {
         return binaryReferences;
     }
 
+    /**
+     * Loads the Bloom filter over the identifiers of the segments in this
+     * file. Tar files written by older versions do not contain a Bloom
+     * filter. For those the Bloom filter is built from the index.
+     *
+     * @return the Bloom filter
+     */
+    private SegmentIdBloomFilter loadBloomFilter() {
+        try {
+            ByteBuffer buffer = readBloomFilter();
+            if (buffer != null) {
+                int hashCount = buffer.getInt(buffer.limit() - 12);
+                int size = buffer.getInt(buffer.limit() - 8);
+                return SegmentIdBloomFilter.read(buffer, size - 16, hashCount);
+            }
+        } catch (IOException e) {
+            log.warn("Exception while loading Bloom filter from tar file {}", file, e);
+        }
+
+        SegmentIdBloomFilter filter = SegmentIdBloomFilter.create(count());
+        int position = index.position();
+        while (position < index.limit()) {
+            filter.add(index.getLong(position), index.getLong(position + 8));
+            position += TarEntry.SIZE;
+        }
+        return filter;
+    }
+
+    /**
+     * Reads the Bloom filter entry, which precedes the binary references.
+     * Only the footers of the entries following the Bloom filter are read to
+     * locate it.
+     *
+     * @return the Bloom filter buffer, or {@code null} if one was not found
+     * @throws IOException if the tar file could not be read
+     */
+    private ByteBuffer readBloomFilter() throws IOException {
+        int end = access.length() - 2 * BLOCK_SIZE - getIndexEntrySize();
+
+        int graphEntrySize = getEntrySizeBefore(end, GRAPH_MAGIC);
+        if (graphEntrySize == -1) {
+            return null;
+        }
+        end -= graphEntrySize;
+
+        int binaryReferencesEntrySize = getEntrySizeBefore(end, BINARY_REFERENCES_MAGIC);
+        if (binaryReferencesEntrySize == -1) {
+            return null;
+        }
+        end -= binaryReferencesEntrySize;
+
+        if (end < 16) {
+            return null;
+        }
+
+        ByteBuffer meta = access.read(end - 16, 16);
+
+        int crc32 = meta.getInt();
+        int hashCount = meta.getInt();
+        int size = meta.getInt();
+        int magic = meta.getInt();
+
+        if (magic != BLOOM_FILTER_MAGIC) {
+            log.debug("No Bloom filter found in tar file {}", file);
+            return null;
+        }
+
+        if (hashCount <= 0 || size < 24 || (size - 16) % 8 != 0 || size > end) {
+            log.warn("Invalid Bloom filter size or hash count in tar file {}", file);
+            return null;
+        }
+
+        ByteBuffer buffer = access.read(end - size, size);
+
+        byte[] data = new byte[size - 16];
+        buffer.mark();
+        buffer.get(data);
+        buffer.reset();
+
+        CRC32 checksum = new CRC32();
+        checksum.update(data);
+
+        if (crc32 != (int) checksum.getValue()) {
+            log.warn("Invalid Bloom filter checksum in tar file {}", file);
+            return null;
+        }
+
+        return buffer;
+    }
+
+    /**
+     * Determines the size of the entry ending at the given position from the
+     * footer of that entry.
+     *
+     * @param end   the position where the entry ends
+     * @param magic the expected magic number in the footer of the entry
+     * @return the size of the entry including its header and padding, or -1
+     *         if the footer does not contain the expected magic number
+     * @throws IOException if the tar file could not be read
+     */
+    private int getEntrySizeBefore(int end, int magic) throws IOException {
+        if (end < 16) {
+            return -1;
+        }
+        ByteBuffer meta = access.read(end - 16, 16);
+        if (meta.getInt(meta.position() + 12) != magic) {
+            return -1;
+        }
+        return getEntrySize(meta.getInt(meta.position() + 8));
+    }
+
     /**
      * Loads the optional pre-compiled graph entry from the given tar file.
      *
@@ -98,6 +98,19 @@ class TarWriter implements Closeable {
      */
     static final int BINARY_REFERENCES_MAGIC = ('\n' << 24) + ('0' << 16) + ('B' << 8) + '\n';
 
+    /**
+     * Magic sequence at the end of the Bloom filter block. The Bloom filter
+     * over the identifiers of the segments in the file precedes the binary
+     * references block. File format:
+     * <ul>
+     * <li>0 padding to make the footer end at a 512 byte boundary</li>
+     * <li>The bits of the {@link SegmentIdBloomFilter}, 8 bytes each.</li>
+     * <li>The footer, which contains the checksum, the number of hash
+     * functions and the size of the Bloom filter.</li>
+     * </ul>
+     */
+    static final int BLOOM_FILTER_MAGIC = ('\n' << 24) + ('0' << 16) + ('F' << 8) + '\n';
+
     /** The tar file block size. */
     static final int BLOCK_SIZE = 512;
 
@@ -339,13 +352,15 @@ class TarWriter implements Closeable {
             return;
         }
 
-        // Complete the tar file by adding the graph, the index and the
-        // trailing two zero blocks. This code is synchronized on the file
-        // instance to  ensure that no concurrent thread is still flushing
-        // the file when we close the file handle.
+        // Complete the tar file by adding the Bloom filter, the binary
+        // references, the graph, the index and the trailing two zero blocks.
+        // This code is synchronized on the file instance to  ensure that no
+        // concurrent thread is still flushing the file when we close the
+        // file handle.
         long initialPosition, currentPosition;
         synchronized (file) {
             initialPosition = access.getFilePointer();
+            writeBloomFilter();
             writeBinaryReferences();
             writeGraph();
             writeIndex();
@@ -378,6 +393,37 @@ class TarWriter implements Closeable {
         return new TarWriter(file.getParentFile(), monitor, newIndex);
     }
 
+    private void writeBloomFilter() throws IOException {
+        SegmentIdBloomFilter filter = SegmentIdBloomFilter.create(index.size());
+        for (TarEntry entry : index.values()) {
+            filter.add(entry.msb(), entry.lsb());
+        }
+
+        // The bits of the filter, followed by the footer with the checksum,
+        // the number of hash functions, the size and the magic number.
+        int bloomFilterSize = filter.size() + 16;
+
+        ByteBuffer buffer = ByteBuffer.allocate(bloomFilterSize);
+        filter.write(buffer);
+
+        CRC32 checksum = new CRC32();
+        checksum.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) checksum.getValue());
+        buffer.putInt(filter.getHashCount());
+        buffer.putInt(bloomFilterSize);
+        buffer.putInt(BLOOM_FILTER_MAGIC);
+
+        int padding = getPaddingSize(bloomFilterSize);
+
+        access.write(newEntryHeader(file.getName() + ".blm", bloomFilterSize + padding));
+
+        if (padding > 0) {
+            access.write(ZERO_BYTES, 0, padding);
+        }
+
+        access.write(buffer.array());
+    }
+
     private void writeBinaryReferences() throws IOException {
         int binaryReferenceSize = 0;
 
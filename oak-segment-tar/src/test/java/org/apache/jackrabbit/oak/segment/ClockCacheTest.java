@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+public class ClockCacheTest {
+
+    private static final Weigher<String, String> WEIGHER = new Weigher<String, String>() {
+        @Override
+        public int weigh(@Nonnull String key, @Nonnull String value) {
+            return value.length();
+        }
+    };
+
+    private final List<String> removed = Lists.newArrayList();
+
+    private ClockCache<String, String> newCache(long maximumWeight) {
+        return new ClockCache<String, String>(maximumWeight, WEIGHER) {
+            @Override
+            protected void onRemoval(@Nonnull String key, @Nonnull String value,
+                                     @Nonnull RemovalCause cause) {
+                removed.add(key);
+            }
+        };
+    }
+
+    @Test
+    public void evictOldest() {
+        ClockCache<String, String> cache = newCache(10);
+        cache.put("a", "aaaa");
+        cache.put("b", "bbbb");
+        cache.put("c", "cccc");
+        assertNull(cache.getIfPresent("a"));
+        assertNotNull(cache.getIfPresent("b"));
+        assertNotNull(cache.getIfPresent("c"));
+        assertEquals(8, cache.weight());
+        assertEquals(Lists.newArrayList("a"), removed);
+        assertEquals(1, cache.stats().evictionCount());
+    }
+
+    @Test
+    public void secondChance() {
+        ClockCache<String, String> cache = newCache(10);
+        cache.put("a", "aaaa");
+        cache.put("b", "bbbb");
+        assertNotNull(cache.getIfPresent("a"));
+        cache.put("c", "cccc");
+        assertNotNull(cache.getIfPresent("a"));
+        assertNull(cache.getIfPresent("b"));
+        assertNotNull(cache.getIfPresent("c"));
+        assertEquals(Lists.newArrayList("b"), removed);
+    }
+
+    @Test
+    public void replaceAndInvalidate() {
+        ClockCache<String, String> cache = newCache(10);
+        cache.put("a", "aaaa");
+        cache.put("a", "aa");
+        assertEquals(2, cache.weight());
+        assertEquals("aa", cache.getIfPresent("a"));
+        assertEquals("aa", cache.asMap().get("a"));
+        cache.put("b", "bbbb");
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+        assertEquals(Lists.newArrayList("a", "a", "b"), removed);
+        assertEquals(0, cache.asMap().size());
+    }
+
+    @Test
+    public void stats() {
+        ClockCache<String, String> cache = newCache(10);
+        cache.put("a", "aaaa");
+        cache.getIfPresent("a");
+        cache.getIfPresent("b");
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(1, cache.stats().missCount());
+    }
+}
@@ -33,6 +33,7 @@ import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.defa
 import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -328,6 +329,40 @@ public class CompactionAndCleanupIT {
         }
     }
 
+    @Test
+    public void parallelCompaction() throws Exception {
+        SegmentGCOptions gcOptions = defaultGCOptions().setCompactionThreads(4);
+        FileStore fileStore = fileStoreBuilder(getFileStoreFolder())
+                .withMaxFileSize(1)
+                .withGCOptions(gcOptions)
+                .build();
+        SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(fileStore).build();
+        try {
+            NodeBuilder builder = nodeStore.getRoot().builder();
+            for (int i = 0; i < 10; i++) {
+                NodeBuilder a = builder.child("a" + i);
+                a.setProperty("p", i);
+                for (int j = 0; j < 100; j++) {
+                    NodeBuilder b = a.child("b" + j);
+                    b.setProperty("p", "v" + j);
+                    b.child("c").setProperty("q", i * j);
+                }
+            }
+            nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+            String cp = nodeStore.checkpoint(60000);
+
+            NodeState before = nodeStore.getRoot();
+            assertTrue(fileStore.compact());
+            assertNotNull(fileStore.getCompactionProgress());
+            NodeState after = nodeStore.getRoot();
+
+            assertEquals(before, after);
+            assertEquals(before, nodeStore.retrieve(cp));
+        } finally {
+            fileStore.close();
+        }
+    }
+
     /**
      * Create 2 binary nodes with same content but not same reference. Verify
      * de-duplication capabilities of compaction.
@@ -19,9 +19,12 @@
 package org.apache.jackrabbit.oak.segment;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.nio.ByteBuffer;
 import java.util.concurrent.Callable;
 
 import org.apache.jackrabbit.oak.cache.CacheStats;
@@ -111,4 +114,46 @@ public class SegmentCacheTest {
         assertEquals(0, stats.getRequestCount());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void offHeapTest() throws Exception {
+        SegmentStore store = mock(SegmentStore.class);
+        final SegmentId id = new SegmentId(store, -1, 0xB000000000000000L);
+        final Segment segment = new Segment(store, mock(SegmentReader.class), id,
+                ByteBuffer.wrap(new byte[]{1, 2, 3, 4}));
+        SegmentCache cache = new SegmentCache(1, true);
+
+        Segment cached = cache.getSegment(id, new Callable<Segment>() {
+            @Override
+            public Segment call() throws Exception {
+                return segment;
+            }
+        });
+        assertNotSame(segment, cached);
+        assertEquals(segment.size(), cached.size());
+        assertEquals(cached, id.getSegment());
+        assertEquals(1, cache.getCacheStats().getElementCount());
+
+        // Clearing the cache should cause an eviction call back for id
+        cache.clear();
+        assertEquals(0, cache.getCacheStats().getElementCount());
+        Segment segment2 = mock(Segment.class);
+        when(store.readSegment(id)).thenReturn(segment2);
+        assertEquals(segment2, id.getSegment());
+    }
+
+    @Test
+    public void offHeapEvictionTest() throws Exception {
+        SegmentStore store = mock(SegmentStore.class);
+        SegmentReader reader = mock(SegmentReader.class);
+        SegmentCache cache = new SegmentCache(1, true);
+
+        for (int k = 0; k < 100; k++) {
+            SegmentId id = new SegmentId(store, k, 0xB000000000000000L);
+            cache.putSegment(new Segment(store, reader, id, ByteBuffer.allocate(64 * 1024)));
+        }
+        CacheStats stats = cache.getCacheStats();
+        assertTrue(stats.getElementCount() < 100);
+        assertTrue(stats.estimateCurrentWeight() <= stats.getMaxTotalWeight());
+        assertTrue(stats.getEvictionCount() > 0);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.UUID;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+public class SegmentIdBloomFilterTest {
+
+    @Test
+    public void noFalseNegatives() {
+        List<UUID> ids = randomIds(1000);
+        SegmentIdBloomFilter filter = SegmentIdBloomFilter.create(ids.size());
+        for (UUID id : ids) {
+            filter.add(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        }
+        for (UUID id : ids) {
+            assertTrue(filter.mightContain(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+        }
+    }
+
+    @Test
+    public void falsePositiveRate() {
+        SegmentIdBloomFilter filter = SegmentIdBloomFilter.create(1000);
+        for (UUID id : randomIds(1000)) {
+            filter.add(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        }
+        int falsePositives = 0;
+        for (UUID id : randomIds(10000)) {
+            if (filter.mightContain(id.getMostSignificantBits(), id.getLeastSignificantBits())) {
+                falsePositives++;
+            }
+        }
+        // about one percent expected
+        assertTrue("false positives: " + falsePositives, falsePositives < 500);
+    }
+
+    @Test
+    public void writeAndRead() {
+        List<UUID> ids = randomIds(100);
+        SegmentIdBloomFilter filter = SegmentIdBloomFilter.create(ids.size());
+        for (UUID id : ids) {
+            filter.add(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(filter.size());
+        filter.write(buffer);
+        buffer.flip();
+
+        SegmentIdBloomFilter read = SegmentIdBloomFilter.read(buffer, filter.size(), filter.getHashCount());
+        assertEquals(filter.size(), read.size());
+        for (UUID id : ids) {
+            assertTrue(read.mightContain(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+        }
+    }
+
+    private static List<UUID> randomIds(int count) {
+        List<UUID> ids = Lists.newArrayList();
+        for (int i = 0; i < count; i++) {
+            ids.add(UUID.randomUUID());
+        }
+        return ids;
+    }
+}
@@ -22,7 +22,10 @@ import static com.google.common.base.Charsets.UTF_8;
 import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Maps.newHashMap;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.internal.util.collections.Sets.newSet;
 
 import java.io.File;
@@ -66,7 +69,7 @@ public class TarFileTest {
             writer.close();
         }
 
-        assertEquals(5120, file.length());
+        assertEquals(6144, file.length());
 
         TarReader reader = TarReader.open(file, false);
         try {
@@ -196,4 +199,28 @@ public class TarFileTest {
         }
     }
 
+    @Test
+    public void bloomFilterShouldSkipAbsentSegments() throws Exception {
+        List<UUID> ids = newArrayList();
+        try (TarWriter writer = new TarWriter(file)) {
+            for (int i = 0; i < 100; i++) {
+                UUID id = UUID.randomUUID();
+                ids.add(id);
+                writer.writeEntry(id.getMostSignificantBits(), id.getLeastSignificantBits(),
+                        new byte[] {1}, 0, 1, 0);
+            }
+        }
+
+        try (TarReader reader = TarReader.open(file, false)) {
+            for (UUID id : ids) {
+                assertTrue(reader.containsEntry(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+            }
+            for (int i = 0; i < 100; i++) {
+                UUID id = UUID.randomUUID();
+                assertFalse(reader.containsEntry(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+                assertNull(reader.readEntry(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+            }
+        }
+    }
+
 }